@@ -0,0 +1,288 @@
+/* 
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of requests in flight with an additive-increase, multiplicative-decrease (AIMD) policy.
+ * <p>
+ * Every successful response raises the limit by the reciprocal of the limit, that is by about one per round of
+ * requests, up to the maximum. A throttled response halves the limit, down to the minimum. Requests that were already
+ * in flight when the limit was lowered do not lower it again, so a burst of throttled responses counts as a single
+ * congestion signal. Requests beyond the limit wait until a permit is released: the requests of DocumentClient block
+ * their thread, while those of AsyncDocumentClient are queued and sent once the permit is handed to them.
+ * <p>
+ * Limiters are created by the client when {@link ConnectionPolicy#getConcurrencyControlMode()} enables them, and can
+ * be obtained through {@link DocumentClient#getConcurrencyLimiter(String)} to monitor the current limit and the number
+ * of waiting requests.
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = this.lock.newCondition();
+    private final ArrayDeque<PermitListener> waitingListeners = new ArrayDeque<PermitListener>();
+    private double limit;
+    private int inFlightCount;
+    private int queueDepth;
+    private long issuedPermitCount;
+    private long lastDecreasePermit;
+
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1) {
+            throw new IllegalArgumentException("minLimit");
+        }
+        if (maxLimit < minLimit) {
+            throw new IllegalArgumentException("maxLimit");
+        }
+        if (initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("initialLimit");
+        }
+
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Gets the number of requests currently allowed in flight.
+     * 
+     * @return the concurrency limit.
+     */
+    public int getLimit() {
+        this.lock.lock();
+        try {
+            return (int) this.limit;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of requests in flight.
+     * 
+     * @return the in-flight request count.
+     */
+    public int getInFlightCount() {
+        this.lock.lock();
+        try {
+            return this.inFlightCount;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of requests waiting for a permit.
+     * 
+     * @return the queue depth.
+     */
+    public int getQueueDepth() {
+        this.lock.lock();
+        try {
+            return this.queueDepth;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until a request may be sent.
+     * 
+     * @return the permit, which must be passed to exactly one of the release methods.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    long acquire() throws InterruptedException {
+        this.lock.lock();
+        try {
+            this.queueDepth++;
+            try {
+                while (this.inFlightCount >= (int) this.limit) {
+                    this.permitReleased.await();
+                }
+            } finally {
+                this.queueDepth--;
+            }
+
+            return this.issuePermit();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Hands a permit to a listener as soon as a request may be sent, without blocking the calling thread. The listener
+     * is called on the calling thread if a permit is available, and otherwise on the thread releasing a permit.
+     * 
+     * @param listener the listener receiving the permit, which must be passed to exactly one of the release methods.
+     */
+    void acquire(PermitListener listener) {
+        long permit;
+        this.lock.lock();
+        try {
+            if (this.inFlightCount >= (int) this.limit) {
+                this.waitingListeners.add(listener);
+                this.queueDepth++;
+                return;
+            }
+
+            permit = this.issuePermit();
+        } finally {
+            this.lock.unlock();
+        }
+
+        listener.onPermit(permit);
+    }
+
+    /**
+     * Withdraws a listener which is still waiting for a permit.
+     * 
+     * @param listener the listener passed to acquire.
+     * @return true if the listener was waiting and will not receive a permit.
+     */
+    boolean cancel(PermitListener listener) {
+        this.lock.lock();
+        try {
+            if (!this.waitingListeners.remove(listener)) {
+                return false;
+            }
+
+            this.queueDepth--;
+            return true;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a permit after a successful response and raises the limit.
+     * 
+     * @param permit the permit returned by acquire.
+     */
+    void onSuccess(long permit) {
+        List<PermitGrant> grants;
+        this.lock.lock();
+        try {
+            int previousLimit = (int) this.limit;
+            this.limit = Math.min(this.maxLimit, this.limit + 1 / this.limit);
+            this.release();
+            if ((int) this.limit > previousLimit) {
+                this.permitReleased.signal();
+            }
+
+            grants = this.grantWaitingListeners();
+        } finally {
+            this.lock.unlock();
+        }
+
+        AdaptiveConcurrencyLimiter.notifyListeners(grants);
+    }
+
+    /**
+     * Releases a permit after a throttled response and lowers the limit.
+     * 
+     * @param permit the permit returned by acquire.
+     */
+    void onThrottled(long permit) {
+        List<PermitGrant> grants;
+        this.lock.lock();
+        try {
+            if (permit > this.lastDecreasePermit) {
+                this.limit = Math.max(this.minLimit, this.limit * AdaptiveConcurrencyLimiter.BACKOFF_RATIO);
+                this.lastDecreasePermit = this.issuedPermitCount;
+            }
+
+            this.release();
+            grants = this.grantWaitingListeners();
+        } finally {
+            this.lock.unlock();
+        }
+
+        AdaptiveConcurrencyLimiter.notifyListeners(grants);
+    }
+
+    /**
+     * Releases a permit without changing the limit, for requests that failed for other reasons than throttling.
+     * 
+     * @param permit the permit returned by acquire.
+     */
+    void onIgnored(long permit) {
+        List<PermitGrant> grants;
+        this.lock.lock();
+        try {
+            this.release();
+            grants = this.grantWaitingListeners();
+        } finally {
+            this.lock.unlock();
+        }
+
+        AdaptiveConcurrencyLimiter.notifyListeners(grants);
+    }
+
+    private long issuePermit() {
+        this.inFlightCount++;
+        return ++this.issuedPermitCount;
+    }
+
+    private void release() {
+        this.inFlightCount--;
+        this.permitReleased.signal();
+    }
+
+    private List<PermitGrant> grantWaitingListeners() {
+        List<PermitGrant> grants = null;
+        while (!this.waitingListeners.isEmpty() && this.inFlightCount < (int) this.limit) {
+            if (grants == null) {
+                grants = new ArrayList<PermitGrant>();
+            }
+
+            this.queueDepth--;
+            grants.add(new PermitGrant(this.waitingListeners.poll(), this.issuePermit()));
+        }
+
+        return grants;
+    }
+
+    private static void notifyListeners(List<PermitGrant> grants) {
+        if (grants == null) {
+            return;
+        }
+
+        // Listeners are called without holding the lock, as they go on to send their request.
+        for (PermitGrant grant : grants) {
+            grant.listener.onPermit(grant.permit);
+        }
+    }
+
+    /**
+     * Receives the permit of a request which waited without blocking a thread.
+     */
+    interface PermitListener {
+        /**
+         * Called once the request may be sent.
+         * 
+         * @param permit the permit, which must be passed to exactly one of the release methods.
+         */
+        void onPermit(long permit);
+    }
+
+    private static final class PermitGrant {
+        private final PermitListener listener;
+        private final long permit;
+
+        PermitGrant(PermitListener listener, long permit) {
+            this.listener = listener;
+            this.permit = permit;
+        }
+    }
+}
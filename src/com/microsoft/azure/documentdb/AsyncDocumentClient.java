@@ -0,0 +1,1669 @@
+/*
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.concurrent.BasicFuture;
+
+/**
+ * Provides an asynchronous client-side logical representation of the Azure DocumentDB service.
+ * <p>
+ * Every operation of {@link DocumentClient} has a counterpart here which returns immediately with a {@link Future}
+ * that completes once the service has responded. Requests are built and sent by the same request pipeline as
+ * DocumentClient, so session tokens, authorization, concurrency limits and request unit limits behave identically.
+ * Invalid arguments are still reported by throwing IllegalArgumentException from the calling method.
+ * <p>
+ * Requests are sent over non-blocking connections: a request in flight holds a pooled connection but no thread, and
+ * at most {@link ConnectionPolicy#getMaxPoolSize()} requests are in flight at a time, the others waiting in the queue
+ * of the connection pool. Requests waiting for the concurrency limit or the request unit limit of their collection
+ * do not hold a thread either. Responses are read into memory before their future completes. The proxy server
+ * configured for the JVM is not used. Call {@link #close()} when the client is no longer needed.
+ * <p>
+ * Throttled requests are retried as configured by the {@link RetryOptions} of the request or of the connection
+ * policy, and query pages as configured by the retry policy of the client. The retries are scheduled on a timer
+ * rather than waited for on a thread. Operations that upload a media stream are not retried, as the stream cannot be
+ * read again; the stream is read by the I/O thread of the client, so it should not block.
+ * <p>
+ * Feeds and queries return one page per call. The next page is read by passing the response continuation of a page
+ * to {@link FeedOptions#setRequestContinuation(String)}.
+ */
+public final class AsyncDocumentClient {
+
+    private final DocumentClient client;
+
+    /**
+     * Initializes a new instance of the AsyncDocumentClient class using the specified DocumentDB service endpoint and
+     * keys.
+     *
+     * @param serviceEndpoint the URI of the service end point.
+     * @param masterKey the master key.
+     * @param connectionPolicy the connection policy.
+     * @param desiredConsistencyLevel the desired consistency level.
+     */
+    public AsyncDocumentClient(String serviceEndpoint,
+                               String masterKey,
+                               ConnectionPolicy connectionPolicy,
+                               ConsistencyLevel desiredConsistencyLevel) {
+        this.client = new DocumentClient(serviceEndpoint, masterKey, connectionPolicy, desiredConsistencyLevel);
+    }
+
+    /**
+     * Initializes a new instance of the AsyncDocumentClient class using the specified DocumentDB service endpoint and
+     * permissions.
+     *
+     * @param serviceEndpoint the URI of the service end point.
+     * @param permissionFeed the permission feed.
+     * @param connectionPolicy the connection policy.
+     * @param desiredConsistencyLevel the desired consistency level.
+     */
+    public AsyncDocumentClient(String serviceEndpoint,
+                               List<Permission> permissionFeed,
+                               ConnectionPolicy connectionPolicy,
+                               ConsistencyLevel desiredConsistencyLevel) {
+        this.client = new DocumentClient(serviceEndpoint, permissionFeed, connectionPolicy, desiredConsistencyLevel);
+    }
+
+    /**
+     * Gets the synchronous DocumentClient backing this client. It shares the session tokens, the partition resolvers
+     * and the limits of this client.
+     *
+     * @return the document client.
+     */
+    public DocumentClient getDocumentClient() {
+        return this.client;
+    }
+
+    /**
+     * Registers the partition resolver associated with the database link
+     *
+     * @param databaseLink the database link.
+     * @param partitionResolver the partition resolver.
+     * @throws DocumentClientException the document client exception.
+     */
+    public void registerPartitionResolver(String databaseLink, PartitionResolver partitionResolver)
+            throws DocumentClientException {
+        this.client.registerPartitionResolver(databaseLink, partitionResolver);
+    }
+
+    /**
+     * Creates a database.
+     * 
+     * @param database the database.
+     * @param options the request options.
+     * @return the future of the resource response with the created database.
+     */
+    public Future<ResourceResponse<Database>> createDatabase(Database database, RequestOptions options) {
+        if (database == null) {
+            throw new IllegalArgumentException("Database");
+        }
+
+        DocumentClient.validateResource(database);
+
+        DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Database,
+                                                                       ResourceLink.parse(Paths.DATABASES_ROOT),
+                                                                       database,
+                                                                       this.client.getRequestHeaders(options));
+        return this.client.doCreateAsync(request, options, AsyncDocumentClient.resourceHandler(Database.class));
+    }
+
+    /**
+     * Deletes a database.
+     * 
+     * @param databaseLink the database link.
+     * @param options the request options.
+     * @return the future of the resource response.
+     */
+    public Future<ResourceResponse<Database>> deleteDatabase(String databaseLink, RequestOptions options) {
+        return this.delete(ResourceType.Database, databaseLink, "databaseLink", options, Database.class);
+    }
+
+    /**
+     * Reads a database.
+     * 
+     * @param databaseLink the database link.
+     * @param options the request options.
+     * @return the future of the resource response with the read database.
+     */
+    public Future<ResourceResponse<Database>> readDatabase(String databaseLink, RequestOptions options) {
+        return this.read(ResourceType.Database, databaseLink, "databaseLink", options, Database.class);
+    }
+
+    /**
+     * Reads a page of all databases.
+     * 
+     * @param options the feed options.
+     * @return the future of the page with the read databases.
+     */
+    public Future<FeedResponsePage<Database>> readDatabases(FeedOptions options) {
+        return this.readFeed(ResourceType.Database, ResourceLink.parse(Paths.DATABASES_ROOT), options, Database.class);
+    }
+
+    /**
+     * Query for databases, reading a page of the results.
+     * 
+     * @param query the query.
+     * @param options the feed options.
+     * @return the future of the page with the obtained databases.
+     */
+    public Future<FeedResponsePage<Database>> queryDatabases(String query, FeedOptions options) {
+        return this.queryDatabases(AsyncDocumentClient.toQuerySpec(query), options);
+    }
+
+    /**
+     * Query for databases, reading a page of the results.
+     * 
+     * @param querySpec the SQL query specification.
+     * @param options the feed options.
+     * @return the future of the page with the obtained databases.
+     */
+    public Future<FeedResponsePage<Database>> queryDatabases(SqlQuerySpec querySpec, FeedOptions options) {
+        return this.query(ResourceType.Database, ResourceLink.parse(Paths.DATABASES_ROOT), querySpec, options,
+                          Database.class);
+    }
+
+    /**
+     * Creates a document collection.
+     * 
+     * @param databaseLink the database link.
+     * @param collection the collection.
+     * @param options the request options.
+     * @return the future of the resource response with the created collection.
+     */
+    public Future<ResourceResponse<DocumentCollection>> createCollection(String databaseLink,
+                                                                         DocumentCollection collection,
+                                                                         RequestOptions options) {
+        ResourceLink path = AsyncDocumentClient.joinPath(databaseLink, "databaseLink", Paths.COLLECTIONS_PATH_SEGMENT);
+        if (collection == null) {
+            throw new IllegalArgumentException("collection");
+        }
+
+        DocumentClient.validateResource(collection);
+
+        DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.DocumentCollection,
+                                                                       path,
+                                                                       collection,
+                                                                       this.client.getRequestHeaders(options));
+        return this.client.doCreateAsync(request,
+                                         options,
+                                         AsyncDocumentClient.resourceHandler(DocumentCollection.class));
+    }
+
+    /**
+     * Replaces a document collection.
+     * 
+     * @param collection the document collection to use.
+     * @param options the request options.
+     * @return the future of the resource response with the replaced document collection.
+     */
+    public Future<ResourceResponse<DocumentCollection>> replaceCollection(DocumentCollection collection,
+                                                                          RequestOptions options) {
+        return this.replace(ResourceType.DocumentCollection,
+                            collection,
+                            "collection",
+                            options,
+                            DocumentCollection.class);
+    }
+
+    /**
+     * Deletes a document collection.
+     * 
+     * @param collectionLink the collection link.
+     * @param options the request options.
+     * @return the future of the resource response.
+     */
+    public Future<ResourceResponse<DocumentCollection>> deleteCollection(String collectionLink,
+                                                                         RequestOptions options) {
+        return this.delete(ResourceType.DocumentCollection,
+                           collectionLink,
+                           "collectionLink",
+                           options,
+                           DocumentCollection.class);
+    }
+
+    /**
+     * Reads a document collection.
+     * 
+     * @param collectionLink the collection link.
+     * @param options the request options.
+     * @return the future of the resource response with the read document collection.
+     */
+    public Future<ResourceResponse<DocumentCollection>> readCollection(String collectionLink,
+                                                                       RequestOptions options) {
+        return this.read(ResourceType.DocumentCollection,
+                         collectionLink,
+                         "collectionLink",
+                         options,
+                         DocumentCollection.class);
+    }
+
+    /**
+     * Reads a page of the document collections in a database.
+     * 
+     * @param databaseLink the database link.
+     * @param options the feed options.
+     * @return the future of the page with the read collections.
+     */
+    public Future<FeedResponsePage<DocumentCollection>> readCollections(String databaseLink,
+                                                                        FeedOptions options) {
+        ResourceLink path = AsyncDocumentClient.joinPath(databaseLink, "databaseLink", Paths.COLLECTIONS_PATH_SEGMENT);
+        return this.readFeed(ResourceType.DocumentCollection, path, options, DocumentCollection.class);
+    }
+
+    /**
+     * Query for document collections in a database, reading a page of the results.
+     * 
+     * @param databaseLink the database link.
+     * @param query the query.
+     * @param options the feed options.
+     * @return the future of the page with the obtained collections.
+     */
+    public Future<FeedResponsePage<DocumentCollection>> queryCollections(String databaseLink,
+                                                                         String query,
+                                                                         FeedOptions options) {
+        return this.queryCollections(databaseLink, AsyncDocumentClient.toQuerySpec(query), options);
+    }
+
+    /**
+     * Query for document collections in a database, reading a page of the results.
+     * 
+     * @param databaseLink the database link.
+     * @param querySpec the SQL query specification.
+     * @param options the feed options.
+     * @return the future of the page with the obtained collections.
+     */
+    public Future<FeedResponsePage<DocumentCollection>> queryCollections(String databaseLink,
+                                                                         SqlQuerySpec querySpec,
+                                                                         FeedOptions options) {
+        ResourceLink path = AsyncDocumentClient.joinPath(databaseLink, "databaseLink", Paths.COLLECTIONS_PATH_SEGMENT);
+        return this.query(ResourceType.DocumentCollection, path, querySpec, options, DocumentCollection.class);
+    }
+
+    /**
+     * Creates a document.
+     * 
+     * @param databaseOrDocumentCollectionLink the database link when using partitioning, otherwise document collection link.
+     * @param document the document represented as a POJO or Document object.
+     * @param options the request options.
+     * @param disableAutomaticIdGeneration the flag for disabling automatic id generation.
+     * @return the future of the resource response with the created document.
+     */
+    public Future<ResourceResponse<Document>> createDocument(String databaseOrDocumentCollectionLink,
+                                                             Object document,
+                                                             RequestOptions options,
+                                                             boolean disableAutomaticIdGeneration) {
+        ResourceLink documentCollectionLink =
+                this.client.getTargetDocumentCollection(databaseOrDocumentCollectionLink, document);
+        DocumentServiceRequest request = this.client.getDocumentRequest(documentCollectionLink,
+                                                                        document,
+                                                                        options,
+                                                                        disableAutomaticIdGeneration);
+        return this.client.doCreateAsync(request, options, AsyncDocumentClient.resourceHandler(Document.class));
+    }
+
+    /**
+     * Upserts a document.
+     * 
+     * @param databaseOrDocumentCollectionLink the database link when using partitioning, otherwise document collection link.
+     * @param document the document represented as a POJO or Document object to upsert.
+     * @param options the request options.
+     * @param disableAutomaticIdGeneration the flag for disabling automatic id generation.
+     * @return the future of the resource response with the upserted document.
+     */
+    public Future<ResourceResponse<Document>> upsertDocument(String databaseOrDocumentCollectionLink,
+                                                             Object document,
+                                                             RequestOptions options,
+                                                             boolean disableAutomaticIdGeneration) {
+        ResourceLink documentCollectionLink =
+                this.client.getTargetDocumentCollection(databaseOrDocumentCollectionLink, document);
+        DocumentServiceRequest request = this.client.getDocumentRequest(documentCollectionLink,
+                                                                        document,
+                                                                        options,
+                                                                        disableAutomaticIdGeneration);
+        return this.client.doUpsertAsync(request, options, AsyncDocumentClient.resourceHandler(Document.class));
+    }
+
+    /**
+     * Replaces a document using a POJO object.
+     * 
+     * @param documentLink the document link.
+     * @param document the document represented as a POJO or Document object.
+     * @param options the request options.
+     * @return the future of the resource response with the replaced document.
+     */
+    public Future<ResourceResponse<Document>> replaceDocument(String documentLink,
+                                                              Object document,
+                                                              RequestOptions options) {
+        ResourceLink path = AsyncDocumentClient.joinPath(documentLink, "documentLink", null);
+        if (document == null) {
+            throw new IllegalArgumentException("document");
+        }
+
+        Map<String, String> requestHeaders = this.client.getRequestHeaders(options);
+        DocumentServiceRequest request;
+        if (document instanceof Document) {
+            DocumentClient.validateResource((Document) document);
+            request = DocumentServiceRequest.create(ResourceType.Document, path, (Document) document, requestHeaders);
+        } else {
+            request = DocumentServiceRequest.create(ResourceType.Document,
+                                                    path,
+                                                    DocumentClient.toDocumentTree(document),
+                                                    requestHeaders);
+        }
+
+        return this.client.doReplaceAsync(request, options, AsyncDocumentClient.resourceHandler(Document.class));
+    }
+
+    /**
+     * Replaces a document with the passed in document.
+     * 
+     * @param document the document to replace (containing the document id).
+     * @param options the request options.
+     * @return the future of the resource response with the replaced document.
+     */
+    public Future<ResourceResponse<Document>> replaceDocument(Document document, RequestOptions options) {
+        return this.replace(ResourceType.Document, document, "document", options, Document.class);
+    }
+
+    /**
+     * Deletes a document.
+     * 
+     * @param documentLink the document link.
+     * @param options the request options.
+     * @return the future of the resource response.
+     */
+    public Future<ResourceResponse<Document>> deleteDocument(String documentLink,
+                                                             RequestOptions options) {
+        return this.delete(ResourceType.Document, documentLink, "documentLink", options, Document.class);
+    }
+
+    /**
+     * Reads a document.
+     * 
+     * @param documentLink the document link.
+     * @param options the request options.
+     * @return the future of the resource response with the read document.
+     */
+    public Future<ResourceResponse<Document>> readDocument(String documentLink,
+                                                           RequestOptions options) {
+        return this.read(ResourceType.Document, documentLink, "documentLink", options, Document.class);
+    }
+
+    /**
+     * Reads a page of the documents in a document collection.
+     * 
+     * @param collectionLink the collection link.
+     * @param options the feed options.
+     * @return the future of the page with the read documents.
+     */
+    public Future<FeedResponsePage<Document>> readDocuments(String collectionLink,
+                                                            FeedOptions options) {
+        ResourceLink path =
+                AsyncDocumentClient.joinPath(collectionLink, "collectionLink", Paths.DOCUMENTS_PATH_SEGMENT);
+        return this.readFeed(ResourceType.Document, path, options, Document.class);
+    }
+
+    /**
+     * Query for documents in a document collection, reading a page of the results.
+     * 
+     * @param databaseOrDocumentCollectionLink the database link when using partitioning, otherwise document collection link.
+     * @param query the query.
+     * @param options the feed options.
+     * @return the future of the page with the obtained documents.
+     */
+    public Future<FeedResponsePage<Document>> queryDocuments(String databaseOrDocumentCollectionLink,
+                                                             String query,
+                                                             FeedOptions options) {
+        return this.queryDocuments(databaseOrDocumentCollectionLink, query, options, null);
+    }
+
+    /**
+     * Query for documents in a document collection with a partitionKey, reading a page of the results.
+     * 
+     * @param databaseOrDocumentCollectionLink the database link when using partitioning, otherwise document collection link.
+     * @param query the query.
+     * @param options the feed options.
+     * @param partitionKey the partitionKey.
+     * @return the future of the page with the obtained documents.
+     */
+    public Future<FeedResponsePage<Document>> queryDocuments(String databaseOrDocumentCollectionLink,
+                                                             String query,
+                                                             FeedOptions options,
+                                                             Object partitionKey) {
+        return this.queryDocuments(databaseOrDocumentCollectionLink,
+                                   AsyncDocumentClient.toQuerySpec(query),
+                                   options,
+                                   partitionKey);
+    }
+
+    /**
+     * Query for documents in a document collection, reading a page of the results.
+     * 
+     * @param databaseOrDocumentCollectionLink the database link when using partitioning, otherwise document collection link.
+     * @param querySpec the SQL query specification.
+     * @param options the feed options.
+     * @return the future of the page with the obtained documents.
+     */
+    public Future<FeedResponsePage<Document>> queryDocuments(String databaseOrDocumentCollectionLink,
+                                                             SqlQuerySpec querySpec,
+                                                             FeedOptions options) {
+        return this.queryDocuments(databaseOrDocumentCollectionLink, querySpec, options, null);
+    }
+
+    /**
+     * Query for documents in a document collection with a partitionKey, reading a page of the results.
+     * 
+     * @param databaseOrDocumentCollectionLink the database link when using partitioning, otherwise document collection link.
+     * @param querySpec the SQL query specification.
+     * @param options the feed options.
+     * @param partitionKey the partitionKey.
+     * @return the future of the page with the obtained documents.
+     */
+    public Future<FeedResponsePage<Document>> queryDocuments(String databaseOrDocumentCollectionLink,
+                                                             SqlQuerySpec querySpec,
+                                                             FeedOptions options,
+                                                             Object partitionKey) {
+        return this.queryDocumentsAs(databaseOrDocumentCollectionLink,
+                                     querySpec,
+                                     options,
+                                     partitionKey,
+                                     Document.class);
+    }
+
+    /**
+     * Query for documents in a document collection, reading a page of the results bound to a POJO.
+     * 
+     * @param databaseOrDocumentCollectionLink the database link when using partitioning, otherwise document collection link.
+     * @param query the query.
+     * @param options the feed options.
+     * @param classOfT the class of the POJO the documents are bound to, or LazyDocument to parse properties on demand.
+     * @param <T> the type of the POJO.
+     * @return the future of the page with the obtained documents.
+     */
+    public <T> Future<FeedResponsePage<T>> queryDocumentsAs(String databaseOrDocumentCollectionLink,
+                                                            String query,
+                                                            FeedOptions options,
+                                                            Class<T> classOfT) {
+        return this.queryDocumentsAs(databaseOrDocumentCollectionLink,
+                                     AsyncDocumentClient.toQuerySpec(query),
+                                     options,
+                                     classOfT);
+    }
+
+    /**
+     * Query for documents in a document collection, reading a page of the results bound to a POJO.
+     * 
+     * @param databaseOrDocumentCollectionLink the database link when using partitioning, otherwise document collection link.
+     * @param querySpec the SQL query specification.
+     * @param options the feed options.
+     * @param classOfT the class of the POJO the documents are bound to, or LazyDocument to parse properties on demand.
+     * @param <T> the type of the POJO.
+     * @return the future of the page with the obtained documents.
+     */
+    public <T> Future<FeedResponsePage<T>> queryDocumentsAs(String databaseOrDocumentCollectionLink,
+                                                            SqlQuerySpec querySpec,
+                                                            FeedOptions options,
+                                                            Class<T> classOfT) {
+        return this.queryDocumentsAs(databaseOrDocumentCollectionLink, querySpec, options, null, classOfT);
+    }
+
+    /**
+     * Query for documents in a document collection with a partitionKey, reading a page of the results bound to a
+     * POJO.
+     * <p>
+     * When the query is sent to a database link, the collections returned by the partition resolver are read one
+     * after the other, and the response continuation of a page tracks all of them. ORDER BY queries spanning several
+     * collections are not supported, as their results cannot be merged one page at a time; use
+     * {@link DocumentClient#queryDocumentsAs} for them.
+     * 
+     * @param databaseOrDocumentCollectionLink the database link when using partitioning, otherwise document collection link.
+     * @param querySpec the SQL query specification.
+     * @param options the feed options.
+     * @param partitionKey the partitionKey.
+     * @param classOfT the class of the POJO the documents are bound to, or LazyDocument to parse properties on demand.
+     * @param <T> the type of the POJO.
+     * @return the future of the page with the obtained documents.
+     */
+    public <T> Future<FeedResponsePage<T>> queryDocumentsAs(String databaseOrDocumentCollectionLink,
+                                                            SqlQuerySpec querySpec,
+                                                            FeedOptions options,
+                                                            Object partitionKey,
+                                                            Class<T> classOfT) {
+        if (StringUtils.isEmpty(databaseOrDocumentCollectionLink)) {
+            throw new IllegalArgumentException("databaseOrDocumentCollectionLink");
+        }
+        if (querySpec == null) {
+            throw new IllegalArgumentException("querySpec");
+        }
+        if (classOfT == null) {
+            throw new IllegalArgumentException("classOfT");
+        }
+
+        ResourceLink link = ResourceLink.parse(databaseOrDocumentCollectionLink);
+        if (!link.isDatabaseLink()) {
+            ResourceLink path = ResourceLink.join(link, Paths.DOCUMENTS_PATH_SEGMENT);
+            return this.query(ResourceType.Document, path, querySpec, options, classOfT);
+        }
+
+        PartitionResolver partitionResolver = this.client.getPartitionResolver(databaseOrDocumentCollectionLink);
+        if (partitionResolver == null) {
+            throw new IllegalArgumentException(DocumentClient.PartitionResolverErrorMessage);
+        }
+
+        List<String> collectionLinks = new ArrayList<String>();
+        for (String collectionLink : partitionResolver.resolveForRead(partitionKey)) {
+            collectionLinks.add(collectionLink);
+        }
+
+        if (collectionLinks.size() == 1) {
+            ResourceLink path = ResourceLink.join(collectionLinks.get(0), Paths.DOCUMENTS_PATH_SEGMENT);
+            return this.query(ResourceType.Document, path, querySpec, options, classOfT);
+        }
+
+        if (collectionLinks.size() > 1 && OrderByQueryExecutor.hasOrderBy(querySpec.getQueryText())) {
+            throw new IllegalArgumentException(
+                    "ORDER BY queries spanning several collections are not supported by the asynchronous client.");
+        }
+
+        return this.queryPartitions(collectionLinks, querySpec, options, classOfT);
+    }
+
+    /**
+     * Creates a stored procedure.
+     * 
+     * @param collectionLink the collection link.
+     * @param storedProcedure the stored procedure to create.
+     * @param options the request options.
+     * @return the future of the resource response with the created stored procedure.
+     */
+    public Future<ResourceResponse<StoredProcedure>> createStoredProcedure(String collectionLink,
+                                                                           StoredProcedure storedProcedure,
+                                                                           RequestOptions options) {
+        DocumentServiceRequest request = this.client.getStoredProcedureRequest(collectionLink,
+                                                                               storedProcedure,
+                                                                               options);
+        return this.client.doCreateAsync(request, options, AsyncDocumentClient.resourceHandler(StoredProcedure.class));
+    }
+
+    /**
+     * Upserts a stored procedure.
+     * 
+     * @param collectionLink the collection link.
+     * @param storedProcedure the stored procedure to upsert.
+     * @param options the request options.
+     * @return the future of the resource response with the upserted stored procedure.
+     */
+    public Future<ResourceResponse<StoredProcedure>> upsertStoredProcedure(String collectionLink,
+                                                                           StoredProcedure storedProcedure,
+                                                                           RequestOptions options) {
+        DocumentServiceRequest request = this.client.getStoredProcedureRequest(collectionLink,
+                                                                               storedProcedure,
+                                                                               options);
+        return this.client.doUpsertAsync(request, options, AsyncDocumentClient.resourceHandler(StoredProcedure.class));
+    }
+
+    /**
+     * Replaces a stored procedure.
+     * 
+     * @param storedProcedure the stored procedure to use.
+     * @param options the request options.
+     * @return the future of the resource response with the replaced stored procedure.
+     */
+    public Future<ResourceResponse<StoredProcedure>> replaceStoredProcedure(StoredProcedure storedProcedure,
+                                                                            RequestOptions options) {
+        return this.replace(ResourceType.StoredProcedure,
+                            storedProcedure,
+                            "storedProcedure",
+                            options,
+                            StoredProcedure.class);
+    }
+
+    /**
+     * Deletes a stored procedure.
+     * 
+     * @param storedProcedureLink the stored procedure link.
+     * @param options the request options.
+     * @return the future of the resource response.
+     */
+    public Future<ResourceResponse<StoredProcedure>> deleteStoredProcedure(String storedProcedureLink,
+                                                                           RequestOptions options) {
+        return this.delete(ResourceType.StoredProcedure,
+                           storedProcedureLink,
+                           "storedProcedureLink",
+                           options,
+                           StoredProcedure.class);
+    }
+
+    /**
+     * Reads a stored procedure.
+     * 
+     * @param storedProcedureLink the stored procedure link.
+     * @param options the request options.
+     * @return the future of the resource response with the read stored procedure.
+     */
+    public Future<ResourceResponse<StoredProcedure>> readStoredProcedure(String storedProcedureLink,
+                                                                         RequestOptions options) {
+        return this.read(ResourceType.StoredProcedure,
+                         storedProcedureLink,
+                         "storedProcedureLink",
+                         options,
+                         StoredProcedure.class);
+    }
+
+    /**
+     * Reads a page of the stored procedures in a document collection.
+     * 
+     * @param collectionLink the collection link.
+     * @param options the feed options.
+     * @return the future of the page with the read stored procedures.
+     */
+    public Future<FeedResponsePage<StoredProcedure>> readStoredProcedures(String collectionLink,
+                                                                          FeedOptions options) {
+        ResourceLink path = AsyncDocumentClient.joinPath(collectionLink,
+                                                   "collectionLink",
+                                                   Paths.STORED_PROCEDURES_PATH_SEGMENT);
+        return this.readFeed(ResourceType.StoredProcedure, path, options, StoredProcedure.class);
+    }
+
+    /**
+     * Query for stored procedures in a document collection, reading a page of the results.
+     * 
+     * @param collectionLink the collection link.
+     * @param query the query.
+     * @param options the feed options.
+     * @return the future of the page with the obtained stored procedures.
+     */
+    public Future<FeedResponsePage<StoredProcedure>> queryStoredProcedures(String collectionLink,
+                                                                           String query,
+                                                                           FeedOptions options) {
+        return this.queryStoredProcedures(collectionLink, AsyncDocumentClient.toQuerySpec(query), options);
+    }
+
+    /**
+     * Query for stored procedures in a document collection, reading a page of the results.
+     * 
+     * @param collectionLink the collection link.
+     * @param querySpec the SQL query specification.
+     * @param options the feed options.
+     * @return the future of the page with the obtained stored procedures.
+     */
+    public Future<FeedResponsePage<StoredProcedure>> queryStoredProcedures(String collectionLink,
+                                                                           SqlQuerySpec querySpec,
+                                                                           FeedOptions options) {
+        ResourceLink path = AsyncDocumentClient.joinPath(collectionLink,
+                                                   "collectionLink",
+                                                   Paths.STORED_PROCEDURES_PATH_SEGMENT);
+        return this.query(ResourceType.StoredProcedure, path, querySpec, options, StoredProcedure.class);
+    }
+
+    /**
+     * Executes a stored procedure by the stored procedure link.
+     * 
+     * @param storedProcedureLink the stored procedure link.
+     * @param procedureParams the array of procedure parameter values.
+     * @return the future of the stored procedure response.
+     */
+    public Future<StoredProcedureResponse> executeStoredProcedure(String storedProcedureLink,
+                                                                  Object[] procedureParams) {
+        ResourceLink path = AsyncDocumentClient.joinPath(storedProcedureLink, "storedProcedureLink", null);
+        DocumentServiceRequest request = DocumentServiceRequest.create(
+                ResourceType.StoredProcedure,
+                path,
+                procedureParams != null ? DocumentClient.serializeProcedureParams(procedureParams) : "",
+                null);
+        return this.client.doCreateAsync(request, null, new GatewayProxy.ResponseHandler<StoredProcedureResponse>() {
+            @Override
+            public StoredProcedureResponse handle(DocumentServiceResponse response) {
+                return new StoredProcedureResponse(response);
+            }
+        });
+    }
+
+    /**
+     * Creates a trigger.
+     * 
+     * @param collectionLink the collection link.
+     * @param trigger the trigger.
+     * @param options the request options.
+     * @return the future of the resource response with the created trigger.
+     */
+    public Future<ResourceResponse<Trigger>> createTrigger(String collectionLink,
+                                                           Trigger trigger,
+                                                           RequestOptions options) {
+        DocumentServiceRequest request = this.client.getTriggerRequest(collectionLink, trigger, options);
+        return this.client.doCreateAsync(request, options, AsyncDocumentClient.resourceHandler(Trigger.class));
+    }
+
+    /**
+     * Upserts a trigger.
+     * 
+     * @param collectionLink the collection link.
+     * @param trigger the trigger to upsert.
+     * @param options the request options.
+     * @return the future of the resource response with the upserted trigger.
+     */
+    public Future<ResourceResponse<Trigger>> upsertTrigger(String collectionLink,
+                                                           Trigger trigger,
+                                                           RequestOptions options) {
+        DocumentServiceRequest request = this.client.getTriggerRequest(collectionLink, trigger, options);
+        return this.client.doUpsertAsync(request, options, AsyncDocumentClient.resourceHandler(Trigger.class));
+    }
+
+    /**
+     * Replaces a trigger.
+     * 
+     * @param trigger the trigger to use.
+     * @param options the request options.
+     * @return the future of the resource response with the replaced trigger.
+     */
+    public Future<ResourceResponse<Trigger>> replaceTrigger(Trigger trigger,
+                                                            RequestOptions options) {
+        return this.replace(ResourceType.Trigger, trigger, "trigger", options, Trigger.class);
+    }
+
+    /**
+     * Deletes a trigger.
+     * 
+     * @param triggerLink the trigger link.
+     * @param options the request options.
+     * @return the future of the resource response.
+     */
+    public Future<ResourceResponse<Trigger>> deleteTrigger(String triggerLink,
+                                                           RequestOptions options) {
+        return this.delete(ResourceType.Trigger, triggerLink, "triggerLink", options, Trigger.class);
+    }
+
+    /**
+     * Reads a trigger.
+     * 
+     * @param triggerLink the trigger link.
+     * @param options the request options.
+     * @return the future of the resource response with the read trigger.
+     */
+    public Future<ResourceResponse<Trigger>> readTrigger(String triggerLink,
+                                                         RequestOptions options) {
+        return this.read(ResourceType.Trigger, triggerLink, "triggerLink", options, Trigger.class);
+    }
+
+    /**
+     * Reads a page of the triggers in a document collection.
+     * 
+     * @param collectionLink the collection link.
+     * @param options the feed options.
+     * @return the future of the page with the read triggers.
+     */
+    public Future<FeedResponsePage<Trigger>> readTriggers(String collectionLink,
+                                                          FeedOptions options) {
+        ResourceLink path = AsyncDocumentClient.joinPath(collectionLink, "collectionLink", Paths.TRIGGERS_PATH_SEGMENT);
+        return this.readFeed(ResourceType.Trigger, path, options, Trigger.class);
+    }
+
+    /**
+     * Query for triggers in a document collection, reading a page of the results.
+     * 
+     * @param collectionLink the collection link.
+     * @param query the query.
+     * @param options the feed options.
+     * @return the future of the page with the obtained triggers.
+     */
+    public Future<FeedResponsePage<Trigger>> queryTriggers(String collectionLink,
+                                                           String query,
+                                                           FeedOptions options) {
+        return this.queryTriggers(collectionLink, AsyncDocumentClient.toQuerySpec(query), options);
+    }
+
+    /**
+     * Query for triggers in a document collection, reading a page of the results.
+     * 
+     * @param collectionLink the collection link.
+     * @param querySpec the SQL query specification.
+     * @param options the feed options.
+     * @return the future of the page with the obtained triggers.
+     */
+    public Future<FeedResponsePage<Trigger>> queryTriggers(String collectionLink,
+                                                           SqlQuerySpec querySpec,
+                                                           FeedOptions options) {
+        ResourceLink path = AsyncDocumentClient.joinPath(collectionLink, "collectionLink", Paths.TRIGGERS_PATH_SEGMENT);
+        return this.query(ResourceType.Trigger, path, querySpec, options, Trigger.class);
+    }
+
+    /**
+     * Creates a user defined function.
+     * 
+     * @param collectionLink the collection link.
+     * @param udf the user defined function.
+     * @param options the request options.
+     * @return the future of the resource response with the created user defined function.
+     */
+    public Future<ResourceResponse<UserDefinedFunction>> createUserDefinedFunction(String collectionLink,
+                                                                                   UserDefinedFunction udf,
+                                                                                   RequestOptions options) {
+        DocumentServiceRequest request = this.client.getUserDefinedFunctionRequest(collectionLink, udf, options);
+        return this.client.doCreateAsync(request,
+                                         options,
+                                         AsyncDocumentClient.resourceHandler(UserDefinedFunction.class));
+    }
+
+    /**
+     * Upserts a user defined function.
+     * 
+     * @param collectionLink the collection link.
+     * @param udf the user defined function to upsert.
+     * @param options the request options.
+     * @return the future of the resource response with the upserted user defined function.
+     */
+    public Future<ResourceResponse<UserDefinedFunction>> upsertUserDefinedFunction(String collectionLink,
+                                                                                   UserDefinedFunction udf,
+                                                                                   RequestOptions options) {
+        DocumentServiceRequest request = this.client.getUserDefinedFunctionRequest(collectionLink, udf, options);
+        return this.client.doUpsertAsync(request,
+                                         options,
+                                         AsyncDocumentClient.resourceHandler(UserDefinedFunction.class));
+    }
+
+    /**
+     * Replaces a user defined function.
+     * 
+     * @param udf the user defined function to use.
+     * @param options the request options.
+     * @return the future of the resource response with the replaced user defined function.
+     */
+    public Future<ResourceResponse<UserDefinedFunction>> replaceUserDefinedFunction(UserDefinedFunction udf,
+                                                                                    RequestOptions options) {
+        return this.replace(ResourceType.UserDefinedFunction, udf, "udf", options, UserDefinedFunction.class);
+    }
+
+    /**
+     * Deletes a user defined function.
+     * 
+     * @param udfLink the user defined function link.
+     * @param options the request options.
+     * @return the future of the resource response.
+     */
+    public Future<ResourceResponse<UserDefinedFunction>> deleteUserDefinedFunction(String udfLink,
+                                                                                   RequestOptions options) {
+        return this.delete(ResourceType.UserDefinedFunction, udfLink, "udfLink", options, UserDefinedFunction.class);
+    }
+
+    /**
+     * Reads a user defined function.
+     * 
+     * @param udfLink the user defined function link.
+     * @param options the request options.
+     * @return the future of the resource response with the read user defined function.
+     */
+    public Future<ResourceResponse<UserDefinedFunction>> readUserDefinedFunction(String udfLink,
+                                                                                 RequestOptions options) {
+        return this.read(ResourceType.UserDefinedFunction, udfLink, "udfLink", options, UserDefinedFunction.class);
+    }
+
+    /**
+     * Reads a page of the user defined functions in a document collection.
+     * 
+     * @param collectionLink the collection link.
+     * @param options the feed options.
+     * @return the future of the page with the read user defined functions.
+     */
+    public Future<FeedResponsePage<UserDefinedFunction>> readUserDefinedFunctions(String collectionLink,
+                                                                                  FeedOptions options) {
+        ResourceLink path = AsyncDocumentClient.joinPath(collectionLink,
+                                                   "collectionLink",
+                                                   Paths.USER_DEFINED_FUNCTIONS_PATH_SEGMENT);
+        return this.readFeed(ResourceType.UserDefinedFunction, path, options, UserDefinedFunction.class);
+    }
+
+    /**
+     * Query for user defined functions in a document collection, reading a page of the results.
+     * 
+     * @param collectionLink the collection link.
+     * @param query the query.
+     * @param options the feed options.
+     * @return the future of the page with the obtained user defined functions.
+     */
+    public Future<FeedResponsePage<UserDefinedFunction>> queryUserDefinedFunctions(String collectionLink,
+                                                                                   String query,
+                                                                                   FeedOptions options) {
+        return this.queryUserDefinedFunctions(collectionLink, AsyncDocumentClient.toQuerySpec(query), options);
+    }
+
+    /**
+     * Query for user defined functions in a document collection, reading a page of the results.
+     * 
+     * @param collectionLink the collection link.
+     * @param querySpec the SQL query specification.
+     * @param options the feed options.
+     * @return the future of the page with the obtained user defined functions.
+     */
+    public Future<FeedResponsePage<UserDefinedFunction>> queryUserDefinedFunctions(String collectionLink,
+                                                                                   SqlQuerySpec querySpec,
+                                                                                   FeedOptions options) {
+        ResourceLink path = AsyncDocumentClient.joinPath(collectionLink,
+                                                   "collectionLink",
+                                                   Paths.USER_DEFINED_FUNCTIONS_PATH_SEGMENT);
+        return this.query(ResourceType.UserDefinedFunction, path, querySpec, options, UserDefinedFunction.class);
+    }
+
+    /**
+     * Creates an attachment.
+     * 
+     * @param documentLink the document link.
+     * @param attachment the attachment to create.
+     * @param options the request options.
+     * @return the future of the resource response with the created attachment.
+     */
+    public Future<ResourceResponse<Attachment>> createAttachment(String documentLink,
+                                                                 Attachment attachment,
+                                                                 RequestOptions options) {
+        DocumentServiceRequest request = this.client.getAttachmentRequest(documentLink, attachment, options);
+        return this.client.doCreateAsync(request, options, AsyncDocumentClient.resourceHandler(Attachment.class));
+    }
+
+    /**
+     * Upserts an attachment.
+     * 
+     * @param documentLink the document link.
+     * @param attachment the attachment to upsert.
+     * @param options the request options.
+     * @return the future of the resource response with the upserted attachment.
+     */
+    public Future<ResourceResponse<Attachment>> upsertAttachment(String documentLink,
+                                                                 Attachment attachment,
+                                                                 RequestOptions options) {
+        DocumentServiceRequest request = this.client.getAttachmentRequest(documentLink, attachment, options);
+        return this.client.doUpsertAsync(request, options, AsyncDocumentClient.resourceHandler(Attachment.class));
+    }
+
+    /**
+     * Replaces an attachment.
+     * 
+     * @param attachment the attachment to use.
+     * @param options the request options.
+     * @return the future of the resource response with the replaced attachment.
+     */
+    public Future<ResourceResponse<Attachment>> replaceAttachment(Attachment attachment,
+                                                                  RequestOptions options) {
+        return this.replace(ResourceType.Attachment, attachment, "attachment", options, Attachment.class);
+    }
+
+    /**
+     * Deletes an attachment.
+     * 
+     * @param attachmentLink the attachment link.
+     * @param options the request options.
+     * @return the future of the resource response.
+     */
+    public Future<ResourceResponse<Attachment>> deleteAttachment(String attachmentLink,
+                                                                 RequestOptions options) {
+        return this.delete(ResourceType.Attachment, attachmentLink, "attachmentLink", options, Attachment.class);
+    }
+
+    /**
+     * Reads an attachment.
+     * 
+     * @param attachmentLink the attachment link.
+     * @param options the request options.
+     * @return the future of the resource response with the read attachment.
+     */
+    public Future<ResourceResponse<Attachment>> readAttachment(String attachmentLink,
+                                                               RequestOptions options) {
+        return this.read(ResourceType.Attachment, attachmentLink, "attachmentLink", options, Attachment.class);
+    }
+
+    /**
+     * Reads a page of the attachments in a document.
+     * 
+     * @param documentLink the document link.
+     * @param options the feed options.
+     * @return the future of the page with the read attachments.
+     */
+    public Future<FeedResponsePage<Attachment>> readAttachments(String documentLink,
+                                                                FeedOptions options) {
+        ResourceLink path = AsyncDocumentClient.joinPath(documentLink, "documentLink", Paths.ATTACHMENTS_PATH_SEGMENT);
+        return this.readFeed(ResourceType.Attachment, path, options, Attachment.class);
+    }
+
+    /**
+     * Query for attachments in a document, reading a page of the results.
+     * 
+     * @param documentLink the document link.
+     * @param query the query.
+     * @param options the feed options.
+     * @return the future of the page with the obtained attachments.
+     */
+    public Future<FeedResponsePage<Attachment>> queryAttachments(String documentLink,
+                                                                 String query,
+                                                                 FeedOptions options) {
+        return this.queryAttachments(documentLink, AsyncDocumentClient.toQuerySpec(query), options);
+    }
+
+    /**
+     * Query for attachments in a document, reading a page of the results.
+     * 
+     * @param documentLink the document link.
+     * @param querySpec the SQL query specification.
+     * @param options the feed options.
+     * @return the future of the page with the obtained attachments.
+     */
+    public Future<FeedResponsePage<Attachment>> queryAttachments(String documentLink,
+                                                                 SqlQuerySpec querySpec,
+                                                                 FeedOptions options) {
+        ResourceLink path = AsyncDocumentClient.joinPath(documentLink, "documentLink", Paths.ATTACHMENTS_PATH_SEGMENT);
+        return this.query(ResourceType.Attachment, path, querySpec, options, Attachment.class);
+    }
+
+    /**
+     * Creates an attachment.
+     * 
+     * @param documentLink the document link.
+     * @param mediaStream the media stream for creating the attachment.
+     * @param options the media options.
+     * @return the future of the resource response with the created attachment.
+     */
+    public Future<ResourceResponse<Attachment>> createAttachment(String documentLink,
+                                                                 InputStream mediaStream,
+                                                                 MediaOptions options) {
+        DocumentServiceRequest request = this.client.getAttachmentRequest(documentLink, mediaStream, options);
+        return this.client.doCreateAsync(request, null, AsyncDocumentClient.resourceHandler(Attachment.class));
+    }
+
+    /**
+     * Upserts an attachment to the media stream
+     * 
+     * @param documentLink the document link.
+     * @param mediaStream the media stream for upserting the attachment.
+     * @param options the media options.
+     * @return the future of the resource response with the upserted attachment.
+     */
+    public Future<ResourceResponse<Attachment>> upsertAttachment(String documentLink,
+                                                                 InputStream mediaStream,
+                                                                 MediaOptions options) {
+        DocumentServiceRequest request = this.client.getAttachmentRequest(documentLink, mediaStream, options);
+        return this.client.doUpsertAsync(request, null, AsyncDocumentClient.resourceHandler(Attachment.class));
+    }
+
+    /**
+     * Reads a media by the media link.
+     * 
+     * @param mediaLink the media link.
+     * @return the future of the media response.
+     */
+    public Future<MediaResponse> readMedia(String mediaLink) {
+        ResourceLink path = AsyncDocumentClient.joinPath(mediaLink, "mediaLink", null);
+        DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Media, path, null);
+        request.setIsMedia(true);
+        return this.client.doReadAsync(request, null, this.mediaHandler());
+    }
+
+    /**
+     * Updates a media by the media link.
+     * 
+     * @param mediaLink the media link.
+     * @param mediaStream the media stream to upload.
+     * @param options the media options.
+     * @return the future of the media response.
+     */
+    public Future<MediaResponse> updateMedia(String mediaLink, InputStream mediaStream, MediaOptions options) {
+        ResourceLink path = AsyncDocumentClient.joinPath(mediaLink, "mediaLink", null);
+        if (mediaStream == null) {
+            throw new IllegalArgumentException("mediaStream");
+        }
+
+        DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Media,
+                                                                       path,
+                                                                       mediaStream,
+                                                                       this.client.getMediaHeaders(options));
+        request.setIsMedia(true);
+        return this.client.doReplaceAsync(request, null, this.mediaHandler());
+    }
+
+    /**
+     * Reads a conflict.
+     * 
+     * @param conflictLink the conflict link.
+     * @param options the request options.
+     * @return the future of the resource response with the read conflict.
+     */
+    public Future<ResourceResponse<Conflict>> readConflict(String conflictLink,
+                                                           RequestOptions options) {
+        return this.read(ResourceType.Conflict, conflictLink, "conflictLink", options, Conflict.class);
+    }
+
+    /**
+     * Reads a page of the conflicts in a document collection.
+     * 
+     * @param collectionLink the collection link.
+     * @param options the feed options.
+     * @return the future of the page with the read conflicts.
+     */
+    public Future<FeedResponsePage<Conflict>> readConflicts(String collectionLink,
+                                                            FeedOptions options) {
+        ResourceLink path =
+                AsyncDocumentClient.joinPath(collectionLink, "collectionLink", Paths.CONFLICTS_PATH_SEGMENT);
+        return this.readFeed(ResourceType.Conflict, path, options, Conflict.class);
+    }
+
+    /**
+     * Query for conflicts in a document collection, reading a page of the results.
+     * 
+     * @param collectionLink the collection link.
+     * @param query the query.
+     * @param options the feed options.
+     * @return the future of the page with the obtained conflicts.
+     */
+    public Future<FeedResponsePage<Conflict>> queryConflicts(String collectionLink,
+                                                             String query,
+                                                             FeedOptions options) {
+        return this.queryConflicts(collectionLink, AsyncDocumentClient.toQuerySpec(query), options);
+    }
+
+    /**
+     * Query for conflicts in a document collection, reading a page of the results.
+     * 
+     * @param collectionLink the collection link.
+     * @param querySpec the SQL query specification.
+     * @param options the feed options.
+     * @return the future of the page with the obtained conflicts.
+     */
+    public Future<FeedResponsePage<Conflict>> queryConflicts(String collectionLink,
+                                                             SqlQuerySpec querySpec,
+                                                             FeedOptions options) {
+        ResourceLink path =
+                AsyncDocumentClient.joinPath(collectionLink, "collectionLink", Paths.CONFLICTS_PATH_SEGMENT);
+        return this.query(ResourceType.Conflict, path, querySpec, options, Conflict.class);
+    }
+
+    /**
+     * Deletes a conflict.
+     * 
+     * @param conflictLink the conflict link.
+     * @param options the request options.
+     * @return the future of the resource response.
+     */
+    public Future<ResourceResponse<Conflict>> deleteConflict(String conflictLink,
+                                                             RequestOptions options) {
+        return this.delete(ResourceType.Conflict, conflictLink, "conflictLink", options, Conflict.class);
+    }
+
+    /**
+     * Creates a user.
+     * 
+     * @param databaseLink the database link.
+     * @param user the user to create.
+     * @param options the request options.
+     * @return the future of the resource response with the created user.
+     */
+    public Future<ResourceResponse<User>> createUser(String databaseLink,
+                                                     User user,
+                                                     RequestOptions options) {
+        DocumentServiceRequest request = this.client.getUserRequest(databaseLink, user, options);
+        return this.client.doCreateAsync(request, options, AsyncDocumentClient.resourceHandler(User.class));
+    }
+
+    /**
+     * Upserts a user.
+     * 
+     * @param databaseLink the database link.
+     * @param user the user to upsert.
+     * @param options the request options.
+     * @return the future of the resource response with the upserted user.
+     */
+    public Future<ResourceResponse<User>> upsertUser(String databaseLink,
+                                                     User user,
+                                                     RequestOptions options) {
+        DocumentServiceRequest request = this.client.getUserRequest(databaseLink, user, options);
+        return this.client.doUpsertAsync(request, options, AsyncDocumentClient.resourceHandler(User.class));
+    }
+
+    /**
+     * Replaces a user.
+     * 
+     * @param user the user to use.
+     * @param options the request options.
+     * @return the future of the resource response with the replaced user.
+     */
+    public Future<ResourceResponse<User>> replaceUser(User user,
+                                                      RequestOptions options) {
+        return this.replace(ResourceType.User, user, "user", options, User.class);
+    }
+
+    /**
+     * Deletes a user.
+     * 
+     * @param userLink the user link.
+     * @param options the request options.
+     * @return the future of the resource response.
+     */
+    public Future<ResourceResponse<User>> deleteUser(String userLink,
+                                                     RequestOptions options) {
+        return this.delete(ResourceType.User, userLink, "userLink", options, User.class);
+    }
+
+    /**
+     * Reads a user.
+     * 
+     * @param userLink the user link.
+     * @param options the request options.
+     * @return the future of the resource response with the read user.
+     */
+    public Future<ResourceResponse<User>> readUser(String userLink,
+                                                   RequestOptions options) {
+        return this.read(ResourceType.User, userLink, "userLink", options, User.class);
+    }
+
+    /**
+     * Reads a page of the users in a database.
+     * 
+     * @param databaseLink the database link.
+     * @param options the feed options.
+     * @return the future of the page with the read users.
+     */
+    public Future<FeedResponsePage<User>> readUsers(String databaseLink,
+                                                    FeedOptions options) {
+        ResourceLink path = AsyncDocumentClient.joinPath(databaseLink, "databaseLink", Paths.USERS_PATH_SEGMENT);
+        return this.readFeed(ResourceType.User, path, options, User.class);
+    }
+
+    /**
+     * Query for users in a database, reading a page of the results.
+     * 
+     * @param databaseLink the database link.
+     * @param query the query.
+     * @param options the feed options.
+     * @return the future of the page with the obtained users.
+     */
+    public Future<FeedResponsePage<User>> queryUsers(String databaseLink,
+                                                     String query,
+                                                     FeedOptions options) {
+        return this.queryUsers(databaseLink, AsyncDocumentClient.toQuerySpec(query), options);
+    }
+
+    /**
+     * Query for users in a database, reading a page of the results.
+     * 
+     * @param databaseLink the database link.
+     * @param querySpec the SQL query specification.
+     * @param options the feed options.
+     * @return the future of the page with the obtained users.
+     */
+    public Future<FeedResponsePage<User>> queryUsers(String databaseLink,
+                                                     SqlQuerySpec querySpec,
+                                                     FeedOptions options) {
+        ResourceLink path = AsyncDocumentClient.joinPath(databaseLink, "databaseLink", Paths.USERS_PATH_SEGMENT);
+        return this.query(ResourceType.User, path, querySpec, options, User.class);
+    }
+
+    /**
+     * Creates a permission.
+     * 
+     * @param userLink the user link.
+     * @param permission the permission to create.
+     * @param options the request options.
+     * @return the future of the resource response with the created permission.
+     */
+    public Future<ResourceResponse<Permission>> createPermission(String userLink,
+                                                                 Permission permission,
+                                                                 RequestOptions options) {
+        DocumentServiceRequest request = this.client.getPermissionRequest(userLink, permission, options);
+        return this.client.doCreateAsync(request, options, AsyncDocumentClient.resourceHandler(Permission.class));
+    }
+
+    /**
+     * Upserts a permission.
+     * 
+     * @param userLink the user link.
+     * @param permission the permission to upsert.
+     * @param options the request options.
+     * @return the future of the resource response with the upserted permission.
+     */
+    public Future<ResourceResponse<Permission>> upsertPermission(String userLink,
+                                                                 Permission permission,
+                                                                 RequestOptions options) {
+        DocumentServiceRequest request = this.client.getPermissionRequest(userLink, permission, options);
+        return this.client.doUpsertAsync(request, options, AsyncDocumentClient.resourceHandler(Permission.class));
+    }
+
+    /**
+     * Replaces a permission.
+     * 
+     * @param permission the permission to use.
+     * @param options the request options.
+     * @return the future of the resource response with the replaced permission.
+     */
+    public Future<ResourceResponse<Permission>> replacePermission(Permission permission,
+                                                                  RequestOptions options) {
+        return this.replace(ResourceType.Permission, permission, "permission", options, Permission.class);
+    }
+
+    /**
+     * Deletes a permission.
+     * 
+     * @param permissionLink the permission link.
+     * @param options the request options.
+     * @return the future of the resource response.
+     */
+    public Future<ResourceResponse<Permission>> deletePermission(String permissionLink,
+                                                                 RequestOptions options) {
+        return this.delete(ResourceType.Permission, permissionLink, "permissionLink", options, Permission.class);
+    }
+
+    /**
+     * Reads a permission.
+     * 
+     * @param permissionLink the permission link.
+     * @param options the request options.
+     * @return the future of the resource response with the read permission.
+     */
+    public Future<ResourceResponse<Permission>> readPermission(String permissionLink,
+                                                               RequestOptions options) {
+        return this.read(ResourceType.Permission, permissionLink, "permissionLink", options, Permission.class);
+    }
+
+    /**
+     * Reads a page of the permissions of a user.
+     * 
+     * @param permissionLink the permission link.
+     * @param options the feed options.
+     * @return the future of the page with the read permissions.
+     */
+    public Future<FeedResponsePage<Permission>> readPermissions(String permissionLink,
+                                                                FeedOptions options) {
+        ResourceLink path =
+                AsyncDocumentClient.joinPath(permissionLink, "permissionLink", Paths.PERMISSIONS_PATH_SEGMENT);
+        return this.readFeed(ResourceType.Permission, path, options, Permission.class);
+    }
+
+    /**
+     * Query for permissions of a user, reading a page of the results.
+     * 
+     * @param permissionLink the permission link.
+     * @param query the query.
+     * @param options the feed options.
+     * @return the future of the page with the obtained permissions.
+     */
+    public Future<FeedResponsePage<Permission>> queryPermissions(String permissionLink,
+                                                                 String query,
+                                                                 FeedOptions options) {
+        return this.queryPermissions(permissionLink, AsyncDocumentClient.toQuerySpec(query), options);
+    }
+
+    /**
+     * Query for permissions of a user, reading a page of the results.
+     * 
+     * @param permissionLink the permission link.
+     * @param querySpec the SQL query specification.
+     * @param options the feed options.
+     * @return the future of the page with the obtained permissions.
+     */
+    public Future<FeedResponsePage<Permission>> queryPermissions(String permissionLink,
+                                                                 SqlQuerySpec querySpec,
+                                                                 FeedOptions options) {
+        ResourceLink path =
+                AsyncDocumentClient.joinPath(permissionLink, "permissionLink", Paths.PERMISSIONS_PATH_SEGMENT);
+        return this.query(ResourceType.Permission, path, querySpec, options, Permission.class);
+    }
+
+    /**
+     * Replaces an offer.
+     * 
+     * @param offer the offer to use.
+     * @return the future of the resource response with the replaced offer.
+     */
+    public Future<ResourceResponse<Offer>> replaceOffer(Offer offer) {
+        return this.replace(ResourceType.Offer, offer, "offer", null, Offer.class);
+    }
+
+    /**
+     * Reads an offer.
+     * 
+     * @param offerLink the offer link.
+     * @return the future of the resource response with the read offer.
+     */
+    public Future<ResourceResponse<Offer>> readOffer(String offerLink) {
+        return this.read(ResourceType.Offer, offerLink, "offerLink", null, Offer.class);
+    }
+
+    /**
+     * Reads a page of the offers.
+     * 
+     * @param options the feed options.
+     * @return the future of the page with the read offers.
+     */
+    public Future<FeedResponsePage<Offer>> readOffers(FeedOptions options) {
+        ResourceLink path = ResourceLink.join(Paths.OFFERS_PATH_SEGMENT, null);
+        return this.readFeed(ResourceType.Offer, path, options, Offer.class);
+    }
+
+    /**
+     * Query for offers, reading a page of the results.
+     * 
+     * @param query the query.
+     * @param options the feed options.
+     * @return the future of the page with the obtained offers.
+     */
+    public Future<FeedResponsePage<Offer>> queryOffers(String query, FeedOptions options) {
+        return this.queryOffers(AsyncDocumentClient.toQuerySpec(query), options);
+    }
+
+    /**
+     * Query for offers, reading a page of the results.
+     * 
+     * @param querySpec the query specification.
+     * @param options the feed options.
+     * @return the future of the page with the obtained offers.
+     */
+    public Future<FeedResponsePage<Offer>> queryOffers(SqlQuerySpec querySpec, FeedOptions options) {
+        ResourceLink path = ResourceLink.join(Paths.OFFERS_PATH_SEGMENT, null);
+        return this.query(ResourceType.Offer, path, querySpec, options, Offer.class);
+    }
+
+    /**
+     * Gets database account information.
+     * 
+     * @return the future of the database account.
+     */
+    public Future<DatabaseAccount> getDatabaseAccount() {
+        DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.DatabaseAccount,
+                                                                       ResourceLink.parse(""),  // path
+                                                                       null);
+        return this.client.doReadAsync(request, null, new GatewayProxy.ResponseHandler<DatabaseAccount>() {
+            @Override
+            public DatabaseAccount handle(DocumentServiceResponse response) {
+                return DocumentClient.toDatabaseAccount(response);
+            }
+        });
+    }
+
+    /**
+     * Closes the connections of the client. Requests in flight fail, and new requests are rejected.
+     */
+    public void close() {
+        this.client.closeAsyncTransport();
+    }
+
+    private <T extends Resource> Future<ResourceResponse<T>> read(ResourceType resourceType,
+                                                                  String link,
+                                                                  String linkName,
+                                                                  RequestOptions options,
+                                                                  Class<T> classOfT) {
+        ResourceLink path = AsyncDocumentClient.joinPath(link, linkName, null);
+        DocumentServiceRequest request = DocumentServiceRequest.create(resourceType,
+                                                                       path,
+                                                                       this.client.getRequestHeaders(options));
+        return this.client.doReadAsync(request, options, AsyncDocumentClient.resourceHandler(classOfT));
+    }
+
+    private <T extends Resource> Future<ResourceResponse<T>> delete(ResourceType resourceType,
+                                                                    String link,
+                                                                    String linkName,
+                                                                    RequestOptions options,
+                                                                    Class<T> classOfT) {
+        ResourceLink path = AsyncDocumentClient.joinPath(link, linkName, null);
+        DocumentServiceRequest request = DocumentServiceRequest.create(resourceType,
+                                                                       path,
+                                                                       this.client.getRequestHeaders(options));
+        return this.client.doDeleteAsync(request, options, AsyncDocumentClient.resourceHandler(classOfT));
+    }
+
+    private <T extends Resource> Future<ResourceResponse<T>> replace(ResourceType resourceType,
+                                                                     T resource,
+                                                                     String resourceName,
+                                                                     RequestOptions options,
+                                                                     Class<T> classOfT) {
+        if (resource == null) {
+            throw new IllegalArgumentException(resourceName);
+        }
+
+        DocumentClient.validateResource(resource);
+
+        DocumentServiceRequest request = DocumentServiceRequest.create(resourceType,
+                                                                       ResourceLink.join(resource.getSelfLink(), null),
+                                                                       resource,
+                                                                       this.client.getRequestHeaders(options));
+        return this.client.doReplaceAsync(request, options, AsyncDocumentClient.resourceHandler(classOfT));
+    }
+
+    private <T> Future<FeedResponsePage<T>> readFeed(ResourceType resourceType,
+                                                     ResourceLink path,
+                                                     FeedOptions options,
+                                                     Class<T> classOfT) {
+        DocumentServiceRequest request = DocumentServiceRequest.create(resourceType,
+                                                                       path,
+                                                                       this.client.getFeedHeaders(options));
+        return this.client.doReadFeedAsync(request, AsyncDocumentClient.pageHandler(classOfT));
+    }
+
+    private <T> Future<FeedResponsePage<T>> query(ResourceType resourceType,
+                                                  ResourceLink path,
+                                                  SqlQuerySpec querySpec,
+                                                  FeedOptions options,
+                                                  Class<T> classOfT) {
+        if (querySpec == null) {
+            throw new IllegalArgumentException("querySpec");
+        }
+
+        DocumentServiceRequest request = DocumentServiceRequest.create(resourceType,
+                                                                       path,
+                                                                       querySpec,
+                                                                       this.client.queryCompatibilityMode,
+                                                                       this.client.getFeedHeaders(options));
+        return this.client.doQueryAsync(request, AsyncDocumentClient.pageHandler(classOfT));
+    }
+
+    /**
+     * Reads a page of a query spanning several collections from the first collection with more results. The composite
+     * continuation of the page holds the continuation of every collection, as the one of QueryIterable does.
+     */
+    private <T> Future<FeedResponsePage<T>> queryPartitions(final List<String> collectionLinks,
+                                                            SqlQuerySpec querySpec,
+                                                            FeedOptions options,
+                                                            final Class<T> classOfT) {
+        String requestContinuation = options != null ? options.getRequestContinuation() : null;
+        final String[] continuations = new String[collectionLinks.size()];
+        final boolean[] done = new boolean[collectionLinks.size()];
+        int collectionIndex = -1;
+        for (int i = 0; i < collectionLinks.size(); i++) {
+            continuations[i] = OrderByQueryExecutor.getCollectionContinuation(requestContinuation,
+                                                                              collectionLinks.get(i));
+            done[i] = OrderByQueryExecutor.isCollectionDone(requestContinuation, collectionLinks.get(i));
+            if (!done[i] && collectionIndex < 0) {
+                collectionIndex = i;
+            }
+        }
+
+        if (collectionIndex < 0) {
+            BasicFuture<FeedResponsePage<T>> emptyPage = new BasicFuture<FeedResponsePage<T>>(null);
+            emptyPage.completed(new FeedResponsePage<T>(new ArrayList<T>(), new HashMap<String, String>()));
+            return emptyPage;
+        }
+
+        Map<String, String> requestHeaders = this.client.getFeedHeaders(options);
+        if (requestHeaders == null) {
+            requestHeaders = new HashMap<String, String>();
+        }
+
+        if (continuations[collectionIndex] != null) {
+            requestHeaders.put(HttpConstants.HttpHeaders.CONTINUATION, continuations[collectionIndex]);
+        } else {
+            requestHeaders.remove(HttpConstants.HttpHeaders.CONTINUATION);
+        }
+
+        DocumentServiceRequest request = DocumentServiceRequest.create(
+                ResourceType.Document,
+                ResourceLink.join(collectionLinks.get(collectionIndex), Paths.DOCUMENTS_PATH_SEGMENT),
+                querySpec,
+                this.client.queryCompatibilityMode,
+                requestHeaders);
+        final int queriedIndex = collectionIndex;
+        return this.client.doQueryAsync(request, new GatewayProxy.ResponseHandler<FeedResponsePage<T>>() {
+            @Override
+            public FeedResponsePage<T> handle(DocumentServiceResponse response) {
+                Map<String, String> responseHeaders = new HashMap<String, String>(response.getResponseHeaders());
+                continuations[queriedIndex] = responseHeaders.get(HttpConstants.HttpHeaders.CONTINUATION);
+                done[queriedIndex] = StringUtils.isEmpty(continuations[queriedIndex]);
+
+                String continuation =
+                        OrderByQueryExecutor.createCompositeContinuation(collectionLinks, continuations, done);
+                if (continuation != null) {
+                    responseHeaders.put(HttpConstants.HttpHeaders.CONTINUATION, continuation);
+                } else {
+                    responseHeaders.remove(HttpConstants.HttpHeaders.CONTINUATION);
+                }
+
+                return new FeedResponsePage<T>(response.getQueryResponse(classOfT), responseHeaders);
+            }
+        });
+    }
+
+    private GatewayProxy.ResponseHandler<MediaResponse> mediaHandler() {
+        final boolean buffered = this.client.getConnectionPolicy().getMediaReadMode() == MediaReadMode.Buffered;
+        return new GatewayProxy.ResponseHandler<MediaResponse>() {
+            @Override
+            public MediaResponse handle(DocumentServiceResponse response) {
+                return new MediaResponse(response, buffered);
+            }
+        };
+    }
+
+    private static <T extends Resource> GatewayProxy.ResponseHandler<ResourceResponse<T>> resourceHandler(
+            final Class<T> classOfT) {
+        return new GatewayProxy.ResponseHandler<ResourceResponse<T>>() {
+            @Override
+            public ResourceResponse<T> handle(DocumentServiceResponse response) {
+                return new ResourceResponse<T>(response, classOfT);
+            }
+        };
+    }
+
+    private static <T> GatewayProxy.ResponseHandler<FeedResponsePage<T>> pageHandler(final Class<T> classOfT) {
+        return new GatewayProxy.ResponseHandler<FeedResponsePage<T>>() {
+            @Override
+            public FeedResponsePage<T> handle(DocumentServiceResponse response) {
+                return new FeedResponsePage<T>(response.getQueryResponse(classOfT), response.getResponseHeaders());
+            }
+        };
+    }
+
+    private static ResourceLink joinPath(String link, String linkName, String segment) {
+        if (StringUtils.isEmpty(link)) {
+            throw new IllegalArgumentException(linkName);
+        }
+
+        return ResourceLink.join(link, segment);
+    }
+
+    private static SqlQuerySpec toQuerySpec(String query) {
+        if (StringUtils.isEmpty(query)) {
+            throw new IllegalArgumentException("query");
+        }
+
+        return new SqlQuerySpec(query, null);
+    }
+}
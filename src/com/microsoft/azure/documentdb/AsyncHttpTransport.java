@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ssl.BrowserCompatHostnameVerifier;
+import org.apache.http.conn.ssl.X509HostnameVerifier;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.nio.DefaultHttpClientIODispatch;
+import org.apache.http.impl.nio.pool.BasicNIOConnFactory;
+import org.apache.http.impl.nio.pool.BasicNIOConnPool;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.protocol.BasicAsyncRequestProducer;
+import org.apache.http.nio.protocol.BasicAsyncResponseConsumer;
+import org.apache.http.nio.protocol.HttpAsyncRequestExecutor;
+import org.apache.http.nio.protocol.HttpAsyncRequester;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.nio.reactor.ssl.SSLSetupHandler;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.ImmutableHttpProcessor;
+import org.apache.http.protocol.RequestConnControl;
+import org.apache.http.protocol.RequestContent;
+import org.apache.http.protocol.RequestTargetHost;
+
+/**
+ * Sends HTTP requests to the service endpoint over non-blocking connections.
+ * <p>
+ * The connections are driven by an I/O reactor, so a request in flight holds a pooled connection but no thread. At
+ * most {@link ConnectionPolicy#getMaxPoolSize()} connections are open at a time; further requests wait in the queue of
+ * the connection pool, again without a thread. Response bodies are buffered in memory before the request completes.
+ * <p>
+ * Requests are sent straight to the endpoint: unlike the blocking client of the gateway proxy, the transport does not
+ * go through the proxy server configured for the JVM.
+ */
+final class AsyncHttpTransport {
+
+    private static final int DEFAULT_HTTPS_PORT = 443;
+
+    private static final AtomicInteger transportCount = new AtomicInteger();
+
+    private final Logger logger = Logger.getLogger(this.getClass().getPackage().getName());
+    private final HttpHost target;
+    private final DefaultConnectingIOReactor ioReactor;
+    private final BasicNIOConnPool connectionPool;
+    private final HttpAsyncRequester requester;
+
+    AsyncHttpTransport(URI serviceEndpoint, ConnectionPolicy connectionPolicy) {
+        int port = serviceEndpoint.getPort() >= 0 ? serviceEndpoint.getPort() : AsyncHttpTransport.DEFAULT_HTTPS_PORT;
+        this.target = new HttpHost(serviceEndpoint.getHost(), port, "https");
+
+        int timeout = connectionPolicy.getRequestTimeout() * 1000;
+        HttpParams params = new BasicHttpParams();
+        HttpConnectionParams.setConnectionTimeout(params, timeout);
+        HttpConnectionParams.setSoTimeout(params, timeout);
+
+        IOReactorConfig config = new IOReactorConfig();
+        config.setConnectTimeout(timeout);
+        config.setSoTimeout(timeout);
+
+        final String threadNamePrefix = "documentdb-io-" + AsyncHttpTransport.transportCount.incrementAndGet() + "-";
+        SSLContext sslContext;
+        try {
+            sslContext = SSLContext.getDefault();
+            this.ioReactor = new DefaultConnectingIOReactor(config, new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, threadNamePrefix + this.threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        } catch (NoSuchAlgorithmException | IOReactorException e) {
+            throw new IllegalStateException("Failed to create the I/O reactor.", e);
+        }
+
+        this.connectionPool = new BasicNIOConnPool(
+                this.ioReactor,
+                new BasicNIOConnFactory(sslContext, new HostnameVerifyingSetupHandler(this.target.getHostName()), params),
+                params);
+        this.connectionPool.setMaxTotal(connectionPolicy.getMaxPoolSize());
+        this.connectionPool.setDefaultMaxPerRoute(connectionPolicy.getMaxPoolSize());
+
+        this.requester = new HttpAsyncRequester(
+                new ImmutableHttpProcessor(new HttpRequestInterceptor[] {
+                        new RequestContent(),
+                        new RequestTargetHost(),
+                        new RequestConnControl() }),
+                new DefaultConnectionReuseStrategy(),
+                params);
+
+        final DefaultHttpClientIODispatch ioEventDispatch =
+                new DefaultHttpClientIODispatch(new HttpAsyncRequestExecutor(), params);
+        Thread dispatchThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    AsyncHttpTransport.this.ioReactor.execute(ioEventDispatch);
+                } catch (IOException e) {
+                    AsyncHttpTransport.this.logger.log(Level.SEVERE, "The I/O reactor failed.", e);
+                }
+            }
+        }, threadNamePrefix + "dispatch");
+        dispatchThread.setDaemon(true);
+        dispatchThread.start();
+    }
+
+    /**
+     * Sends a request to the service endpoint.
+     *
+     * @param request the request, whose URI is the path of the resource.
+     * @param callback the callback completed with the response once its body has been read.
+     * @return the future of the response.
+     */
+    Future<HttpResponse> execute(HttpRequest request, FutureCallback<HttpResponse> callback) {
+        return this.requester.execute(new BasicAsyncRequestProducer(this.target, request),
+                                      new BasicAsyncResponseConsumer(),
+                                      this.connectionPool,
+                                      new BasicHttpContext(),
+                                      callback);
+    }
+
+    /**
+     * Closes the connections and stops the I/O reactor. Requests in flight fail.
+     */
+    void close() {
+        try {
+            this.connectionPool.shutdown(0);
+        } catch (IOException e) {
+            this.logger.log(Level.WARNING, "Failed to shut down the connection pool.", e);
+        }
+    }
+
+    /**
+     * Checks that the certificate of the endpoint matches its host name, as the blocking client does.
+     */
+    private static final class HostnameVerifyingSetupHandler implements SSLSetupHandler {
+        private static final X509HostnameVerifier hostnameVerifier = new BrowserCompatHostnameVerifier();
+
+        private final String hostName;
+
+        HostnameVerifyingSetupHandler(String hostName) {
+            this.hostName = hostName;
+        }
+
+        @Override
+        public void initalize(SSLEngine sslEngine) {
+        }
+
+        @Override
+        public void verify(IOSession ioSession, SSLSession sslSession) throws SSLException {
+            Certificate[] certificates = sslSession.getPeerCertificates();
+            if (certificates.length == 0 || !(certificates[0] instanceof X509Certificate)) {
+                throw new SSLException("The endpoint did not present an X.509 certificate.");
+            }
+
+            HostnameVerifyingSetupHandler.hostnameVerifier.verify(this.hostName, (X509Certificate) certificates[0]);
+        }
+    }
+}
@@ -5,17 +5,9 @@
 package com.microsoft.azure.documentdb;
 
 import java.lang.IllegalArgumentException;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.util.HashSet;
 import java.util.Map;
 
-import javax.crypto.Mac;
-import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
-
-import org.apache.commons.codec.binary.Base64;
-
 /**
  * This class is used by both client (for generating the auth header with master/system key) and by the G/W when
  * verifying the auth header.
@@ -54,52 +46,8 @@ final class AuthorizationHelper {
             throw new IllegalArgumentException("headers");
         }
 
-        if (masterKey == null || masterKey.isEmpty()) {
-            throw new IllegalArgumentException("masterKey");
-        }
-
-        byte[] decodedBytes = Base64.decodeBase64(masterKey.getBytes());
-        SecretKey signingKey = new SecretKeySpec(decodedBytes, "HMACSHA256");
-        
-        // Skipping lower casing of resourceId since it may now contain "ID" of the resource as part of the FullName
-        String body = String.format("%s\n%s\n%s\n",
-                                    verb.toLowerCase(),
-                                    AuthorizationHelper.getResourceSegement(resourceType).toLowerCase(),
-                                    resourceIdOrFullName);
-
-        if (headers.containsKey(HttpConstants.HttpHeaders.X_DATE)) {
-            body += headers.get(HttpConstants.HttpHeaders.X_DATE).toLowerCase();
-        }
-
-        body += '\n';
-
-        if (headers.containsKey(HttpConstants.HttpHeaders.HTTP_DATE)) {
-            body += headers.get(HttpConstants.HttpHeaders.HTTP_DATE).toLowerCase();
-        }
-
-        body += '\n';
-        
-        Mac mac = null;
-        try {
-            mac = Mac.getInstance("HMACSHA256");
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalStateException("Failed to get an instance of HMACSHA256.",
-                                            e);
-        }
-
-        try {
-            mac.init(signingKey);
-        } catch (InvalidKeyException e) {
-            throw new IllegalStateException("Failed to initialize the Mac.", e);
-        }
-
-        byte[] digest = mac.doFinal(body.getBytes());
-
-        String auth = Utils.encodeBase64String(digest);
-    
-        String authtoken = "type=master&ver=1.0&sig=" + auth;
-
-        return authtoken;
+        return "type=master&ver=1.0&sig=" +
+                new MasterKeySigner(masterKey).generateSignature(verb, resourceIdOrFullName, resourceType, headers, false);
     }
 
     /**
@@ -147,7 +95,7 @@ final class AuthorizationHelper {
         }
     }
     
-    private static String getResourceSegement(ResourceType resourceType) {
+    static String getResourceSegement(ResourceType resourceType) {
         switch (resourceType) {
         case Attachment:
             return Paths.ATTACHMENTS_PATH_SEGMENT;
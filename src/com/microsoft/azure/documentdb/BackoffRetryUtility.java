@@ -31,8 +31,8 @@ class BackoffRetryUtility {
             try {
                 Thread.sleep(delay);
             } catch (InterruptedException e) {
-                // Ignore the interruption.
-                e.printStackTrace();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting to retry.", e);
             }
         }
     }
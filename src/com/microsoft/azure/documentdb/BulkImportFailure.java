@@ -0,0 +1,38 @@
+/* 
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+/**
+ * Represents a document that a bulk import failed to write.
+ */
+public final class BulkImportFailure {
+
+    private final Object document;
+    private final Exception exception;
+
+    BulkImportFailure(Object document, Exception exception) {
+        this.document = document;
+        this.exception = exception;
+    }
+
+    /**
+     * Gets the document that was not written, as passed to the bulk import.
+     * 
+     * @return the document.
+     */
+    public Object getDocument() {
+        return this.document;
+    }
+
+    /**
+     * Gets the exception the write failed with. A DocumentClientException carries the status code returned by the
+     * service.
+     * 
+     * @return the exception.
+     */
+    public Exception getException() {
+        return this.exception;
+    }
+}
@@ -0,0 +1,213 @@
+/* 
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+/**
+ * Specifies the options associated with a bulk import.
+ */
+public final class BulkImportOptions {
+
+    private static final int DEFAULT_MAX_CONCURRENCY_PER_COLLECTION = 10;
+    private static final int DEFAULT_MAX_RETRY_ATTEMPTS_ON_THROTTLED_REQUESTS = 9;
+    private static final int DEFAULT_MAX_PENDING_DOCUMENTS = 1000;
+    // The service accepts requests of up to 2 MB; the rest is left for the request framing and the other parameters.
+    private static final int DEFAULT_MAX_BATCH_PAYLOAD_SIZE_IN_BYTES = 1024 * 1024;
+
+    /**
+     * Constructor.
+     */
+    public BulkImportOptions() {
+        this.maxConcurrencyPerCollection = BulkImportOptions.DEFAULT_MAX_CONCURRENCY_PER_COLLECTION;
+        this.maxRetryAttemptsOnThrottledRequests = BulkImportOptions.DEFAULT_MAX_RETRY_ATTEMPTS_ON_THROTTLED_REQUESTS;
+        this.maxBatchPayloadSizeInBytes = BulkImportOptions.DEFAULT_MAX_BATCH_PAYLOAD_SIZE_IN_BYTES;
+        this.maxPendingDocuments = BulkImportOptions.DEFAULT_MAX_PENDING_DOCUMENTS;
+    }
+
+    private int maxConcurrencyPerCollection;
+
+    /**
+     * Gets the maximum number of documents written to each collection concurrently.
+     * 
+     * @return the maximum concurrency per collection.
+     */
+    public int getMaxConcurrencyPerCollection() {
+        return this.maxConcurrencyPerCollection;
+    }
+
+    /**
+     * Sets the maximum number of documents written to each collection concurrently, the default is 10.
+     * 
+     * @param maxConcurrencyPerCollection the maximum concurrency per collection.
+     */
+    public void setMaxConcurrencyPerCollection(int maxConcurrencyPerCollection) {
+        if (maxConcurrencyPerCollection < 1) {
+            throw new IllegalArgumentException("maxConcurrencyPerCollection");
+        }
+
+        this.maxConcurrencyPerCollection = maxConcurrencyPerCollection;
+    }
+
+    private int maxPendingDocuments;
+
+    /**
+     * Gets the maximum number of documents read from the source and waiting to be written.
+     * 
+     * @return the maximum pending documents.
+     */
+    public int getMaxPendingDocuments() {
+        return this.maxPendingDocuments;
+    }
+
+    /**
+     * Sets the maximum number of documents read from the source and waiting to be written, across all target
+     * collections, the default is 1000. The importer stops reading documents while the limit is reached, so a
+     * throttled collection delays the others only once the documents routed to it fill the limit.
+     * 
+     * @param maxPendingDocuments the maximum pending documents.
+     */
+    public void setMaxPendingDocuments(int maxPendingDocuments) {
+        if (maxPendingDocuments < 1) {
+            throw new IllegalArgumentException("maxPendingDocuments");
+        }
+
+        this.maxPendingDocuments = maxPendingDocuments;
+    }
+
+    private int maxRetryAttemptsOnThrottledRequests;
+
+    /**
+     * Gets the maximum number of times a document is retried after its write was throttled.
+     * 
+     * @return the maximum retry attempts on throttled requests.
+     */
+    public int getMaxRetryAttemptsOnThrottledRequests() {
+        return this.maxRetryAttemptsOnThrottledRequests;
+    }
+
+    /**
+     * Sets the maximum number of times a document is retried after its write was throttled, the default is 9. A
+     * document that is still throttled after the last attempt is reported as a failure.
+     * 
+     * @param maxRetryAttemptsOnThrottledRequests the maximum retry attempts on throttled requests.
+     */
+    public void setMaxRetryAttemptsOnThrottledRequests(int maxRetryAttemptsOnThrottledRequests) {
+        if (maxRetryAttemptsOnThrottledRequests < 0) {
+            throw new IllegalArgumentException("maxRetryAttemptsOnThrottledRequests");
+        }
+
+        this.maxRetryAttemptsOnThrottledRequests = maxRetryAttemptsOnThrottledRequests;
+    }
+
+    private boolean upsert;
+
+    /**
+     * Gets whether the documents are upserted rather than created.
+     * 
+     * @return true if the documents are upserted.
+     */
+    public boolean isUpsert() {
+        return this.upsert;
+    }
+
+    /**
+     * Sets whether the documents are upserted rather than created. When documents are created, a document whose id
+     * already exists is reported as a failure.
+     * 
+     * @param upsert true to upsert the documents.
+     */
+    public void setUpsert(boolean upsert) {
+        this.upsert = upsert;
+    }
+
+    private boolean disableAutomaticIdGeneration;
+
+    /**
+     * Gets the flag for disabling automatic id generation.
+     * 
+     * @return true if automatic id generation is disabled.
+     */
+    public boolean isDisableAutomaticIdGeneration() {
+        return this.disableAutomaticIdGeneration;
+    }
+
+    /**
+     * Sets the flag for disabling automatic id generation.
+     * 
+     * @param disableAutomaticIdGeneration true to disable automatic id generation.
+     */
+    public void setDisableAutomaticIdGeneration(boolean disableAutomaticIdGeneration) {
+        this.disableAutomaticIdGeneration = disableAutomaticIdGeneration;
+    }
+
+    private boolean batchingEnabled;
+
+    /**
+     * Gets whether documents are written in batches through a stored procedure.
+     * 
+     * @return true if batching is enabled.
+     */
+    public boolean isBatchingEnabled() {
+        return this.batchingEnabled;
+    }
+
+    /**
+     * Sets whether documents are written in batches through a stored procedure. The importer registers its bulk import
+     * stored procedure in every target collection and writes each batch with a single execution, saving a round trip
+     * per document. A batch that fails for any reason other than throttling, for example because one of its documents
+     * conflicts with an existing one, is rolled back by the service and written again one document at a time. The
+     * request options are not applied to batched writes.
+     * 
+     * @param batchingEnabled true to enable batching.
+     */
+    public void setBatchingEnabled(boolean batchingEnabled) {
+        this.batchingEnabled = batchingEnabled;
+    }
+
+    private int maxBatchPayloadSizeInBytes;
+
+    /**
+     * Gets the maximum size of the documents sent in a single batch.
+     * 
+     * @return the maximum batch payload size in bytes.
+     */
+    public int getMaxBatchPayloadSizeInBytes() {
+        return this.maxBatchPayloadSizeInBytes;
+    }
+
+    /**
+     * Sets the maximum size of the documents sent in a single batch, the default is 1 MB. A document larger than the
+     * limit is sent in a batch of its own.
+     * 
+     * @param maxBatchPayloadSizeInBytes the maximum batch payload size in bytes.
+     */
+    public void setMaxBatchPayloadSizeInBytes(int maxBatchPayloadSizeInBytes) {
+        if (maxBatchPayloadSizeInBytes < 1) {
+            throw new IllegalArgumentException("maxBatchPayloadSizeInBytes");
+        }
+
+        this.maxBatchPayloadSizeInBytes = maxBatchPayloadSizeInBytes;
+    }
+
+    private RequestOptions requestOptions;
+
+    /**
+     * Gets the request options used for every document write.
+     * 
+     * @return the request options.
+     */
+    public RequestOptions getRequestOptions() {
+        return this.requestOptions;
+    }
+
+    /**
+     * Sets the request options used for every document write. Their retry options are ignored, as the importer retries
+     * throttled writes itself.
+     * 
+     * @param requestOptions the request options.
+     */
+    public void setRequestOptions(RequestOptions requestOptions) {
+        this.requestOptions = requestOptions;
+    }
+}
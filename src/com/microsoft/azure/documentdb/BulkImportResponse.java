@@ -0,0 +1,64 @@
+/* 
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+import java.util.List;
+
+/**
+ * Represents the aggregate result of a bulk import.
+ */
+public final class BulkImportResponse {
+
+    private final long numberOfDocumentsImported;
+    private final double totalRequestCharge;
+    private final List<BulkImportFailure> failures;
+    private final long elapsedTimeInMilliseconds;
+
+    BulkImportResponse(long numberOfDocumentsImported,
+                       double totalRequestCharge,
+                       List<BulkImportFailure> failures,
+                       long elapsedTimeInMilliseconds) {
+        this.numberOfDocumentsImported = numberOfDocumentsImported;
+        this.totalRequestCharge = totalRequestCharge;
+        this.failures = failures;
+        this.elapsedTimeInMilliseconds = elapsedTimeInMilliseconds;
+    }
+
+    /**
+     * Gets the number of documents written.
+     * 
+     * @return the number of documents imported.
+     */
+    public long getNumberOfDocumentsImported() {
+        return this.numberOfDocumentsImported;
+    }
+
+    /**
+     * Gets the request units consumed by the writes, summed over the request charges of the responses.
+     * 
+     * @return the total request charge.
+     */
+    public double getTotalRequestCharge() {
+        return this.totalRequestCharge;
+    }
+
+    /**
+     * Gets the documents that could not be written.
+     * 
+     * @return the failures, empty if every document was written.
+     */
+    public List<BulkImportFailure> getFailures() {
+        return this.failures;
+    }
+
+    /**
+     * Gets the time the import took.
+     * 
+     * @return the elapsed time in milliseconds.
+     */
+    public long getElapsedTimeInMilliseconds() {
+        return this.elapsedTimeInMilliseconds;
+    }
+}
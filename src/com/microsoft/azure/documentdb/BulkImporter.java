@@ -0,0 +1,638 @@
+/* 
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Writes large numbers of documents through a DocumentClient.
+ * <p>
+ * Documents are read from the caller's Iterable or Iterator and routed to their target collection, either the
+ * collection link passed in or the collection chosen by the PartitionResolver registered for the database link. Each
+ * collection is written by its own set of worker threads, bounded by
+ * {@link BulkImportOptions#getMaxConcurrencyPerCollection()}, and routing a document to its collection never waits for
+ * the workers of that collection. Instead, the caller blocks once {@link BulkImportOptions#getMaxPendingDocuments()}
+ * documents of all collections together are waiting to be written, so documents are not read faster than they are
+ * written.
+ * <p>
+ * When a write to a collection is throttled, all workers of that collection pause for the retry interval returned by
+ * the service before they send anything else, and the throttled document is retried. The other collections keep being
+ * written while the documents routed to the throttled one wait for it; only when those fill the whole pending limit
+ * does the import wait for the throttled collection. The importer sends its requests with the retries of the client
+ * turned off, so a throttled request is only retried as set by
+ * {@link BulkImportOptions#setMaxRetryAttemptsOnThrottledRequests(int)}. Documents that cannot be written are reported
+ * in the response instead of aborting the import.
+ * <p>
+ * With {@link BulkImportOptions#setBatchingEnabled(boolean)}, each worker packs the documents waiting in the queue
+ * into batches of up to {@link BulkImportOptions#getMaxBatchPayloadSizeInBytes()} and writes every batch with one
+ * execution of a bulk import stored procedure, which the importer upserts into each target collection. When the
+ * procedure runs out of execution time it returns the number of documents it wrote, and the rest of the batch is
+ * sent again. When it wrote none, the rest is sent again at once in halves, down to single document writes.
+ */
+public final class BulkImporter {
+
+    // Used when the service does not specify a retry interval for a throttled request.
+    private static final long DEFAULT_RETRY_AFTER_IN_MILLISECONDS = 5000;
+    private static final Object END_OF_DOCUMENTS = new Object();
+
+    static final String BULK_IMPORT_STORED_PROCEDURE_ID = "sdkBulkImportV1";
+    // Writes the documents in order until the execution budget runs out and returns how many were written, so that the
+    // client can send the rest again. Any error aborts the execution, which rolls back all of its writes.
+    static final String BULK_IMPORT_STORED_PROCEDURE_BODY =
+            "function bulkImport(docs, upsert, disableAutomaticIdGeneration) {" +
+            "    var collection = getContext().getCollection();" +
+            "    var collectionLink = collection.getSelfLink();" +
+            "    var options = { disableAutomaticIdGeneration: disableAutomaticIdGeneration };" +
+            "    var count = 0;" +
+            "    if (!docs || docs.length == 0) {" +
+            "        getContext().getResponse().setBody(0);" +
+            "        return;" +
+            "    }" +
+            "    tryWrite(docs[count]);" +
+            "    function tryWrite(doc) {" +
+            "        var accepted = upsert ?" +
+            "            collection.upsertDocument(collectionLink, doc, options, onWritten) :" +
+            "            collection.createDocument(collectionLink, doc, options, onWritten);" +
+            "        if (!accepted) getContext().getResponse().setBody(count);" +
+            "    }" +
+            "    function onWritten(err) {" +
+            "        if (err) throw err;" +
+            "        count++;" +
+            "        if (count >= docs.length) getContext().getResponse().setBody(count);" +
+            "        else tryWrite(docs[count]);" +
+            "    }" +
+            "}";
+
+    private final ImportClient client;
+
+    /**
+     * Initializes a new instance of the BulkImporter class.
+     * 
+     * @param client the document client used to write the documents.
+     */
+    public BulkImporter(DocumentClient client) {
+        if (client == null) {
+            throw new IllegalArgumentException("client");
+        }
+
+        this.client = new DocumentClientImportClient(client);
+    }
+
+    BulkImporter(ImportClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Imports documents.
+     * 
+     * @param databaseOrDocumentCollectionLink the database link when using partitioning, otherwise document collection
+     *     link.
+     * @param documents the documents represented as POJOs or Document objects.
+     * @param options the bulk import options, or null to use the defaults.
+     * @return the bulk import response.
+     */
+    public BulkImportResponse importDocuments(String databaseOrDocumentCollectionLink,
+                                              Iterable<?> documents,
+                                              BulkImportOptions options) {
+        if (documents == null) {
+            throw new IllegalArgumentException("documents");
+        }
+
+        return this.importDocuments(databaseOrDocumentCollectionLink, documents.iterator(), options);
+    }
+
+    /**
+     * Imports documents.
+     * 
+     * @param databaseOrDocumentCollectionLink the database link when using partitioning, otherwise document collection
+     *     link.
+     * @param documents the documents represented as POJOs or Document objects.
+     * @param options the bulk import options, or null to use the defaults.
+     * @return the bulk import response.
+     */
+    public BulkImportResponse importDocuments(String databaseOrDocumentCollectionLink,
+                                              Iterator<?> documents,
+                                              BulkImportOptions options) {
+        if (StringUtils.isEmpty(databaseOrDocumentCollectionLink)) {
+            throw new IllegalArgumentException("databaseOrDocumentCollectionLink");
+        }
+        if (documents == null) {
+            throw new IllegalArgumentException("documents");
+        }
+
+        long startTime = System.nanoTime();
+        ImportContext context = new ImportContext(options != null ? options : new BulkImportOptions());
+        Map<String, CollectionImport> collectionImports = new LinkedHashMap<String, CollectionImport>();
+        ExecutorService executor = Executors.newCachedThreadPool(new ImportThreadFactory());
+        boolean completed = false;
+        try {
+            while (documents.hasNext()) {
+                Object document = documents.next();
+
+                String collectionLink;
+                try {
+                    collectionLink = this.client.getTargetDocumentCollectionLink(databaseOrDocumentCollectionLink,
+                                                                                 document);
+                } catch (IllegalArgumentException e) {
+                    context.failures.add(new BulkImportFailure(document, e));
+                    continue;
+                }
+
+                CollectionImport collectionImport = collectionImports.get(collectionLink);
+                if (collectionImport == null) {
+                    collectionImport = new CollectionImport(collectionLink, context);
+                    collectionImport.start(executor);
+                    collectionImports.put(collectionLink, collectionImport);
+                }
+
+                context.pendingDocuments.acquire();
+                collectionImport.documents.add(document);
+            }
+
+            for (CollectionImport collectionImport : collectionImports.values()) {
+                collectionImport.finish();
+            }
+
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The bulk import was interrupted.", e);
+        } finally {
+            if (!completed) {
+                executor.shutdownNow();
+            }
+        }
+
+        return new BulkImportResponse(context.importedCount.get(),
+                                      context.getRequestCharge(),
+                                      new ArrayList<BulkImportFailure>(context.failures),
+                                      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    private static String serializeDocument(Object document) {
+        if (document == null) {
+            throw new IllegalArgumentException("document");
+        }
+
+        if (document instanceof JsonSerializable) {
+            return document.toString();
+        }
+
+        try {
+            return SerializationContext.getObjectMapper().writeValueAsString(document);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Can't serialize the object into the json string", e);
+        }
+    }
+
+    private static String serializeBatchParams(List<String> serializedBatch,
+                                               int offset,
+                                               int end,
+                                               BulkImportOptions options) {
+        StringBuilder params = new StringBuilder("[[");
+        for (int i = offset; i < end; i++) {
+            if (i > offset) {
+                params.append(',');
+            }
+
+            params.append(serializedBatch.get(i));
+        }
+
+        return params.append("],")
+                .append(options.isUpsert())
+                .append(',')
+                .append(options.isDisableAutomaticIdGeneration())
+                .append(']')
+                .toString();
+    }
+
+    private static RequestOptions withoutClientRetries(RequestOptions options) {
+        RequestOptions requestOptions = new RequestOptions();
+        if (options != null) {
+            requestOptions.setPreTriggerInclude(options.getPreTriggerInclude());
+            requestOptions.setPostTriggerInclude(options.getPostTriggerInclude());
+            requestOptions.setAccessCondition(options.getAccessCondition());
+            requestOptions.setIndexingDirective(options.getIndexingDirective());
+            requestOptions.setConsistencyLevel(options.getConsistencyLevel());
+            requestOptions.setSessionToken(options.getSessionToken());
+            requestOptions.setResourceTokenExpirySeconds(options.getResourceTokenExpirySeconds());
+            requestOptions.setOfferType(options.getOfferType());
+        }
+
+        RetryOptions retryOptions = new RetryOptions();
+        retryOptions.setMaxRetryAttemptsOnThrottledRequests(0);
+        requestOptions.setRetryOptions(retryOptions);
+        return requestOptions;
+    }
+
+    private static int getUtf8Length(String value) {
+        int length = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x800) {
+                // Three bytes. A surrogate pair is counted as six rather than four, so the length is an upper bound.
+                length += 2;
+            } else if (c >= 0x80) {
+                length++;
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * The state shared by the workers of an import.
+     */
+    private static final class ImportContext {
+        private final BulkImportOptions options;
+        // The requests are sent without the retries of the client, as the workers pause and retry them themselves.
+        private final RequestOptions writeOptions;
+        private final RequestOptions storedProcedureOptions;
+        // Bounds the documents routed to the collections and not yet taken by their workers.
+        private final Semaphore pendingDocuments;
+        private final AtomicLong importedCount = new AtomicLong();
+        private final ConcurrentLinkedQueue<BulkImportFailure> failures =
+                new ConcurrentLinkedQueue<BulkImportFailure>();
+        private double requestCharge;
+
+        ImportContext(BulkImportOptions options) {
+            this.options = options;
+            this.pendingDocuments = new Semaphore(options.getMaxPendingDocuments());
+            this.writeOptions = BulkImporter.withoutClientRetries(options.getRequestOptions());
+            this.storedProcedureOptions = BulkImporter.withoutClientRetries(null);
+        }
+
+        synchronized void addRequestCharge(double requestCharge) {
+            this.requestCharge += requestCharge;
+        }
+
+        synchronized double getRequestCharge() {
+            return this.requestCharge;
+        }
+    }
+
+    /**
+     * The workers writing the documents of a single collection.
+     */
+    private final class CollectionImport {
+        private final String collectionLink;
+        private final ImportContext context;
+        private final int concurrency;
+        private final BlockingQueue<Object> documents;
+        private volatile long throttledUntil;
+        private String storedProcedureLink;
+
+        CollectionImport(String collectionLink, ImportContext context) {
+            this.collectionLink = collectionLink;
+            this.context = context;
+            this.concurrency = context.options.getMaxConcurrencyPerCollection();
+            this.documents = new LinkedBlockingQueue<Object>();
+            this.throttledUntil = System.nanoTime();
+        }
+
+        void start(ExecutorService executor) {
+            for (int i = 0; i < this.concurrency; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        CollectionImport.this.drain();
+                    }
+                });
+            }
+        }
+
+        void finish() {
+            for (int i = 0; i < this.concurrency; i++) {
+                this.documents.add(BulkImporter.END_OF_DOCUMENTS);
+            }
+        }
+
+        private Object takeDocument() throws InterruptedException {
+            return this.onTaken(this.documents.take());
+        }
+
+        private Object pollDocument() {
+            return this.onTaken(this.documents.poll());
+        }
+
+        private Object onTaken(Object document) {
+            if (document != null && document != BulkImporter.END_OF_DOCUMENTS) {
+                this.context.pendingDocuments.release();
+            }
+
+            return document;
+        }
+
+        private void drain() {
+            try {
+                if (this.context.options.isBatchingEnabled()) {
+                    this.drainInBatches();
+                    return;
+                }
+
+                while (true) {
+                    Object document = this.takeDocument();
+                    if (document == BulkImporter.END_OF_DOCUMENTS) {
+                        return;
+                    }
+
+                    this.write(document);
+                }
+            } catch (InterruptedException e) {
+                // The import was aborted.
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void drainInBatches() throws InterruptedException {
+            int maxPayloadSize = this.context.options.getMaxBatchPayloadSizeInBytes();
+            List<Object> batch = new ArrayList<Object>();
+            List<String> serializedBatch = new ArrayList<String>();
+            int payloadSize = 0;
+            while (true) {
+                // Waits for a document only when the batch is empty; otherwise the batch is filled with the documents
+                // already queued and sent as soon as the queue runs dry.
+                Object document = batch.isEmpty() ? this.takeDocument() : this.pollDocument();
+                if (document == null || document == BulkImporter.END_OF_DOCUMENTS) {
+                    if (!batch.isEmpty()) {
+                        this.writeBatch(batch, serializedBatch);
+                        batch.clear();
+                        serializedBatch.clear();
+                        payloadSize = 0;
+                    }
+
+                    if (document == null) {
+                        continue;
+                    }
+
+                    return;
+                }
+
+                String serializedDocument;
+                try {
+                    serializedDocument = BulkImporter.serializeDocument(document);
+                } catch (RuntimeException e) {
+                    this.context.failures.add(new BulkImportFailure(document, e));
+                    continue;
+                }
+
+                int size = BulkImporter.getUtf8Length(serializedDocument) + 1;
+                if (!batch.isEmpty() && payloadSize + size > maxPayloadSize) {
+                    this.writeBatch(batch, serializedBatch);
+                    batch.clear();
+                    serializedBatch.clear();
+                    payloadSize = 0;
+                }
+
+                batch.add(document);
+                serializedBatch.add(serializedDocument);
+                payloadSize += size;
+            }
+        }
+
+        private void writeBatch(List<Object> batch, List<String> serializedBatch) throws InterruptedException {
+            BulkImportOptions options = this.context.options;
+            int offset = 0;
+            int attempt = 0;
+            // The number of documents sent per execution, halved whenever the stored procedure writes none of them.
+            int executionSize = batch.size();
+            while (offset < batch.size()) {
+                this.awaitThrottling();
+
+                try {
+                    int end = Math.min(batch.size(), offset + executionSize);
+                    String storedProcedureLink = this.getBulkImportStoredProcedureLink();
+                    StoredProcedureResponse response = BulkImporter.this.client.executeStoredProcedure(
+                            storedProcedureLink,
+                            BulkImporter.serializeBatchParams(serializedBatch, offset, end, options),
+                            this.context.storedProcedureOptions);
+                    this.context.addRequestCharge(response.getRequestCharge());
+
+                    int count = Integer.parseInt(response.getResponseAsString().trim());
+                    if (count > 0) {
+                        this.context.importedCount.addAndGet(count);
+                        offset += count;
+                        attempt = 0;
+                        continue;
+                    }
+
+                    // The stored procedure ran out of time before writing anything, which is not throttling: the
+                    // collection is not paused, and the documents are sent again at once in smaller executions, down
+                    // to a single write for a document the stored procedure cannot write on its own.
+                    if (end - offset > 1) {
+                        executionSize = (end - offset) / 2;
+                    } else {
+                        this.write(batch.get(offset));
+                        offset++;
+                    }
+
+                    continue;
+                } catch (DocumentClientException e) {
+                    if (e.getStatusCode() == HttpConstants.StatusCodes.TOO_MANY_REQUESTS &&
+                            attempt < options.getMaxRetryAttemptsOnThrottledRequests()) {
+                        attempt++;
+                        this.throttle(e.getRetryAfterInMilliseconds());
+                        continue;
+                    }
+                } catch (RuntimeException e) {
+                    // Falls back to single writes below, which report the failure per document.
+                }
+
+                // The failed execution was rolled back, so the rest of the batch is written one document at a time
+                // and only the offending documents are reported.
+                for (int i = offset; i < batch.size(); i++) {
+                    this.write(batch.get(i));
+                }
+
+                return;
+            }
+        }
+
+        private String getBulkImportStoredProcedureLink() throws DocumentClientException {
+            synchronized (this) {
+                if (this.storedProcedureLink == null) {
+                    StoredProcedure storedProcedure = new StoredProcedure();
+                    storedProcedure.setId(BulkImporter.BULK_IMPORT_STORED_PROCEDURE_ID);
+                    storedProcedure.setBody(BulkImporter.BULK_IMPORT_STORED_PROCEDURE_BODY);
+                    this.storedProcedureLink = BulkImporter.this.client.upsertStoredProcedure(
+                            this.collectionLink,
+                            storedProcedure,
+                            this.context.storedProcedureOptions);
+                }
+
+                return this.storedProcedureLink;
+            }
+        }
+
+        private void write(Object document) throws InterruptedException {
+            BulkImportOptions options = this.context.options;
+            int attempt = 0;
+            while (true) {
+                this.awaitThrottling();
+
+                try {
+                    double requestCharge = BulkImporter.this.client.writeDocument(
+                            this.collectionLink,
+                            document,
+                            this.context.writeOptions,
+                            options.isUpsert(),
+                            options.isDisableAutomaticIdGeneration());
+
+                    this.context.importedCount.incrementAndGet();
+                    this.context.addRequestCharge(requestCharge);
+                    return;
+                } catch (DocumentClientException e) {
+                    if (e.getStatusCode() == HttpConstants.StatusCodes.TOO_MANY_REQUESTS &&
+                            attempt < options.getMaxRetryAttemptsOnThrottledRequests()) {
+                        attempt++;
+                        this.throttle(e.getRetryAfterInMilliseconds());
+                        continue;
+                    }
+
+                    this.context.failures.add(new BulkImportFailure(document, e));
+                    return;
+                } catch (RuntimeException e) {
+                    this.context.failures.add(new BulkImportFailure(document, e));
+                    return;
+                }
+            }
+        }
+
+        private void throttle(long retryAfterInMilliseconds) {
+            if (retryAfterInMilliseconds <= 0) {
+                retryAfterInMilliseconds = BulkImporter.DEFAULT_RETRY_AFTER_IN_MILLISECONDS;
+            }
+
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryAfterInMilliseconds);
+            synchronized (this) {
+                if (until - this.throttledUntil > 0) {
+                    this.throttledUntil = until;
+                }
+            }
+        }
+
+        private void awaitThrottling() throws InterruptedException {
+            long remaining;
+            while ((remaining = this.throttledUntil - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            }
+        }
+    }
+
+    /**
+     * The requests sent by an import.
+     */
+    interface ImportClient {
+        String getTargetDocumentCollectionLink(String databaseOrDocumentCollectionLink, Object document);
+
+        /**
+         * Creates or upserts a document.
+         *
+         * @return the request charge.
+         */
+        double writeDocument(String collectionLink,
+                             Object document,
+                             RequestOptions options,
+                             boolean upsert,
+                             boolean disableAutomaticIdGeneration) throws DocumentClientException;
+
+        /**
+         * Upserts a stored procedure.
+         *
+         * @return the self link of the stored procedure.
+         */
+        String upsertStoredProcedure(String collectionLink,
+                                     StoredProcedure storedProcedure,
+                                     RequestOptions options) throws DocumentClientException;
+
+        StoredProcedureResponse executeStoredProcedure(String storedProcedureLink,
+                                                       String serializedParams,
+                                                       RequestOptions options) throws DocumentClientException;
+    }
+
+    private static final class DocumentClientImportClient implements ImportClient {
+        private final DocumentClient client;
+
+        DocumentClientImportClient(DocumentClient client) {
+            this.client = client;
+        }
+
+        @Override
+        public String getTargetDocumentCollectionLink(String databaseOrDocumentCollectionLink, Object document) {
+            return this.client.getTargetDocumentCollectionLink(databaseOrDocumentCollectionLink, document);
+        }
+
+        @Override
+        public double writeDocument(String collectionLink,
+                                    Object document,
+                                    RequestOptions options,
+                                    boolean upsert,
+                                    boolean disableAutomaticIdGeneration) throws DocumentClientException {
+            ResourceResponse<Document> response;
+            if (upsert) {
+                response = this.client.upsertDocument(collectionLink, document, options, disableAutomaticIdGeneration);
+            } else {
+                response = this.client.createDocument(collectionLink, document, options, disableAutomaticIdGeneration);
+            }
+
+            return response.getRequestCharge();
+        }
+
+        @Override
+        public String upsertStoredProcedure(String collectionLink,
+                                            StoredProcedure storedProcedure,
+                                            RequestOptions options) throws DocumentClientException {
+            return this.client.upsertStoredProcedure(collectionLink, storedProcedure, options)
+                    .getResource()
+                    .getSelfLink();
+        }
+
+        @Override
+        public StoredProcedureResponse executeStoredProcedure(String storedProcedureLink,
+                                                              String serializedParams,
+                                                              RequestOptions options) throws DocumentClientException {
+            return this.client.executeStoredProcedureWithSerializedParams(storedProcedureLink,
+                                                                          serializedParams,
+                                                                          options);
+        }
+    }
+
+    private static final class ImportThreadFactory implements ThreadFactory {
+        private static final AtomicInteger importCount = new AtomicInteger();
+        private final AtomicInteger threadCount = new AtomicInteger();
+        private final String namePrefix;
+
+        ImportThreadFactory() {
+            this.namePrefix = "documentdb-bulk-" + ImportThreadFactory.importCount.incrementAndGet() + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, this.namePrefix + this.threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/* 
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+/**
+ * Represents the scope of the adaptive concurrency control applied to the requests of a client.
+ */
+public enum ConcurrencyControlMode {
+
+    /**
+     * Requests are sent as soon as a connection is available. This is the default.
+     */
+    None,
+
+    /**
+     * All requests of the client share a single adaptive concurrency limit.
+     */
+    PerClient,
+
+    /**
+     * The requests to each collection share an adaptive concurrency limit, so that a throttled collection does not
+     * slow down requests to the others. Requests above the collection level, such as database operations, are not
+     * limited. A collection addressed both by its self link and by its ID based link gets two separate limits.
+     */
+    PerCollection
+}
@@ -28,6 +28,9 @@ public final class ConnectionPolicy {
         this.maxPoolSize = DEFAULT_MAX_POOL_SIZE;
         this.idleConnectionTimeout = DEFAULT_IDLE_CONNECTION_TIMEOUT;
         this.userAgentSuffix = "";
+        this.documentSerializer = new JacksonDocumentSerializer();
+        this.concurrencyControlMode = ConcurrencyControlMode.None;
+        this.retryOptions = new RetryOptions();
     }
 
     private int requestTimeout;
@@ -164,6 +167,83 @@ public final class ConnectionPolicy {
         return this.userAgentSuffix;
     }
     
+    private DocumentSerializer documentSerializer;
+
+    /**
+     * Gets the serializer used to encode resources in request bodies and decode resources from responses.
+     *
+     * @return the document serializer.
+     */
+    public DocumentSerializer getDocumentSerializer() {
+        return this.documentSerializer;
+    }
+
+    /**
+     * Sets the serializer used to encode resources in request bodies and decode resources from responses, the default
+     * is a {@link JacksonDocumentSerializer}. Use a {@link JsonOrgDocumentSerializer} to process payloads with org.json
+     * only.
+     *
+     * @param documentSerializer the document serializer.
+     */
+    public void setDocumentSerializer(DocumentSerializer documentSerializer) {
+        if (documentSerializer == null) {
+            throw new IllegalArgumentException("documentSerializer");
+        }
+
+        this.documentSerializer = documentSerializer;
+    }
+
+    private ConcurrencyControlMode concurrencyControlMode;
+
+    /**
+     * Gets the scope of the adaptive concurrency control applied to requests.
+     * 
+     * @return the concurrency control mode.
+     */
+    public ConcurrencyControlMode getConcurrencyControlMode() {
+        return this.concurrencyControlMode;
+    }
+
+    /**
+     * Sets the scope of the adaptive concurrency control applied to requests, the default is None. When enabled, the
+     * number of requests in flight is lowered whenever the service throttles a request and raised again as requests
+     * succeed, between one and the connection pool size.
+     * 
+     * @param concurrencyControlMode the concurrency control mode.
+     */
+    public void setConcurrencyControlMode(ConcurrencyControlMode concurrencyControlMode) {
+        if (concurrencyControlMode == null) {
+            throw new IllegalArgumentException("concurrencyControlMode");
+        }
+
+        this.concurrencyControlMode = concurrencyControlMode;
+    }
+
+    private RetryOptions retryOptions;
+
+    /**
+     * Gets the retry options applied to throttled requests.
+     * 
+     * @return the retry options.
+     */
+    public RetryOptions getRetryOptions() {
+        return this.retryOptions;
+    }
+
+    /**
+     * Sets the retry options applied to throttled requests. They can be overridden for a single request through
+     * {@link RequestOptions#setRetryOptions(RetryOptions)}.
+     * 
+     * @param retryOptions the retry options.
+     */
+    public void setRetryOptions(RetryOptions retryOptions) {
+        if (retryOptions == null) {
+            throw new IllegalArgumentException("retryOptions");
+        }
+
+        this.retryOptions = retryOptions;
+    }
+
     /**
      * Gets the default connection policy.
      * 
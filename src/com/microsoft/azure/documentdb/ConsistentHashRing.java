@@ -23,22 +23,44 @@ SOFTWARE.
 
 package com.microsoft.azure.documentdb;
 
-import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * The ConsistentHashRing class implements a consistent hash ring using the hash function specified
  */
 final class ConsistentHashRing {
+    // Hash values of up to 8 bytes are held as primitive ring points, larger ones are compared as byte arrays.
+    private static final int MAX_HASH_POINT_LENGTH = 8;
+    // Partition keys are encoded into a per-thread buffer when the hash generator can hash a range of bytes; keys
+    // longer than the retained size are encoded into a temporary array instead.
+    private static final int INITIAL_KEY_BUFFER_SIZE = 256;
+    private static final int MAX_RETAINED_KEY_BUFFER_SIZE = 16 * 1024;
+    private static final ThreadLocal<byte[]> keyBuffer = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[INITIAL_KEY_BUFFER_SIZE];
+        }
+    };
+
     private HashGenerator hashGenerator;
-    private Partition[] partitions;
+    // Set when the ring points are primitive and the hash generator can hash without allocating.
+    private PrimitiveHashGenerator primitiveHashGenerator;
     private ArrayList<String> collectionLinks = new ArrayList<String>();
+
+    // The partitions of the ring sorted by hash value. Each partition is held either as a point in hashPoints or, for
+    // hashes longer than 8 bytes, in partitions; nodeIndexes gives the index of its collection in collectionLinks.
+    private int hashLength;
+    private long[] hashPoints;
+    private Partition[] partitions;
+    private int[] nodeIndexes;
     
     /**
      * ConsistentHashRing constructor taking in the collection links, number of partitions per node 
@@ -66,7 +88,7 @@ final class ConsistentHashRing {
         }
         
         this.hashGenerator = hashGenerator;
-        this.partitions = this.constructPartitions(this.collectionLinks, partitionsPerNode);
+        this.constructPartitions(this.collectionLinks, partitionsPerNode);
     }
     
     /**
@@ -83,33 +105,144 @@ final class ConsistentHashRing {
         }
         
         // Find the the partition from the total partitions created for the given partition key
-        int partition = this.findPartition(getBytes(partitionKey));
+        int partition;
+        if(this.primitiveHashGenerator != null) {
+            partition = this.findPartitionWithoutAllocation(partitionKey);
+        } else {
+            partition = this.findPartition(getBytes(partitionKey));
+        }
         
         // Returns the name of the collection mapped to that partition
-        return this.partitions[partition].getNode();
+        return this.collectionLinks.get(this.nodeIndexes[partition]);
     }
     
     /**
-     * Gets the bytes representing the value of the partition key. 
+     * Gets the bytes representing the value of the partition key, encoded as documented in HashPartitionResolver.
      * 
      */
     private static byte[] getBytes(Object partitionKey) {
-        byte[] bytes = null;
-        
-        // Currently we only support partition key to be of type String
+        if(partitionKey instanceof byte[]) {
+            return (byte[])partitionKey;
+        }
+
+        byte[] buffer = new byte[getMaxEncodedLength(partitionKey)];
+        int length = encode(partitionKey, buffer, 0);
+        return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Gets the maximum number of bytes of the encoded partition key, and checks that its type is supported.
+     * 
+     */
+    private static int getMaxEncodedLength(Object partitionKey) {
         if(partitionKey instanceof String) {
-            String str = (String)partitionKey;
-            try {
-                bytes = str.getBytes("UTF-8");
-            } catch (UnsupportedEncodingException e) {
-              // If we get this exception, we return bytes as null(as initialized)
+            return ((String)partitionKey).length() * 3;
+        } else if(isIntegral(partitionKey) || partitionKey instanceof Float || partitionKey instanceof Double) {
+            return 8;
+        } else if(partitionKey instanceof UUID) {
+            return 16;
+        } else if(partitionKey instanceof byte[]) {
+            return ((byte[])partitionKey).length;
+        } else if(partitionKey instanceof Object[] || partitionKey instanceof List<?>) {
+            int length = 0;
+            for(Object component : getComponents(partitionKey)) {
+                if(component == null) {
+                    length += 1;
+                } else if(component instanceof Object[] || component instanceof List<?>) {
+                    throw new UnsupportedOperationException("Nested composite partition keys are not supported.");
+                } else {
+                    length += 5 + getMaxEncodedLength(component);
+                }
             }
+            return length;
         }
-        else {
-            throw new UnsupportedOperationException(String.format("Unsupported type %s for partitionKey.", partitionKey.getClass()));
+
+        throw new UnsupportedOperationException(String.format("Unsupported type %s for partitionKey.", partitionKey.getClass()));
+    }
+
+    /**
+     * Encodes the partition key into the buffer at the offset and returns the number of bytes written.
+     * 
+     */
+    private static int encode(Object partitionKey, byte[] buffer, int offset) {
+        if(partitionKey instanceof String) {
+            return encodeUtf8((String)partitionKey, buffer, offset);
+        } else if(isIntegral(partitionKey)) {
+            return encodeLong(((Number)partitionKey).longValue(), buffer, offset);
+        } else if(partitionKey instanceof Float || partitionKey instanceof Double) {
+            return encodeLong(Double.doubleToLongBits(((Number)partitionKey).doubleValue()), buffer, offset);
+        } else if(partitionKey instanceof UUID) {
+            UUID uuid = (UUID)partitionKey;
+            encodeBigEndian(uuid.getMostSignificantBits(), buffer, offset);
+            encodeBigEndian(uuid.getLeastSignificantBits(), buffer, offset + 8);
+            return 16;
+        } else if(partitionKey instanceof byte[]) {
+            byte[] bytes = (byte[])partitionKey;
+            System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+            return bytes.length;
+        }
+
+        int position = offset;
+        for(Object component : getComponents(partitionKey)) {
+            buffer[position++] = getTypeTag(component);
+            if(component == null) {
+                continue;
+            }
+
+            if(component instanceof String || component instanceof byte[]) {
+                int length = encode(component, buffer, position + 4);
+                encodeInt(length, buffer, position);
+                position += 4 + length;
+            } else {
+                position += encode(component, buffer, position);
+            }
+        }
+
+        return position - offset;
+    }
+
+    private static List<?> getComponents(Object compositeKey) {
+        return compositeKey instanceof Object[] ? Arrays.asList((Object[])compositeKey) : (List<?>)compositeKey;
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    private static byte getTypeTag(Object component) {
+        if(component == null) {
+            return 0x00;
+        } else if(component instanceof String) {
+            return 0x01;
+        } else if(isIntegral(component)) {
+            return 0x02;
+        } else if(component instanceof Float || component instanceof Double) {
+            return 0x03;
+        } else if(component instanceof UUID) {
+            return 0x04;
+        } else {
+            return 0x05;
+        }
+    }
+
+    private static int encodeLong(long value, byte[] buffer, int offset) {
+        for(int i = 0; i < 8; i++) {
+            buffer[offset + i] = (byte)(value >>> (8 * i));
+        }
+
+        return 8;
+    }
+
+    private static void encodeInt(int value, byte[] buffer, int offset) {
+        for(int i = 0; i < 4; i++) {
+            buffer[offset + i] = (byte)(value >>> (8 * i));
+        }
+    }
+
+    private static void encodeBigEndian(long value, byte[] buffer, int offset) {
+        for(int i = 0; i < 8; i++) {
+            buffer[offset + i] = (byte)(value >>> (8 * (7 - i)));
         }
-        
-        return bytes;
     }
     
     /**
@@ -117,7 +250,7 @@ final class ConsistentHashRing {
      * using the hashing algorithm and then finally sorting the partitions based on the hash value.
      * 
      */
-    private Partition[] constructPartitions(ArrayList<String> collectionLinks, int partitionsPerNode) {
+    private void constructPartitions(ArrayList<String> collectionLinks, int partitionsPerNode) {
         int collectionsNodeCount = collectionLinks.size();
         Partition[] partitions = new Partition[partitionsPerNode * collectionsNodeCount];
         
@@ -131,8 +264,31 @@ final class ConsistentHashRing {
             }
         }
         
+        // The sort is stable, so partitions with equal hash values keep the order of their collections.
         Arrays.sort(partitions);
-        return partitions;
+
+        HashMap<String, Integer> nodeIndexByLink = new HashMap<String, Integer>();
+        for(int i = collectionsNodeCount - 1; i >= 0; i--) {
+            nodeIndexByLink.put(collectionLinks.get(i), i);
+        }
+
+        this.nodeIndexes = new int[partitions.length];
+        for(int i=0; i < partitions.length; i++) {
+            this.nodeIndexes[i] = nodeIndexByLink.get(partitions[i].getNode());
+        }
+
+        this.hashLength = partitions.length > 0 ? partitions[0].getHashValue().length : 0;
+        if(this.hashLength <= MAX_HASH_POINT_LENGTH) {
+            this.hashPoints = new long[partitions.length];
+            for(int i=0; i < partitions.length; i++) {
+                this.hashPoints[i] = toHashPoint(this.checkHashLength(partitions[i].getHashValue()));
+            }
+            if(this.hashGenerator instanceof PrimitiveHashGenerator) {
+                this.primitiveHashGenerator = (PrimitiveHashGenerator)this.hashGenerator;
+            }
+        } else {
+            this.partitions = partitions;
+        }
     }
     
     /**
@@ -140,23 +296,139 @@ final class ConsistentHashRing {
      * 
      */
     private int findPartition(byte[] key) {
-        byte[] hashValue = this.hashGenerator.computeHash(key);
+        byte[] hashValue = this.checkHashLength(this.hashGenerator.computeHash(key));
+        if(this.hashPoints != null) {
+            return lowerBoundSearch(this.hashPoints, toHashPoint(hashValue));
+        }
+
         return lowerBoundSearch(this.partitions, hashValue);
     }
+
+    /**
+     * Finds the partition of a partition key, hashing its encoding in the buffer of the thread.
+     * 
+     */
+    private int findPartitionWithoutAllocation(Object partitionKey) {
+        long hashValue;
+        if(partitionKey instanceof byte[]) {
+            byte[] bytes = (byte[])partitionKey;
+            hashValue = this.primitiveHashGenerator.computeHashAsLong(bytes, 0, bytes.length);
+        } else {
+            int maxLength = getMaxEncodedLength(partitionKey);
+            byte[] buffer = keyBuffer.get();
+            if(maxLength > buffer.length) {
+                buffer = new byte[Math.max(maxLength, buffer.length * 2)];
+                if(buffer.length <= MAX_RETAINED_KEY_BUFFER_SIZE) {
+                    keyBuffer.set(buffer);
+                }
+            }
+
+            int length = encode(partitionKey, buffer, 0);
+            hashValue = this.primitiveHashGenerator.computeHashAsLong(buffer, 0, length);
+        }
+
+        return lowerBoundSearch(this.hashPoints, hashValue ^ Long.MIN_VALUE);
+    }
+
+    /**
+     * Encodes a string to UTF-8 into a buffer with room for three bytes per character, producing the same bytes as
+     * String.getBytes, which replaces unpaired surrogates with '?'.
+     * 
+     */
+    private static int encodeUtf8(String str, byte[] buffer, int offset) {
+        int length = offset;
+        for(int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if(c < 0x80) {
+                buffer[length++] = (byte)c;
+            } else if(c < 0x800) {
+                buffer[length++] = (byte)(0xC0 | (c >> 6));
+                buffer[length++] = (byte)(0x80 | (c & 0x3F));
+            } else if(Character.isSurrogate(c)) {
+                if(Character.isHighSurrogate(c) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, str.charAt(++i));
+                    buffer[length++] = (byte)(0xF0 | (codePoint >> 18));
+                    buffer[length++] = (byte)(0x80 | ((codePoint >> 12) & 0x3F));
+                    buffer[length++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+                    buffer[length++] = (byte)(0x80 | (codePoint & 0x3F));
+                } else {
+                    buffer[length++] = (byte)'?';
+                }
+            } else {
+                buffer[length++] = (byte)(0xE0 | (c >> 12));
+                buffer[length++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+                buffer[length++] = (byte)(0x80 | (c & 0x3F));
+            }
+        }
+
+        return length - offset;
+    }
+
+    private byte[] checkHashLength(byte[] hashValue) {
+        if(hashValue.length != this.hashLength) {
+            throw new IllegalArgumentException("Length of hashes doesn't match.");
+        }
+
+        return hashValue;
+    }
+
+    /**
+     * Converts a hash value of up to 8 bytes, which has its most significant byte at the end, to a ring point.
+     * The sign bit of the point is flipped so that comparing the points as signed values orders them the same way as
+     * comparing the hash values as unsigned numbers.
+     * 
+     */
+    private static long toHashPoint(byte[] hashValue) {
+        long value = 0;
+        for(int i = hashValue.length - 1; i >= 0; i--) {
+            value = (value << 8) | (hashValue[i] & 0xFF);
+        }
+
+        return value ^ Long.MIN_VALUE;
+    }
+
+    private static long fromHashPoint(long hashPoint) {
+        return hashPoint ^ Long.MIN_VALUE;
+    }
     
+    /**
+     * Searches the partition in the sorted ring points using the hash point and returns the index of the last
+     * partition whose point is lower than or equal to it, wrapping around to the last partition.
+     * 
+     */
+    private static int lowerBoundSearch(long[] hashPoints, long hashPoint) {
+        int low = 0;
+        int high = hashPoints.length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(hashPoints[mid] <= hashPoint) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low > 0 ? low - 1 : hashPoints.length - 1;
+    }
+
     /**
      * Searches the partition in the partition array using hashValue
      * and returns the lower bound index
      * 
      */
     private static int lowerBoundSearch(Partition[] partitions, byte[] hashValue) {
-        for(int i=0; i<partitions.length-1; i++) {
-            if(partitions[i].compareTo(hashValue) <= 0 && partitions[i+1].compareTo(hashValue) > 0) {
-                return i;
+        int low = 0;
+        int high = partitions.length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(partitions[mid].compareTo(hashValue) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
             }
         }
-        
-        return partitions.length-1;
+
+        return low > 0 ? low - 1 : partitions.length - 1;
     }
     
     /**
@@ -166,10 +438,17 @@ final class ConsistentHashRing {
     List<Map.Entry<String,Long>> getSerializedPartitionList() {
         List<Map.Entry<String,Long>> partitionList= new ArrayList<>();
         
-        for(int i=0; i<this.partitions.length; i++) {
-            ByteBuffer wrapped = ByteBuffer.wrap(partitions[i].getHashValue()).order(ByteOrder.LITTLE_ENDIAN);
-            int num = wrapped.getInt();
-            partitionList.add(new AbstractMap.SimpleEntry<>(partitions[i].getNode(), (long)num & 0x0FFFFFFFFL));
+        for(int i=0; i<this.nodeIndexes.length; i++) {
+            long num;
+            if(this.hashPoints != null) {
+                // The first four bytes of the hash value are the low 32 bits of the point.
+                num = fromHashPoint(this.hashPoints[i]);
+            } else {
+                ByteBuffer wrapped = ByteBuffer.wrap(partitions[i].getHashValue()).order(ByteOrder.LITTLE_ENDIAN);
+                num = wrapped.getInt();
+            }
+            partitionList.add(new AbstractMap.SimpleEntry<>(this.collectionLinks.get(this.nodeIndexes[i]),
+                                                            num & 0x0FFFFFFFFL));
         }
          
         return partitionList;
@@ -43,7 +43,7 @@ public class Document extends Resource {
         if (document instanceof Document) {
             typedDocument = (Document) document; 
         } else {
-            ObjectMapper mapper = new ObjectMapper();
+            ObjectMapper mapper = SerializationContext.getObjectMapper();
             try {
                 return new Document (mapper.writeValueAsString(document));
             } catch (IOException e) {
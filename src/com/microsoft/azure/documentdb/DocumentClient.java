@@ -9,13 +9,16 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 import org.apache.commons.lang3.StringUtils;
+import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ObjectNode;
 import org.json.JSONObject;
 
 /**
@@ -177,6 +180,59 @@ public final class DocumentClient {
         return this.partitionResolvers.get(Utils.trimBeginingAndEndingSlashes(databaseLink));
     }
 
+    /**
+     * Gets the adaptive concurrency limiter applied to the requests to a collection, to monitor its current limit and
+     * the number of requests waiting for it.
+     * 
+     * @param collectionLink the collection link. Requests using the self link and the ID based link of the same
+     *     collection are limited separately.
+     * @return the concurrency limiter, shared by all collections when the concurrency control mode is PerClient, or
+     *     null if concurrency control is disabled or the link is not a collection link.
+     */
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter(String collectionLink) {
+        if (StringUtils.isEmpty(collectionLink)) {
+            throw new IllegalArgumentException("collectionLink");
+        }
+
+        return this.gatewayProxy.getConcurrencyLimiter(collectionLink);
+    }
+
+    /**
+     * Registers a request unit budget for the requests to a collection. Requests wait on the client until the budget
+     * allows them, instead of being throttled by the service, and the expected charge of each kind of operation is
+     * learned from the request charges of the responses. Registering a budget for a collection that already has one
+     * updates the budget and keeps the learned charges.
+     * <p>
+     * The budget is usually the throughput provisioned for the collection, as found through readOffer, or a share of
+     * it when several clients write to the same collection.
+     * 
+     * @param collectionLink the collection link. Requests using the self link and the ID based link of the same
+     *     collection are limited separately.
+     * @param requestUnitsPerSecond the request units per second.
+     */
+    public void registerRequestUnitRateLimit(String collectionLink, double requestUnitsPerSecond) {
+        if (StringUtils.isEmpty(collectionLink)) {
+            throw new IllegalArgumentException("collectionLink");
+        }
+
+        this.gatewayProxy.registerRequestUnitRateLimit(collectionLink, requestUnitsPerSecond);
+    }
+
+    /**
+     * Gets the request unit rate limiter applied to the requests to a collection, to monitor its budget and the
+     * learned request charges.
+     * 
+     * @param collectionLink the collection link.
+     * @return the rate limiter, or null if no budget is registered for the collection.
+     */
+    public RequestUnitRateLimiter getRequestUnitRateLimiter(String collectionLink) {
+        if (StringUtils.isEmpty(collectionLink)) {
+            throw new IllegalArgumentException("collectionLink");
+        }
+
+        return this.gatewayProxy.getRequestUnitRateLimiter(collectionLink);
+    }
+
     /**
      * Creates a database.
      * 
@@ -195,10 +251,10 @@ public final class DocumentClient {
 
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Database,
-                                                                       Paths.DATABASES_ROOT,
+                                                                       ResourceLink.parse(Paths.DATABASES_ROOT),
                                                                        database,
                                                                        requestHeaders);
-        return new ResourceResponse<Database>(this.doCreate(request), Database.class);
+        return new ResourceResponse<Database>(this.doCreate(request, options), Database.class);
     }
 
     /**
@@ -215,12 +271,12 @@ public final class DocumentClient {
             throw new IllegalArgumentException("databaseLink");
         }
         
-        String path = Utils.joinPath(databaseLink, null);
+        ResourceLink path = ResourceLink.join(databaseLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Database,
                                                                        path,
                                                                        requestHeaders);
-        return new ResourceResponse<Database>(this.doDelete(request), Database.class);
+        return new ResourceResponse<Database>(this.doDelete(request, options), Database.class);
     }
 
     /**
@@ -237,12 +293,12 @@ public final class DocumentClient {
             throw new IllegalArgumentException("databaseLink");
         }
         
-        String path = Utils.joinPath(databaseLink, null);
+        ResourceLink path = ResourceLink.join(databaseLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Database,
                                                                        path,
                                                                        requestHeaders);
-        return new ResourceResponse<Database>(this.doRead(request), Database.class);
+        return new ResourceResponse<Database>(this.doRead(request, options), Database.class);
     }
 
     /**
@@ -254,9 +310,9 @@ public final class DocumentClient {
     public FeedResponse<Database> readDatabases(FeedOptions options) {
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Database,
-                                                                       Paths.DATABASES_ROOT,
+                                                                       ResourceLink.parse(Paths.DATABASES_ROOT),
                                                                        requestHeaders);
-        return new FeedResponse<Database>(new QueryIterable<Database>(this, request, ReadType.Feed, Database.class));
+        return new FeedResponse<Database>(new QueryIterable<Database>(this, request, ReadType.Feed, Database.class, options));
     }
 
     /**
@@ -288,11 +344,11 @@ public final class DocumentClient {
 
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Database,
-                                                                       Paths.DATABASES_ROOT,
+                                                                       ResourceLink.parse(Paths.DATABASES_ROOT),
                                                                        querySpec,
                                                                        this.queryCompatibilityMode,
                                                                        requestHeaders);
-        return new FeedResponse<Database>(new QueryIterable<Database>(this, request, ReadType.Query, Database.class));
+        return new FeedResponse<Database>(new QueryIterable<Database>(this, request, ReadType.Query, Database.class, options));
     }
 
     /**
@@ -318,13 +374,13 @@ public final class DocumentClient {
 
         DocumentClient.validateResource(collection);
 
-        String path = Utils.joinPath(databaseLink, Paths.COLLECTIONS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(databaseLink, Paths.COLLECTIONS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.DocumentCollection,
                                                                        path,
                                                                        collection,
                                                                        requestHeaders);
-        return new ResourceResponse<DocumentCollection>(this.doCreate(request), DocumentCollection.class);
+        return new ResourceResponse<DocumentCollection>(this.doCreate(request, options), DocumentCollection.class);
     }
 
     /**
@@ -345,14 +401,14 @@ public final class DocumentClient {
 
         DocumentClient.validateResource(collection);
 
-        String path = Utils.joinPath(collection.getSelfLink(), null);
+        ResourceLink path = ResourceLink.join(collection.getSelfLink(), null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
 
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.DocumentCollection,
                                                                        path,
                                                                        collection,
                                                                        requestHeaders);
-        return new ResourceResponse<DocumentCollection>(this.doReplace(request), DocumentCollection.class);
+        return new ResourceResponse<DocumentCollection>(this.doReplace(request, options), DocumentCollection.class);
     }
 
     /**
@@ -370,12 +426,12 @@ public final class DocumentClient {
             throw new IllegalArgumentException("collectionLink");
         }
 
-        String path = Utils.joinPath(collectionLink, null);
+        ResourceLink path = ResourceLink.join(collectionLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.DocumentCollection,
                                                                        path,
                                                                        requestHeaders);
-        return new ResourceResponse<DocumentCollection>(this.doDelete(request), DocumentCollection.class);
+        return new ResourceResponse<DocumentCollection>(this.doDelete(request, options), DocumentCollection.class);
     }
 
     /**
@@ -393,12 +449,12 @@ public final class DocumentClient {
             throw new IllegalArgumentException("collectionLink");
         }
 
-        String path = Utils.joinPath(collectionLink, null);
+        ResourceLink path = ResourceLink.join(collectionLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.DocumentCollection,
                                                                        path,
                                                                        requestHeaders);
-        return new ResourceResponse<DocumentCollection>(this.doRead(request), DocumentCollection.class);
+        return new ResourceResponse<DocumentCollection>(this.doRead(request, options), DocumentCollection.class);
     }
 
     /**
@@ -414,7 +470,7 @@ public final class DocumentClient {
             throw new IllegalArgumentException("databaseLink");
         }
 
-        String path = Utils.joinPath(databaseLink,
+        ResourceLink path = ResourceLink.join(databaseLink,
                                               Paths.COLLECTIONS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.DocumentCollection,
@@ -423,7 +479,8 @@ public final class DocumentClient {
         return new FeedResponse<DocumentCollection>(new QueryIterable<DocumentCollection>(this,
                                                                                           request,
                                                                                           ReadType.Feed,
-                                                                                          DocumentCollection.class));
+                                                                                          DocumentCollection.class,
+                                                                                          options));
     }
 
     /**
@@ -467,7 +524,7 @@ public final class DocumentClient {
             throw new IllegalArgumentException("querySpec");
         }
 
-        String path = Utils.joinPath(databaseLink, Paths.COLLECTIONS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(databaseLink, Paths.COLLECTIONS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.DocumentCollection,
                                                                        path,
@@ -477,7 +534,8 @@ public final class DocumentClient {
         return new FeedResponse<DocumentCollection>(new QueryIterable<DocumentCollection>(this,
                                                                                           request,
                                                                                           ReadType.Query,
-                                                                                          DocumentCollection.class));
+                                                                                          DocumentCollection.class,
+                                                                                          options));
     }
 
     /**
@@ -495,11 +553,12 @@ public final class DocumentClient {
                                                      RequestOptions options,
                                                      boolean disableAutomaticIdGeneration)
             throws DocumentClientException {
-        String documentCollectionLink = this.getTargetDocumentCollectionLink(databaseOrDocumentCollectionLink, document);
+        ResourceLink documentCollectionLink =
+                this.getTargetDocumentCollection(databaseOrDocumentCollectionLink, document);
         
         DocumentServiceRequest request = getDocumentRequest(documentCollectionLink, document, options,
                 disableAutomaticIdGeneration);
-        return new ResourceResponse<Document>(this.doCreate(request), Document.class);
+        return new ResourceResponse<Document>(this.doCreate(request, options), Document.class);
     }
 
      /**
@@ -517,16 +576,21 @@ public final class DocumentClient {
                                                      RequestOptions options,
                                                      boolean disableAutomaticIdGeneration)
             throws DocumentClientException {
-        String documentCollectionLink = this.getTargetDocumentCollectionLink(databaseOrDocumentCollectionLink, document);
+        ResourceLink documentCollectionLink =
+                this.getTargetDocumentCollection(databaseOrDocumentCollectionLink, document);
         
         DocumentServiceRequest request = getDocumentRequest(documentCollectionLink, document, options,
                 disableAutomaticIdGeneration);
-        return new ResourceResponse<Document>(this.doUpsert(request), Document.class);
+        return new ResourceResponse<Document>(this.doUpsert(request, options), Document.class);
     }
     
     protected static final String PartitionResolverErrorMessage = "Couldn't find any partition resolvers for the database link provided. Ensure that the link you used when registering the partition resolvers matches the link provided or you need to register both types of database link(self link as well as ID based link)."; 
     
-    private String getTargetDocumentCollectionLink(String databaseOrDocumentCollectionLink, Object document) {
+    String getTargetDocumentCollectionLink(String databaseOrDocumentCollectionLink, Object document) {
+        return this.getTargetDocumentCollection(databaseOrDocumentCollectionLink, document).getLink();
+    }
+
+    ResourceLink getTargetDocumentCollection(String databaseOrDocumentCollectionLink, Object document) {
         if (StringUtils.isEmpty(databaseOrDocumentCollectionLink)) {
             throw new IllegalArgumentException("databaseOrDocumentCollectionLink");
         }
@@ -534,33 +598,50 @@ public final class DocumentClient {
             throw new IllegalArgumentException("document");
         }
         
-        String documentCollectionLink = databaseOrDocumentCollectionLink;
-        if(Utils.isDatabaseLink(databaseOrDocumentCollectionLink)) {
-            // Gets the partition resolver(if it exists) for the specified database link
-            PartitionResolver partitionResolver = this.getPartitionResolver(databaseOrDocumentCollectionLink);
-            
-            // If the partition resolver exists, get the collection to which the Create/Upsert should be directed using the partition key
-            if(partitionResolver != null) {
-                documentCollectionLink = partitionResolver.resolveForCreate(document);
-            }
-            else {
-                throw new IllegalArgumentException(PartitionResolverErrorMessage);
-            }
+        ResourceLink link = ResourceLink.parse(databaseOrDocumentCollectionLink);
+        if(!link.isDatabaseLink()) {
+            return link;
         }
-        
-        return documentCollectionLink;
+
+        // Gets the partition resolver(if it exists) for the specified database link
+        PartitionResolver partitionResolver = this.getPartitionResolver(databaseOrDocumentCollectionLink);
+        if(partitionResolver == null) {
+            throw new IllegalArgumentException(PartitionResolverErrorMessage);
+        }
+
+        // Gets the collection to which the Create/Upsert should be directed using the partition key
+        String documentCollectionLink = partitionResolver.resolveForCreate(document);
+        if (StringUtils.isEmpty(documentCollectionLink)) {
+            throw new IllegalArgumentException("documentCollectionLink");
+        }
+
+        return ResourceLink.parse(documentCollectionLink);
     }
     
-    private DocumentServiceRequest getDocumentRequest(String documentCollectionLink, Object document, RequestOptions options,
-            boolean disableAutomaticIdGeneration) {
-        if (StringUtils.isEmpty(documentCollectionLink)) {
+    DocumentServiceRequest getDocumentRequest(ResourceLink documentCollectionLink, Object document,
+            RequestOptions options, boolean disableAutomaticIdGeneration) {
+        if (documentCollectionLink == null) {
             throw new IllegalArgumentException("documentCollectionLink");
         }
         if (document == null) {
             throw new IllegalArgumentException("document");
         }
         
-        Document typedDocument = Document.FromObject(document);
+        ResourceLink path = ResourceLink.join(documentCollectionLink, Paths.DOCUMENTS_PATH_SEGMENT);
+        Map<String, String> requestHeaders = this.getRequestHeaders(options);
+
+        if (!(document instanceof Document)) {
+            // POJOs are serialized from their Jackson tree, without building a Document first.
+            ObjectNode documentTree = DocumentClient.toDocumentTree(document);
+            JsonNode id = documentTree.get(Constants.Properties.ID);
+            if ((id == null || id.isNull()) && !disableAutomaticIdGeneration) {
+                documentTree.put(Constants.Properties.ID, UUID.randomUUID().toString());
+            }
+
+            return DocumentServiceRequest.create(ResourceType.Document, path, documentTree, requestHeaders);
+        }
+
+        Document typedDocument = (Document) document;
 
         DocumentClient.validateResource(typedDocument);
 
@@ -569,8 +650,6 @@ public final class DocumentClient {
             // when represented as a string.
             typedDocument.setId(UUID.randomUUID().toString());
         }
-        String path = Utils.joinPath(documentCollectionLink, Paths.DOCUMENTS_PATH_SEGMENT);
-        Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Document,
                                                                        path,
                                                                        typedDocument,
@@ -597,17 +676,20 @@ public final class DocumentClient {
             throw new IllegalArgumentException("document");          
         }
 
-        Document typedDocument = Document.FromObject(document);
-        DocumentClient.validateResource(typedDocument);
-
-        String path = Utils.joinPath(documentLink, null);
+        ResourceLink path = ResourceLink.join(documentLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
 
-        DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Document,
-                                                                       path,
-                                                                       typedDocument,
-                                                                       requestHeaders);
-        return new ResourceResponse<Document>(this.doReplace(request), Document.class);
+        DocumentServiceRequest request;
+        if (document instanceof Document) {
+            DocumentClient.validateResource((Document) document);
+            request = DocumentServiceRequest.create(ResourceType.Document, path, (Document) document, requestHeaders);
+        } else {
+            request = DocumentServiceRequest.create(ResourceType.Document,
+                                                    path,
+                                                    DocumentClient.toDocumentTree(document),
+                                                    requestHeaders);
+        }
+        return new ResourceResponse<Document>(this.doReplace(request, options), Document.class);
     }
 
     /**
@@ -627,13 +709,13 @@ public final class DocumentClient {
 
         DocumentClient.validateResource(document);
 
-        String path = Utils.joinPath(document.getSelfLink(), null);
+        ResourceLink path = ResourceLink.join(document.getSelfLink(), null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Document,
                                                                        path,
                                                                        document,
                                                                        requestHeaders);
-        return new ResourceResponse<Document>(this.doReplace(request), Document.class);
+        return new ResourceResponse<Document>(this.doReplace(request, options), Document.class);
     }
 
     /**
@@ -651,10 +733,10 @@ public final class DocumentClient {
             throw new IllegalArgumentException("documentLink");
         }
 
-        String path = Utils.joinPath(documentLink, null);
+        ResourceLink path = ResourceLink.join(documentLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Document, path, requestHeaders);
-        return new ResourceResponse<Document>(this.doDelete(request), Document.class);
+        return new ResourceResponse<Document>(this.doDelete(request, options), Document.class);
     }
 
     /**
@@ -672,10 +754,10 @@ public final class DocumentClient {
             throw new IllegalArgumentException("documentLink");
         }
 
-        String path = Utils.joinPath(documentLink, null);
+        ResourceLink path = ResourceLink.join(documentLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Document, path, requestHeaders);
-        return new ResourceResponse<Document>(this.doRead(request), Document.class);
+        return new ResourceResponse<Document>(this.doRead(request, options), Document.class);
     }
 
     /**
@@ -691,10 +773,10 @@ public final class DocumentClient {
             throw new IllegalArgumentException("collectionLink");
         }
 
-        String path = Utils.joinPath(collectionLink, Paths.DOCUMENTS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(collectionLink, Paths.DOCUMENTS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Document, path, requestHeaders);
-        return new FeedResponse<Document>(new QueryIterable<Document>(this, request, ReadType.Feed, Document.class));
+        return new FeedResponse<Document>(new QueryIterable<Document>(this, request, ReadType.Feed, Document.class, options));
     }
 
     /**
@@ -751,24 +833,78 @@ public final class DocumentClient {
      * @return the feed response with the obtained documents.
      */
     public FeedResponse<Document> queryDocuments(String databaseOrDocumentCollectionLink, SqlQuerySpec querySpec, FeedOptions options, Object partitionKey) {
+        return this.queryDocumentsAs(databaseOrDocumentCollectionLink, querySpec, options, partitionKey, Document.class);
+    }
+
+    /**
+     * Query for documents in a document collection, binding each document to a POJO.
+     * 
+     * @param databaseOrDocumentCollectionLink the database link when using partitioning, otherwise document collection link.
+     * @param query the query.
+     * @param options the feed options.
+     * @param classOfT the class of the POJO the documents are bound to, or LazyDocument to parse properties on demand.
+     * @param <T> the type of the POJO.
+     * @return the feed response with the obtained documents.
+     */
+    public <T> FeedResponse<T> queryDocumentsAs(String databaseOrDocumentCollectionLink, String query, FeedOptions options, Class<T> classOfT) {
+        if (StringUtils.isEmpty(query)) {
+            throw new IllegalArgumentException("query");
+        }
+
+        return this.queryDocumentsAs(databaseOrDocumentCollectionLink, new SqlQuerySpec(query, null), options, classOfT);
+    }
+
+    /**
+     * Query for documents in a document collection, binding each document to a POJO.
+     * 
+     * @param databaseOrDocumentCollectionLink the database link when using partitioning, otherwise document collection link.
+     * @param querySpec the SQL query specification.
+     * @param options the feed options.
+     * @param classOfT the class of the POJO the documents are bound to, or LazyDocument to parse properties on demand.
+     * @param <T> the type of the POJO.
+     * @return the feed response with the obtained documents.
+     */
+    public <T> FeedResponse<T> queryDocumentsAs(String databaseOrDocumentCollectionLink, SqlQuerySpec querySpec, FeedOptions options, Class<T> classOfT) {
+        return this.queryDocumentsAs(databaseOrDocumentCollectionLink, querySpec, options, null, classOfT);
+    }
+
+    /**
+     * Query for documents in a document collection with a partitionKey, binding each document to a POJO.
+     * <p>
+     * The documents are bound straight from the response stream by a shared Jackson mapper, without building
+     * Document objects first. Properties that the class does not define, such as the system properties, are ignored.
+     * 
+     * @param databaseOrDocumentCollectionLink the database link when using partitioning, otherwise document collection link.
+     * @param querySpec the SQL query specification.
+     * @param options the feed options.
+     * @param partitionKey the partitionKey. 
+     * @param classOfT the class of the POJO the documents are bound to, or LazyDocument to parse properties on demand.
+     * @param <T> the type of the POJO.
+     * @return the feed response with the obtained documents.
+     */
+    public <T> FeedResponse<T> queryDocumentsAs(String databaseOrDocumentCollectionLink, SqlQuerySpec querySpec, FeedOptions options, Object partitionKey, Class<T> classOfT) {
         if (StringUtils.isEmpty(databaseOrDocumentCollectionLink)) {
             throw new IllegalArgumentException("databaseOrDocumentCollectionLink");
         }
         if (querySpec == null) {
             throw new IllegalArgumentException("querySpec");
-        }  
+        }
+        if (classOfT == null) {
+            throw new IllegalArgumentException("classOfT");
+        }
         
-        if(Utils.isDatabaseLink(databaseOrDocumentCollectionLink)) {
-                return new FeedResponse<Document>(new QueryIterable<Document>(this,
-                        databaseOrDocumentCollectionLink,
+        ResourceLink link = ResourceLink.parse(databaseOrDocumentCollectionLink);
+        if(link.isDatabaseLink()) {
+                return new FeedResponse<T>(new QueryIterable<T>(this,
+                        link,
                         querySpec,
                         options,
                         partitionKey,
                         ReadType.Query,
-                        Document.class));
+                        classOfT));
         }
         else {
-            String path = Utils.joinPath(databaseOrDocumentCollectionLink, Paths.DOCUMENTS_PATH_SEGMENT);
+            ResourceLink path = ResourceLink.join(databaseOrDocumentCollectionLink, Paths.DOCUMENTS_PATH_SEGMENT);
             Map<String, String> requestHeaders = this.getFeedHeaders(options);
             DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Document,
                                                                            path,
@@ -776,10 +912,11 @@ public final class DocumentClient {
                                                                            this.queryCompatibilityMode,
                                                                            requestHeaders);
             
-            return new FeedResponse<Document>(new QueryIterable<Document>(this,
+            return new FeedResponse<T>(new QueryIterable<T>(this,
                     request,
                     ReadType.Query,
-                    Document.class));
+                    classOfT,
+                    options));
         }
     }
 
@@ -798,7 +935,7 @@ public final class DocumentClient {
             throws DocumentClientException {
 
         DocumentServiceRequest request = getStoredProcedureRequest(collectionLink, storedProcedure, options);
-        return new ResourceResponse<StoredProcedure>(this.doCreate(request), StoredProcedure.class);
+        return new ResourceResponse<StoredProcedure>(this.doCreate(request, options), StoredProcedure.class);
     }    
     
     /**
@@ -816,10 +953,10 @@ public final class DocumentClient {
             throws DocumentClientException {
 
         DocumentServiceRequest request = getStoredProcedureRequest(collectionLink, storedProcedure, options);
-        return new ResourceResponse<StoredProcedure>(this.doUpsert(request), StoredProcedure.class);
+        return new ResourceResponse<StoredProcedure>(this.doUpsert(request, options), StoredProcedure.class);
     }
     
-    private DocumentServiceRequest getStoredProcedureRequest(String collectionLink, StoredProcedure storedProcedure,
+    DocumentServiceRequest getStoredProcedureRequest(String collectionLink, StoredProcedure storedProcedure,
             RequestOptions options) {
         if (StringUtils.isEmpty(collectionLink)) {
             throw new IllegalArgumentException("collectionLink");
@@ -830,7 +967,7 @@ public final class DocumentClient {
 
         DocumentClient.validateResource(storedProcedure);
 
-        String path = Utils.joinPath(collectionLink, Paths.STORED_PROCEDURES_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(collectionLink, Paths.STORED_PROCEDURES_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.StoredProcedure,
                                                                        path,
@@ -857,13 +994,13 @@ public final class DocumentClient {
 
         DocumentClient.validateResource(storedProcedure);
 
-        String path = Utils.joinPath(storedProcedure.getSelfLink(), null);
+        ResourceLink path = ResourceLink.join(storedProcedure.getSelfLink(), null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.StoredProcedure,
                                                                        path,
                                                                        storedProcedure,
                                                                        requestHeaders);
-        return new ResourceResponse<StoredProcedure>(this.doReplace(request), StoredProcedure.class);
+        return new ResourceResponse<StoredProcedure>(this.doReplace(request, options), StoredProcedure.class);
     }
 
     /**
@@ -881,12 +1018,12 @@ public final class DocumentClient {
             throw new IllegalArgumentException("storedProcedureLink");
         }
 
-        String path = Utils.joinPath(storedProcedureLink, null);
+        ResourceLink path = ResourceLink.join(storedProcedureLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.StoredProcedure,
                                                                        path,
                                                                        requestHeaders);
-        return new ResourceResponse<StoredProcedure>(this.doDelete(request), StoredProcedure.class);
+        return new ResourceResponse<StoredProcedure>(this.doDelete(request, options), StoredProcedure.class);
     }
 
     /**
@@ -904,12 +1041,12 @@ public final class DocumentClient {
             throw new IllegalArgumentException("storedProcedureLink");
         }
 
-        String path = Utils.joinPath(storedProcedureLink, null);
+        ResourceLink path = ResourceLink.join(storedProcedureLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.StoredProcedure,
                                                                        path,
                                                                        requestHeaders);
-        return new ResourceResponse<StoredProcedure>(this.doRead(request), StoredProcedure.class);
+        return new ResourceResponse<StoredProcedure>(this.doRead(request, options), StoredProcedure.class);
     }
 
     /**
@@ -925,7 +1062,7 @@ public final class DocumentClient {
             throw new IllegalArgumentException("collectionLink");
         }
 
-        String path = Utils.joinPath(collectionLink, Paths.STORED_PROCEDURES_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(collectionLink, Paths.STORED_PROCEDURES_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.StoredProcedure,
                                                                        path,
@@ -933,7 +1070,8 @@ public final class DocumentClient {
         return new FeedResponse<StoredProcedure>(new QueryIterable<StoredProcedure>(this,
                                                                                     request,
                                                                                     ReadType.Feed,
-                                                                                    StoredProcedure.class));
+                                                                                    StoredProcedure.class,
+                                                                                    options));
     }
 
     /**
@@ -977,7 +1115,7 @@ public final class DocumentClient {
             throw new IllegalArgumentException("querySpec");
         }
 
-        String path = Utils.joinPath(collectionLink, Paths.STORED_PROCEDURES_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(collectionLink, Paths.STORED_PROCEDURES_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.StoredProcedure,
                                                                        path,
@@ -987,7 +1125,8 @@ public final class DocumentClient {
         return new FeedResponse<StoredProcedure>(new QueryIterable<StoredProcedure>(this,
                                                                                     request,
                                                                                     ReadType.Query,
-                                                                                    StoredProcedure.class));
+                                                                                    StoredProcedure.class,
+                                                                                    options));
     }
 
     /**
@@ -1000,15 +1139,34 @@ public final class DocumentClient {
      */
     public StoredProcedureResponse executeStoredProcedure(String storedProcedureLink, Object[] procedureParams)
             throws DocumentClientException {
-        String path = Utils.joinPath(storedProcedureLink, null);
+        return this.executeStoredProcedureWithSerializedParams(
+                storedProcedureLink,
+                procedureParams != null ? DocumentClient.serializeProcedureParams(procedureParams) : "",
+                null);
+    }
+
+    /**
+     * Executes a stored procedure with parameters that have already been serialized.
+     * 
+     * @param storedProcedureLink the stored procedure link.
+     * @param serializedProcedureParams the JSON array of procedure parameter values, or an empty string.
+     * @param options the request options, or null.
+     * @return the stored procedure response.
+     * @throws DocumentClientException the document client exception.
+     */
+    StoredProcedureResponse executeStoredProcedureWithSerializedParams(String storedProcedureLink,
+                                                                       String serializedProcedureParams,
+                                                                       RequestOptions options)
+            throws DocumentClientException {
+        ResourceLink path = ResourceLink.join(storedProcedureLink, null);
         Map<String, String> requestHeaders = new HashMap<String, String>();
         requestHeaders.put(HttpConstants.HttpHeaders.ACCEPT, RuntimeConstants.MediaTypes.JSON);
         DocumentServiceRequest request = DocumentServiceRequest.create(
                 ResourceType.StoredProcedure,
                 path,
-                procedureParams != null ? DocumentClient.serializeProcedureParams(procedureParams) : "",
+                serializedProcedureParams,
                 null);
-        return new StoredProcedureResponse(this.doCreate(request));
+        return new StoredProcedureResponse(this.doCreate(request, options));
     }
 
     /**
@@ -1024,7 +1182,7 @@ public final class DocumentClient {
              throws DocumentClientException {
 
         DocumentServiceRequest request = getTriggerRequest(collectionLink, trigger, options);
-        return new ResourceResponse<Trigger>(this.doCreate(request), Trigger.class);
+        return new ResourceResponse<Trigger>(this.doCreate(request, options), Trigger.class);
     }    
     
     /**
@@ -1040,10 +1198,10 @@ public final class DocumentClient {
              throws DocumentClientException {
 
         DocumentServiceRequest request = getTriggerRequest(collectionLink, trigger, options);
-        return new ResourceResponse<Trigger>(this.doUpsert(request), Trigger.class);
+        return new ResourceResponse<Trigger>(this.doUpsert(request, options), Trigger.class);
     }
     
-    private DocumentServiceRequest getTriggerRequest(String collectionLink, Trigger trigger, RequestOptions options) {
+    DocumentServiceRequest getTriggerRequest(String collectionLink, Trigger trigger, RequestOptions options) {
         if (StringUtils.isEmpty(collectionLink)) {
             throw new IllegalArgumentException("collectionLink");
         }
@@ -1053,7 +1211,7 @@ public final class DocumentClient {
 
         DocumentClient.validateResource(trigger);
 
-        String path = Utils.joinPath(collectionLink, Paths.TRIGGERS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(collectionLink, Paths.TRIGGERS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Trigger,
                                                                        path,
@@ -1079,13 +1237,13 @@ public final class DocumentClient {
 
         DocumentClient.validateResource(trigger);
 
-        String path = Utils.joinPath(trigger.getSelfLink(), null);
+        ResourceLink path = ResourceLink.join(trigger.getSelfLink(), null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Trigger,
                                                                        path,
                                                                        trigger,
                                                                        requestHeaders);
-        return new ResourceResponse<Trigger>(this.doReplace(request), Trigger.class);
+        return new ResourceResponse<Trigger>(this.doReplace(request, options), Trigger.class);
     }
 
     /**
@@ -1103,10 +1261,10 @@ public final class DocumentClient {
             throw new IllegalArgumentException("triggerLink");
         }
 
-        String path = Utils.joinPath(triggerLink, null);
+        ResourceLink path = ResourceLink.join(triggerLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Trigger, path, requestHeaders);
-        return new ResourceResponse<Trigger>(this.doDelete(request), Trigger.class);
+        return new ResourceResponse<Trigger>(this.doDelete(request, options), Trigger.class);
     }
 
     /**
@@ -1124,10 +1282,10 @@ public final class DocumentClient {
             throw new IllegalArgumentException("triggerLink");
         }
 
-        String path = Utils.joinPath(triggerLink, null);
+        ResourceLink path = ResourceLink.join(triggerLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Trigger, path, requestHeaders);
-        return new ResourceResponse<Trigger>(this.gatewayProxy.doRead(request), Trigger.class);
+        return new ResourceResponse<Trigger>(this.doRead(request, options), Trigger.class);
     }
 
     /**
@@ -1143,10 +1301,10 @@ public final class DocumentClient {
             throw new IllegalArgumentException("collectionLink");
         }
 
-        String path = Utils.joinPath(collectionLink, Paths.TRIGGERS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(collectionLink, Paths.TRIGGERS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Trigger, path, requestHeaders);
-        return new FeedResponse<Trigger>(new QueryIterable<Trigger>(this, request, ReadType.Feed, Trigger.class));
+        return new FeedResponse<Trigger>(new QueryIterable<Trigger>(this, request, ReadType.Feed, Trigger.class, options));
     }
 
     /**
@@ -1192,14 +1350,14 @@ public final class DocumentClient {
             throw new IllegalArgumentException("querySpec");
         }
 
-        String path = Utils.joinPath(collectionLink, Paths.TRIGGERS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(collectionLink, Paths.TRIGGERS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Trigger,
                                                                        path,
                                                                        querySpec,
                                                                        this.queryCompatibilityMode,
                                                                        requestHeaders);
-        return new FeedResponse<Trigger>(new QueryIterable<Trigger>(this, request, ReadType.Query, Trigger.class));
+        return new FeedResponse<Trigger>(new QueryIterable<Trigger>(this, request, ReadType.Query, Trigger.class, options));
     }
 
     /**
@@ -1218,7 +1376,7 @@ public final class DocumentClient {
              throws DocumentClientException {
         
         DocumentServiceRequest request = getUserDefinedFunctionRequest(collectionLink, udf, options);
-        return new ResourceResponse<UserDefinedFunction>(this.doCreate(request), UserDefinedFunction.class);
+        return new ResourceResponse<UserDefinedFunction>(this.doCreate(request, options), UserDefinedFunction.class);
     }    
     
     /**
@@ -1237,10 +1395,10 @@ public final class DocumentClient {
              throws DocumentClientException {
         
         DocumentServiceRequest request = getUserDefinedFunctionRequest(collectionLink, udf, options);
-        return new ResourceResponse<UserDefinedFunction>(this.doUpsert(request), UserDefinedFunction.class);
+        return new ResourceResponse<UserDefinedFunction>(this.doUpsert(request, options), UserDefinedFunction.class);
     }
     
-    private DocumentServiceRequest getUserDefinedFunctionRequest(String collectionLink, UserDefinedFunction udf,
+    DocumentServiceRequest getUserDefinedFunctionRequest(String collectionLink, UserDefinedFunction udf,
             RequestOptions options) {
         if (StringUtils.isEmpty(collectionLink)) {
             throw new IllegalArgumentException("collectionLink");
@@ -1251,7 +1409,7 @@ public final class DocumentClient {
 
         DocumentClient.validateResource(udf);
 
-        String path = Utils.joinPath(collectionLink, Paths.USER_DEFINED_FUNCTIONS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(collectionLink, Paths.USER_DEFINED_FUNCTIONS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.UserDefinedFunction,
                                                                        path,
@@ -1277,13 +1435,13 @@ public final class DocumentClient {
 
         DocumentClient.validateResource(udf);
 
-        String path = Utils.joinPath(udf.getSelfLink(), null);
+        ResourceLink path = ResourceLink.join(udf.getSelfLink(), null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.UserDefinedFunction,
                                                                        path,
                                                                        udf,
                                                                        requestHeaders);
-        return new ResourceResponse<UserDefinedFunction>(this.doReplace(request), UserDefinedFunction.class);
+        return new ResourceResponse<UserDefinedFunction>(this.doReplace(request, options), UserDefinedFunction.class);
     }
 
     /**
@@ -1300,12 +1458,12 @@ public final class DocumentClient {
             throw new IllegalArgumentException("udfLink");
         }
         
-        String path = Utils.joinPath(udfLink, null);
+        ResourceLink path = ResourceLink.join(udfLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.UserDefinedFunction,
                                                                        path,
                                                                        requestHeaders);
-        return new ResourceResponse<UserDefinedFunction>(this.doDelete(request), UserDefinedFunction.class);
+        return new ResourceResponse<UserDefinedFunction>(this.doDelete(request, options), UserDefinedFunction.class);
     }
 
     /**
@@ -1322,12 +1480,12 @@ public final class DocumentClient {
             throw new IllegalArgumentException("udfLink");
         }
         
-        String path = Utils.joinPath(udfLink, null);
+        ResourceLink path = ResourceLink.join(udfLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.UserDefinedFunction,
                                                                        path,
                                                                        requestHeaders);
-        return new ResourceResponse<UserDefinedFunction>(this.doRead(request), UserDefinedFunction.class);
+        return new ResourceResponse<UserDefinedFunction>(this.doRead(request, options), UserDefinedFunction.class);
     }
 
     /**
@@ -1343,7 +1501,7 @@ public final class DocumentClient {
             throw new IllegalArgumentException("collectionLink");
         }
 
-        String path = Utils.joinPath(collectionLink, Paths.USER_DEFINED_FUNCTIONS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(collectionLink, Paths.USER_DEFINED_FUNCTIONS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.UserDefinedFunction,
                                                                        path,
@@ -1351,7 +1509,8 @@ public final class DocumentClient {
         return new FeedResponse<UserDefinedFunction>(new QueryIterable<UserDefinedFunction>(this,
                                                                                             request,
                                                                                             ReadType.Feed,
-                                                                                            UserDefinedFunction.class));
+                                                                                            UserDefinedFunction.class,
+                                                                                            options));
     }
 
     /**
@@ -1397,7 +1556,7 @@ public final class DocumentClient {
             throw new IllegalArgumentException("querySpec");
         }
 
-        String path = Utils.joinPath(collectionLink, Paths.USER_DEFINED_FUNCTIONS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(collectionLink, Paths.USER_DEFINED_FUNCTIONS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.UserDefinedFunction,
                                                                        path,
@@ -1407,7 +1566,8 @@ public final class DocumentClient {
         return new FeedResponse<UserDefinedFunction>(new QueryIterable<UserDefinedFunction>(this,
                                                                                             request,
                                                                                             ReadType.Query,
-                                                                                            UserDefinedFunction.class));
+                                                                                            UserDefinedFunction.class,
+                                                                                            options));
     }
 
     /**
@@ -1424,7 +1584,7 @@ public final class DocumentClient {
                                                          RequestOptions options)
             throws DocumentClientException {
         DocumentServiceRequest request = getAttachmentRequest(documentLink, attachment, options);
-        return new ResourceResponse<Attachment>(this.doCreate(request), Attachment.class);
+        return new ResourceResponse<Attachment>(this.doCreate(request, options), Attachment.class);
     }
     
     /**
@@ -1441,10 +1601,10 @@ public final class DocumentClient {
                                                          RequestOptions options)
             throws DocumentClientException {
         DocumentServiceRequest request = getAttachmentRequest(documentLink, attachment, options);
-        return new ResourceResponse<Attachment>(this.doUpsert(request), Attachment.class);
+        return new ResourceResponse<Attachment>(this.doUpsert(request, options), Attachment.class);
     }
     
-    private DocumentServiceRequest getAttachmentRequest(String documentLink, Attachment attachment,
+    DocumentServiceRequest getAttachmentRequest(String documentLink, Attachment attachment,
             RequestOptions options) {
         if (StringUtils.isEmpty(documentLink)) {
             throw new IllegalArgumentException("documentLink");
@@ -1455,7 +1615,7 @@ public final class DocumentClient {
 
         DocumentClient.validateResource(attachment);
 
-        String path = Utils.joinPath(documentLink, Paths.ATTACHMENTS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(documentLink, Paths.ATTACHMENTS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Attachment,
                                                                        path,
@@ -1480,13 +1640,13 @@ public final class DocumentClient {
 
         DocumentClient.validateResource(attachment);
 
-        String path = Utils.joinPath(attachment.getSelfLink(), null);
+        ResourceLink path = ResourceLink.join(attachment.getSelfLink(), null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Attachment,
                                                                        path,
                                                                        attachment,
                                                                        requestHeaders);
-        return new ResourceResponse<Attachment>(this.doReplace(request), Attachment.class);
+        return new ResourceResponse<Attachment>(this.doReplace(request, options), Attachment.class);
     }
 
     /**
@@ -1503,12 +1663,12 @@ public final class DocumentClient {
             throw new IllegalArgumentException("attachmentLink");
         }
         
-        String path = Utils.joinPath(attachmentLink, null);
+        ResourceLink path = ResourceLink.join(attachmentLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Attachment,
                                                                        path,
                                                                        requestHeaders);
-        return new ResourceResponse<Attachment>(this.doDelete(request), Attachment.class);
+        return new ResourceResponse<Attachment>(this.doDelete(request, options), Attachment.class);
     }
 
     /**
@@ -1525,10 +1685,10 @@ public final class DocumentClient {
             throw new IllegalArgumentException("attachmentLink");
         }
         
-        String path = Utils.joinPath(attachmentLink, null);
+        ResourceLink path = ResourceLink.join(attachmentLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Attachment, path, requestHeaders);
-        return new ResourceResponse<Attachment>(this.doRead(request), Attachment.class);
+        return new ResourceResponse<Attachment>(this.doRead(request, options), Attachment.class);
     }
 
     /**
@@ -1543,7 +1703,7 @@ public final class DocumentClient {
             throw new IllegalArgumentException("documentLink");
         }
         
-        String path = Utils.joinPath(documentLink, Paths.ATTACHMENTS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(documentLink, Paths.ATTACHMENTS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Attachment,
                                                                        path,
@@ -1551,7 +1711,8 @@ public final class DocumentClient {
         return new FeedResponse<Attachment>(new QueryIterable<Attachment>(this,
                                                                           request,
                                                                           ReadType.Feed,
-                                                                          Attachment.class));
+                                                                          Attachment.class,
+                                                                          options));
     }
 
     /**
@@ -1591,7 +1752,7 @@ public final class DocumentClient {
             throw new IllegalArgumentException("querySpec");
         }
 
-        String path = Utils.joinPath(documentLink, Paths.ATTACHMENTS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(documentLink, Paths.ATTACHMENTS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Attachment,
                                                                        path,
@@ -1601,7 +1762,8 @@ public final class DocumentClient {
         return new FeedResponse<Attachment>(new QueryIterable<Attachment>(this,
                                                                           request,
                                                                           ReadType.Query,
-                                                                          Attachment.class));
+                                                                          Attachment.class,
+                                                                          options));
     }
 
     /**
@@ -1619,7 +1781,7 @@ public final class DocumentClient {
             throws DocumentClientException {
 
         DocumentServiceRequest request = getAttachmentRequest(documentLink, mediaStream, options);
-        return new ResourceResponse<Attachment>(this.doCreate(request), Attachment.class);
+        return new ResourceResponse<Attachment>(this.doCreate(request, null), Attachment.class);
     }
         
     /**
@@ -1637,10 +1799,10 @@ public final class DocumentClient {
             throws DocumentClientException {
 
         DocumentServiceRequest request = getAttachmentRequest(documentLink, mediaStream, options);
-        return new ResourceResponse<Attachment>(this.doUpsert(request), Attachment.class);
+        return new ResourceResponse<Attachment>(this.doUpsert(request, null), Attachment.class);
     }
     
-    private DocumentServiceRequest getAttachmentRequest(String documentLink, InputStream mediaStream,
+    DocumentServiceRequest getAttachmentRequest(String documentLink, InputStream mediaStream,
             MediaOptions options) {
         if (StringUtils.isEmpty(documentLink)) {
             throw new IllegalArgumentException("documentLink");
@@ -1649,7 +1811,7 @@ public final class DocumentClient {
             throw new IllegalArgumentException("mediaStream");          
         }
 
-        String path = Utils.joinPath(documentLink, Paths.ATTACHMENTS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(documentLink, Paths.ATTACHMENTS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getMediaHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Attachment,
                                                                        path,
@@ -1672,10 +1834,10 @@ public final class DocumentClient {
             throw new IllegalArgumentException("mediaLink");
         }
         
-        String path = Utils.joinPath(mediaLink, null);
+        ResourceLink path = ResourceLink.join(mediaLink, null);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Media, path, null);
         request.setIsMedia(true);
-        return new MediaResponse(this.doRead(request),
+        return new MediaResponse(this.doRead(request, null),
                                  this.connectionPolicy.getMediaReadMode() == MediaReadMode.Buffered);
     }
 
@@ -1698,14 +1860,14 @@ public final class DocumentClient {
             throw new IllegalArgumentException("mediaStream");          
         }
         
-        String path = Utils.joinPath(mediaLink, null);
+        ResourceLink path = ResourceLink.join(mediaLink, null);
         Map<String, String> requestHeaders = this.getMediaHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Media,
                                                                        path,
                                                                        mediaStream,
                                                                        requestHeaders);
         request.setIsMedia(true);
-        return new MediaResponse(this.doReplace(request),
+        return new MediaResponse(this.doReplace(request, null),
                                  this.connectionPolicy.getMediaReadMode() == MediaReadMode.Buffered);
     }
 
@@ -1723,10 +1885,10 @@ public final class DocumentClient {
             throw new IllegalArgumentException("conflictLink");
         }
 
-        String path = Utils.joinPath(conflictLink, null);
+        ResourceLink path = ResourceLink.join(conflictLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Conflict, path, requestHeaders);
-        return new ResourceResponse<Conflict>(this.doRead(request), Conflict.class);
+        return new ResourceResponse<Conflict>(this.doRead(request, options), Conflict.class);
     }
 
     /**
@@ -1743,14 +1905,14 @@ public final class DocumentClient {
             throw new IllegalArgumentException("collectionLink");
         }
         
-        String path = Utils.joinPath(collectionLink,
+        ResourceLink path = ResourceLink.join(collectionLink,
                                               Paths.CONFLICTS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(
             ResourceType.Conflict,
             path,
             requestHeaders);
-        return new FeedResponse<Conflict>(new QueryIterable<Conflict>(this, request, ReadType.Feed, Conflict.class));
+        return new FeedResponse<Conflict>(new QueryIterable<Conflict>(this, request, ReadType.Feed, Conflict.class, options));
     }
 
     /**
@@ -1792,14 +1954,14 @@ public final class DocumentClient {
             throw new IllegalArgumentException("querySpec");
         }
 
-        String path = Utils.joinPath(collectionLink, Paths.CONFLICTS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(collectionLink, Paths.CONFLICTS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Conflict,
                                                                        path,
                                                                        querySpec,
                                                                        this.queryCompatibilityMode,
                                                                        requestHeaders);
-        return new FeedResponse<Conflict>(new QueryIterable<Conflict>(this, request, ReadType.Query, Conflict.class));
+        return new FeedResponse<Conflict>(new QueryIterable<Conflict>(this, request, ReadType.Query, Conflict.class, options));
     }
 
     /**
@@ -1817,10 +1979,10 @@ public final class DocumentClient {
             throw new IllegalArgumentException("conflictLink");
         }
 
-        String path = Utils.joinPath(conflictLink, null);
+        ResourceLink path = ResourceLink.join(conflictLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Conflict, path, requestHeaders);
-        return new ResourceResponse<Conflict>(this.doDelete(request), Conflict.class);
+        return new ResourceResponse<Conflict>(this.doDelete(request, options), Conflict.class);
     }
 
     /**
@@ -1836,7 +1998,7 @@ public final class DocumentClient {
             throws DocumentClientException {
 
         DocumentServiceRequest request = getUserRequest(databaseLink, user, options);
-        return new ResourceResponse<User>(this.doCreate(request), User.class);
+        return new ResourceResponse<User>(this.doCreate(request, options), User.class);
     }
         
     /**
@@ -1852,10 +2014,10 @@ public final class DocumentClient {
             throws DocumentClientException {
 
         DocumentServiceRequest request = getUserRequest(databaseLink, user, options);
-        return new ResourceResponse<User>(this.doUpsert(request), User.class);
+        return new ResourceResponse<User>(this.doUpsert(request, options), User.class);
     }
     
-    private DocumentServiceRequest getUserRequest(String databaseLink, User user, RequestOptions options) {
+    DocumentServiceRequest getUserRequest(String databaseLink, User user, RequestOptions options) {
         if (StringUtils.isEmpty(databaseLink)) {
             throw new IllegalArgumentException("databaseLink");
         }
@@ -1865,7 +2027,7 @@ public final class DocumentClient {
 
         DocumentClient.validateResource(user);
 
-        String path = Utils.joinPath(databaseLink, Paths.USERS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(databaseLink, Paths.USERS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.User, path, user, requestHeaders);
         return request;
@@ -1887,10 +2049,10 @@ public final class DocumentClient {
 
         DocumentClient.validateResource(user);
 
-        String path = Utils.joinPath(user.getSelfLink(), null);
+        ResourceLink path = ResourceLink.join(user.getSelfLink(), null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.User, path, user, requestHeaders);
-        return new ResourceResponse<User>(this.doReplace(request), User.class);
+        return new ResourceResponse<User>(this.doReplace(request, options), User.class);
     }
 
     /**
@@ -1907,10 +2069,10 @@ public final class DocumentClient {
             throw new IllegalArgumentException("userLink");
         }
 
-        String path = Utils.joinPath(userLink, null);
+        ResourceLink path = ResourceLink.join(userLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.User, path, requestHeaders);
-        return new ResourceResponse<User>(this.doDelete(request), User.class);
+        return new ResourceResponse<User>(this.doDelete(request, options), User.class);
     }
 
     /**
@@ -1927,10 +2089,10 @@ public final class DocumentClient {
             throw new IllegalArgumentException("userLink");
         }
 
-        String path = Utils.joinPath(userLink, null);
+        ResourceLink path = ResourceLink.join(userLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.User, path, requestHeaders);
-        return new ResourceResponse<User>(this.doRead(request), User.class);
+        return new ResourceResponse<User>(this.doRead(request, options), User.class);
     }
 
     /**
@@ -1946,10 +2108,10 @@ public final class DocumentClient {
             throw new IllegalArgumentException("databaseLink");
         }
 
-        String path = Utils.joinPath(databaseLink, Paths.USERS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(databaseLink, Paths.USERS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.User, path, requestHeaders);
-        return new FeedResponse<User>(new QueryIterable<User>(this, request, ReadType.Feed, User.class));
+        return new FeedResponse<User>(new QueryIterable<User>(this, request, ReadType.Feed, User.class, options));
     }
 
     /**
@@ -1991,14 +2153,14 @@ public final class DocumentClient {
             throw new IllegalArgumentException("querySpec");
         }
 
-        String path = Utils.joinPath(databaseLink, Paths.USERS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(databaseLink, Paths.USERS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.User,
                                                                        path,
                                                                        querySpec,
                                                                        this.queryCompatibilityMode,
                                                                        requestHeaders);
-        return new FeedResponse<User>(new QueryIterable<User>(this, request, ReadType.Query, User.class));
+        return new FeedResponse<User>(new QueryIterable<User>(this, request, ReadType.Query, User.class, options));
     }
 
     /**
@@ -2014,7 +2176,7 @@ public final class DocumentClient {
             throws DocumentClientException {
 
         DocumentServiceRequest request = getPermissionRequest(userLink, permission, options);
-        return new ResourceResponse<Permission>(this.doCreate(request), Permission.class);
+        return new ResourceResponse<Permission>(this.doCreate(request, options), Permission.class);
     }
         
     /**
@@ -2030,10 +2192,10 @@ public final class DocumentClient {
             throws DocumentClientException {
 
         DocumentServiceRequest request = getPermissionRequest(userLink, permission, options);
-        return new ResourceResponse<Permission>(this.doUpsert(request), Permission.class);
+        return new ResourceResponse<Permission>(this.doUpsert(request, options), Permission.class);
     }
     
-    private DocumentServiceRequest getPermissionRequest(String userLink, Permission permission,
+    DocumentServiceRequest getPermissionRequest(String userLink, Permission permission,
             RequestOptions options) {
         if (StringUtils.isEmpty(userLink)) {
             throw new IllegalArgumentException("userLink");
@@ -2044,7 +2206,7 @@ public final class DocumentClient {
 
         DocumentClient.validateResource(permission);
 
-        String path = Utils.joinPath(userLink, Paths.PERMISSIONS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(userLink, Paths.PERMISSIONS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Permission,
                                                                        path,
@@ -2070,13 +2232,13 @@ public final class DocumentClient {
 
         DocumentClient.validateResource(permission);
 
-        String path = Utils.joinPath(permission.getSelfLink(), null);
+        ResourceLink path = ResourceLink.join(permission.getSelfLink(), null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Permission,
                                                                        path,
                                                                        permission,
                                                                        requestHeaders);
-        return new ResourceResponse<Permission>(this.doReplace(request), Permission.class);
+        return new ResourceResponse<Permission>(this.doReplace(request, options), Permission.class);
     }
 
     /**
@@ -2094,10 +2256,10 @@ public final class DocumentClient {
             throw new IllegalArgumentException("permissionLink");
         }
         
-        String path = Utils.joinPath(permissionLink, null);
+        ResourceLink path = ResourceLink.join(permissionLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Permission, path, requestHeaders);
-        return new ResourceResponse<Permission>(this.doDelete(request), Permission.class);
+        return new ResourceResponse<Permission>(this.doDelete(request, options), Permission.class);
     }
 
     /**
@@ -2115,10 +2277,10 @@ public final class DocumentClient {
             throw new IllegalArgumentException("permissionLink");
         }
         
-        String path = Utils.joinPath(permissionLink, null);
+        ResourceLink path = ResourceLink.join(permissionLink, null);
         Map<String, String> requestHeaders = this.getRequestHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Permission, path, requestHeaders);
-        return new ResourceResponse<Permission>(this.doRead(request), Permission.class);
+        return new ResourceResponse<Permission>(this.doRead(request, options), Permission.class);
     }
 
     /**
@@ -2133,13 +2295,14 @@ public final class DocumentClient {
             throw new IllegalArgumentException("permissionLink");
         }
 
-        String path = Utils.joinPath(permissionLink, Paths.PERMISSIONS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(permissionLink, Paths.PERMISSIONS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Permission, path, requestHeaders);
         return new FeedResponse<Permission>(new QueryIterable<Permission>(this,
                                                                           request,
                                                                           ReadType.Feed,
-                                                                          Permission.class));
+                                                                          Permission.class,
+                                                                          options));
     }
 
     /**
@@ -2183,7 +2346,7 @@ public final class DocumentClient {
             throw new IllegalArgumentException("querySpec");
         }
 
-        String path = Utils.joinPath(permissionLink, Paths.PERMISSIONS_PATH_SEGMENT);
+        ResourceLink path = ResourceLink.join(permissionLink, Paths.PERMISSIONS_PATH_SEGMENT);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Permission,
                                                                        path,
@@ -2193,7 +2356,8 @@ public final class DocumentClient {
         return new FeedResponse<Permission>(new QueryIterable<Permission>(this,
                                                                           request,
                                                                           ReadType.Query,
-                                                                          Permission.class));
+                                                                          Permission.class,
+                                                                          options));
     }
 
     /**
@@ -2211,12 +2375,12 @@ public final class DocumentClient {
 
         DocumentClient.validateResource(offer);
 
-        String path = Utils.joinPath(offer.getSelfLink(), null);
+        ResourceLink path = ResourceLink.join(offer.getSelfLink(), null);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Offer,
                                                                        path,
                                                                        offer,
                                                                        null);
-        return new ResourceResponse<Offer>(this.doReplace(request), Offer.class);
+        return new ResourceResponse<Offer>(this.doReplace(request, null), Offer.class);
     }
 
     /**
@@ -2232,9 +2396,9 @@ public final class DocumentClient {
             throw new IllegalArgumentException("offerLink");
         }
         
-        String path = Utils.joinPath(offerLink, null);
+        ResourceLink path = ResourceLink.join(offerLink, null);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Offer, path, null);
-        return new ResourceResponse<Offer>(this.doRead(request), Offer.class);
+        return new ResourceResponse<Offer>(this.doRead(request, null), Offer.class);
     }
 
     /**
@@ -2244,10 +2408,10 @@ public final class DocumentClient {
      * @return the feed response with the read offers.
      */
     public FeedResponse<Offer> readOffers(FeedOptions options) {
-        String path = Utils.joinPath(Paths.OFFERS_PATH_SEGMENT, null);
+        ResourceLink path = ResourceLink.join(Paths.OFFERS_PATH_SEGMENT, null);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Offer, path, requestHeaders);
-        return new FeedResponse<Offer>(new QueryIterable<Offer>(this, request, ReadType.Feed, Offer.class));
+        return new FeedResponse<Offer>(new QueryIterable<Offer>(this, request, ReadType.Feed, Offer.class, options));
     }
 
     /**
@@ -2277,14 +2441,14 @@ public final class DocumentClient {
             throw new IllegalArgumentException("querySpec");
         }
 
-        String path = Utils.joinPath(Paths.OFFERS_PATH_SEGMENT, null);
+        ResourceLink path = ResourceLink.join(Paths.OFFERS_PATH_SEGMENT, null);
         Map<String, String> requestHeaders = this.getFeedHeaders(options);
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.Offer,
                                                                        path,
                                                                        querySpec,
                                                                        this.queryCompatibilityMode,
                                                                        requestHeaders);
-        return new FeedResponse<Offer>(new QueryIterable<Offer>(this, request, ReadType.Query, Offer.class));
+        return new FeedResponse<Offer>(new QueryIterable<Offer>(this, request, ReadType.Query, Offer.class, options));
     }
 
     /**
@@ -2295,9 +2459,12 @@ public final class DocumentClient {
      */
     public DatabaseAccount getDatabaseAccount() throws DocumentClientException {
         DocumentServiceRequest request = DocumentServiceRequest.create(ResourceType.DatabaseAccount,
-                                                                       "",  // path
+                                                                       ResourceLink.parse(""),  // path
                                                                        null);
-        DocumentServiceResponse response = this.doRead(request);
+        return DocumentClient.toDatabaseAccount(this.doRead(request, null));
+    }
+
+    static DatabaseAccount toDatabaseAccount(DocumentServiceResponse response) {
         DatabaseAccount account = response.getResource(DatabaseAccount.class);
 
         // read the headers and set to the account
@@ -2311,16 +2478,20 @@ public final class DocumentClient {
         return account;
     }
     
-    private DocumentServiceResponse doCreate(DocumentServiceRequest request) throws DocumentClientException {
+    private DocumentServiceResponse doCreate(DocumentServiceRequest request, RequestOptions options)
+            throws DocumentClientException {
         this.ApplySessionToken(request);
+        this.applyRetryOptions(request, options);
 
         DocumentServiceResponse response = this.gatewayProxy.doCreate(request);
         this.CaptureSessionToken(request, response);
         return response;
     }
     
-    private DocumentServiceResponse doUpsert(DocumentServiceRequest request) throws DocumentClientException {
+    private DocumentServiceResponse doUpsert(DocumentServiceRequest request, RequestOptions options)
+            throws DocumentClientException {
         this.ApplySessionToken(request);
+        this.applyRetryOptions(request, options);
         
         Map<String, String> headers = request.getHeaders();
         
@@ -2337,16 +2508,20 @@ public final class DocumentClient {
         return response;
     }
     
-    private DocumentServiceResponse doReplace(DocumentServiceRequest request) throws DocumentClientException {
+    private DocumentServiceResponse doReplace(DocumentServiceRequest request, RequestOptions options)
+            throws DocumentClientException {
         this.ApplySessionToken(request);
+        this.applyRetryOptions(request, options);
 
         DocumentServiceResponse response = this.gatewayProxy.doReplace(request);
         this.CaptureSessionToken(request, response);
         return response;
     }
     
-    private DocumentServiceResponse doDelete(DocumentServiceRequest request) throws DocumentClientException {
+    private DocumentServiceResponse doDelete(DocumentServiceRequest request, RequestOptions options)
+            throws DocumentClientException {
         this.ApplySessionToken(request);
+        this.applyRetryOptions(request, options);
 
         DocumentServiceResponse response = this.gatewayProxy.doDelete(request);
 
@@ -2358,8 +2533,10 @@ public final class DocumentClient {
         return response;
     }
     
-    private DocumentServiceResponse doRead(DocumentServiceRequest request) throws DocumentClientException {
+    private DocumentServiceResponse doRead(DocumentServiceRequest request, RequestOptions options)
+            throws DocumentClientException {
         this.ApplySessionToken(request);
+        this.applyRetryOptions(request, options);
 
         DocumentServiceResponse response = this.gatewayProxy.doRead(request);
         this.CaptureSessionToken(request, response);
@@ -2382,7 +2559,109 @@ public final class DocumentClient {
         return response;
     }
     
-    private void ApplySessionToken(DocumentServiceRequest request) throws DocumentClientException{
+    <R> Future<R> doCreateAsync(DocumentServiceRequest request,
+                                RequestOptions options,
+                                GatewayProxy.ResponseHandler<R> responseHandler) {
+        this.ApplySessionToken(request);
+        this.applyRetryOptions(request, options);
+        return this.gatewayProxy.doCreateAsync(request, this.capturingSessionToken(request, responseHandler));
+    }
+
+    <R> Future<R> doUpsertAsync(DocumentServiceRequest request,
+                                RequestOptions options,
+                                GatewayProxy.ResponseHandler<R> responseHandler) {
+        this.ApplySessionToken(request);
+        this.applyRetryOptions(request, options);
+        request.getHeaders().put(HttpConstants.HttpHeaders.IS_UPSERT, "true");
+        return this.gatewayProxy.doUpsertAsync(request, this.capturingSessionToken(request, responseHandler));
+    }
+
+    <R> Future<R> doReplaceAsync(DocumentServiceRequest request,
+                                 RequestOptions options,
+                                 GatewayProxy.ResponseHandler<R> responseHandler) {
+        this.ApplySessionToken(request);
+        this.applyRetryOptions(request, options);
+        return this.gatewayProxy.doReplaceAsync(request, this.capturingSessionToken(request, responseHandler));
+    }
+
+    <R> Future<R> doDeleteAsync(DocumentServiceRequest request,
+                                RequestOptions options,
+                                final GatewayProxy.ResponseHandler<R> responseHandler) {
+        this.ApplySessionToken(request);
+        this.applyRetryOptions(request, options);
+        if (request.getResourceType() != ResourceType.DocumentCollection) {
+            return this.gatewayProxy.doDeleteAsync(request, this.capturingSessionToken(request, responseHandler));
+        }
+
+        final DocumentServiceRequest deleteRequest = request;
+        return this.gatewayProxy.doDeleteAsync(request, new GatewayProxy.ResponseHandler<R>() {
+            @Override
+            public R handle(DocumentServiceResponse response) throws DocumentClientException {
+                DocumentClient.this.ClearToken(deleteRequest, response);
+                return responseHandler.handle(response);
+            }
+        });
+    }
+
+    <R> Future<R> doReadAsync(DocumentServiceRequest request,
+                              RequestOptions options,
+                              GatewayProxy.ResponseHandler<R> responseHandler) {
+        this.ApplySessionToken(request);
+        this.applyRetryOptions(request, options);
+        return this.gatewayProxy.doReadAsync(request, this.capturingSessionToken(request, responseHandler));
+    }
+
+    <R> Future<R> doReadFeedAsync(DocumentServiceRequest request, GatewayProxy.ResponseHandler<R> responseHandler) {
+        this.ApplySessionToken(request);
+        return this.gatewayProxy.doReadFeedAsync(request,
+                                                 this.createQueryRetryPolicy(),
+                                                 this.capturingSessionToken(request, responseHandler));
+    }
+
+    <R> Future<R> doQueryAsync(DocumentServiceRequest request, GatewayProxy.ResponseHandler<R> responseHandler) {
+        this.ApplySessionToken(request);
+        return this.gatewayProxy.doSQLQueryAsync(request,
+                                                 this.createQueryRetryPolicy(),
+                                                 this.capturingSessionToken(request, responseHandler));
+    }
+
+    /**
+     * Closes the connections of the asynchronous requests.
+     */
+    void closeAsyncTransport() {
+        this.gatewayProxy.closeAsyncTransport();
+    }
+
+    ConnectionPolicy getConnectionPolicy() {
+        return this.connectionPolicy;
+    }
+
+    private ResourceThrottleRetryPolicy createQueryRetryPolicy() {
+        return new ResourceThrottleRetryPolicy(this.getRetryPolicy().getMaxRetryAttemptsOnQuery());
+    }
+
+    private <R> GatewayProxy.ResponseHandler<R> capturingSessionToken(
+            final DocumentServiceRequest request,
+            final GatewayProxy.ResponseHandler<R> responseHandler) {
+        return new GatewayProxy.ResponseHandler<R>() {
+            @Override
+            public R handle(DocumentServiceResponse response) throws DocumentClientException {
+                DocumentClient.this.CaptureSessionToken(request, response);
+                return responseHandler.handle(response);
+            }
+        };
+    }
+
+    private void applyRetryOptions(DocumentServiceRequest request, RequestOptions options) {
+        request.setRetryOptions(this.getRetryOptions(options));
+    }
+
+    RetryOptions getRetryOptions(RequestOptions options) {
+        return options != null && options.getRetryOptions() != null ?
+                options.getRetryOptions() : this.connectionPolicy.getRetryOptions();
+    }
+
+    private void ApplySessionToken(DocumentServiceRequest request) {
         Map<String, String> headers = request.getHeaders();
         if (headers != null && !StringUtils.isEmpty(headers.get(HttpConstants.HttpHeaders.SESSION_TOKEN))) {
             return;  // User is explicitly controlling the session.
@@ -2411,7 +2690,7 @@ public final class DocumentClient {
         this.sessionContainer.clearToken(request, response);
     }
 
-    private Map<String, String> getRequestHeaders(RequestOptions options) {
+    Map<String, String> getRequestHeaders(RequestOptions options) {
         if (options == null) return null;
 
         Map<String, String> headers = new HashMap<String, String>();
@@ -2488,7 +2767,7 @@ public final class DocumentClient {
         return headers;
     }
 
-    private Map<String, String> getMediaHeaders(MediaOptions options) {
+    Map<String, String> getMediaHeaders(MediaOptions options) {
         Map<String, String> requestHeaders = new HashMap<String, String>();
 
         if (options == null || options.getContentType().isEmpty()) {
@@ -2507,8 +2786,8 @@ public final class DocumentClient {
         return requestHeaders;
     }
 
-    private static String serializeProcedureParams(Object[] objectArray) {
-        ObjectMapper mapper = null;
+    static String serializeProcedureParams(Object[] objectArray) {
+        ObjectMapper mapper = SerializationContext.getObjectMapper();
         String[] stringArray = new String[objectArray.length];
 
         for (int i = 0; i < objectArray.length; ++i) {
@@ -2516,10 +2795,6 @@ public final class DocumentClient {
             if (object instanceof JsonSerializable || object instanceof JSONObject) {
                 stringArray[i] = object.toString();
             } else {
-                if (mapper == null) {
-                    mapper = new ObjectMapper();
-                }
-
                 // POJO, number, String or Boolean
                 try {
                     stringArray[i] = mapper.writeValueAsString(object);
@@ -2533,16 +2808,31 @@ public final class DocumentClient {
         return String.format("[%s]", StringUtils.join(stringArray, ","));
     }
 
-    private static void validateResource(Resource resource) {
-        if (!StringUtils.isEmpty(resource.getId())) {
-            if (resource.getId().indexOf('/') != -1 || resource.getId().indexOf('\\') != -1 ||
-                    resource.getId().indexOf('?') != -1 || resource.getId().indexOf('#') != -1) {
+    static void validateResource(Resource resource) {
+        DocumentClient.validateResourceId(resource.getId());
+    }
+
+    private static void validateResourceId(String id) {
+        if (!StringUtils.isEmpty(id)) {
+            if (id.indexOf('/') != -1 || id.indexOf('\\') != -1 ||
+                    id.indexOf('?') != -1 || id.indexOf('#') != -1) {
                 throw new IllegalArgumentException("Id contains illegal chars.");
             }
 
-            if (resource.getId().endsWith(" ")) {
+            if (id.endsWith(" ")) {
                 throw new IllegalArgumentException("Id ends with a space.");
             }
         }
     }
+
+    static ObjectNode toDocumentTree(Object document) {
+        JsonNode documentTree = SerializationContext.getObjectMapper().valueToTree(document);
+        if (documentTree == null || !documentTree.isObject()) {
+            throw new IllegalArgumentException("Can't serialize the object into a json object.");
+        }
+
+        JsonNode id = documentTree.get(Constants.Properties.ID);
+        DocumentClient.validateResourceId(id != null && !id.isNull() ? id.getValueAsText() : null);
+        return (ObjectNode) documentTree;
+    }
 }
@@ -0,0 +1,50 @@
+/* 
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.json.JSONObject;
+
+/**
+ * Encodes the JSON property bags of resources into request bodies and decodes response bodies into property bags.
+ * <p>
+ * A serializer is registered through {@link ConnectionPolicy#setDocumentSerializer(DocumentSerializer)} and used for
+ * every request and response of the client. Implementations must be thread-safe. Documents bound to POJOs through the
+ * typed query overloads are always decoded by Jackson.
+ */
+public interface DocumentSerializer {
+
+    /**
+     * Writes a JSON object to the stream as UTF-8 encoded JSON. The stream must not be closed.
+     *
+     * @param jsonObject the JSON object to write.
+     * @param stream the output stream.
+     * @throws IOException if writing to the stream fails.
+     */
+    void serialize(JSONObject jsonObject, OutputStream stream) throws IOException;
+
+    /**
+     * Reads a JSON object from a UTF-8 encoded JSON stream.
+     *
+     * @param stream the input stream.
+     * @return the JSON object.
+     * @throws IOException if reading from the stream fails or the content is not a JSON object.
+     */
+    JSONObject deserialize(InputStream stream) throws IOException;
+
+    /**
+     * Reads the resources of a feed response from a UTF-8 encoded JSON stream.
+     *
+     * @param stream the input stream.
+     * @param resourceKey the name of the property holding the array of resources, such as "Documents".
+     * @return the JSON objects of the resources, or an empty list if the feed has none.
+     * @throws IOException if reading from the stream fails or the content is not a JSON object.
+     */
+    List<JSONObject> deserializeFeed(InputStream stream, String resourceKey) throws IOException;
+}
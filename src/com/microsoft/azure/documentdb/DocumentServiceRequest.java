@@ -13,6 +13,8 @@ import org.apache.commons.codec.binary.Base64;
 import org.apache.http.HttpEntity;
 import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
+import org.codehaus.jackson.JsonNode;
+import org.json.JSONObject;
 
 /**
  * This is core Transport/Connection agnostic request to DocumentService. It is marked internal today. If needs arises
@@ -48,17 +50,18 @@ final class DocumentServiceRequest {
      * Creates a DocumentServiceRequest with an HttpEntity.
      * 
      * @param resourceType the resource type.
-     * @param relativePath the relative URI path.
+     * @param resourceLink the parsed relative URI path.
      * @param httpEntity the HTTP entity.
      * @param headers the request headers.
      */
     private DocumentServiceRequest(ResourceType resourceType,
-                                   String path,
+                                   ResourceLink resourceLink,
                                    HttpEntity body,
                                    Map<String, String> headers) {
         this.resourceType = resourceType;
-        this.path = path;
-        this.resourceId = extractIdFromUri(path);
+        this.path = resourceLink.getLink();
+        this.resourceLink = resourceLink;
+        this.resourceId = this.resourceLink.getResourceId();
 
         if (resourceType == ResourceType.Media) {
             this.resourceId = getAttachmentIdFromMediaId(this.resourceId);
@@ -66,75 +69,102 @@ final class DocumentServiceRequest {
 
         this.body = body;
         this.headers = headers != null ? headers : new HashMap<String, String>();
-        this.isNameBased = Utils.isNameBased(path);
+        this.isNameBased = this.resourceLink.isNameBased();
     }
 
     /**
      * Creates a DocumentServiceRequest with a stream.
      * 
      * @param resourceType the resource type.
-     * @param relativePath the relative URI path.
+     * @param resourceLink the parsed relative URI path.
      * @param stream the input stream of the request.
      * @param headers the request headers.
      * @return the created document service request.
      */
     public static DocumentServiceRequest create(ResourceType resourceType,
-                                                String relativePath,
+                                                ResourceLink resourceLink,
                                                 InputStream stream,
                                                 Map<String, String> headers) {
         HttpEntity body = new InputStreamEntity(stream, Constants.StreamApi.STREAM_LENGTH_EOF);
-        return new DocumentServiceRequest(resourceType, relativePath, body, headers);
+        return new DocumentServiceRequest(resourceType, resourceLink, body, headers);
     }
 
     /**
      * Creates a DocumentServiceRequest with a resource.
      * 
      * @param resourceType the resource type.
-     * @param relativePath the relative URI path.
+     * @param resourceLink the parsed relative URI path.
      * @param resource the resource of the request.
      * @param headers the request headers.
      * @return the created document service request.
      */
     public static DocumentServiceRequest create(ResourceType resourceType,
-                                                String relativePath,
+                                                ResourceLink resourceLink,
                                                 Resource resource,
                                                 Map<String, String> headers) {
-        HttpEntity body = new StringEntity(resource.toString(), StandardCharsets.UTF_8);
-        return new DocumentServiceRequest(resourceType, relativePath, body, headers);
+        // The body is encoded into bytes by the document serializer of the client when the request is sent.
+        DocumentServiceRequest request = new DocumentServiceRequest(resourceType, resourceLink, null, headers);
+        byte[] content = resource instanceof LazyDocument ? ((LazyDocument) resource).getUnmodifiedContent() : null;
+        if (content != null) {
+            request.jsonBody = content;
+        } else {
+            resource.onSave();
+            request.jsonBody = DocumentServiceRequest.copyPropertyBag(resource.propertyBag);
+        }
+
+        return request;
+    }
+
+    /**
+     * Creates a DocumentServiceRequest with a resource represented as a Jackson tree, such as a POJO document.
+     * 
+     * @param resourceType the resource type.
+     * @param resourceLink the parsed relative URI path.
+     * @param resource the resource of the request.
+     * @param headers the request headers.
+     * @return the created document service request.
+     */
+    public static DocumentServiceRequest create(ResourceType resourceType,
+                                                ResourceLink resourceLink,
+                                                JsonNode resource,
+                                                Map<String, String> headers) {
+        // The tree is built by the client for this request alone, so unlike property bags it is not copied.
+        DocumentServiceRequest request = new DocumentServiceRequest(resourceType, resourceLink, null, headers);
+        request.jsonBody = resource;
+        return request;
     }
 
     /**
      * Creates a DocumentServiceRequest with a query.
      * 
      * @param resourceType the resource type.
-     * @param relativePath the relative URI path.
+     * @param resourceLink the parsed relative URI path.
      * @param query the query.
      * @param headers the request headers.
      * @return the created document service request.
      */
     public static DocumentServiceRequest create(ResourceType resourceType,
-                                                String relativePath,
+                                                ResourceLink resourceLink,
                                                 String query,
                                                 Map<String, String> headers) {
         HttpEntity body = new StringEntity(query, StandardCharsets.UTF_8);
-        return new DocumentServiceRequest(resourceType, relativePath, body, headers);
+        return new DocumentServiceRequest(resourceType, resourceLink, body, headers);
     }
 
     /**
      * Creates a DocumentServiceRequest with a query.
      * 
      * @param resourceType the resource type.
-     * @param relativePath the relative URI path.
+     * @param resourceLink the parsed relative URI path.
      * @param query the query.
      * @param headers the request headers.
      * @return the created document service request.
      */
     public static DocumentServiceRequest create(ResourceType resourceType,
-                                                String relativePath,
+                                                ResourceLink resourceLink,
                                                 SqlQuerySpec querySpec,
                                                 DocumentClient.QueryCompatibilityMode queryCompatibilityMode,
                                                 Map<String, String> headers) {
-        String queryText;
         switch (queryCompatibilityMode) {
             case SqlQuery:
                 if (querySpec.getParameters() != null && querySpec.getParameters().size() > 0) {
@@ -143,32 +173,33 @@ final class DocumentServiceRequest {
                                       queryCompatibilityMode.name()));
                 }
 
-                queryText = querySpec.getQueryText();
-                break;
+                HttpEntity body = new StringEntity(querySpec.getQueryText(), StandardCharsets.UTF_8);
+                return new DocumentServiceRequest(resourceType, resourceLink, body, headers);
 
             case Default:
             case Query:
             default:
-                queryText = querySpec.toString();
-                break;
+                // onSave replaces the parameters array rather than modifying it, so the copy taken is not affected
+                // when the same query spec is sent again.
+                querySpec.onSave();
+                DocumentServiceRequest request = new DocumentServiceRequest(resourceType, resourceLink, null, headers);
+                request.jsonBody = DocumentServiceRequest.copyPropertyBag(querySpec.propertyBag);
+                return request;
         }
-
-        HttpEntity body = new StringEntity(queryText, StandardCharsets.UTF_8);
-        return new DocumentServiceRequest(resourceType, relativePath, body, headers);
     }
 
     /**
      * Creates a DocumentServiceRequest without body.
      * 
      * @param resourceType the resource type.
-     * @param relativePath the relative URI path.
+     * @param resourceLink the parsed relative URI path.
      * @param headers the request headers.
      * @return the created document service request.
      */
     public static DocumentServiceRequest create(ResourceType resourceType,
-                                                String relativePath,
+                                                ResourceLink resourceLink,
                                                 Map<String, String> headers) {
-        return new DocumentServiceRequest(resourceType, relativePath, null, headers);
+        return new DocumentServiceRequest(resourceType, resourceLink, null, headers);
     }
 
     /**
@@ -185,41 +216,21 @@ final class DocumentServiceRequest {
         return new DocumentServiceRequest(resourceId, resourceType, null, headers);
     }
 
-    static String extractIdFromUri(String path) {
-        if (path.length() == 0) {
-            return path;
-        }
-        
-        if (path.charAt(path.length() - 1) != '/') {
-            path = path + '/';
-        }
-
-        if (path.charAt(0) != '/') {
-            path = '/' + path;
-        }
-        // This is a hack. We need a padding '=' so that path.split("/")
-        // returns even number of string pieces.
-        // TODO(pushi): Improve the code and remove the hack.
-        path = path + '=';
-
-        // The path will be in the form of 
-        // /[resourceType]/[resourceId]/ or
-        // /[resourceType]/[resourceId]/[resourceType]/
-        // The result of split will be in the form of
-        // [[[resourceType], [resourceId] ... ,[resourceType], ""]
-        // In the first case, to extract the resourceId it will the element
-        // before last ( at length -2 ) and the the type will before it
-        // ( at length -3 )
-        // In the second case, to extract the resource type it will the element
-        // before last ( at length -2 )
-        String[] pathParts = path.split("/");
-        if (pathParts.length % 2 == 0) {
-            // request in form /[resourceType]/[resourceId]/.
-            return pathParts[pathParts.length - 2];
-        } else {
-            // request in form /[resourceType]/[resourceId]/[resourceType]/.
-            return pathParts[pathParts.length - 3];
-        }
+    /**
+     * Copies the property bag of a resource or query spec into the body of a request.
+     * <p>
+     * Bodies are encoded when the request is sent, and again when it is retried, so every request keeps a shallow copy
+     * of the properties as they were when it was created: the caller may go on setting properties of the resource, or
+     * send the same resource or query spec from other threads, without changing the request. Nested objects and
+     * arrays are not copied and must not be modified while the request is in flight.
+     * 
+     * @param propertyBag the property bag.
+     * @return the copy.
+     */
+    private static JSONObject copyPropertyBag(JSONObject propertyBag) {
+        // getNames returns null rather than an empty array for an empty object.
+        String[] names = JSONObject.getNames(propertyBag);
+        return names != null ? new JSONObject(propertyBag, names) : new JSONObject();
     }
 
     static String getAttachmentIdFromMediaId(String mediaId) {
@@ -278,6 +289,17 @@ final class DocumentServiceRequest {
         return this.path;
     }
 
+    private ResourceLink resourceLink;
+
+    /**
+     * Gets the parsed path.
+     *
+     * @return the parsed path, or null if the request was created with a resource id.
+     */
+    ResourceLink getResourceLink() {
+        return this.resourceLink;
+    }
+
     private String queryString;
 
     /**
@@ -309,6 +331,18 @@ final class DocumentServiceRequest {
         return this.body;
     }
 
+    private Object jsonBody;
+
+    /**
+     * Gets the JSON body of the request, which is encoded when the request is sent: a JSONObject encoded by the
+     * document serializer of the client, a Jackson tree, or UTF-8 encoded JSON sent as is.
+     *
+     * @return the JSON body, or null if the body is an HTTP entity or the request has no body.
+     */
+    Object getJsonBody() {
+        return this.jsonBody;
+    }
+
     private Map<String, String> headers;
 
     /**
@@ -320,6 +354,21 @@ final class DocumentServiceRequest {
         return this.headers;
     }
 
+    private RetryOptions retryOptions;
+
+    /**
+     * Gets the retry options applied if the request is throttled.
+     *
+     * @return the retry options, or null if the request is not retried.
+     */
+    RetryOptions getRetryOptions() {
+        return this.retryOptions;
+    }
+
+    void setRetryOptions(RetryOptions retryOptions) {
+        this.retryOptions = retryOptions;
+    }
+
     private String continuation;
 
     /**
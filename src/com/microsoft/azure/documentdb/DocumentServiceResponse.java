@@ -7,9 +7,9 @@ package com.microsoft.azure.documentdb;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,7 +19,8 @@ import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.ParseException;
 import org.apache.http.util.EntityUtils;
-import org.json.JSONArray;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 import org.json.JSONObject;
 
 /**
@@ -31,8 +32,11 @@ final class DocumentServiceResponse implements AutoCloseable {
     private int statusCode;
     private Map<String, String> headersMap = new HashMap<String, String>();
     private HttpEntity httpEntity;
+    private DocumentSerializer documentSerializer;
+
+    DocumentServiceResponse(HttpResponse httpResponse, DocumentSerializer documentSerializer) {
+        this.documentSerializer = documentSerializer;
 
-    DocumentServiceResponse(HttpResponse httpResponse) {
         // Gets status code.
         this.statusCode = httpResponse.getStatusLine().getStatusCode();
 
@@ -69,45 +73,184 @@ final class DocumentServiceResponse implements AutoCloseable {
     }
     
     public <T extends Resource> T getResource(Class<T> c) {
-        String responseBody = this.getReponseBodyAsString();
+        byte[] responseBody = this.getResponseBodyAsBytes();
         if (responseBody == null) return null;
 
+        return this.toResource(responseBody, c);
+    }
+
+    /**
+     * Gets the resources in a feed response. Resource classes are built from the JSON property bags read by the
+     * document serializer, while any other class is bound as a POJO from the documents in the feed.
+     *
+     * @param c the class of the results.
+     * @param <T> the type of the results.
+     * @return the list of results.
+     */
+    public <T> List<T> getQueryResponse(Class<T> c) {
+        if (this.httpEntity == null) {
+            this.close();
+            return null;
+        }
+
         try {
-            return c.getConstructor(String.class).newInstance(responseBody);
-        } catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException
-                | NoSuchMethodException | SecurityException e) {
-            throw new IllegalStateException("Failed to instantiate class object.", e);
+            if (c == LazyDocument.class) {
+                return this.getLazyDocumentQueryResponse(c);
+            } else if (Resource.class.isAssignableFrom(c)) {
+                return this.getResourceQueryResponse(c);
+            } else {
+                return this.getObjectQueryResponse(c);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to parse the query response.", e);
+        } finally {
+            this.close();
         }
     }
 
-    public <T extends Resource> List<T> getQueryResponse(Class<T> c) {
-        String responseBody = this.getReponseBodyAsString();
-        if (responseBody == null) return null;
+    private <T> List<T> getResourceQueryResponse(Class<T> c) throws IOException {
+        Class<? extends Resource> resourceClass = c.asSubclass(Resource.class);
+        List<JSONObject> propertyBags = this.documentSerializer.deserializeFeed(
+                this.httpEntity.getContent(), DocumentServiceResponse.getResourceKey(resourceClass));
+
+        List<T> queryResults = new ArrayList<T>(propertyBags.size());
+        for (JSONObject propertyBag : propertyBags) {
+            queryResults.add(c.cast(DocumentServiceResponse.createResource(resourceClass, propertyBag)));
+        }
 
-        JSONObject jobject = new JSONObject(responseBody);
-        String resourceKey = DocumentServiceResponse.getResourceKey(c);
-        JSONArray jTokenArray = jobject.getJSONArray(resourceKey);
+        return queryResults;
+    }
 
+    private <T> List<T> getLazyDocumentQueryResponse(Class<T> c) throws IOException {
         List<T> queryResults = new ArrayList<T>();
 
-        if (jTokenArray != null) {
-            for (int i = 0; i < jTokenArray.length(); ++i) {
-                JSONObject jToken = jTokenArray.getJSONObject(i);
-                T resource = null;
-                try {
-                    resource = c.getConstructor(String.class).newInstance(jToken.toString());
-                } catch (InstantiationException | IllegalAccessException | IllegalArgumentException |
-                        InvocationTargetException | NoSuchMethodException | SecurityException e) {
-                    throw new IllegalStateException("Failed to instantiate class object.", e);
+        // Each document keeps a copy of its own bytes of the body; its properties are parsed when they are read.
+        byte[] body = EntityUtils.toByteArray(this.httpEntity);
+        JsonParser parser = JsonStreamReader.getJsonFactory().createJsonParser(body);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalStateException("The query response is not a JSON object.");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_ARRAY && Constants.ResourceKeys.DOCUMENTS.equals(name)) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        // Jackson 1.x may report the start of an element at the separator preceding it.
+                        int start = JsonStreamReader.getByteOffset(parser.getTokenLocation());
+                        while (body[start] != '{') {
+                            start++;
+                        }
+
+                        JsonStreamReader.skipValue(parser);
+                        // The parser is now on the closing brace, which is a single byte.
+                        int end = JsonStreamReader.getByteOffset(parser.getTokenLocation()) + 1;
+                        queryResults.add(c.cast(new LazyDocument(Arrays.copyOfRange(body, start, end))));
+                    }
+                } else {
+                    JsonStreamReader.skipValue(parser);
                 }
+            }
+        } finally {
+            parser.close();
+        }
+
+        return queryResults;
+    }
 
-                queryResults.add(resource);
+    private <T> List<T> getObjectQueryResponse(Class<T> c) throws IOException {
+        List<T> queryResults = new ArrayList<T>();
+
+        // The documents are bound straight from the response stream, so neither the body text nor an intermediate
+        // JSON object for the whole feed is held in memory.
+        JsonParser parser = JsonStreamReader.createParser(this.httpEntity.getContent());
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalStateException("The query response is not a JSON object.");
             }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_ARRAY && Constants.ResourceKeys.DOCUMENTS.equals(name)) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        queryResults.add(SerializationContext.getDocumentMapper().readValue(parser, c));
+                    }
+                } else {
+                    JsonStreamReader.skipValue(parser);
+                }
+            }
+        } finally {
+            parser.close();
         }
 
         return queryResults;
     }
-    
+
+    /**
+     * Gets the raw response body.
+     *
+     * @return the response body, or null if the response has no body.
+     */
+    public byte[] getResponseBodyAsBytes() {
+        if (this.httpEntity == null) {
+            this.close();
+            return null;
+        }
+
+        try {
+            return EntityUtils.toByteArray(this.httpEntity);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to get bytes from http entity.", e);
+        } finally {
+            this.close();
+        }
+    }
+
+    /**
+     * Builds a resource from a JSON response body with the document serializer of the response.
+     *
+     * @param body the UTF-8 encoded response body.
+     * @param c the resource class.
+     * @param <T> the resource type.
+     * @return the resource.
+     */
+    <T extends Resource> T toResource(byte[] body, Class<T> c) {
+        try {
+            return DocumentServiceResponse.createResource(
+                    c, this.documentSerializer.deserialize(new ByteArrayInputStream(body)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to parse the response.", e);
+        }
+    }
+
+    /**
+     * Binds a JSON response body to a POJO, or wraps it in a LazyDocument when that class is requested.
+     *
+     * @param body the UTF-8 encoded response body.
+     * @param c the POJO class.
+     * @param <T> the POJO type.
+     * @return the POJO.
+     */
+    static <T> T toObject(byte[] body, Class<T> c) {
+        if (c == LazyDocument.class) {
+            return c.cast(new LazyDocument(body));
+        }
+
+        try {
+            return SerializationContext.getDocumentMapper().readValue(body, c);
+        } catch (IOException e) {
+            throw new IllegalStateException(String.format("Failed to bind the response to %s.", c.getName()), e);
+        }
+    }
+
+    private static <T extends Resource> T createResource(Class<T> c, JSONObject propertyBag) {
+        T resource = SerializationContext.newInstance(c);
+        resource.propertyBag = propertyBag;
+        return resource;
+    }
+
     public InputStream getContentStream() {
         if (this.httpEntity == null) {
             this.close();
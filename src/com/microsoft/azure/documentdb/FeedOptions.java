@@ -110,4 +110,50 @@ public final class FeedOptions {
     public void setEmitVerboseTracesInQuery(Boolean emitVerboseTracesInQuery) {
         this.emitVerboseTracesInQuery = emitVerboseTracesInQuery;
     }
+
+    private Integer maxDegreeOfParallelism;
+
+    /**
+     * Gets the maximum number of document collections queried concurrently when a query on a database link is fanned
+     * out through a partition resolver.
+     * 
+     * @return the max degree of parallelism.
+     */
+    public Integer getMaxDegreeOfParallelism() {
+        return this.maxDegreeOfParallelism;
+    }
+
+    /**
+     * Sets the maximum number of document collections queried concurrently when a query on a database link is fanned
+     * out through a partition resolver. Results are returned in the order the pages arrive rather than collection by
+     * collection, and at most this many pages are buffered ahead of the caller. Queries ordered by property paths are
+     * always merged in order instead. The default of 1 queries the collections one after another.
+     * 
+     * @param maxDegreeOfParallelism the max degree of parallelism.
+     */
+    public void setMaxDegreeOfParallelism(Integer maxDegreeOfParallelism) {
+        this.maxDegreeOfParallelism = maxDegreeOfParallelism;
+    }
+
+    private Integer prefetchPageCount;
+
+    /**
+     * Gets the number of pages fetched in the background ahead of the page being enumerated.
+     * 
+     * @return the prefetch page count.
+     */
+    public Integer getPrefetchPageCount() {
+        return this.prefetchPageCount;
+    }
+
+    /**
+     * Sets the number of pages fetched in the background ahead of the page being enumerated. Read-ahead stops once
+     * this many pages are buffered and resumes as the caller consumes them. No threads are held while the buffer is
+     * full, so an enumeration that is abandoned part way does not leak. The default of 0 fetches each page on demand.
+     * 
+     * @param prefetchPageCount the prefetch page count.
+     */
+    public void setPrefetchPageCount(Integer prefetchPageCount) {
+        this.prefetchPageCount = prefetchPageCount;
+    }
 }
@@ -10,9 +10,9 @@ import org.apache.commons.lang3.StringUtils;
  *
  * Template class used by feed methods (enumeration operations).
  *
- * @param <T> the resource type of the feed response.
+ * @param <T> the resource or POJO type of the feed response.
  */
-public final class FeedResponse<T extends Resource> {
+public final class FeedResponse<T> {
 
     private QueryIterable<T> inner;
     private Map<String, Long> usageHeaders;
@@ -0,0 +1,83 @@
+package com.microsoft.azure.documentdb;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A single page of a feed or query, as returned by {@link AsyncDocumentClient}.
+ * <p>
+ * The next page is read by passing the response continuation to {@link FeedOptions#setRequestContinuation(String)}.
+ * A page may be empty while the feed has more results; the feed ends when the response continuation is null.
+ *
+ * @param <T> the resource or POJO type of the page.
+ */
+public final class FeedResponsePage<T> {
+
+    private final List<T> results;
+    private final Map<String, String> responseHeaders;
+
+    FeedResponsePage(List<T> results, Map<String, String> responseHeaders) {
+        this.results = results;
+        this.responseHeaders = responseHeaders;
+    }
+
+    /**
+     * Gets the results of the page.
+     *
+     * @return the results.
+     */
+    public List<T> getResults() {
+        return this.results;
+    }
+
+    /**
+     * Gets the continuation token to be used for reading the next page.
+     *
+     * @return the response continuation, or null if this is the last page.
+     */
+    public String getResponseContinuation() {
+        return this.responseHeaders.get(HttpConstants.HttpHeaders.CONTINUATION);
+    }
+
+    /**
+     * Gets the number of normalized requests charged.
+     *
+     * @return the request charge.
+     */
+    public double getRequestCharge() {
+        String value = this.responseHeaders.get(HttpConstants.HttpHeaders.REQUEST_CHARGE);
+        if (StringUtils.isEmpty(value)) {
+            return 0;
+        }
+        return Double.valueOf(value);
+    }
+
+    /**
+     * Gets the activity ID for the request.
+     *
+     * @return the activity id.
+     */
+    public String getActivityId() {
+        return this.responseHeaders.get(HttpConstants.HttpHeaders.ACTIVITY_ID);
+    }
+
+    /**
+     * Gets the session token for use in session consistency.
+     *
+     * @return the session token.
+     */
+    public String getSessionToken() {
+        return this.responseHeaders.get(HttpConstants.HttpHeaders.SESSION_TOKEN);
+    }
+
+    /**
+     * Gets the response headers.
+     *
+     * @return the response headers.
+     */
+    public Map<String, String> getResponseHeaders() {
+        return this.responseHeaders;
+    }
+}
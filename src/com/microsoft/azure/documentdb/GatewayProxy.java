@@ -11,16 +11,17 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.HashMap;
-import java.util.Locale;
 import java.util.Map;
-import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpMessage;
+import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.ParseException;
 import org.apache.http.client.HttpClient;
@@ -29,10 +30,14 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.Cancellable;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.impl.conn.ProxySelectorRoutePlanner;
 import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.message.BasicHttpRequest;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.util.EntityUtils;
@@ -43,12 +48,20 @@ final class GatewayProxy {
     private URI serviceEndpoint;
     private Map<String, String> defaultHeaders;
     private String masterKey;
+    private MasterKeySigner masterKeySigner;
     private Map<String, String> resourceTokens;
     private ConnectionPolicy connectionPolicy;
     private HttpClient httpClient;
     private HttpClient mediaHttpClient;
     private PoolingClientConnectionManager connectionManager;
     private DocumentClient.QueryCompatibilityMode queryCompatibilityMode;
+    private AdaptiveConcurrencyLimiter clientConcurrencyLimiter;
+    private ConcurrentHashMap<String, AdaptiveConcurrencyLimiter> collectionConcurrencyLimiters =
+            new ConcurrentHashMap<String, AdaptiveConcurrencyLimiter>();
+    private ConcurrentHashMap<String, RequestUnitRateLimiter> requestUnitRateLimiters =
+            new ConcurrentHashMap<String, RequestUnitRateLimiter>();
+    private AsyncHttpTransport asyncTransport;
+    private boolean asyncTransportClosed;
 
     public GatewayProxy(URI serviceEndpoint,
                         ConnectionPolicy connectionPolicy,
@@ -80,36 +93,122 @@ final class GatewayProxy {
         this.masterKey = masterKey;
         this.resourceTokens = resourceTokens;
 
+        if (masterKey != null) {
+            this.masterKeySigner = new MasterKeySigner(masterKey);
+        }
+
         // Initialize connection manager.
         this.connectionManager = new PoolingClientConnectionManager(SchemeRegistryFactory.createDefault());
         this.connectionManager.setMaxTotal(this.connectionPolicy.getMaxPoolSize());
         this.connectionManager.setDefaultMaxPerRoute(this.connectionPolicy.getMaxPoolSize());
         this.connectionManager.closeIdleConnections(this.connectionPolicy.getIdleConnectionTimeout(), TimeUnit.SECONDS);
+
+        if (this.connectionPolicy.getConcurrencyControlMode() == ConcurrencyControlMode.PerClient) {
+            this.clientConcurrencyLimiter = this.createConcurrencyLimiter();
+        }
+    }
+
+    /**
+     * Gets the adaptive concurrency limiter applied to the requests to a collection.
+     * 
+     * @param collectionLink the collection link, or any link below it.
+     * @return the concurrency limiter, or null if requests to the collection are not limited.
+     */
+    AdaptiveConcurrencyLimiter getConcurrencyLimiter(String collectionLink) {
+        return this.getConcurrencyLimiter(collectionLink != null ? ResourceLink.parse(collectionLink) : null);
+    }
+
+    private AdaptiveConcurrencyLimiter getConcurrencyLimiter(ResourceLink resourceLink) {
+        switch (this.connectionPolicy.getConcurrencyControlMode()) {
+            case PerClient:
+                return this.clientConcurrencyLimiter;
+            case PerCollection:
+                String collectionKey = resourceLink != null ? resourceLink.getCollectionKey() : null;
+                if (collectionKey == null) {
+                    return null;
+                }
+
+                AdaptiveConcurrencyLimiter limiter = this.collectionConcurrencyLimiters.get(collectionKey);
+                if (limiter == null) {
+                    AdaptiveConcurrencyLimiter newLimiter = this.createConcurrencyLimiter();
+                    limiter = this.collectionConcurrencyLimiters.putIfAbsent(collectionKey, newLimiter);
+                    if (limiter == null) {
+                        limiter = newLimiter;
+                    }
+                }
+
+                return limiter;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Registers a request unit budget for the requests to a collection, or updates the existing one.
+     * 
+     * @param collectionLink the collection link.
+     * @param requestUnitsPerSecond the request units per second.
+     */
+    void registerRequestUnitRateLimit(String collectionLink, double requestUnitsPerSecond) {
+        String collectionKey = collectionLink != null ? ResourceLink.parse(collectionLink).getCollectionKey() : null;
+        if (collectionKey == null) {
+            throw new IllegalArgumentException("collectionLink");
+        }
+
+        RequestUnitRateLimiter limiter = this.requestUnitRateLimiters.get(collectionKey);
+        if (limiter == null) {
+            limiter = this.requestUnitRateLimiters.putIfAbsent(collectionKey,
+                                                               new RequestUnitRateLimiter(requestUnitsPerSecond));
+        }
+
+        if (limiter != null) {
+            limiter.setRequestUnitsPerSecond(requestUnitsPerSecond);
+        }
+    }
+
+    /**
+     * Gets the request unit rate limiter applied to the requests to a collection.
+     * 
+     * @param collectionLink the collection link, or any link below it.
+     * @return the rate limiter, or null if no budget is registered for the collection.
+     */
+    RequestUnitRateLimiter getRequestUnitRateLimiter(String collectionLink) {
+        return this.getRequestUnitRateLimiter(collectionLink != null ? ResourceLink.parse(collectionLink) : null);
+    }
+
+    private RequestUnitRateLimiter getRequestUnitRateLimiter(ResourceLink resourceLink) {
+        String collectionKey = resourceLink != null ? resourceLink.getCollectionKey() : null;
+        return collectionKey != null ? this.requestUnitRateLimiters.get(collectionKey) : null;
+    }
+
+    private AdaptiveConcurrencyLimiter createConcurrencyLimiter() {
+        int maxPoolSize = Math.max(1, this.connectionPolicy.getMaxPoolSize());
+        return new AdaptiveConcurrencyLimiter(maxPoolSize, 1, maxPoolSize);
     }
 
     public DocumentServiceResponse doCreate(DocumentServiceRequest request)
         throws DocumentClientException {
-        return this.performPostRequest(request);
+        return this.performRequestWithRetries(request, HttpConstants.HttpMethods.POST);
     }
     
     public DocumentServiceResponse doUpsert(DocumentServiceRequest request)
         throws DocumentClientException {
-        return this.performPostRequest(request);
+        return this.performRequestWithRetries(request, HttpConstants.HttpMethods.POST);
     }
 
     public DocumentServiceResponse doRead(DocumentServiceRequest request)
         throws DocumentClientException {
-        return this.performGetRequest(request);
+        return this.performRequestWithRetries(request, HttpConstants.HttpMethods.GET);
     }
 
     public DocumentServiceResponse doReplace(DocumentServiceRequest request)
         throws DocumentClientException {
-        return this.performPutRequest(request);
+        return this.performRequestWithRetries(request, HttpConstants.HttpMethods.PUT);
     }
 
     public DocumentServiceResponse doDelete(DocumentServiceRequest request)
         throws DocumentClientException {
-        return this.performDeleteRequest(request);
+        return this.performRequestWithRetries(request, HttpConstants.HttpMethods.DELETE);
     }
 
     public DocumentServiceResponse doExecute(DocumentServiceRequest request)
@@ -124,6 +223,71 @@ final class GatewayProxy {
 
     public DocumentServiceResponse doSQLQuery(DocumentServiceRequest request)
         throws DocumentClientException {
+        this.putQueryHeaders(request);
+        return this.performPostRequest(request);
+    }
+
+    <R> Future<R> doCreateAsync(DocumentServiceRequest request, ResponseHandler<R> responseHandler) {
+        return this.performRequestAsync(request,
+                                        HttpConstants.HttpMethods.POST,
+                                        this.createRetryPolicy(request),
+                                        responseHandler);
+    }
+
+    <R> Future<R> doUpsertAsync(DocumentServiceRequest request, ResponseHandler<R> responseHandler) {
+        return this.performRequestAsync(request,
+                                        HttpConstants.HttpMethods.POST,
+                                        this.createRetryPolicy(request),
+                                        responseHandler);
+    }
+
+    <R> Future<R> doReadAsync(DocumentServiceRequest request, ResponseHandler<R> responseHandler) {
+        return this.performRequestAsync(request,
+                                        HttpConstants.HttpMethods.GET,
+                                        this.createRetryPolicy(request),
+                                        responseHandler);
+    }
+
+    <R> Future<R> doReplaceAsync(DocumentServiceRequest request, ResponseHandler<R> responseHandler) {
+        return this.performRequestAsync(request,
+                                        HttpConstants.HttpMethods.PUT,
+                                        this.createRetryPolicy(request),
+                                        responseHandler);
+    }
+
+    <R> Future<R> doDeleteAsync(DocumentServiceRequest request, ResponseHandler<R> responseHandler) {
+        return this.performRequestAsync(request,
+                                        HttpConstants.HttpMethods.DELETE,
+                                        this.createRetryPolicy(request),
+                                        responseHandler);
+    }
+
+    <R> Future<R> doReadFeedAsync(DocumentServiceRequest request,
+                                  ResourceThrottleRetryPolicy retryPolicy,
+                                  ResponseHandler<R> responseHandler) {
+        return this.performRequestAsync(request, HttpConstants.HttpMethods.GET, retryPolicy, responseHandler);
+    }
+
+    <R> Future<R> doSQLQueryAsync(DocumentServiceRequest request,
+                                  ResourceThrottleRetryPolicy retryPolicy,
+                                  ResponseHandler<R> responseHandler) {
+        this.putQueryHeaders(request);
+        return this.performRequestAsync(request, HttpConstants.HttpMethods.POST, retryPolicy, responseHandler);
+    }
+
+    /**
+     * Closes the connections of the asynchronous requests. The synchronous requests are not affected.
+     */
+    synchronized void closeAsyncTransport() {
+        if (this.asyncTransport != null) {
+            this.asyncTransport.close();
+            this.asyncTransport = null;
+        }
+
+        this.asyncTransportClosed = true;
+    }
+
+    private void putQueryHeaders(DocumentServiceRequest request) {
         request.getHeaders().put(HttpConstants.HttpHeaders.IS_QUERY, "true");
 
         switch (this.queryCompatibilityMode) {
@@ -138,8 +302,6 @@ final class GatewayProxy {
                                          RuntimeConstants.MediaTypes.QUERY_JSON);
                 break;
         }
-
-        return this.performPostRequest(request);
     }
 
     private HttpClient getHttpClient(boolean isForMedia) {
@@ -186,54 +348,20 @@ final class GatewayProxy {
         DocumentServiceRequest request,
         String httpMethod) {
         if (this.masterKey != null) {
-            final Date currentTime = new Date();
-            final SimpleDateFormat sdf =
-                new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
-            sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
-            String xDate = sdf.format(currentTime);
-
-            request.getHeaders().put(HttpConstants.HttpHeaders.X_DATE, xDate);
+            request.getHeaders().put(HttpConstants.HttpHeaders.X_DATE, RequestDateCache.getDate());
         }
 
         if (this.masterKey != null || this.resourceTokens != null) {
-            String path = request.getPath();
-            path = Utils.trimBeginingAndEndingSlashes(path);
-            
-            String resourceName = "";
-            
-            if(Utils.isNameBased(path)) {
-                String[] segments = path.split("/");
-                
-                if (segments.length % 2 == 0) {
-                    // if path has even segments, it is the individual resource like dbs/db1/colls/coll1
-                    if (Utils.IsResourceType(segments[segments.length-2])) {
-                        resourceName = path;
-                    }
-                }
-                else {
-                    // if path has odd segments, get the parent(dbs/db1 from dbs/db1/colls)
-                    if (Utils.IsResourceType(segments[segments.length - 1])) {
-                        resourceName = path.substring(0, path.lastIndexOf("/"));
-                    }
-                }
-            }
-            else {
-                resourceName = request.getResourceId().toLowerCase();
-            }
-            
+            ResourceLink resourceLink = request.getResourceLink();
+            String resourceName = resourceLink != null && resourceLink.isNameBased() ?
+                    resourceLink.getAuthorizationResourceName() : request.getResourceId().toLowerCase();
+
             String authorization =
                 this.getAuthorizationToken(resourceName,
                                            request.getPath(),
                                            request.getResourceType(),
                                            httpMethod,
-                                           request.getHeaders(),
-                                           this.masterKey,
-                                           this.resourceTokens);
-            try {
-                authorization = URLEncoder.encode(authorization, "UTF-8");
-            } catch (UnsupportedEncodingException e) {
-                throw new IllegalStateException("Failed to encode authtoken.", e);
-            }
+                                           request.getHeaders());
             request.getHeaders().put(HttpConstants.HttpHeaders.AUTHORIZATION,
                                      authorization);
         }
@@ -253,7 +381,7 @@ final class GatewayProxy {
         }
     }
 
-    private void fillHttpRequestBaseWithHeaders(Map<String, String> headers, HttpRequestBase httpBase) {
+    private void fillHttpRequestBaseWithHeaders(Map<String, String> headers, HttpMessage httpBase) {
         // Add default headers.
         for (Map.Entry<String, String> entry : this.defaultHeaders.entrySet()) {
             httpBase.setHeader(entry.getKey(), entry.getValue());
@@ -292,155 +420,572 @@ final class GatewayProxy {
         }
     }
 
-    private DocumentServiceResponse performDeleteRequest(
-            DocumentServiceRequest request) throws DocumentClientException {
-        putMoreContentIntoDocumentServiceRequest(
-            request,
-            HttpConstants.HttpMethods.DELETE);
-        URI uri;
+    /**
+     * Performs a request and retries it while the service throttles it, as allowed by the retry options of the
+     * request.
+     */
+    private DocumentServiceResponse performRequestWithRetries(DocumentServiceRequest request, String httpMethod)
+            throws DocumentClientException {
+        ResourceThrottleRetryPolicy retryPolicy = this.createRetryPolicy(request);
+        while (true) {
+            try {
+                return this.performRequest(request, httpMethod);
+            } catch (DocumentClientException e) {
+                if (retryPolicy == null ||
+                        e.getStatusCode() != HttpConstants.StatusCodes.TOO_MANY_REQUESTS ||
+                        !retryPolicy.shouldRetry(e)) {
+                    throw e;
+                }
+
+                try {
+                    Thread.sleep(retryPolicy.getRetryAfterInMilliseconds());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting to retry the request.", ie);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the retry policy of a request from its retry options. Requests with a body that cannot be sent twice,
+     * such as a media stream, are not retried.
+     * 
+     * @return the retry policy, or null if the request is not retried.
+     */
+    private ResourceThrottleRetryPolicy createRetryPolicy(DocumentServiceRequest request) {
+        if (request.getRetryOptions() == null ||
+                (request.getBody() != null && !request.getBody().isRepeatable())) {
+            return null;
+        }
+
+        return new ResourceThrottleRetryPolicy(request.getRetryOptions());
+    }
+
+    private DocumentServiceResponse performRequest(DocumentServiceRequest request, String httpMethod)
+            throws DocumentClientException {
+        switch (httpMethod) {
+            case HttpConstants.HttpMethods.GET:
+                return this.performGetRequest(request);
+            case HttpConstants.HttpMethods.POST:
+                return this.performPostRequest(request);
+            case HttpConstants.HttpMethods.PUT:
+                return this.performPutRequest(request);
+            case HttpConstants.HttpMethods.DELETE:
+                return this.performDeleteRequest(request);
+            default:
+                throw new IllegalArgumentException("httpMethod");
+        }
+    }
+
+    private <R> Future<R> performRequestAsync(final DocumentServiceRequest request,
+                                              final String httpMethod,
+                                              ResourceThrottleRetryPolicy retryPolicy,
+                                              final ResponseHandler<R> responseHandler) {
+        final AsyncHttpTransport transport = this.getAsyncTransport();
+
+        // The body is serialized once, on the calling thread, and sent again by the retries.
+        final HttpEntity entity = httpMethod == HttpConstants.HttpMethods.POST ||
+                httpMethod == HttpConstants.HttpMethods.PUT ? this.createEntity(request, false) : null;
+        return RetryExecutor.execute(new RetryExecutor.Attempt<R>() {
+            @Override
+            public Cancellable start(FutureCallback<R> callback) {
+                AsyncExchange<R> exchange =
+                        new AsyncExchange<R>(transport, request, httpMethod, entity, responseHandler, callback);
+                exchange.run();
+                return exchange;
+            }
+        }, retryPolicy != null ? retryPolicy : new ResourceThrottleRetryPolicy(0));
+    }
+
+    private synchronized AsyncHttpTransport getAsyncTransport() {
+        if (this.asyncTransportClosed) {
+            throw new IllegalStateException("The client is closed.");
+        }
+
+        if (this.asyncTransport == null) {
+            this.asyncTransport = new AsyncHttpTransport(this.serviceEndpoint, this.connectionPolicy);
+        }
+
+        return this.asyncTransport;
+    }
+
+    /**
+     * Converts the response of an asynchronous request into its result.
+     *
+     * @param <R> the type of the result.
+     */
+    interface ResponseHandler<R> {
+        /**
+         * Converts a successful response.
+         *
+         * @param response the response.
+         * @return the result.
+         * @throws DocumentClientException if the response cannot be converted.
+         */
+        R handle(DocumentServiceResponse response) throws DocumentClientException;
+    }
+
+    /**
+     * A single attempt of an asynchronous request.
+     * <p>
+     * The attempt waits for the request units and the permit of its collection in turn, as the synchronous requests
+     * do, but without holding a thread: it is rescheduled on the retry timer while the request unit bucket is empty and
+     * queued in the concurrency limiter while no permit is available. It releases what it acquired exactly once, when
+     * the response arrives, when sending fails or when it is cancelled.
+     */
+    private final class AsyncExchange<R> implements Runnable,
+                                                    AdaptiveConcurrencyLimiter.PermitListener,
+                                                    FutureCallback<HttpResponse>,
+                                                    Cancellable {
+        private final AsyncHttpTransport transport;
+        private final DocumentServiceRequest request;
+        private final String httpMethod;
+        private final HttpEntity entity;
+        private final ResponseHandler<R> responseHandler;
+        private final FutureCallback<R> callback;
+        private final RequestUnitRateLimiter rateLimiter;
+        private final String operationType;
+        private final AdaptiveConcurrencyLimiter limiter;
+
+        // Guarded by this exchange.
+        private boolean finished;
+        private boolean requestUnitsAcquired;
+        private double acquiredRequestUnits;
+        private boolean permitAcquired;
+        private long permit;
+        private boolean sent;
+        private Cancellable pending;
+
+        AsyncExchange(AsyncHttpTransport transport,
+                      DocumentServiceRequest request,
+                      String httpMethod,
+                      HttpEntity entity,
+                      ResponseHandler<R> responseHandler,
+                      FutureCallback<R> callback) {
+            this.transport = transport;
+            this.request = request;
+            this.httpMethod = httpMethod;
+            this.entity = entity;
+            this.responseHandler = responseHandler;
+            this.callback = callback;
+            this.rateLimiter = GatewayProxy.this.requestUnitRateLimiters.isEmpty() ?
+                    null : GatewayProxy.this.getRequestUnitRateLimiter(request.getResourceLink());
+            this.operationType = this.rateLimiter != null ? GatewayProxy.getOperationType(request, httpMethod) : null;
+            this.limiter = GatewayProxy.this.getConcurrencyLimiter(request.getResourceLink());
+        }
+
+        /**
+         * Acquires the request units, then the permit, and sends the request.
+         */
+        @Override
+        public void run() {
+            if (this.rateLimiter != null && !this.acquireRequestUnits()) {
+                return;
+            }
+
+            if (this.limiter != null) {
+                this.limiter.acquire(this);
+            } else {
+                this.send();
+            }
+        }
+
+        @Override
+        public void onPermit(long permit) {
+            synchronized (this) {
+                if (!this.finished) {
+                    this.permit = permit;
+                    this.permitAcquired = true;
+                }
+            }
+
+            if (!this.permitAcquired) {
+                // Cancelled while waiting for the permit.
+                this.limiter.onIgnored(permit);
+                return;
+            }
+
+            this.send();
+        }
+
+        @Override
+        public void completed(HttpResponse response) {
+            if (!this.finish(response)) {
+                return;
+            }
+
+            R result;
+            try {
+                GatewayProxy.this.maybeThrowException(response);
+                result = this.responseHandler.handle(
+                        new DocumentServiceResponse(response, GatewayProxy.this.connectionPolicy.getDocumentSerializer()));
+            } catch (DocumentClientException | RuntimeException e) {
+                this.callback.failed(e);
+                return;
+            }
+
+            this.callback.completed(result);
+        }
+
+        @Override
+        public void failed(Exception e) {
+            if (this.finish(null)) {
+                this.callback.failed(e instanceof IOException ?
+                        new IllegalStateException("Http client execution failed.", e) : e);
+            }
+        }
+
+        @Override
+        public void cancelled() {
+            if (this.finish(null)) {
+                this.callback.cancelled();
+            }
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!this.finish(null)) {
+                return false;
+            }
+
+            if (this.limiter != null) {
+                this.limiter.cancel(this);
+            }
+
+            // The pending step no longer changes once the exchange is finished.
+            if (this.pending != null) {
+                this.pending.cancel();
+            }
+
+            return true;
+        }
+
+        private boolean acquireRequestUnits() {
+            double acquiredRequestUnits = this.rateLimiter.tryAcquire(this.operationType);
+            if (acquiredRequestUnits < 0) {
+                Cancellable retry;
+                try {
+                    retry = RetryExecutor.schedule(this, this.rateLimiter.getRefillDelayInMilliseconds());
+                } catch (RejectedExecutionException e) {
+                    this.failed(new IllegalStateException("Failed to wait for request units.", e));
+                    return false;
+                }
+
+                synchronized (this) {
+                    if (!this.finished) {
+                        this.pending = retry;
+                        return false;
+                    }
+                }
+
+                retry.cancel();
+                return false;
+            }
+
+            synchronized (this) {
+                if (!this.finished) {
+                    this.acquiredRequestUnits = acquiredRequestUnits;
+                    this.requestUnitsAcquired = true;
+                    return true;
+                }
+            }
+
+            this.rateLimiter.cancel(acquiredRequestUnits);
+            return false;
+        }
+
+        private void send() {
+            HttpRequest httpRequest;
+            try {
+                GatewayProxy.this.putMoreContentIntoDocumentServiceRequest(this.request, this.httpMethod);
+                String requestTarget = GatewayProxy.getRequestTarget(this.request);
+                if (this.entity != null) {
+                    BasicHttpEntityEnclosingRequest entityRequest =
+                            new BasicHttpEntityEnclosingRequest(this.httpMethod, requestTarget);
+                    entityRequest.setEntity(this.entity);
+                    httpRequest = entityRequest;
+                } else {
+                    httpRequest = new BasicHttpRequest(this.httpMethod, requestTarget);
+                }
+
+                GatewayProxy.this.fillHttpRequestBaseWithHeaders(this.request.getHeaders(), httpRequest);
+            } catch (RuntimeException e) {
+                this.failed(e);
+                return;
+            }
+
+            synchronized (this) {
+                if (this.finished) {
+                    return;
+                }
+
+                this.sent = true;
+            }
+
+            final Future<HttpResponse> response = this.transport.execute(httpRequest, this);
+            Cancellable pending = new Cancellable() {
+                @Override
+                public boolean cancel() {
+                    return response.cancel(true);
+                }
+            };
+
+            synchronized (this) {
+                if (!this.finished) {
+                    this.pending = pending;
+                    return;
+                }
+            }
+
+            pending.cancel();
+        }
+
+        /**
+         * Marks the exchange finished and releases the request units and the permit it holds.
+         *
+         * @param response the response, or null if none was received.
+         * @return true if the exchange was not finished yet.
+         */
+        private boolean finish(HttpResponse response) {
+            synchronized (this) {
+                if (this.finished) {
+                    return false;
+                }
+
+                this.finished = true;
+            }
+
+            if (this.permitAcquired) {
+                GatewayProxy.releasePermit(this.limiter, this.permit, response);
+            }
+
+            if (this.requestUnitsAcquired) {
+                if (this.sent) {
+                    GatewayProxy.settleRequestUnits(this.rateLimiter,
+                                                    this.operationType,
+                                                    this.acquiredRequestUnits,
+                                                    response);
+                } else {
+                    this.rateLimiter.cancel(this.acquiredRequestUnits);
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private static String getRequestTarget(DocumentServiceRequest request) {
         try {
-            uri = new URI("https",
-                          null,
-                          this.serviceEndpoint.getHost(),
-                          this.serviceEndpoint.getPort(),
-                          request.getPath(),
-                          null,  // Query string not used.
-                          null);
+            return new URI(null, null, request.getPath(), null).toASCIIString();
         } catch (URISyntaxException e) {
             throw new IllegalArgumentException("Incorrect uri from request.",
                                                e);
         }
+    }
 
-        HttpDelete httpDelete = new HttpDelete(uri);
-        this.fillHttpRequestBaseWithHeaders(request.getHeaders(), httpDelete);
-        HttpResponse response = null;
+    private URI getRequestUri(DocumentServiceRequest request) {
         try {
-            response = this.getHttpClient(request.getIsMedia()).execute(httpDelete);
-        } catch (IOException e) {
-            httpDelete.releaseConnection();
-            throw new IllegalStateException("Http client execution failed.", e);
+            return new URI("https",
+                           null,
+                           this.serviceEndpoint.getHost(),
+                           this.serviceEndpoint.getPort(),
+                           request.getPath(),
+                           null,  // Query string not used.
+                           null);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Incorrect uri from request.",
+                                               e);
         }
+    }
 
-        this.maybeThrowException(response);
+    private DocumentServiceResponse performDeleteRequest(
+            DocumentServiceRequest request) throws DocumentClientException {
+        putMoreContentIntoDocumentServiceRequest(
+            request,
+            HttpConstants.HttpMethods.DELETE);
+        URI uri = this.getRequestUri(request);
+
+        HttpDelete httpDelete = new HttpDelete(uri);
+        this.fillHttpRequestBaseWithHeaders(request.getHeaders(), httpDelete);
+        HttpResponse response = this.execute(request, httpDelete);
 
         // No content in delete request, we can release the connection directly;
         httpDelete.releaseConnection();
-        return new DocumentServiceResponse(response);
+        return new DocumentServiceResponse(response, this.connectionPolicy.getDocumentSerializer());
     }
 
     private DocumentServiceResponse performGetRequest(DocumentServiceRequest request) throws DocumentClientException {
         putMoreContentIntoDocumentServiceRequest(request,
                                                  HttpConstants.HttpMethods.GET);
-        URI uri;
-        try {
-            uri = new URI("https",
-                          null,
-                          this.serviceEndpoint.getHost(),
-                          this.serviceEndpoint.getPort(),
-                          request.getPath(),
-                          null,  // Query string not used.
-                          null);
-        } catch (URISyntaxException e) {
-            throw new IllegalArgumentException("Incorrect uri from request.",
-                                               e);
-        }
+        URI uri = this.getRequestUri(request);
 
         HttpGet httpGet = new HttpGet(uri);
         this.fillHttpRequestBaseWithHeaders(request.getHeaders(), httpGet);
-        HttpResponse response = null;
-        try {
-            response = this.getHttpClient(request.getIsMedia()).execute(httpGet);
-        } catch (IOException e) {
-            httpGet.releaseConnection();
-            throw new IllegalStateException("Http client execution failed.", e);
-        }
-
-        this.maybeThrowException(response);
-        return new DocumentServiceResponse(response);
+        HttpResponse response = this.execute(request, httpGet);
+        return new DocumentServiceResponse(response, this.connectionPolicy.getDocumentSerializer());
     }
 
     private DocumentServiceResponse performPostRequest(DocumentServiceRequest request) throws DocumentClientException {
         putMoreContentIntoDocumentServiceRequest(
             request,
             HttpConstants.HttpMethods.POST);
-        URI uri;
-        try {
-            uri = new URI("https",
-                          null,
-                          this.serviceEndpoint.getHost(),
-                          this.serviceEndpoint.getPort(),
-                          request.getPath(),
-                          null,  // Query string not used.
-                          null);
-        } catch (URISyntaxException e) {
-            throw new IllegalArgumentException("Incorrect uri from request.",
-                                               e);
-        }
+        URI uri = this.getRequestUri(request);
 
         HttpPost httpPost = new HttpPost(uri);
         this.fillHttpRequestBaseWithHeaders(request.getHeaders(), httpPost);
-        httpPost.setEntity(request.getBody());
-        HttpResponse response = null;
-        try {
-            response = this.getHttpClient(request.getIsMedia()).execute(httpPost);
-        } catch (IOException e) {
-            httpPost.releaseConnection();
-            throw new IllegalStateException("Http client execution failed.", e);
-        }
-
-        this.maybeThrowException(response);
-        return new DocumentServiceResponse(response);
+        httpPost.setEntity(this.createEntity(request));
+        HttpResponse response = this.execute(request, httpPost);
+        return new DocumentServiceResponse(response, this.connectionPolicy.getDocumentSerializer());
     }
 
     private DocumentServiceResponse performPutRequest(DocumentServiceRequest request) throws DocumentClientException {
         putMoreContentIntoDocumentServiceRequest(request,
                                                  HttpConstants.HttpMethods.PUT);
-        URI uri;
-        try {
-            uri = new URI("https",
-                          null,
-                          this.serviceEndpoint.getHost(),
-                          this.serviceEndpoint.getPort(),
-                          request.getPath(),
-                          null,  // Query string not used.
-                          null);
-        } catch (URISyntaxException e) {
-            throw new IllegalArgumentException("Incorrect uri from request.",
-                                               e);
-        }
+        URI uri = this.getRequestUri(request);
 
         HttpPut httpPut = new HttpPut(uri);
         this.fillHttpRequestBaseWithHeaders(request.getHeaders(), httpPut);
-        httpPut.setEntity(request.getBody());
+        httpPut.setEntity(this.createEntity(request));
+        HttpResponse response = this.execute(request, httpPut);
+        return new DocumentServiceResponse(response, this.connectionPolicy.getDocumentSerializer());
+    }
+
+    private HttpResponse execute(DocumentServiceRequest request, HttpRequestBase httpRequest)
+            throws DocumentClientException {
+        RequestUnitRateLimiter rateLimiter = this.requestUnitRateLimiters.isEmpty() ?
+                null : this.getRequestUnitRateLimiter(request.getResourceLink());
+        String operationType = null;
+        double acquiredRequestUnits = 0;
+        AdaptiveConcurrencyLimiter limiter = this.getConcurrencyLimiter(request.getResourceLink());
+        long permit = 0;
+        try {
+            if (rateLimiter != null) {
+                operationType = GatewayProxy.getOperationType(request, httpRequest);
+                acquiredRequestUnits = rateLimiter.acquire(operationType);
+            }
+
+            if (limiter != null) {
+                permit = limiter.acquire();
+            }
+        } catch (InterruptedException e) {
+            if (rateLimiter != null) {
+                rateLimiter.cancel(acquiredRequestUnits);
+            }
+
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to send the request.", e);
+        }
+
         HttpResponse response = null;
         try {
-            httpPut.releaseConnection();
-            response = this.getHttpClient(request.getIsMedia()).execute(httpPut);
-        } catch (IOException e) {
-            throw new IllegalStateException("Http client execution failed.", e);
+            try {
+                response = this.getHttpClient(request.getIsMedia()).execute(httpRequest);
+            } catch (IOException e) {
+                httpRequest.releaseConnection();
+                throw new IllegalStateException("Http client execution failed.", e);
+            }
+
+            this.maybeThrowException(response);
+            return response;
+        } finally {
+            if (limiter != null) {
+                GatewayProxy.releasePermit(limiter, permit, response);
+            }
+
+            if (rateLimiter != null) {
+                GatewayProxy.settleRequestUnits(rateLimiter, operationType, acquiredRequestUnits, response);
+            }
+        }
+    }
+
+    private static void releasePermit(AdaptiveConcurrencyLimiter limiter, long permit, HttpResponse response) {
+        int statusCode = response != null ? response.getStatusLine().getStatusCode() : 0;
+        if (statusCode == HttpConstants.StatusCodes.TOO_MANY_REQUESTS) {
+            limiter.onThrottled(permit);
+        } else if (statusCode > 0 && statusCode < HttpConstants.StatusCodes.MINIMUM_STATUSCODE_AS_ERROR_GATEWAY) {
+            limiter.onSuccess(permit);
+        } else {
+            limiter.onIgnored(permit);
+        }
+    }
+
+    private static void settleRequestUnits(RequestUnitRateLimiter rateLimiter,
+                                           String operationType,
+                                           double acquiredRequestUnits,
+                                           HttpResponse response) {
+        int statusCode = response != null ? response.getStatusLine().getStatusCode() : 0;
+        rateLimiter.onResponse(operationType,
+                               acquiredRequestUnits,
+                               GatewayProxy.getRequestCharge(response),
+                               statusCode == HttpConstants.StatusCodes.TOO_MANY_REQUESTS);
+    }
+
+    private static String getOperationType(DocumentServiceRequest request, HttpRequestBase httpRequest) {
+        return GatewayProxy.getOperationType(request, httpRequest.getMethod());
+    }
+
+    private static String getOperationType(DocumentServiceRequest request, String httpMethod) {
+        String operationType = request.getResourceType().name() + "/" + httpMethod;
+        if (Boolean.parseBoolean(request.getHeaders().get(HttpConstants.HttpHeaders.IS_QUERY))) {
+            operationType += "/Query";
         }
 
-        this.maybeThrowException(response);
-        return new DocumentServiceResponse(response);
+        return operationType;
     }
 
+    private static double getRequestCharge(HttpResponse response) {
+        Header header = response != null ? response.getFirstHeader(HttpConstants.HttpHeaders.REQUEST_CHARGE) : null;
+        if (header == null) {
+            return -1;
+        }
+
+        try {
+            return Double.parseDouble(header.getValue());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private HttpEntity createEntity(DocumentServiceRequest request) {
+        return this.createEntity(request, true);
+    }
+
+    private HttpEntity createEntity(DocumentServiceRequest request, boolean pooled) {
+        Object jsonBody = request.getJsonBody();
+        if (jsonBody == null) {
+            return request.getBody();
+        }
+
+        try {
+            return JsonBodyEntity.create(jsonBody, this.connectionPolicy.getDocumentSerializer(), pooled);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize the request body.", e);
+        }
+    }
+
+    /**
+     * Gets the URL encoded authorization token of a request.
+     */
     private String getAuthorizationToken(String resourceOrOwnerId,
                                          String path,
                                          ResourceType resourceType,
                                          String requestVerb,
-                                         Map<String, String> headers,
-                                         String masterKey,
-                                         Map<String, String> resourceTokens) {
-        if (masterKey != null) {
-            return AuthorizationHelper.GenerateKeyAuthorizationSignature(
+                                         Map<String, String> headers) {
+        if (this.masterKeySigner != null) {
+            return this.masterKeySigner.generateAuthorizationToken(
                 requestVerb,
                 resourceOrOwnerId,
                 resourceType,
-                headers,
-                masterKey);
-        } else if (resourceTokens != null) {
-            return AuthorizationHelper.GetAuthorizationTokenUsingResourceTokens(
-                resourceTokens, path, resourceOrOwnerId);
+                headers);
+        } else if (this.resourceTokens != null) {
+            String authorization = AuthorizationHelper.GetAuthorizationTokenUsingResourceTokens(
+                this.resourceTokens, path, resourceOrOwnerId);
+            try {
+                return URLEncoder.encode(authorization, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException("Failed to encode authtoken.", e);
+            }
         }
 
         return null;
@@ -30,6 +30,21 @@ import java.util.Map;
 /**
  * HashPartitionResolver implements partitioning based on the value of a hash function, allowing you to evenly 
  * distribute requests and data across a number of partitions by implementing PartitionResolver interface. 
+ * <p>
+ * The partition key returned by the PartitionKeyExtractor is hashed as the following bytes, so that documents are
+ * routed the same way by every version of the SDK:
+ * <ul>
+ * <li>String: the UTF-8 encoding of the string.</li>
+ * <li>Long, Integer, Short and Byte: the value as an 8-byte two's complement integer in little-endian order, so the
+ * same number routes the same way whatever its integral type.</li>
+ * <li>Double and Float: the value as an 8-byte IEEE 754 double in little-endian order.</li>
+ * <li>UUID: the 16 bytes of the UUID in big-endian order, as they appear in its string form.</li>
+ * <li>byte[]: the bytes as is.</li>
+ * <li>Composite keys, given as an Object[] or a List of the above types: for each component in order, a one-byte tag
+ * (0x00 for null, 0x01 String, 0x02 integral, 0x03 floating point, 0x04 UUID, 0x05 byte[]) followed by the encoding
+ * of the component. String and byte[] components are preceded by their length in bytes as a 4-byte little-endian
+ * integer. Null components have no encoding and composite keys cannot be nested.</li>
+ * </ul>
  */
 public class HashPartitionResolver implements PartitionResolver {
     // 128 virtual nodes per collections seems to produce good distribution of nodes, so choosing that as default  
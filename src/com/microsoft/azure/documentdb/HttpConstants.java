@@ -166,5 +166,6 @@ class HttpConstants {
     
     public static class StatusCodes {
         public static int MINIMUM_STATUSCODE_AS_ERROR_GATEWAY = 400; 
+        public static int TOO_MANY_REQUESTS = 429;
     }
 }
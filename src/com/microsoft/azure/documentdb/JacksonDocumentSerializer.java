@@ -0,0 +1,124 @@
+/* 
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Document serializer built on the Jackson streaming parser and generator. Property bags are built directly from the
+ * parser tokens and feed responses are read element by element, so no intermediate JSON text or tree is created. This
+ * is the default serializer.
+ */
+public final class JacksonDocumentSerializer implements DocumentSerializer {
+
+    @Override
+    public void serialize(JSONObject jsonObject, OutputStream stream) throws IOException {
+        JsonGenerator generator = JsonStreamReader.getJsonFactory().createJsonGenerator(stream, JsonEncoding.UTF8);
+        try {
+            JacksonDocumentSerializer.writeValue(generator, jsonObject);
+        } finally {
+            // Closing the generator flushes it without closing the stream.
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.close();
+        }
+    }
+
+    @Override
+    public JSONObject deserialize(InputStream stream) throws IOException {
+        JsonParser parser = JsonStreamReader.createParser(stream);
+        try {
+            parser.nextToken();
+            return JsonStreamReader.readObject(parser);
+        } finally {
+            parser.close();
+        }
+    }
+
+    @Override
+    public List<JSONObject> deserializeFeed(InputStream stream, String resourceKey) throws IOException {
+        List<JSONObject> resources = new ArrayList<JSONObject>();
+        JsonParser parser = JsonStreamReader.createParser(stream);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException("The feed is not a JSON object.", parser.getCurrentLocation());
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_ARRAY && resourceKey.equals(name)) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        resources.add(JsonStreamReader.readObject(parser));
+                    }
+                } else {
+                    JsonStreamReader.skipValue(parser);
+                }
+            }
+        } finally {
+            parser.close();
+        }
+
+        return resources;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null || value == JSONObject.NULL) {
+            generator.writeNull();
+        } else if (value instanceof JSONObject) {
+            JSONObject jsonObject = (JSONObject) value;
+            generator.writeStartObject();
+            Iterator<String> keys = jsonObject.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                generator.writeFieldName(key);
+                JacksonDocumentSerializer.writeValue(generator, jsonObject.opt(key));
+            }
+            generator.writeEndObject();
+        } else if (value instanceof JSONArray) {
+            JSONArray jsonArray = (JSONArray) value;
+            generator.writeStartArray();
+            for (int i = 0; i < jsonArray.length(); i++) {
+                JacksonDocumentSerializer.writeValue(generator, jsonArray.opt(i));
+            }
+            generator.writeEndArray();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            generator.writeNumber(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            generator.writeNumber((Long) value);
+        } else if (value instanceof Double) {
+            generator.writeNumber((Double) value);
+        } else if (value instanceof Float) {
+            // Written as a float so that 0.1f is sent as 0.1, the way org.json writes it.
+            generator.writeNumber(((Float) value).floatValue());
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else {
+            // Anything else, such as maps, collections or beans stored in the bag, is written the way org.json does.
+            generator.writeRawValue(JSONObject.valueToString(value));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/* 
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.codehaus.jackson.JsonNode;
+import org.json.JSONObject;
+
+/**
+ * HTTP entity holding a JSON request body encoded straight to UTF-8 bytes.
+ * <p>
+ * Bodies are serialized into a buffer owned by the calling thread, so no intermediate string is created and the buffer
+ * is reused by the next request sent from the thread. The entity is written to the connection from that buffer; it
+ * must therefore be sent before another entity is created on the same thread, which holds for the synchronous requests
+ * of the gateway proxy. Asynchronous requests are sent later from another thread, so their entities own their buffer.
+ * Buffers that grew beyond MAX_POOLED_BUFFER_SIZE are released after use.
+ */
+final class JsonBodyEntity extends AbstractHttpEntity {
+
+    private static final int INITIAL_BUFFER_SIZE = 4 * 1024;
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<BodyBuffer> pooledBuffers = new ThreadLocal<BodyBuffer>() {
+        @Override
+        protected BodyBuffer initialValue() {
+            return new BodyBuffer();
+        }
+    };
+
+    private final byte[] content;
+    private final int length;
+
+    private JsonBodyEntity(byte[] content, int length) {
+        this.content = content;
+        this.length = length;
+    }
+
+    /**
+     * Creates an entity for a JSON request body.
+     *
+     * @param jsonBody the body: a JSON object encoded with the document serializer, a Jackson tree, or UTF-8 encoded
+     *     JSON which is sent as is.
+     * @param documentSerializer the document serializer of the client.
+     * @param pooled true if the entity is sent by the calling thread before it creates another one, in which case the
+     *     body is serialized into the buffer of the thread.
+     * @return the entity.
+     * @throws IOException if the body cannot be serialized.
+     */
+    static JsonBodyEntity create(Object jsonBody, DocumentSerializer documentSerializer, boolean pooled)
+            throws IOException {
+        if (jsonBody instanceof byte[]) {
+            byte[] content = (byte[]) jsonBody;
+            return new JsonBodyEntity(content, content.length);
+        }
+
+        BodyBuffer buffer = pooled ? JsonBodyEntity.pooledBuffers.get() : new BodyBuffer();
+        buffer.reset();
+        if (jsonBody instanceof JSONObject) {
+            documentSerializer.serialize((JSONObject) jsonBody, buffer);
+        } else if (jsonBody instanceof JsonNode) {
+            SerializationContext.getObjectMapper().writeValue(buffer, jsonBody);
+        } else {
+            throw new IllegalArgumentException("jsonBody");
+        }
+
+        if (pooled && buffer.capacity() > JsonBodyEntity.MAX_POOLED_BUFFER_SIZE) {
+            // The entity keeps the array until it has been sent; the thread starts over with a small buffer.
+            JsonBodyEntity.pooledBuffers.remove();
+        }
+
+        return new JsonBodyEntity(buffer.array(), buffer.size());
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.length;
+    }
+
+    @Override
+    public InputStream getContent() {
+        return new ByteArrayInputStream(this.content, 0, this.length);
+    }
+
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+        if (outstream == null) {
+            throw new IllegalArgumentException("outstream");
+        }
+
+        outstream.write(this.content, 0, this.length);
+        outstream.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * Growable byte buffer exposing its backing array.
+     */
+    private static final class BodyBuffer extends ByteArrayOutputStream {
+        BodyBuffer() {
+            super(JsonBodyEntity.INITIAL_BUFFER_SIZE);
+        }
+
+        byte[] array() {
+            return this.buf;
+        }
+
+        int capacity() {
+            return this.buf.length;
+        }
+    }
+}
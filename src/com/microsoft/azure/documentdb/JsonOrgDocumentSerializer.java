@@ -0,0 +1,63 @@
+/* 
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Document serializer built on org.json. It reads every response completely into a JSONObject before extracting the
+ * resources, the way the SDK parsed responses before serializers became pluggable.
+ */
+public final class JsonOrgDocumentSerializer implements DocumentSerializer {
+
+    @Override
+    public void serialize(JSONObject jsonObject, OutputStream stream) throws IOException {
+        Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+        try {
+            jsonObject.write(writer);
+        } catch (JSONException e) {
+            throw new IOException("Failed to write the JSON object.", e);
+        }
+
+        writer.flush();
+    }
+
+    @Override
+    public JSONObject deserialize(InputStream stream) throws IOException {
+        try {
+            return new JSONObject(new JSONTokener(new InputStreamReader(stream, StandardCharsets.UTF_8)));
+        } catch (JSONException e) {
+            throw new IOException("Failed to read the JSON object.", e);
+        }
+    }
+
+    @Override
+    public List<JSONObject> deserializeFeed(InputStream stream, String resourceKey) throws IOException {
+        JSONObject feed = this.deserialize(stream);
+        List<JSONObject> resources = new ArrayList<JSONObject>();
+
+        JSONArray jsonArray = feed.optJSONArray(resourceKey);
+        if (jsonArray != null) {
+            for (int i = 0; i < jsonArray.length(); ++i) {
+                resources.add(jsonArray.getJSONObject(i));
+            }
+        }
+
+        return resources;
+    }
+}
@@ -2,7 +2,6 @@ package com.microsoft.azure.documentdb;
 
 import java.io.IOException;
 import java.lang.reflect.Array;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -159,7 +158,7 @@ class JsonSerializable {
             this.propertyBag.put(propertyName, castedValue != null ? castedValue.propertyBag : null);
         } else {
             // POJO
-            ObjectMapper mapper = new ObjectMapper();
+            ObjectMapper mapper = SerializationContext.getObjectMapper();
             try {
                 this.propertyBag.put(propertyName, new JSONObject(mapper.writeValueAsString(value)));
             } catch (IOException e) {
@@ -172,7 +171,7 @@ class JsonSerializable {
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
     private <T> void internalSetCollection(String propertyName, Collection<T> collection, JSONArray targetArray) {
-            ObjectMapper mapper = null;
+            ObjectMapper mapper = SerializationContext.getObjectMapper();
 
             for (T childValue : collection) {
                 if (childValue == null) {
@@ -194,7 +193,6 @@ class JsonSerializable {
                     targetArray.put(castedValue.propertyBag != null ? castedValue.propertyBag : new JSONObject());
                 } else {
                     // POJO
-                    if (mapper == null) mapper = new ObjectMapper();
                     try {
                         targetArray.put(new JSONObject(mapper.writeValueAsString(childValue)));
                     } catch (IOException e) {
@@ -292,21 +290,13 @@ class JsonSerializable {
                 // Number, String, Boolean
                 return c.cast(jsonObj);
             } else if (JsonSerializable.class.isAssignableFrom(c)) {
-                try {
-                    return c.getConstructor(String.class).newInstance(
-                        jsonObj.toString());
-                } catch (InstantiationException | IllegalAccessException
-                        | IllegalArgumentException | InvocationTargetException
-                        | NoSuchMethodException | SecurityException e) {
-                    throw new IllegalStateException(
-                            "Failed to instantiate class object.", e);
-                }
+                return SerializationContext.newInstance(c, jsonObj.toString());
             } else {
                 // POJO
                 JsonSerializable.checkForValidPOJO(c);
 
                 try {
-                    return new ObjectMapper().readValue(jsonObj.toString(), c);
+                    return SerializationContext.getObjectMapper().readValue(jsonObj.toString(), c);
                 } catch (IOException e) {
                     e.printStackTrace();
                     throw new IllegalStateException("Failed to get POJO.", e);
@@ -353,7 +343,7 @@ class JsonSerializable {
                 isJsonSerializable = true;
             } else {
                 JsonSerializable.checkForValidPOJO(c);
-                mapper = new ObjectMapper();
+                mapper = SerializationContext.getObjectMapper();
             }
 
             for (int i = 0; i < jsonArray.length(); i++) {
@@ -363,13 +353,7 @@ class JsonSerializable {
                 } else if (isJsonSerializable) {
                     JSONObject jsonObject = jsonArray.getJSONObject(i);
                     // JsonSerializable
-                    try {
-                        result.add(c.getConstructor(String.class).newInstance(jsonObject.toString()));
-                    } catch (InstantiationException | IllegalAccessException | IllegalArgumentException |
-                            InvocationTargetException | NoSuchMethodException | SecurityException e) {
-                        throw new IllegalStateException(
-                                "Failed to instantiate class object.", e);
-                    }
+                    result.add(SerializationContext.newInstance(c, jsonObject.toString()));
                 } else {
                     JSONObject jsonObject = jsonArray.getJSONObject(i);
                     // POJO
@@ -423,6 +407,16 @@ class JsonSerializable {
         return result;    
     }
 
+    /**
+     * Gets the raw value of a property as stored in the property bag.
+     * 
+     * @param propertyName the property to get.
+     * @return the value, or null if the property does not exist.
+     */
+    Object opt(String propertyName) {
+        return this.propertyBag.opt(propertyName);
+    }
+
     void onSave() {
     }
 
@@ -449,7 +443,7 @@ class JsonSerializable {
             // POJO
             JsonSerializable.checkForValidPOJO(c);
             try {
-                return new ObjectMapper().readValue(this.toString(), c);
+                return SerializationContext.getObjectMapper().readValue(this.toString(), c);
             } catch (IOException e) {
                 e.printStackTrace();
                 throw new IllegalStateException("Failed to get POJO.", e);
@@ -0,0 +1,169 @@
+package com.microsoft.azure.documentdb;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonLocation;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Builds org.json values directly from a streaming Jackson parser, without first materializing the JSON text.
+ */
+final class JsonStreamReader {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private JsonStreamReader() {
+    }
+
+    /**
+     * Gets the Jackson factory shared by the streaming parsers and generators.
+     *
+     * @return the JSON factory.
+     */
+    static JsonFactory getJsonFactory() {
+        return JsonStreamReader.jsonFactory;
+    }
+
+    /**
+     * Creates a streaming parser over the stream. The encoding is detected from the content.
+     *
+     * @param stream the input stream.
+     * @return the JSON parser.
+     * @throws IOException the IO exception.
+     */
+    static JsonParser createParser(InputStream stream) throws IOException {
+        return JsonStreamReader.jsonFactory.createJsonParser(stream);
+    }
+
+    /**
+     * Gets the offset in the input bytes of a location reported by a parser created over a UTF-8 byte array.
+     *
+     * @param location the location.
+     * @return the byte offset.
+     */
+    static int getByteOffset(JsonLocation location) {
+        // The UTF-8 parser of Jackson 1.x reports the position in the input bytes as the character offset.
+        long offset = location.getByteOffset() >= 0 ? location.getByteOffset() : location.getCharOffset();
+        return (int) offset;
+    }
+
+    /**
+     * Reads the object the parser is positioned on. On return the parser is positioned on the matching END_OBJECT.
+     *
+     * @param parser the JSON parser positioned on a START_OBJECT token.
+     * @return the JSON object.
+     * @throws IOException the IO exception.
+     */
+    static JSONObject readObject(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException("Expected the start of an object.", parser.getCurrentLocation());
+        }
+
+        JSONObject jsonObject = new JSONObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            jsonObject.put(name, JsonStreamReader.readValue(parser));
+        }
+
+        return jsonObject;
+    }
+
+    /**
+     * Skips the value the parser is positioned on, as skipChildren does. On return the parser is positioned on the
+     * last token of the value.
+     * <p>
+     * The UTF-8 parser of Jackson 1.x fails on strings it skips if they hold characters encoded on four bytes, such as
+     * emoji, while it decodes them correctly. Strings are therefore decoded in place rather than skipped.
+     *
+     * @param parser the JSON parser positioned on the first token of a value.
+     * @throws IOException the IO exception.
+     */
+    static void skipValue(JsonParser parser) throws IOException {
+        int depth = 0;
+        JsonToken token = parser.getCurrentToken();
+        while (true) {
+            if (token == null) {
+                throw new JsonParseException("Unexpected end of input.", parser.getCurrentLocation());
+            }
+
+            switch (token) {
+            case START_OBJECT:
+            case START_ARRAY:
+                depth++;
+                break;
+            case END_OBJECT:
+            case END_ARRAY:
+                depth--;
+                break;
+            case VALUE_STRING:
+                parser.getTextCharacters();
+                break;
+            default:
+                break;
+            }
+
+            if (depth == 0) {
+                return;
+            }
+
+            token = parser.nextToken();
+        }
+    }
+
+    /**
+     * Reads the value the parser is positioned on. On return the parser is positioned on the last token of the value.
+     *
+     * @param parser the JSON parser positioned on the first token of a value.
+     * @return the value as used by org.json: JSONObject, JSONArray, String, Boolean, Integer, Long, Double or
+     *     JSONObject.NULL. Numbers too large for a long or a double are returned as their text, as org.json does.
+     * @throws IOException the IO exception.
+     */
+    static Object readValue(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == null) {
+            throw new JsonParseException("Unexpected end of input.", parser.getCurrentLocation());
+        }
+
+        switch (token) {
+        case START_OBJECT:
+            return JsonStreamReader.readObject(parser);
+        case START_ARRAY:
+            JSONArray jsonArray = new JSONArray();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                jsonArray.put(JsonStreamReader.readValue(parser));
+            }
+            return jsonArray;
+        case VALUE_STRING:
+            return parser.getText();
+        case VALUE_NUMBER_INT:
+            switch (parser.getNumberType()) {
+            case INT:
+                return parser.getIntValue();
+            case LONG:
+                return parser.getLongValue();
+            default:
+                // Like org.json, integers beyond the range of a long are kept as their text.
+                return parser.getText();
+            }
+        case VALUE_NUMBER_FLOAT:
+            double value = parser.getDoubleValue();
+            // Like org.json, numbers beyond the range of a double are kept as their text.
+            return Double.isInfinite(value) ? parser.getText() : value;
+        case VALUE_TRUE:
+            return Boolean.TRUE;
+        case VALUE_FALSE:
+            return Boolean.FALSE;
+        case VALUE_NULL:
+            return JSONObject.NULL;
+        default:
+            throw new JsonParseException("Unexpected token " + token + ".", parser.getCurrentLocation());
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/* 
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Represents a document whose properties are parsed on demand.
+ * <p>
+ * A lazy document keeps the UTF-8 encoded JSON it was read from. Reading a property scans the JSON for that top-level
+ * property and parses only its value, which is then kept for later reads; the other properties are skipped without
+ * being materialized. Modifying the document, serializing it or converting it as a whole parses the complete JSON once
+ * and from then on the document behaves like a {@link Document}.
+ * <p>
+ * Lazy documents are returned by queries and reads that ask for the LazyDocument class, for example
+ * {@link DocumentClient#queryDocumentsAs(String, String, FeedOptions, Class)} and
+ * {@link ResourceResponse#getResource(Class)}. Like Document, a lazy document is not thread-safe.
+ */
+public final class LazyDocument extends Document {
+
+    private byte[] content;
+    private Set<String> loadedProperties = new HashSet<String>();
+
+    /**
+     * Initialize a lazy document object from UTF-8 encoded JSON. The array is kept by the document and must not be
+     * modified afterwards.
+     * 
+     * @param content the UTF-8 encoded json that represents the document object.
+     */
+    public LazyDocument(byte[] content) {
+        super();
+        if (content == null) {
+            throw new IllegalArgumentException("content");
+        }
+
+        this.content = content;
+    }
+
+    /**
+     * Checks whether the complete JSON of the document has been parsed.
+     * 
+     * @return true if the document has been fully parsed.
+     */
+    boolean isMaterialized() {
+        return this.content == null;
+    }
+
+    /**
+     * Gets the JSON the document was read from, provided it still represents the document. Objects and arrays handed
+     * out by the getters may have been modified in place, so the JSON is only returned if none were read.
+     *
+     * @return the UTF-8 encoded JSON, or null if the document must be serialized from its properties.
+     */
+    byte[] getUnmodifiedContent() {
+        if (this.content == null) {
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        Iterator<String> keys = this.propertyBag.keys();
+        while (keys.hasNext()) {
+            Object value = this.propertyBag.get(keys.next());
+            if (value instanceof JSONObject || value instanceof JSONArray) {
+                return null;
+            }
+        }
+
+        return this.content;
+    }
+
+    @Override
+    public boolean has(String propertyName) {
+        this.load(propertyName);
+        return super.has(propertyName);
+    }
+
+    @Override
+    public void remove(String propertyName) {
+        this.materialize();
+        super.remove(propertyName);
+    }
+
+    @Override
+    public <T extends Object> void set(String propertyName, T value) {
+        this.materialize();
+        super.set(propertyName, value);
+    }
+
+    @Override
+    public String getString(String propertyName) {
+        this.load(propertyName);
+        return super.getString(propertyName);
+    }
+
+    @Override
+    public Boolean getBoolean(String propertyName) {
+        this.load(propertyName);
+        return super.getBoolean(propertyName);
+    }
+
+    @Override
+    public Integer getInt(String propertyName) {
+        this.load(propertyName);
+        return super.getInt(propertyName);
+    }
+
+    @Override
+    public Long getLong(String propertyName) {
+        this.load(propertyName);
+        return super.getLong(propertyName);
+    }
+
+    @Override
+    public Double getDouble(String propertyName) {
+        this.load(propertyName);
+        return super.getDouble(propertyName);
+    }
+
+    @Override
+    public <T extends Object> T getObject(String propertyName, Class<T> c) {
+        this.load(propertyName);
+        return super.getObject(propertyName, c);
+    }
+
+    @Override
+    public <T extends Object> Collection<T> getCollection(String propertyName, Class<T> c) {
+        this.load(propertyName);
+        return super.getCollection(propertyName, c);
+    }
+
+    @Override
+    public JSONObject getObject(String propertyName) {
+        this.load(propertyName);
+        return super.getObject(propertyName);
+    }
+
+    @Override
+    public Collection<JSONObject> getCollection(String propertyName) {
+        this.load(propertyName);
+        return super.getCollection(propertyName);
+    }
+
+    @Override
+    public HashMap<String, Object> getHashMap() {
+        this.materialize();
+        return super.getHashMap();
+    }
+
+    @Override
+    public <T extends Object> T toObject(Class<T> c) {
+        this.materialize();
+        return super.toObject(c);
+    }
+
+    @Override
+    public String toString(int indentFactor) throws JSONException {
+        this.materialize();
+        return super.toString(indentFactor);
+    }
+
+    @Override
+    Object opt(String propertyName) {
+        this.load(propertyName);
+        return super.opt(propertyName);
+    }
+
+    @Override
+    void onSave() {
+        this.materialize();
+        super.onSave();
+    }
+
+    private void load(String propertyName) {
+        if (this.content == null || !this.loadedProperties.add(propertyName)) {
+            return;
+        }
+
+        try {
+            JsonParser parser = JsonStreamReader.getJsonFactory().createJsonParser(this.content);
+            try {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IllegalStateException("The document is not a JSON object.");
+                }
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    if (propertyName.equals(name)) {
+                        this.propertyBag.put(name, JsonStreamReader.readValue(parser));
+                        return;
+                    }
+
+                    JsonStreamReader.skipValue(parser);
+                }
+            } finally {
+                parser.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to parse the document.", e);
+        }
+    }
+
+    private void materialize() {
+        if (this.content == null) {
+            return;
+        }
+
+        JSONObject properties;
+        try {
+            JsonParser parser = JsonStreamReader.getJsonFactory().createJsonParser(this.content);
+            try {
+                parser.nextToken();
+                properties = JsonStreamReader.readObject(parser);
+            } finally {
+                parser.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to parse the document.", e);
+        }
+
+        // Values handed out before the document was materialized may have been modified by the caller, so they are
+        // kept in place of the freshly parsed ones.
+        @SuppressWarnings("unchecked")
+        Iterator<String> keys = this.propertyBag.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            properties.put(key, this.propertyBag.get(key));
+        }
+
+        this.propertyBag = properties;
+        this.content = null;
+        this.loadedProperties = null;
+    }
+}
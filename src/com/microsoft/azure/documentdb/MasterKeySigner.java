@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Signs requests with a master key, as described for AuthorizationHelper.GenerateKeyAuthorizationSignature.
+ * <p>
+ * The key is decoded once, and each thread keeps its own initialized Mac and buffers for the string to sign, since a
+ * Mac cannot be shared between threads. A signer is created once per GatewayProxy.
+ */
+final class MasterKeySigner {
+
+    private static final String HMAC_SHA256 = "HMACSHA256";
+    // The URL encoded form of "type=master&ver=1.0&sig=".
+    private static final String AUTHORIZATION_PREFIX = "type%3Dmaster%26ver%3D1.0%26sig%3D";
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    // Whether the default charset encodes ASCII as single bytes, which holds for all but the UTF-16 and UTF-32 ones.
+    private static final boolean ASCII_DEFAULT_CHARSET = "\n09AZaz".getBytes().length == 7;
+
+    private final SecretKey signingKey;
+    private final ThreadLocal<SigningContext> signingContext = new ThreadLocal<SigningContext>() {
+        @Override
+        protected SigningContext initialValue() {
+            return new SigningContext(MasterKeySigner.this.createMac());
+        }
+    };
+
+    /**
+     * Creates a signer for a master key.
+     *
+     * @param masterKey the base64 encoded master key.
+     */
+    MasterKeySigner(String masterKey) {
+        if (masterKey == null || masterKey.isEmpty()) {
+            throw new IllegalArgumentException("masterKey");
+        }
+
+        byte[] decodedBytes = Base64.decodeBase64(masterKey.getBytes());
+        this.signingKey = new SecretKeySpec(decodedBytes, MasterKeySigner.HMAC_SHA256);
+
+        // Fails fast if the algorithm is not available or the key is rejected.
+        this.createMac();
+    }
+
+    /**
+     * Generates the authorization token of a request.
+     *
+     * @param verb the verb.
+     * @param resourceIdOrFullName the resource id or full name.
+     * @param resourceType the resource type.
+     * @param headers the request headers.
+     * @return the authorization token, URL encoded.
+     */
+    String generateAuthorizationToken(String verb,
+                                      String resourceIdOrFullName,
+                                      ResourceType resourceType,
+                                      Map<String, String> headers) {
+        return MasterKeySigner.AUTHORIZATION_PREFIX +
+                this.generateSignature(verb, resourceIdOrFullName, resourceType, headers, true);
+    }
+
+    /**
+     * Generates the signature of a request.
+     *
+     * @param verb the verb.
+     * @param resourceIdOrFullName the resource id or full name.
+     * @param resourceType the resource type.
+     * @param headers the request headers.
+     * @param urlEncode whether the base64 signature is URL encoded.
+     * @return the signature.
+     */
+    String generateSignature(String verb,
+                             String resourceIdOrFullName,
+                             ResourceType resourceType,
+                             Map<String, String> headers,
+                             boolean urlEncode) {
+        if (verb == null || verb.isEmpty()) {
+            throw new IllegalArgumentException("verb");
+        }
+
+        if (resourceIdOrFullName == null) {
+            resourceIdOrFullName = "";
+        }
+
+        if (resourceType == null) {
+            throw new IllegalArgumentException("resourceType");
+        }
+
+        if (headers == null) {
+            throw new IllegalArgumentException("headers");
+        }
+
+        SigningContext context = this.signingContext.get();
+        StringBuilder body = context.body;
+        body.setLength(0);
+
+        // Skipping lower casing of resourceId since it may now contain "ID" of the resource as part of the FullName
+        MasterKeySigner.appendLowerCase(body, verb);
+        body.append('\n');
+        MasterKeySigner.appendLowerCase(body, AuthorizationHelper.getResourceSegement(resourceType));
+        body.append('\n');
+        body.append(resourceIdOrFullName);
+        body.append('\n');
+        String xDate = headers.get(HttpConstants.HttpHeaders.X_DATE);
+        String lowerCaseXDate = RequestDateCache.getLowerCaseDate(xDate);
+        if (lowerCaseXDate != null) {
+            body.append(lowerCaseXDate);
+        } else {
+            MasterKeySigner.appendLowerCase(body, xDate);
+        }
+        body.append('\n');
+        MasterKeySigner.appendLowerCase(body, headers.get(HttpConstants.HttpHeaders.HTTP_DATE));
+        body.append('\n');
+
+        byte[] digest = context.sign();
+        String signature = Utils.encodeBase64String(digest);
+        return urlEncode ? MasterKeySigner.urlEncodeBase64(signature, body) : signature;
+    }
+
+    private Mac createMac() {
+        Mac mac;
+        try {
+            mac = Mac.getInstance(MasterKeySigner.HMAC_SHA256);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to get an instance of HMACSHA256.", e);
+        }
+
+        try {
+            mac.init(this.signingKey);
+        } catch (InvalidKeyException e) {
+            throw new IllegalStateException("Failed to initialize the Mac.", e);
+        }
+
+        return mac;
+    }
+
+    /**
+     * Appends the value lower cased. ASCII values, such as the verbs and dates being signed, are lower cased without
+     * going through the default locale; other values go through String.toLowerCase.
+     */
+    private static void appendLowerCase(StringBuilder builder, String value) {
+        if (value == null) {
+            return;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                builder.append(value.toLowerCase());
+                return;
+            }
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            builder.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+    }
+
+    /**
+     * URL encodes a base64 string, the only characters needing it being '+', '/' and '='.
+     */
+    private static String urlEncodeBase64(String value, StringBuilder builder) {
+        builder.setLength(0);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '+' || c == '/' || c == '=') {
+                builder.append('%').append(MasterKeySigner.HEX_DIGITS[c >> 4]).append(MasterKeySigner.HEX_DIGITS[c & 0xF]);
+            } else {
+                builder.append(c);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static final class SigningContext {
+        private final Mac mac;
+        private final StringBuilder body = new StringBuilder(MasterKeySigner.INITIAL_BUFFER_SIZE);
+        private byte[] buffer = new byte[MasterKeySigner.INITIAL_BUFFER_SIZE];
+
+        SigningContext(Mac mac) {
+            this.mac = mac;
+        }
+
+        /**
+         * Signs the body encoded the way String.getBytes does with the default charset. ASCII bodies, which is all of
+         * them unless a resource name has other characters, are copied into the reused buffer.
+         */
+        byte[] sign() {
+            int length = this.body.length();
+            boolean ascii = MasterKeySigner.ASCII_DEFAULT_CHARSET;
+            for (int i = 0; i < length && ascii; i++) {
+                ascii = this.body.charAt(i) < 0x80;
+            }
+
+            if (!ascii) {
+                return this.mac.doFinal(this.body.toString().getBytes());
+            }
+
+            if (this.buffer.length < length) {
+                this.buffer = new byte[Math.max(length, this.buffer.length * 2)];
+            }
+
+            for (int i = 0; i < length; i++) {
+                this.buffer[i] = (byte) this.body.charAt(i);
+            }
+
+            this.mac.update(this.buffer, 0, length);
+            return this.mac.doFinal();
+        }
+    }
+}
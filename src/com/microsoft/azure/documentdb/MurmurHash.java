@@ -39,7 +39,7 @@ import java.nio.ByteOrder;
  *  See http://github.com/yonik/java_util for future updates to this file.
  */
 
-final class MurmurHash implements HashGenerator {
+final class MurmurHash implements PrimitiveHashGenerator {
     @Override
     public byte[] computeHash(byte[] data) {
         if(data == null) {
@@ -53,15 +53,29 @@ final class MurmurHash implements HashGenerator {
         return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(hashValue).array();
     }
     
+    @Override
+    public long computeHashAsLong(byte[] data, int offset, int length) {
+        if(data == null) {
+            throw new IllegalArgumentException("data");
+        }
+
+        return (long)computeHash(data, offset, length, 0) & 0x0FFFFFFFFL;
+    }
+
     /** Returns the MurmurHash3_x86_32 hash. */
     private static int computeHash(byte[] data, int len, int seed) {
+        return computeHash(data, 0, len, seed);
+    }
+
+    /** Returns the MurmurHash3_x86_32 hash of len bytes of data starting at offset. */
+    private static int computeHash(byte[] data, int offset, int len, int seed) {
         final int c1 = 0xcc9e2d51;
         final int c2 = 0x1b873593;
     
         int h1 = seed;
-        int roundedEnd = (len & 0xfffffffc);  // round down to 4 byte block
+        int roundedEnd = offset + (len & 0xfffffffc);  // round down to 4 byte block
     
-        for (int i=0; i<roundedEnd; i+=4) {
+        for (int i=offset; i<roundedEnd; i+=4) {
           // little endian load order
           int k1 = (data[i] & 0xff) | ((data[i+1] & 0xff) << 8) | ((data[i+2] & 0xff) << 16) | (data[i+3] << 24);
           k1 *= c1;
@@ -0,0 +1,658 @@
+package com.microsoft.azure.documentdb;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.codehaus.jackson.JsonNode;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Merges the results of an ORDER BY query executed against several document collections into a single ordered
+ * sequence.
+ * <p>
+ * Every collection returns its results already sorted, so the executor keeps only the current page of each
+ * collection and repeatedly takes the smallest head item through a priority queue. The merged position can be
+ * captured as a composite continuation token, which records for every collection the continuation of its current
+ * page and the number of items of that page already returned.
+ * <p>
+ * Every collection applies the TOP of the query on its own, so the merged sequence is cut at TOP items again, and the
+ * composite continuation records how many of them are left. The sort keys are read from the results, so a query must
+ * select the properties it orders by.
+ *
+ * @param <T> the type of the query results.
+ */
+final class OrderByQueryExecutor<T> {
+
+    private static final Pattern ORDER_BY_ITEM_PATTERN = Pattern.compile("(?is)^(.+?)(?:\\s+(asc|desc))?$");
+    private static final Pattern TOP_PATTERN = Pattern.compile(
+            "(?is)^\\s*select\\s+(?:distinct\\s+)?top\\s+(\\d+|@\\w+)(?![\\w$])");
+    private static final Pattern PATH_SEGMENT_PATTERN = Pattern.compile(
+            "\\G\\s*(?:\\.?\\s*([A-Za-z_$][\\w$]*)|\\[\\s*\"((?:[^\"\\\\]|\\\\.)*)\"\\s*\\]|\\[\\s*'((?:[^'\\\\]|\\\\.)*)'\\s*\\])");
+
+    private static final Logger logger = Logger.getLogger(OrderByQueryExecutor.class.getPackage().getName());
+
+    private static final String LINK_PROPERTY = "link";
+    private static final String TOKEN_PROPERTY = "token";
+    private static final String SKIP_PROPERTY = "skip";
+    private static final String DONE_PROPERTY = "done";
+    private static final String TOP_PROPERTY = "top";
+
+    private final List<SortItem> sortItems;
+    private final List<CollectionCursor> cursors = new ArrayList<CollectionCursor>();
+    private final List<CollectionCursor> cursorsToRefill = new ArrayList<CollectionCursor>();
+    private final PriorityQueue<CollectionCursor> heads;
+    private final List<T> block = new ArrayList<T>();
+    private Map<String, String> responseHeaders;
+    // The number of results still to return under the TOP of the query, or -1 if the query has no TOP.
+    private int remainingCount;
+
+    /**
+     * Initializes a new instance of the OrderByQueryExecutor class.
+     *
+     * @param sortItems the parsed ORDER BY items.
+     * @param top the TOP of the query, or -1 if the query has no TOP.
+     * @param collectionLinks the links of the collections queried.
+     * @param cursors the cursors executing the query against each collection, in the same order as the links.
+     * @param compositeContinuation the composite continuation to resume from, or null to start from the beginning.
+     */
+    OrderByQueryExecutor(List<SortItem> sortItems,
+                         int top,
+                         List<String> collectionLinks,
+                         List<QueryCursor<T>> cursors,
+                         String compositeContinuation) {
+        this.sortItems = sortItems;
+        this.heads = new PriorityQueue<CollectionCursor>(Math.max(1, cursors.size()), new Comparator<CollectionCursor>() {
+            @Override
+            public int compare(CollectionCursor left, CollectionCursor right) {
+                int result = compareSortKeys(left.sortKeys, right.sortKeys);
+                return result != 0 ? result : Integer.compare(left.ordinal, right.ordinal);
+            }
+        });
+
+        Map<String, JSONObject> resumeStates = OrderByQueryExecutor.parseCompositeContinuation(compositeContinuation);
+        this.remainingCount = top;
+
+        for (int i = 0; i < cursors.size(); i++) {
+            String link = collectionLinks.get(i);
+            CollectionCursor cursor = new CollectionCursor(i, link, cursors.get(i));
+
+            JSONObject resumeState = resumeStates != null ?
+                    resumeStates.get(Utils.trimBeginingAndEndingSlashes(link)) : null;
+            if (resumeState != null) {
+                cursor.done = resumeState.optBoolean(DONE_PROPERTY, false);
+                cursor.skip = resumeState.optInt(SKIP_PROPERTY, 0);
+                if (top >= 0) {
+                    this.remainingCount = Math.min(this.remainingCount, resumeState.optInt(TOP_PROPERTY, top));
+                }
+            }
+
+            this.cursors.add(cursor);
+            if (!cursor.done) {
+                this.cursorsToRefill.add(cursor);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a query has an ORDER BY clause outside string literals and parentheses.
+     *
+     * @param queryText the query text.
+     * @return true if the query has an ORDER BY clause.
+     */
+    static boolean hasOrderBy(String queryText) {
+        return queryText != null && OrderByQueryExecutor.findOrderByClause(queryText) >= 0;
+    }
+
+    /**
+     * Parses the ORDER BY clause of a query, which is the last ORDER BY of the query outside string literals and
+     * parentheses.
+     * <p>
+     * Only property paths such as r.address.city can be merged on the client. The results of a query ordered by any
+     * other expression are returned collection after collection, as for a query without ORDER BY.
+     *
+     * @param queryText the query text.
+     * @return the sort items, or null if the query has no ORDER BY clause or one that cannot be merged on the client.
+     */
+    static List<SortItem> parseOrderBy(String queryText) {
+        if (queryText == null) {
+            return null;
+        }
+
+        int clauseStart = OrderByQueryExecutor.findOrderByClause(queryText);
+        if (clauseStart < 0) {
+            return null;
+        }
+
+        String clause = queryText.substring(clauseStart).trim();
+        List<SortItem> sortItems = new ArrayList<SortItem>();
+        for (String item : OrderByQueryExecutor.splitOrderByItems(clause)) {
+            Matcher itemMatcher = ORDER_BY_ITEM_PATTERN.matcher(item.trim());
+            List<String> path = itemMatcher.matches() ?
+                    OrderByQueryExecutor.parsePath(itemMatcher.group(1).trim()) : null;
+            if (path == null) {
+                OrderByQueryExecutor.logger.warning(String.format(
+                        "The ORDER BY clause '%s' cannot be merged across collections. The results of every " +
+                        "collection are returned in turn.", clause));
+                return null;
+            }
+
+            boolean descending = "desc".equalsIgnoreCase(itemMatcher.group(2));
+            sortItems.add(new SortItem(path.toArray(new String[path.size()]), descending));
+        }
+
+        return sortItems;
+    }
+
+    /**
+     * Parses the TOP of a query, given either as a number or as a parameter of the query.
+     *
+     * @param querySpec the query.
+     * @return the TOP of the query, or -1 if the query has no TOP.
+     * @throws IllegalArgumentException if the TOP is a parameter that is missing or is not a number.
+     */
+    static int parseTop(SqlQuerySpec querySpec) {
+        Matcher matcher = TOP_PATTERN.matcher(querySpec.getQueryText());
+        if (!matcher.find()) {
+            return -1;
+        }
+
+        String top = matcher.group(1);
+        if (!top.startsWith("@")) {
+            return Integer.parseInt(top);
+        }
+
+        if (querySpec.getParameters() != null) {
+            for (SqlParameter parameter : querySpec.getParameters()) {
+                Object value = parameter.opt("value");
+                if (top.equals(parameter.getName()) && value instanceof Number) {
+                    return ((Number) value).intValue();
+                }
+            }
+        }
+
+        throw new IllegalArgumentException(String.format(
+                "The TOP parameter '%s' must be given a number to merge the results across collections.", top));
+    }
+
+    /**
+     * Finds the start of the items of the last ORDER BY keyword of a query outside string literals and parentheses.
+     */
+    private static int findOrderByClause(String queryText) {
+        int clauseStart = -1;
+        char quote = 0;
+        int depth = 0;
+        for (int i = 0; i < queryText.length(); i++) {
+            char c = queryText.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            } else if (depth == 0 && OrderByQueryExecutor.isKeywordAt(queryText, i, "order")) {
+                int j = OrderByQueryExecutor.skipWhitespace(queryText, i + 5);
+                if (j > i + 5 && OrderByQueryExecutor.isKeywordAt(queryText, j, "by")) {
+                    clauseStart = j + 2;
+                    i = j + 1;
+                }
+            }
+        }
+
+        return clauseStart;
+    }
+
+    private static boolean isKeywordAt(String queryText, int index, String keyword) {
+        int end = index + keyword.length();
+        return queryText.regionMatches(true, index, keyword, 0, keyword.length()) &&
+                (index == 0 || !OrderByQueryExecutor.isIdentifierPart(queryText.charAt(index - 1))) &&
+                (end == queryText.length() || !OrderByQueryExecutor.isIdentifierPart(queryText.charAt(end)));
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        // A keyword preceded by a dot is a property name, such as r.order.
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.';
+    }
+
+    private static int skipWhitespace(String queryText, int index) {
+        while (index < queryText.length() && Character.isWhitespace(queryText.charAt(index))) {
+            index++;
+        }
+
+        return index;
+    }
+
+    /**
+     * Splits the items of an ORDER BY clause on the commas outside string literals and brackets.
+     */
+    private static List<String> splitOrderByItems(String clause) {
+        List<String> items = new ArrayList<String>();
+        char quote = 0;
+        int depth = 0;
+        int itemStart = 0;
+        for (int i = 0; i < clause.length(); i++) {
+            char c = clause.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                items.add(clause.substring(itemStart, i));
+                itemStart = i + 1;
+            }
+        }
+
+        items.add(clause.substring(itemStart));
+        return items;
+    }
+
+    /**
+     * Parses a property path such as r.address.city or r["address"]["city"], dropping the root alias.
+     */
+    private static List<String> parsePath(String expression) {
+        Matcher matcher = PATH_SEGMENT_PATTERN.matcher(expression);
+        List<String> segments = new ArrayList<String>();
+        int end = 0;
+        while (end < expression.length() && matcher.find()) {
+            String segment = matcher.group(1);
+            if (segment == null) {
+                segment = matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+            }
+
+            segments.add(segment);
+            end = matcher.end();
+        }
+
+        if (end != expression.length() || segments.size() < 2) {
+            return null;
+        }
+
+        return segments.subList(1, segments.size());
+    }
+
+    /**
+     * Gets the response headers of the last page fetched from any of the collections.
+     *
+     * @return the response headers.
+     */
+    Map<String, String> getResponseHeaders() {
+        return this.responseHeaders;
+    }
+
+    /**
+     * Gets the next block of merged results.
+     *
+     * @param maxItemCount the maximum number of items in the block.
+     * @return the merged results, or null if all collections have been drained.
+     * @throws DocumentClientException the document client exception.
+     */
+    List<T> nextBlock(int maxItemCount) throws DocumentClientException {
+        // The block is kept across calls so that results already taken from the collection pages are not lost when
+        // a refill fails and the caller retries.
+        while (this.block.size() < maxItemCount && this.remainingCount != 0) {
+            this.refillCursors();
+
+            CollectionCursor cursor = this.heads.poll();
+            if (cursor == null) {
+                break;
+            }
+
+            this.block.add(cursor.current());
+            cursor.index++;
+            if (this.remainingCount > 0) {
+                this.remainingCount--;
+            }
+
+            if (cursor.index < cursor.page.size()) {
+                this.addHead(cursor);
+            } else {
+                cursor.page = null;
+                if (cursor.queryCursor.hasMoreResults()) {
+                    this.cursorsToRefill.add(cursor);
+                } else {
+                    cursor.done = true;
+                }
+            }
+        }
+
+        if (this.block.isEmpty()) {
+            return null;
+        }
+
+        List<T> results = new ArrayList<T>(this.block);
+        this.block.clear();
+        return results;
+    }
+
+    /**
+     * Gets the composite continuation token for the current merge position.
+     *
+     * @return the composite continuation, or null if all collections have been drained.
+     */
+    String getCompositeContinuation() {
+        if (this.remainingCount == 0) {
+            return null;
+        }
+
+        JSONArray states = new JSONArray();
+        boolean hasMoreResults = false;
+
+        for (CollectionCursor cursor : this.cursors) {
+            JSONObject state = new JSONObject();
+            state.put(LINK_PROPERTY, Utils.trimBeginingAndEndingSlashes(cursor.link));
+
+            if (cursor.done) {
+                state.put(DONE_PROPERTY, true);
+            } else {
+                hasMoreResults = true;
+                if (cursor.page != null) {
+                    state.put(TOKEN_PROPERTY, cursor.pageContinuation != null ? cursor.pageContinuation : JSONObject.NULL);
+                    state.put(SKIP_PROPERTY, cursor.index);
+                } else {
+                    String continuation = cursor.queryCursor.getContinuation();
+                    state.put(TOKEN_PROPERTY, continuation != null ? continuation : JSONObject.NULL);
+                    state.put(SKIP_PROPERTY, cursor.skip);
+                }
+
+                if (this.remainingCount > 0) {
+                    state.put(TOP_PROPERTY, this.remainingCount);
+                }
+            }
+
+            states.put(state);
+        }
+
+        return hasMoreResults ? states.toString() : null;
+    }
+
+    /**
+     * Gets the continuation a collection should resume from according to a composite continuation token.
+     *
+     * @param compositeContinuation the composite continuation token.
+     * @param collectionLink the collection link.
+     * @return the continuation of the collection, or null if the collection starts from the beginning.
+     */
+    static String getCollectionContinuation(String compositeContinuation, String collectionLink) {
+        Map<String, JSONObject> states = OrderByQueryExecutor.parseCompositeContinuation(compositeContinuation);
+        if (states == null) {
+            return null;
+        }
+
+        JSONObject state = states.get(Utils.trimBeginingAndEndingSlashes(collectionLink));
+        if (state == null || state.isNull(TOKEN_PROPERTY)) {
+            return null;
+        }
+
+        return state.optString(TOKEN_PROPERTY, null);
+    }
+
+    /**
+     * Checks whether a collection had no more results according to a composite continuation token.
+     *
+     * @param compositeContinuation the composite continuation token.
+     * @param collectionLink the collection link.
+     * @return true if the collection is done.
+     */
+    static boolean isCollectionDone(String compositeContinuation, String collectionLink) {
+        Map<String, JSONObject> states = OrderByQueryExecutor.parseCompositeContinuation(compositeContinuation);
+        if (states == null) {
+            return false;
+        }
+
+        JSONObject state = states.get(Utils.trimBeginingAndEndingSlashes(collectionLink));
+        return state != null && state.optBoolean(DONE_PROPERTY, false);
+    }
+
+    /**
+     * Creates a composite continuation token from the continuations of whole pages of every collection, as used by
+     * queries that return the pages of several collections unmerged.
+     *
+     * @param collectionLinks the collection links.
+     * @param continuations the continuation of every collection, or null for a collection starting from the beginning.
+     * @param done whether every collection has no more results.
+     * @return the composite continuation, or null if all collections are done.
+     */
+    static String createCompositeContinuation(List<String> collectionLinks, String[] continuations, boolean[] done) {
+        JSONArray states = new JSONArray();
+        boolean hasMoreResults = false;
+
+        for (int i = 0; i < collectionLinks.size(); i++) {
+            JSONObject state = new JSONObject();
+            state.put(LINK_PROPERTY, Utils.trimBeginingAndEndingSlashes(collectionLinks.get(i)));
+
+            if (done[i]) {
+                state.put(DONE_PROPERTY, true);
+            } else {
+                hasMoreResults = true;
+                state.put(TOKEN_PROPERTY, continuations[i] != null ? continuations[i] : JSONObject.NULL);
+                state.put(SKIP_PROPERTY, 0);
+            }
+
+            states.put(state);
+        }
+
+        return hasMoreResults ? states.toString() : null;
+    }
+
+    private static Map<String, JSONObject> parseCompositeContinuation(String compositeContinuation) {
+        if (compositeContinuation == null || !compositeContinuation.trim().startsWith("[")) {
+            return null;
+        }
+
+        Map<String, JSONObject> states = new HashMap<String, JSONObject>();
+        try {
+            JSONArray array = new JSONArray(compositeContinuation);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject state = array.getJSONObject(i);
+                states.put(state.getString(LINK_PROPERTY), state);
+            }
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Invalid composite continuation token.", e);
+        }
+
+        return states;
+    }
+
+    private void refillCursors() throws DocumentClientException {
+        while (!this.cursorsToRefill.isEmpty()) {
+            CollectionCursor cursor = this.cursorsToRefill.get(this.cursorsToRefill.size() - 1);
+
+            while (cursor.queryCursor.hasMoreResults()) {
+                String pageContinuation = cursor.queryCursor.getContinuation();
+                List<T> page = cursor.queryCursor.fetchNextPage();
+                this.responseHeaders = cursor.queryCursor.getResponseHeaders();
+
+                int skip = cursor.skip;
+                cursor.skip = 0;
+                if (page != null && page.size() > skip) {
+                    cursor.page = page;
+                    cursor.pageContinuation = pageContinuation;
+                    cursor.index = skip;
+                    break;
+                }
+            }
+
+            this.cursorsToRefill.remove(this.cursorsToRefill.size() - 1);
+            if (cursor.page != null) {
+                this.addHead(cursor);
+            } else {
+                cursor.done = true;
+            }
+        }
+    }
+
+    /**
+     * Adds a cursor to the heads once its current item has changed, extracting the sort keys of the item so that they
+     * are not extracted again on every comparison.
+     */
+    private void addHead(CollectionCursor cursor) {
+        T item = cursor.current();
+        JsonNode node = item instanceof Resource ? null :
+                SerializationContext.getDocumentMapper().<JsonNode>valueToTree(item);
+
+        Object[] sortKeys = new Object[this.sortItems.size()];
+        for (int i = 0; i < sortKeys.length; i++) {
+            SortItem sortItem = this.sortItems.get(i);
+            sortKeys[i] = node == null ? sortItem.getValue((Resource) item) : sortItem.getValue(node);
+            if (sortKeys[i] == null) {
+                // Results without the sort key cannot be placed in the merged order, as they would be if the service
+                // sorted them; this happens when the query does not select the properties it orders by.
+                throw new IllegalStateException(String.format(
+                        "The query result has no value for the ORDER BY property '%s'. A query ordered across " +
+                        "collections must select the properties it orders by.", sortItem));
+            }
+        }
+
+        cursor.sortKeys = sortKeys;
+        this.heads.add(cursor);
+    }
+
+    private int compareSortKeys(Object[] left, Object[] right) {
+        for (int i = 0; i < left.length; i++) {
+            int result = OrderByQueryExecutor.compareValues(left[i], right[i]);
+            if (result != 0) {
+                return this.sortItems.get(i).descending ? -result : result;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Compares two JSON values using the DocumentDB ordering across types: undefined, null, booleans, numbers and
+     * strings, in that order.
+     */
+    static int compareValues(Object left, Object right) {
+        int result = Integer.compare(OrderByQueryExecutor.typeOrdinal(left), OrderByQueryExecutor.typeOrdinal(right));
+        if (result != 0) {
+            return result;
+        }
+
+        if (left instanceof Boolean) {
+            return Boolean.compare((Boolean) left, (Boolean) right);
+        } else if (left instanceof Number) {
+            return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+        } else if (left instanceof String) {
+            return ((String) left).compareTo((String) right);
+        }
+
+        return 0;
+    }
+
+    private static int typeOrdinal(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value == JSONObject.NULL) {
+            return 1;
+        } else if (value instanceof Boolean) {
+            return 2;
+        } else if (value instanceof Number) {
+            return 3;
+        } else if (value instanceof String) {
+            return 4;
+        }
+
+        return 5;
+    }
+
+    /**
+     * An item of an ORDER BY clause.
+     */
+    static final class SortItem {
+        private final String[] path;
+        private final boolean descending;
+
+        SortItem(String[] path, boolean descending) {
+            this.path = path;
+            this.descending = descending;
+        }
+
+        @Override
+        public String toString() {
+            return StringUtils.join(this.path, '.');
+        }
+
+        Object getValue(Resource item) {
+            Object value = item.opt(this.path[0]);
+            for (int i = 1; i < this.path.length; i++) {
+                if (!(value instanceof JSONObject)) {
+                    return null;
+                }
+
+                value = ((JSONObject) value).opt(this.path[i]);
+            }
+
+            return value;
+        }
+
+        Object getValue(JsonNode node) {
+            for (String segment : this.path) {
+                if (node == null || !node.isObject()) {
+                    return null;
+                }
+
+                node = node.get(segment);
+            }
+
+            if (node == null) {
+                return null;
+            } else if (node.isNull()) {
+                return JSONObject.NULL;
+            } else if (node.isBoolean()) {
+                return node.getBooleanValue();
+            } else if (node.isNumber()) {
+                return node.getNumberValue();
+            } else if (node.isTextual()) {
+                return node.getTextValue();
+            }
+
+            return node;
+        }
+    }
+
+    private final class CollectionCursor {
+        private final int ordinal;
+        private final String link;
+        private final QueryCursor<T> queryCursor;
+        private List<T> page;
+        // The sort keys of the current item, set when the cursor is added to the heads.
+        private Object[] sortKeys;
+        private String pageContinuation;
+        private int index;
+        private int skip;
+        private boolean done;
+
+        CollectionCursor(int ordinal, String link, QueryCursor<T> queryCursor) {
+            this.ordinal = ordinal;
+            this.link = link;
+            this.queryCursor = queryCursor;
+        }
+
+        T current() {
+            return this.page.get(this.index);
+        }
+    }
+}
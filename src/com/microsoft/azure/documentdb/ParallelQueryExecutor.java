@@ -0,0 +1,268 @@
+package com.microsoft.azure.documentdb;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drains a set of query cursors on background threads and hands their non-empty pages to a single consumer as they
+ * arrive.
+ * <p>
+ * At most maxDegreeOfParallelism cursors are drained concurrently, and fetched pages plus fetches in flight never
+ * exceed maxBufferedPageCount. When the buffer is full the cursors are parked rather than blocking a thread, and the
+ * consumer resumes them as it takes pages, so an executor whose consumer goes away holds on to no threads.
+ * <p>
+ * Failures are handed to the consumer in order with the pages. The failed cursor keeps its continuation and is
+ * resumed on the next call to {@link #nextPage()}, so the caller's retry policy decides whether the fetch is retried.
+ *
+ * @param <T> the type of the query results.
+ */
+final class ParallelQueryExecutor<T> {
+
+    private static final ExecutorService executorService = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "documentdb-query-" + this.threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final List<QueryCursor<T>> cursors;
+    private final Semaphore bufferPermits;
+    private final BlockingQueue<Object> pages = new LinkedBlockingQueue<Object>();
+    private final ConcurrentLinkedQueue<QueryCursor<T>> parkedCursors = new ConcurrentLinkedQueue<QueryCursor<T>>();
+    private final AtomicInteger nextCursorIndex;
+    private final AtomicInteger completedCursorCount = new AtomicInteger();
+    private volatile boolean cancelled = false;
+    private QueryCursor<T> failedCursor = null;
+    private boolean isDone = false;
+
+    /**
+     * Initializes a new instance of the ParallelQueryExecutor class and starts fetching.
+     *
+     * @param cursors the cursors to drain. Pages of a cursor are returned in order.
+     * @param maxDegreeOfParallelism the maximum number of cursors drained concurrently.
+     * @param maxBufferedPageCount the maximum number of pages fetched ahead of the consumer.
+     */
+    ParallelQueryExecutor(List<QueryCursor<T>> cursors, int maxDegreeOfParallelism, int maxBufferedPageCount) {
+        this.cursors = cursors;
+        this.bufferPermits = new Semaphore(Math.max(1, maxBufferedPageCount));
+
+        int initialCursorCount = Math.min(Math.max(1, maxDegreeOfParallelism), cursors.size());
+        this.nextCursorIndex = new AtomicInteger(initialCursorCount);
+
+        if (cursors.isEmpty()) {
+            this.pages.add(EndOfResults.INSTANCE);
+            return;
+        }
+
+        for (int i = 0; i < initialCursorCount; i++) {
+            this.parkedCursors.add(cursors.get(i));
+        }
+
+        this.resumeParkedCursors();
+    }
+
+    /**
+     * Waits for the next non-empty page of results.
+     *
+     * @return the next page, or null when all cursors have been drained.
+     * @throws DocumentClientException the document client exception thrown by a background fetch.
+     */
+    Page<T> nextPage() throws DocumentClientException {
+        if (this.isDone) {
+            return null;
+        }
+
+        if (this.failedCursor != null) {
+            this.parkedCursors.add(this.failedCursor);
+            this.failedCursor = null;
+            this.resumeParkedCursors();
+        }
+
+        Object next;
+        try {
+            next = this.pages.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for query results.", e);
+        }
+
+        if (next == EndOfResults.INSTANCE) {
+            this.isDone = true;
+            return null;
+        }
+
+        this.bufferPermits.release();
+        this.resumeParkedCursors();
+
+        if (next instanceof Failure) {
+            @SuppressWarnings("unchecked")
+            Failure<T> failure = (Failure<T>) next;
+            this.failedCursor = failure.cursor;
+
+            if (failure.exception instanceof DocumentClientException) {
+                throw (DocumentClientException) failure.exception;
+            } else if (failure.exception instanceof RuntimeException) {
+                throw (RuntimeException) failure.exception;
+            }
+
+            throw new IllegalStateException(failure.exception);
+        }
+
+        @SuppressWarnings("unchecked")
+        Page<T> page = (Page<T>) next;
+        return page;
+    }
+
+    /**
+     * Stops scheduling further fetches. Fetches already in flight complete but their results are discarded.
+     */
+    void cancel() {
+        this.cancelled = true;
+        this.parkedCursors.clear();
+        this.pages.clear();
+    }
+
+    private void resumeParkedCursors() {
+        while (!this.cancelled && !this.parkedCursors.isEmpty() && this.bufferPermits.tryAcquire()) {
+            QueryCursor<T> cursor = this.parkedCursors.poll();
+            if (cursor == null) {
+                this.bufferPermits.release();
+                break;
+            }
+
+            this.schedule(cursor);
+        }
+    }
+
+    private void schedule(final QueryCursor<T> cursor) {
+        ParallelQueryExecutor.executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                drain(cursor);
+            }
+        });
+    }
+
+    /**
+     * Fetches pages from the cursor while buffer permits are available. The caller holds one permit on entry.
+     */
+    private void drain(QueryCursor<T> cursor) {
+        while (!this.cancelled) {
+            List<T> fetchedItems;
+            try {
+                fetchedItems = cursor.fetchNextPage();
+            } catch (Exception e) {
+                // The permit is handed over to the failure and released once the consumer takes it.
+                this.pages.add(new Failure<T>(cursor, e));
+                return;
+            }
+
+            boolean hasMoreResults = cursor.hasMoreResults();
+
+            if (fetchedItems != null && fetchedItems.size() > 0) {
+                // The permit is handed over to the page and released once the consumer takes it.
+                this.pages.add(new Page<T>(fetchedItems,
+                                           cursor.getResponseHeaders(),
+                                           this.cursors.indexOf(cursor),
+                                           cursor.getContinuation()));
+
+                if (hasMoreResults && !this.bufferPermits.tryAcquire()) {
+                    this.parkedCursors.add(cursor);
+                    this.resumeParkedCursors();
+                    return;
+                }
+            } else if (!hasMoreResults) {
+                this.bufferPermits.release();
+            }
+
+            if (!hasMoreResults) {
+                this.onCursorCompleted();
+                return;
+            }
+        }
+    }
+
+    private void onCursorCompleted() {
+        int index = this.nextCursorIndex.getAndIncrement();
+        if (index < this.cursors.size()) {
+            this.parkedCursors.add(this.cursors.get(index));
+        }
+
+        if (this.completedCursorCount.incrementAndGet() == this.cursors.size()) {
+            this.pages.add(EndOfResults.INSTANCE);
+        } else {
+            this.resumeParkedCursors();
+        }
+    }
+
+    /**
+     * A non-empty page of results fetched by one of the cursors.
+     *
+     * @param <T> the type of the query results.
+     */
+    static final class Page<T> {
+        private final List<T> items;
+        private final Map<String, String> responseHeaders;
+        private final int cursorIndex;
+        private final String continuation;
+
+        Page(List<T> items, Map<String, String> responseHeaders, int cursorIndex, String continuation) {
+            this.items = items;
+            this.responseHeaders = responseHeaders;
+            this.cursorIndex = cursorIndex;
+            this.continuation = continuation;
+        }
+
+        List<T> getItems() {
+            return this.items;
+        }
+
+        Map<String, String> getResponseHeaders() {
+            return this.responseHeaders;
+        }
+
+        /**
+         * Gets the index of the cursor that fetched the page.
+         *
+         * @return the cursor index.
+         */
+        int getCursorIndex() {
+            return this.cursorIndex;
+        }
+
+        /**
+         * Gets the continuation of the cursor after the page, from which the rest of its results can be fetched.
+         *
+         * @return the continuation, or null if the cursor has no more results.
+         */
+        String getContinuation() {
+            return this.continuation;
+        }
+    }
+
+    private static final class Failure<T> {
+        private final QueryCursor<T> cursor;
+        private final Exception exception;
+
+        Failure(QueryCursor<T> cursor, Exception exception) {
+            this.cursor = cursor;
+            this.exception = exception;
+        }
+    }
+
+    private enum EndOfResults {
+        INSTANCE
+    }
+}
@@ -0,0 +1,42 @@
+/*
+The MIT License (MIT)
+Copyright (c) 2014 Microsoft Corporation
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.microsoft.azure.documentdb;
+
+/**
+ * PrimitiveHashGenerator interface to be implemented by hash generators which can return their hash as a number,
+ * so that partition keys can be hashed without allocating arrays. Hash generators that do not implement it are
+ * called through {@link HashGenerator#computeHash(byte[])}.
+ */
+public interface PrimitiveHashGenerator extends HashGenerator {
+    /**
+     * Computes the hash of a range of bytes. The hash must be the value computeHash returns for the same bytes, read
+     * as an unsigned little-endian number, so hash values of up to 8 bytes are supported.
+     *
+     * @param key the array holding the bytes to hash.
+     * @param offset the offset of the first byte.
+     * @param length the number of bytes.
+     * @return the hash value.
+     */
+    long computeHashAsLong(byte[] key, int offset, int length);
+}
@@ -0,0 +1,108 @@
+package com.microsoft.azure.documentdb;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the continuation state of a single feed or query request and fetches its results one page at a time.
+ * <p>
+ * A cursor is not thread-safe; callers must make sure that only one thread fetches from it at a time.
+ *
+ * @param <T> the type of the query results.
+ */
+final class QueryCursor<T> {
+
+    private final DocumentClient client;
+    private final DocumentServiceRequest request;
+    private final ReadType readType;
+    private final Class<T> classT;
+    private String continuation;
+    private boolean hasStarted = false;
+    private Map<String, String> responseHeaders;
+
+    /**
+     * Initializes a new instance of the QueryCursor class.
+     *
+     * @param client the document client.
+     * @param request the request to execute. The request headers are updated with the continuation of each page.
+     * @param readType the read type.
+     * @param classT the resource type class.
+     * @param continuation the continuation to start from, or null to start from the beginning.
+     */
+    QueryCursor(DocumentClient client,
+                DocumentServiceRequest request,
+                ReadType readType,
+                Class<T> classT,
+                String continuation) {
+        this.client = client;
+        this.request = request;
+        this.readType = readType;
+        this.classT = classT;
+        this.continuation = continuation;
+    }
+
+    /**
+     * Gets the request executed by the cursor.
+     *
+     * @return the request.
+     */
+    DocumentServiceRequest getRequest() {
+        return this.request;
+    }
+
+    /**
+     * Gets the continuation token returned with the last fetched page.
+     *
+     * @return the continuation token.
+     */
+    String getContinuation() {
+        return this.continuation;
+    }
+
+    /**
+     * Gets the response headers of the last fetched page.
+     *
+     * @return the response headers.
+     */
+    Map<String, String> getResponseHeaders() {
+        return this.responseHeaders;
+    }
+
+    /**
+     * Checks whether the cursor may still return results.
+     *
+     * @return true if the first page has not been fetched yet or the service returned a continuation.
+     */
+    boolean hasMoreResults() {
+        return !this.hasStarted || !QueryIterable.isNullEmptyOrFalse(this.continuation);
+    }
+
+    /**
+     * Fetches the next page of results. The page may be empty even though more results follow.
+     *
+     * @return the list of fetched resources.
+     * @throws DocumentClientException the document client exception.
+     */
+    List<T> fetchNextPage() throws DocumentClientException {
+        if (!QueryIterable.isNullEmptyOrFalse(this.continuation)) {
+            this.request.getHeaders().put(HttpConstants.HttpHeaders.CONTINUATION, this.continuation);
+        } else {
+            this.request.getHeaders().remove(HttpConstants.HttpHeaders.CONTINUATION);
+        }
+
+        DocumentServiceResponse response;
+        if (this.readType == ReadType.Feed) {
+            response = this.client.doReadFeed(this.request);
+        } else {
+            response = this.client.doQuery(this.request);
+        }
+
+        // A retriable exception may happen. "this.hasStarted" and "this.continuation" must not be set
+        // value before this line.
+        this.hasStarted = true;
+        this.responseHeaders = response.getResponseHeaders();
+        this.continuation = this.responseHeaders.get(HttpConstants.HttpHeaders.CONTINUATION);
+
+        return response.getQueryResponse(this.classT);
+    }
+}
@@ -1,6 +1,7 @@
 package com.microsoft.azure.documentdb;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -11,9 +12,9 @@ import org.apache.commons.lang3.StringUtils;
  * 
  * The template class for iterable resources.
  *
- * @param <T> the resource type of the query iterable.
+ * @param <T> the resource or POJO type of the query iterable.
  */
-public class QueryIterable<T extends Resource> implements Iterable<T> {
+public class QueryIterable<T> implements Iterable<T> {
 
     private DocumentClient client = null;
     private ResourceThrottleRetryPolicy retryPolicy = null;
@@ -31,6 +32,20 @@ public class QueryIterable<T extends Resource> implements Iterable<T> {
     private SqlQuerySpec querySpec = null;
     private ArrayList<String> documentCollectionLinks = new ArrayList<String>();
     private int currentCollectionIndex = 0;
+    private int maxDegreeOfParallelism = 1;
+    private int prefetchPageCount = 0;
+    private ParallelQueryExecutor<T> parallelQueryExecutor = null;
+    // The collection queried by each cursor of the parallel executor, and the continuation after the last page of
+    // every collection returned to the caller, from which the composite continuation is built.
+    private int[] parallelCollectionIndexes = null;
+    private String[] parallelContinuations = null;
+    private boolean[] parallelCollectionsDone = null;
+    private List<OrderByQueryExecutor.SortItem> orderBySortItems = null;
+    private int orderByTop = -1;
+    private int orderByPageSize = QueryIterable.DEFAULT_ORDER_BY_PAGE_SIZE;
+    private OrderByQueryExecutor<T> orderByQueryExecutor = null;
+
+    private static final int DEFAULT_ORDER_BY_PAGE_SIZE = 100;
 
     /**
      * QueryIterable constructor taking in the DocumentServiceRequest(for non-partitioning scenarios)
@@ -39,7 +54,19 @@ public class QueryIterable<T extends Resource> implements Iterable<T> {
                   DocumentServiceRequest request,
                   ReadType readType,
                   Class<T> classT) {
-        this.initialize(client, readType, classT);
+        this(client, request, readType, classT, null);
+    }
+
+    /**
+     * QueryIterable constructor taking in the DocumentServiceRequest(for non-partitioning scenarios) and the feed
+     * options controlling how pages are fetched
+     */
+    protected QueryIterable(DocumentClient client,
+                  DocumentServiceRequest request,
+                  ReadType readType,
+                  Class<T> classT,
+                  FeedOptions options) {
+        this.initialize(client, readType, classT, options);
         this.request = request;
         this.initializeContinuationToken();
         this.reset();
@@ -56,12 +83,33 @@ public class QueryIterable<T extends Resource> implements Iterable<T> {
             Object partitionKey,
             ReadType readType,
             Class<T> classT) {
-        this.initialize(client, readType, classT);
+        this(client,
+             ResourceLink.parse(databaseOrDocumentCollectionLink),
+             querySpec,
+             options,
+             partitionKey,
+             readType,
+             classT);
+    }
+
+    /**
+     * QueryIterable constructor taking in the parsed database or document collection link
+     */
+    QueryIterable(DocumentClient client,
+            ResourceLink databaseOrDocumentCollectionLink,
+            SqlQuerySpec querySpec,
+            FeedOptions options,
+            Object partitionKey,
+            ReadType readType,
+            Class<T> classT) {
+        this.initialize(client, readType, classT, options);
         this.querySpec = querySpec;
         
-        if(Utils.isDatabaseLink(databaseOrDocumentCollectionLink)) {
+        ResourceLink firstCollectionLink = null;
+        if(databaseOrDocumentCollectionLink.isDatabaseLink()) {
             // Gets the partition resolver(if it exists) for the specified database link
-            PartitionResolver partitionResolver = this.client.getPartitionResolver(databaseOrDocumentCollectionLink);
+            PartitionResolver partitionResolver =
+                    this.client.getPartitionResolver(databaseOrDocumentCollectionLink.getLink());
             
             // If the partition resolver exists, get the list of collections(from resolveForRead passing in the partitionKey) which we need to query against
             if(partitionResolver != null) {
@@ -74,12 +122,17 @@ public class QueryIterable<T extends Resource> implements Iterable<T> {
             }
         }
         else {
-            this.documentCollectionLinks.add(databaseOrDocumentCollectionLink);
+            this.documentCollectionLinks.add(databaseOrDocumentCollectionLink.getLink());
+            firstCollectionLink = databaseOrDocumentCollectionLink;
         }
         
         // Create the request for the first collection to be queried
         if(this.documentCollectionLinks != null && this.documentCollectionLinks.size() > 0) {
-            String path = Utils.joinPath(this.documentCollectionLinks.get(this.currentCollectionIndex), Paths.DOCUMENTS_PATH_SEGMENT);
+            if (firstCollectionLink == null) {
+                firstCollectionLink = ResourceLink.parse(this.documentCollectionLinks.get(this.currentCollectionIndex));
+            }
+
+            ResourceLink path = ResourceLink.join(firstCollectionLink, Paths.DOCUMENTS_PATH_SEGMENT);
             this.currentCollectionIndex++;
             
             this.requestHeaders = this.client.getFeedHeaders(options);
@@ -91,7 +144,19 @@ public class QueryIterable<T extends Resource> implements Iterable<T> {
             
             this.initializeContinuationToken();
         }
-        
+
+        // Results of a query ordered by property paths spanning several collections are merged on the client to keep
+        // them ordered; other ORDER BY clauses cannot be evaluated on the client and the collections are read in turn
+        if (this.documentCollectionLinks.size() > 1 && this.querySpec != null && readType == ReadType.Query) {
+            this.orderBySortItems = OrderByQueryExecutor.parseOrderBy(this.querySpec.getQueryText());
+            if (this.orderBySortItems != null) {
+                this.orderByTop = OrderByQueryExecutor.parseTop(this.querySpec);
+            }
+            if (options != null && options.getPageSize() != null && options.getPageSize() > 0) {
+                this.orderByPageSize = options.getPageSize();
+            }
+        }
+
         this.reset();
     }
     
@@ -100,12 +165,21 @@ public class QueryIterable<T extends Resource> implements Iterable<T> {
      */
     private void initialize(DocumentClient client,
             ReadType readType,
-            Class<T> classT) {
+            Class<T> classT,
+            FeedOptions options) {
         this.client = client;
         this.retryPolicy = new ResourceThrottleRetryPolicy(
                 client.getRetryPolicy().getMaxRetryAttemptsOnQuery());
         this.readType = readType;
         this.classT = classT;
+
+        if (options != null && options.getMaxDegreeOfParallelism() != null) {
+            this.maxDegreeOfParallelism = options.getMaxDegreeOfParallelism();
+        }
+
+        if (options != null && options.getPrefetchPageCount() != null) {
+            this.prefetchPageCount = options.getPrefetchPageCount();
+        }
     }
     
     /**
@@ -221,6 +295,13 @@ public class QueryIterable<T extends Resource> implements Iterable<T> {
         this.items.clear();
         this.currentIndex = 0;
         this.hasNext = true;
+
+        if (this.parallelQueryExecutor != null) {
+            this.parallelQueryExecutor.cancel();
+            this.parallelQueryExecutor = null;
+        }
+
+        this.orderByQueryExecutor = null;
     }
 
     /**
@@ -232,6 +313,14 @@ public class QueryIterable<T extends Resource> implements Iterable<T> {
     public List<T> fetchNextBlock()
         throws DocumentClientException {
 
+        if (this.orderBySortItems != null) {
+            return this.fetchNextBlockOrdered();
+        }
+
+        if (this.isBackgroundFetch()) {
+            return this.fetchNextBlockInBackground();
+        }
+
         // Fetch next block of results by executing the query against the current document collection
         List<T> fetchedItems = this.fetchItems();
         
@@ -239,7 +328,7 @@ public class QueryIterable<T extends Resource> implements Iterable<T> {
         // creating separate requests for each collection and execute it
         while(fetchedItems == null) {
             if(this.documentCollectionLinks != null && this.currentCollectionIndex < this.documentCollectionLinks.size()) {
-                String path = Utils.joinPath(this.documentCollectionLinks.get(this.currentCollectionIndex), Paths.DOCUMENTS_PATH_SEGMENT);
+                ResourceLink path = ResourceLink.join(this.documentCollectionLinks.get(this.currentCollectionIndex), Paths.DOCUMENTS_PATH_SEGMENT);
                 this.request = DocumentServiceRequest.create(ResourceType.Document,
                         path,
                         this.querySpec,
@@ -257,6 +346,174 @@ public class QueryIterable<T extends Resource> implements Iterable<T> {
         return fetchedItems;
     }
     
+    /**
+     * Checks whether pages are fetched on background threads, either to query the collections of a partitioned query
+     * concurrently or to read ahead of the caller.
+     *
+     * @return true if pages are fetched in the background.
+     */
+    private boolean isBackgroundFetch() {
+        return (this.maxDegreeOfParallelism > 1 && this.documentCollectionLinks.size() > 1) ||
+                this.prefetchPageCount > 0;
+    }
+
+    /**
+     * Fetch the next block of query results from the pages fetched in the background. When several document
+     * collections are queried concurrently the block comes from whichever collection returned a page first, and the
+     * continuation is a composite of the continuations of every collection, in the format used by ORDER BY merges.
+     *
+     * @return the list of fetched resources.
+     * @throws DocumentClientException the document client exception.
+     */
+    private List<T> fetchNextBlockInBackground()
+        throws DocumentClientException {
+        if (this.parallelQueryExecutor == null) {
+            List<QueryCursor<T>> cursors = new ArrayList<QueryCursor<T>>();
+            if (this.documentCollectionLinks.size() > 1) {
+                // Every collection resumes from its own continuation in the composite continuation, if any
+                int collectionCount = this.documentCollectionLinks.size();
+                this.parallelCollectionIndexes = new int[collectionCount];
+                this.parallelContinuations = new String[collectionCount];
+                this.parallelCollectionsDone = new boolean[collectionCount];
+                for (int i = 0; i < collectionCount; i++) {
+                    String collectionLink = this.documentCollectionLinks.get(i);
+                    this.parallelContinuations[i] = OrderByQueryExecutor.getCollectionContinuation(
+                            this.initialContinuation, collectionLink);
+                    this.parallelCollectionsDone[i] = OrderByQueryExecutor.isCollectionDone(
+                            this.initialContinuation, collectionLink);
+                    if (this.parallelCollectionsDone[i]) {
+                        continue;
+                    }
+
+                    this.parallelCollectionIndexes[cursors.size()] = i;
+                    cursors.add(new QueryCursor<T>(this.client,
+                            this.createCollectionRequest(collectionLink),
+                            this.readType,
+                            this.classT,
+                            this.parallelContinuations[i]));
+                }
+            } else if (this.request != null) {
+                cursors.add(new QueryCursor<T>(this.client,
+                        this.request,
+                        this.readType,
+                        this.classT,
+                        this.initialContinuation));
+            }
+
+            this.hasStarted = true;
+            this.parallelQueryExecutor = new ParallelQueryExecutor<T>(cursors,
+                    this.maxDegreeOfParallelism,
+                    Math.max(this.maxDegreeOfParallelism, this.prefetchPageCount));
+        }
+
+        ParallelQueryExecutor.Page<T> page = this.parallelQueryExecutor.nextPage();
+        if (page == null) {
+            this.continuation = null;
+            return null;
+        }
+
+        this.responseHeaders = page.getResponseHeaders();
+        this.continuation = page.getContinuation();
+        if (this.documentCollectionLinks.size() > 1) {
+            // The continuation of the page only resumes its own collection, so it is replaced with a composite of the
+            // continuations of every collection
+            int collectionIndex = this.parallelCollectionIndexes[page.getCursorIndex()];
+            this.parallelContinuations[collectionIndex] = page.getContinuation();
+            this.parallelCollectionsDone[collectionIndex] = QueryIterable.isNullEmptyOrFalse(page.getContinuation());
+            this.continuation = OrderByQueryExecutor.createCompositeContinuation(this.documentCollectionLinks,
+                    this.parallelContinuations,
+                    this.parallelCollectionsDone);
+
+            this.responseHeaders = new HashMap<String, String>(page.getResponseHeaders());
+            if (this.continuation != null) {
+                this.responseHeaders.put(HttpConstants.HttpHeaders.CONTINUATION, this.continuation);
+            } else {
+                this.responseHeaders.remove(HttpConstants.HttpHeaders.CONTINUATION);
+            }
+        }
+
+        this.items.clear();
+        this.currentIndex = 0;
+        this.items.addAll(page.getItems());
+
+        return page.getItems();
+    }
+
+    /**
+     * Fetch the next block of query results merged across the document collections in ORDER BY order.
+     *
+     * @return the list of fetched resources.
+     * @throws DocumentClientException the document client exception.
+     */
+    private List<T> fetchNextBlockOrdered()
+        throws DocumentClientException {
+        if (this.orderByQueryExecutor == null) {
+            List<QueryCursor<T>> cursors = new ArrayList<QueryCursor<T>>();
+            for (String collectionLink : this.documentCollectionLinks) {
+                cursors.add(new QueryCursor<T>(this.client,
+                        this.createCollectionRequest(collectionLink),
+                        this.readType,
+                        this.classT,
+                        OrderByQueryExecutor.getCollectionContinuation(this.initialContinuation, collectionLink)));
+            }
+
+            this.hasStarted = true;
+            this.orderByQueryExecutor = new OrderByQueryExecutor<T>(this.orderBySortItems,
+                    this.orderByTop,
+                    this.documentCollectionLinks,
+                    cursors,
+                    this.initialContinuation);
+        }
+
+        List<T> fetchedItems = this.orderByQueryExecutor.nextBlock(this.orderByPageSize);
+
+        // The continuation of the merged results is a composite of the continuations of every collection
+        this.continuation = this.orderByQueryExecutor.getCompositeContinuation();
+        this.responseHeaders = new HashMap<String, String>();
+        if (this.orderByQueryExecutor.getResponseHeaders() != null) {
+            this.responseHeaders.putAll(this.orderByQueryExecutor.getResponseHeaders());
+        }
+
+        if (this.continuation != null) {
+            this.responseHeaders.put(HttpConstants.HttpHeaders.CONTINUATION, this.continuation);
+        } else {
+            this.responseHeaders.remove(HttpConstants.HttpHeaders.CONTINUATION);
+        }
+
+        if (fetchedItems == null) {
+            return null;
+        }
+
+        this.items.clear();
+        this.currentIndex = 0;
+        this.items.addAll(fetchedItems);
+
+        return fetchedItems;
+    }
+
+    /**
+     * Creates the request querying a single document collection of a partitioned query.
+     *
+     * @param collectionLink the document collection link.
+     * @return the document service request.
+     */
+    private DocumentServiceRequest createCollectionRequest(String collectionLink) {
+        // Each collection gets its own copy of the headers since the continuation and session token
+        // are tracked per collection.
+        Map<String, String> headers = new HashMap<String, String>();
+        if (this.requestHeaders != null) {
+            headers.putAll(this.requestHeaders);
+            headers.remove(HttpConstants.HttpHeaders.CONTINUATION);
+        }
+
+        ResourceLink path = ResourceLink.join(collectionLink, Paths.DOCUMENTS_PATH_SEGMENT);
+        return DocumentServiceRequest.create(ResourceType.Document,
+                path,
+                this.querySpec,
+                this.client.queryCompatibilityMode,
+                headers);
+    }
+
     /**
      * Fetch items from query results for the current document collection.
      * 
@@ -310,7 +567,7 @@ public class QueryIterable<T extends Resource> implements Iterable<T> {
         return fetchedItems;
     }
 
-    private static boolean isNullEmptyOrFalse(String s) {
+    static boolean isNullEmptyOrFalse(String s) {
         return StringUtils.isEmpty(s) || s.equalsIgnoreCase("false");
     }
 }
@@ -45,6 +45,14 @@ public class Range<T extends Comparable<T>> implements Comparable<Range<T>> {
         this(point, point);
     }
     
+    T getLow() {
+        return this.low;
+    }
+    
+    T getHigh() {
+        return this.high;
+    }
+    
     public boolean contains(Range<T> other) {
         if(other == null) {
             throw new IllegalArgumentException("Range cannot be null.");
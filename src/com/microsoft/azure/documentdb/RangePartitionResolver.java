@@ -24,17 +24,26 @@ SOFTWARE.
 package com.microsoft.azure.documentdb;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * RangePartitionResolver implements partitioning based on the ranges, allowing you to 
  * distribute requests and data across a number of partitions by implementing PartitionResolver interface. 
+ * <p>
+ * The ranges of the partition map are sorted when the resolver is created, so that the ranges holding a partition key
+ * are found by binary search. Changes made to the partition map afterwards are not seen by the resolver.
  */
 public class RangePartitionResolver<T extends Comparable<T>> implements PartitionResolver {
     private PartitionKeyExtractor partitionKeyExtractor;
-    private Map<Range<T>, String> partitionMap;
+    
+    // The ranges sorted by low value, the collection link of each range, and for each position the highest high value
+    // of the ranges up to it, which bounds how far back a search has to go when ranges overlap.
+    private List<Range<T>> ranges;
+    private String[] collectionLinks;
+    private List<T> maxHighs;
     
     /**
      * RangePartitionResolver constructor taking in the PartitionKeyExtractor, a map of Ranges to collection links.
@@ -52,7 +61,29 @@ public class RangePartitionResolver<T extends Comparable<T>> implements Partitio
         }
         
         this.partitionKeyExtractor = partitionKeyExtractor;
-        this.partitionMap = partitionMap;
+        
+        ArrayList<Map.Entry<Range<T>, String>> entries = new ArrayList<Map.Entry<Range<T>, String>>(partitionMap.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<Range<T>, String>>() {
+            @Override
+            public int compare(Map.Entry<Range<T>, String> entry1, Map.Entry<Range<T>, String> entry2) {
+                return entry1.getKey().getLow().compareTo(entry2.getKey().getLow());
+            }
+        });
+        
+        this.ranges = new ArrayList<Range<T>>(entries.size());
+        this.collectionLinks = new String[entries.size()];
+        this.maxHighs = new ArrayList<T>(entries.size());
+        T maxHigh = null;
+        for(int i=0; i < entries.size(); i++) {
+            Range<T> range = entries.get(i).getKey();
+            if(maxHigh == null || range.getHigh().compareTo(maxHigh) > 0) {
+                maxHigh = range.getHigh();
+            }
+            
+            this.ranges.add(range);
+            this.collectionLinks[i] = entries.get(i).getValue();
+            this.maxHighs.add(maxHigh);
+        }
     }
     
     /**
@@ -69,13 +100,13 @@ public class RangePartitionResolver<T extends Comparable<T>> implements Partitio
         }
         
         Object partitionKey = this.partitionKeyExtractor.getPartitionKey(document);
-        Range<T> containingRange = this.getContainingRange(partitionKey);
+        int containingRange = this.getContainingRange(partitionKey);
         
-        if (containingRange == null) {
+        if (containingRange < 0) {
             throw new UnsupportedOperationException(String.format("A containing range for {0} doesn't exist in the partition map.", partitionKey));
         }
         
-        return this.partitionMap.get(containingRange);
+        return this.collectionLinks[containingRange];
     }
     
     /**
@@ -87,46 +118,48 @@ public class RangePartitionResolver<T extends Comparable<T>> implements Partitio
      */
     @Override
     public Iterable<String> resolveForRead(Object partitionKey) {
-        Set<Range<T>> intersectingRanges = this.getIntersectingRanges(partitionKey);
-
         ArrayList<String> collectionsLinks = new ArrayList<String>();
-        for(Range<T> range : intersectingRanges) {
-            collectionsLinks.add(this.partitionMap.get(range));
+        for(int range : this.getIntersectingRanges(partitionKey)) {
+            collectionsLinks.add(this.collectionLinks[range]);
         }
         
         return collectionsLinks;
     }
     
     /**
-     * Gets the containing range based on the partition key.
+     * Gets the position of the containing range based on the partition key, or -1 if there is none.
      */
     @SuppressWarnings("unchecked")
-    private Range<T> getContainingRange(Object partitionKey) {
+    private int getContainingRange(Object partitionKey) {
+        if(partitionKey == null) {
+            throw new IllegalArgumentException("partitionKey");
+        }
+        
         try {
             T TPartitionKey = (T)partitionKey;
-        
-            for(Range<T> range : this.partitionMap.keySet()) {
-                if (range.contains(TPartitionKey)) {
-                    return range;
+            
+            for(int i = this.findLastRangeStartingAtOrBefore(TPartitionKey);
+                    i >= 0 && this.maxHighs.get(i).compareTo(TPartitionKey) >= 0; i--) {
+                if (this.ranges.get(i).getHigh().compareTo(TPartitionKey) >= 0) {
+                    return i;
                 }
             }
         } catch(ClassCastException ex) {
             throw new UnsupportedOperationException(String.format("Unsupported type %s for partitionKey.", partitionKey.getClass()), ex.getCause());
         }
 
-        return null;
+        return -1;
     }
     
     /**
-     * Gets the intersecting ranges based on the partition key.
+     * Gets the positions of the intersecting ranges based on the partition key, in ascending order.
      */
     @SuppressWarnings("unchecked")
-    private Set<Range<T>> getIntersectingRanges(Object partitionKey) {
-        Set<Range<T>> intersectingRanges = new HashSet<Range<T>>();
-        Set<Range<T>> partitionKeyRanges = new HashSet<Range<T>>();
+    private List<Integer> getIntersectingRanges(Object partitionKey) {
+        List<Integer> intersectingRanges = new ArrayList<Integer>();
         
         if (partitionKey == null) {
-            return this.partitionMap.keySet();
+            return this.getAllRanges();
         }
         
         try {
@@ -134,7 +167,7 @@ public class RangePartitionResolver<T extends Comparable<T>> implements Partitio
             // We can only check for Range<?> in this case
             if(partitionKey instanceof Range<?>) {
                 Range<T> RangeTPartitionKey = (Range<T>)partitionKey;
-                partitionKeyRanges.add(RangeTPartitionKey);
+                this.addIntersectingRanges(RangeTPartitionKey.getLow(), RangeTPartitionKey.getHigh(), intersectingRanges);
             }
             // Check the type of partitionKey to be Iterable<T>. We can only check for Iterable<?> in this case
             else if(partitionKey instanceof Iterable<?>) {
@@ -142,29 +175,29 @@ public class RangePartitionResolver<T extends Comparable<T>> implements Partitio
                 for(T TPartitionKey : IterableTPartitionKey) {
                     // If any of the partition key values is null, we return the complete collection set 
                     if(TPartitionKey == null) {
-                        return this.partitionMap.keySet();
+                        return this.getAllRanges();
                     }
                     else {
-                        partitionKeyRanges.add(new Range<T>(TPartitionKey));
+                        this.addIntersectingRanges(TPartitionKey, TPartitionKey, intersectingRanges);
+                    }
+                }
+                
+                // A range holding several of the partition keys is returned once.
+                Collections.sort(intersectingRanges);
+                for(int i = intersectingRanges.size() - 1; i > 0; i--) {
+                    if(intersectingRanges.get(i).equals(intersectingRanges.get(i - 1))) {
+                        intersectingRanges.remove(i);
                     }
                 }
             }
             // Check the type of partitionKey to be T. We can only check for Comparable<?> in this case since T extends Comparable<T>
             else if(partitionKey instanceof Comparable<?>) {
                 T TPartitionKey = (T)partitionKey;
-                partitionKeyRanges.add(new Range<T>(TPartitionKey));
+                this.addIntersectingRanges(TPartitionKey, TPartitionKey, intersectingRanges);
             }
             else {
                 throw new UnsupportedOperationException(String.format("Unsupported type %s for partitionKey.", partitionKey.getClass()));
             }
-        
-            for(Range<T> partitionKeyRange : partitionKeyRanges) {
-                for(Range<T> range : this.partitionMap.keySet()) {
-                    if (range.intersect(partitionKeyRange)) {
-                        intersectingRanges.add(range);
-                    }
-                }
-            }
         }
         catch(ClassCastException ex) {
             throw new UnsupportedOperationException(String.format("The type parameter of RangePartitionResolver doesn't matches with the type of the partition key passed."), ex.getCause());
@@ -172,4 +205,45 @@ public class RangePartitionResolver<T extends Comparable<T>> implements Partitio
             
         return intersectingRanges;
     }
+    
+    /**
+     * Adds the positions of the ranges intersecting [low, high] in ascending order.
+     */
+    private void addIntersectingRanges(T low, T high, List<Integer> intersectingRanges) {
+        int count = intersectingRanges.size();
+        for(int i = this.findLastRangeStartingAtOrBefore(high); i >= 0 && this.maxHighs.get(i).compareTo(low) >= 0; i--) {
+            if(this.ranges.get(i).getHigh().compareTo(low) >= 0) {
+                intersectingRanges.add(i);
+            }
+        }
+        
+        Collections.reverse(intersectingRanges.subList(count, intersectingRanges.size()));
+    }
+    
+    /**
+     * Binary searches the position of the last range whose low value is lower than or equal to the value, or -1.
+     */
+    private int findLastRangeStartingAtOrBefore(T value) {
+        int low = 0;
+        int high = this.ranges.size();
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(this.ranges.get(mid).getLow().compareTo(value) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        
+        return low - 1;
+    }
+    
+    private List<Integer> getAllRanges() {
+        List<Integer> allRanges = new ArrayList<Integer>(this.ranges.size());
+        for(int i=0; i < this.ranges.size(); i++) {
+            allRanges.add(i);
+        }
+        
+        return allRanges;
+    }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Caches the RFC 1123 date sent in the x-ms-date header of the requests signed with a master key.
+ * <p>
+ * The header has a resolution of one second, so the formatted date, and its lower cased form used in the signature,
+ * are only computed again when the second changes. The current date is published through a volatile field and can be
+ * read by any thread without locking.
+ */
+final class RequestDateCache {
+
+    private static final SimpleDateFormat formatter = RequestDateCache.createFormatter();
+    private static volatile CachedDate current = RequestDateCache.format(System.currentTimeMillis());
+
+    private RequestDateCache() {
+    }
+
+    /**
+     * Gets the current date, formatted as in "Fri, 16 Oct 2026 10:00:00 GMT".
+     *
+     * @return the current date.
+     */
+    static String getDate() {
+        long now = System.currentTimeMillis();
+        CachedDate cachedDate = RequestDateCache.current;
+        if (now < cachedDate.startMillis || now >= cachedDate.startMillis + 1000) {
+            cachedDate = RequestDateCache.format(now);
+            RequestDateCache.current = cachedDate;
+        }
+
+        return cachedDate.date;
+    }
+
+    /**
+     * Gets the lower cased form of a date returned by getDate, if it is the one currently cached.
+     *
+     * @param date the date.
+     * @return the lower cased date, or null if the date is not the one currently cached.
+     */
+    static String getLowerCaseDate(String date) {
+        CachedDate cachedDate = RequestDateCache.current;
+        // Compares references, the date being the instance the cache handed out.
+        return cachedDate.date == date ? cachedDate.lowerCaseDate : null;
+    }
+
+    private static CachedDate format(long now) {
+        long startMillis = now - now % 1000;
+        String date;
+        // SimpleDateFormat is not thread safe, but formatting only happens once per second.
+        synchronized (RequestDateCache.formatter) {
+            date = RequestDateCache.formatter.format(new Date(startMillis));
+        }
+
+        return new CachedDate(startMillis, date);
+    }
+
+    private static SimpleDateFormat createFormatter() {
+        SimpleDateFormat formatter = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        formatter.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return formatter;
+    }
+
+    private static final class CachedDate {
+        private final long startMillis;
+        private final String date;
+        private final String lowerCaseDate;
+
+        CachedDate(long startMillis, String date) {
+            this.startMillis = startMillis;
+            this.date = date;
+            this.lowerCaseDate = date.toLowerCase(Locale.US);
+        }
+    }
+}
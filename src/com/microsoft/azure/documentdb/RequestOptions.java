@@ -171,4 +171,25 @@ public final class RequestOptions {
     public void setOfferType(String offerType) {
         this.offerType = offerType;
     }
+
+    private RetryOptions retryOptions;
+
+    /**
+     * Gets the retry options applied if the request is throttled.
+     * 
+     * @return the retry options, or null to use the retry options of the connection policy.
+     */
+    public RetryOptions getRetryOptions() {
+        return this.retryOptions;
+    }
+
+    /**
+     * Sets the retry options applied if the request is throttled, instead of the retry options of the connection
+     * policy.
+     * 
+     * @param retryOptions the retry options.
+     */
+    public void setRetryOptions(RetryOptions retryOptions) {
+        this.retryOptions = retryOptions;
+    }
 }
@@ -0,0 +1,195 @@
+/* 
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces the requests to a collection so that they stay within a request unit budget.
+ * <p>
+ * The limiter is a token bucket refilled at the configured number of request units per second and holding at most one
+ * second worth of request units. Before a request is sent, its expected charge is taken from the bucket; when the
+ * bucket is empty the request waits until it has been refilled, blocking its thread for DocumentClient, or on a timer
+ * for AsyncDocumentClient. The bucket may go into debt for a request costing more than it holds, which delays the
+ * requests that follow.
+ * <p>
+ * The expected charge is learned per operation type, such as a document create or a document query, from the request
+ * charges the service reports, as an exponentially weighted moving average. Once the response arrives, the difference
+ * between the expected and the actual charge is returned to or taken from the bucket. A throttled response empties the
+ * bucket.
+ * <p>
+ * Limiters are registered through {@link DocumentClient#registerRequestUnitRateLimit(String, double)}.
+ */
+public final class RequestUnitRateLimiter {
+
+    // Used until the first charge of an operation type has been observed; a point read of a small document costs one.
+    private static final double DEFAULT_REQUEST_CHARGE = 1;
+    // The weight of the latest charge in the moving average.
+    private static final double SMOOTHING_FACTOR = 0.2;
+
+    private final Map<String, Double> estimatedRequestCharges = new HashMap<String, Double>();
+    private double requestUnitsPerSecond;
+    private double availableRequestUnits;
+    private long lastRefillTime;
+
+    RequestUnitRateLimiter(double requestUnitsPerSecond) {
+        if (!(requestUnitsPerSecond > 0)) {
+            throw new IllegalArgumentException("requestUnitsPerSecond");
+        }
+
+        this.requestUnitsPerSecond = requestUnitsPerSecond;
+        this.availableRequestUnits = requestUnitsPerSecond;
+        this.lastRefillTime = System.nanoTime();
+    }
+
+    /**
+     * Gets the request unit budget.
+     * 
+     * @return the request units per second.
+     */
+    public synchronized double getRequestUnitsPerSecond() {
+        return this.requestUnitsPerSecond;
+    }
+
+    /**
+     * Sets the request unit budget, for example after the offer of the collection has been changed.
+     * 
+     * @param requestUnitsPerSecond the request units per second.
+     */
+    public synchronized void setRequestUnitsPerSecond(double requestUnitsPerSecond) {
+        if (!(requestUnitsPerSecond > 0)) {
+            throw new IllegalArgumentException("requestUnitsPerSecond");
+        }
+
+        this.refill();
+        this.requestUnitsPerSecond = requestUnitsPerSecond;
+        this.availableRequestUnits = Math.min(this.availableRequestUnits, requestUnitsPerSecond);
+        this.notifyAll();
+    }
+
+    /**
+     * Gets the request units currently in the bucket. The value is negative while the bucket is in debt.
+     * 
+     * @return the available request units.
+     */
+    public synchronized double getAvailableRequestUnits() {
+        this.refill();
+        return this.availableRequestUnits;
+    }
+
+    /**
+     * Gets the learned charge of an operation type.
+     * 
+     * @param operationType the operation type, made of the resource type, the HTTP method and, for queries, a query
+     *     suffix, such as "Document/POST" or "Document/POST/Query".
+     * @return the estimated request charge.
+     */
+    public synchronized double getEstimatedRequestCharge(String operationType) {
+        Double estimate = this.estimatedRequestCharges.get(operationType);
+        return estimate != null ? estimate : RequestUnitRateLimiter.DEFAULT_REQUEST_CHARGE;
+    }
+
+    /**
+     * Waits until the bucket holds request units and takes the expected charge of the operation from it.
+     * 
+     * @param operationType the operation type.
+     * @return the request units taken, to be passed to onResponse.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    synchronized double acquire(String operationType) throws InterruptedException {
+        double estimate = this.getEstimatedRequestCharge(operationType);
+        while (true) {
+            this.refill();
+            if (this.availableRequestUnits > 0) {
+                this.availableRequestUnits -= estimate;
+                return estimate;
+            }
+
+            long waitTime = (long) Math.ceil(-this.availableRequestUnits / this.requestUnitsPerSecond * 1e9);
+            TimeUnit.NANOSECONDS.timedWait(this, Math.max(1, waitTime));
+        }
+    }
+
+    /**
+     * Takes the expected charge of the operation from the bucket if it holds request units, without waiting.
+     * 
+     * @param operationType the operation type.
+     * @return the request units taken, to be passed to onResponse, or a negative value if the bucket is empty.
+     */
+    synchronized double tryAcquire(String operationType) {
+        this.refill();
+        if (this.availableRequestUnits <= 0) {
+            return -1;
+        }
+
+        double estimate = this.getEstimatedRequestCharge(operationType);
+        this.availableRequestUnits -= estimate;
+        return estimate;
+    }
+
+    /**
+     * Gets the time until the bucket holds request units again.
+     * 
+     * @return the delay in milliseconds, at least one.
+     */
+    synchronized long getRefillDelayInMilliseconds() {
+        this.refill();
+        return Math.max(1, (long) Math.ceil(-this.availableRequestUnits / this.requestUnitsPerSecond * 1000));
+    }
+
+    /**
+     * Settles the request units taken for a request with its actual charge.
+     * 
+     * @param operationType the operation type.
+     * @param acquiredRequestUnits the request units returned by acquire.
+     * @param requestCharge the request charge reported by the service, or a negative value if it is unknown.
+     * @param throttled true if the service throttled the request.
+     */
+    synchronized void onResponse(String operationType,
+                                 double acquiredRequestUnits,
+                                 double requestCharge,
+                                 boolean throttled) {
+        this.refill();
+        if (throttled) {
+            // The service is out of capacity, whatever the bucket says.
+            this.availableRequestUnits = Math.min(this.availableRequestUnits, 0);
+            return;
+        }
+
+        if (requestCharge < 0) {
+            return;
+        }
+
+        this.availableRequestUnits = Math.min(this.requestUnitsPerSecond,
+                                              this.availableRequestUnits + acquiredRequestUnits - requestCharge);
+
+        Double estimate = this.estimatedRequestCharges.get(operationType);
+        this.estimatedRequestCharges.put(operationType, estimate == null ? requestCharge :
+                RequestUnitRateLimiter.SMOOTHING_FACTOR * requestCharge +
+                (1 - RequestUnitRateLimiter.SMOOTHING_FACTOR) * estimate);
+        this.notifyAll();
+    }
+
+    /**
+     * Returns the request units taken for a request that was not sent.
+     * 
+     * @param acquiredRequestUnits the request units returned by acquire.
+     */
+    synchronized void cancel(double acquiredRequestUnits) {
+        this.refill();
+        this.availableRequestUnits = Math.min(this.requestUnitsPerSecond,
+                                              this.availableRequestUnits + acquiredRequestUnits);
+        this.notifyAll();
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double refilled = (now - this.lastRefillTime) / 1e9 * this.requestUnitsPerSecond;
+        this.availableRequestUnits = Math.min(this.requestUnitsPerSecond, this.availableRequestUnits + refilled);
+        this.lastRefillTime = now;
+    }
+}
@@ -354,6 +354,117 @@ class ResourceId {
         }
     }
 
+    /**
+     * Gets the unique collection id of a resource id, as getUniqueDocumentCollectionId does once the id is parsed,
+     * without allocating.
+     * <p>
+     * Ids in the canonical base64 form sent by the service are decoded in place, other ids are parsed.
+     *
+     * @param id the resource id.
+     * @return the unique collection id, or 0 if the resource is not a collection or in one.
+     * @throws IllegalArgumentException if the id is not a valid resource id.
+     */
+    static long parseUniqueDocumentCollectionId(String id) {
+        int length = ResourceId.getDecodedLength(id);
+        if (length < 0) {
+            ResourceId resourceId = ResourceId.parse(id);
+            return resourceId.documentCollection != 0 ? resourceId.getUniqueDocumentCollectionId() : 0;
+        }
+
+        if (length < 8 || (ResourceId.decodeByte(id, 4) & 0x80) == 0) {
+            // A database, a user or a permission, which are validated as parse does.
+            if (length > 8 && length != 16) {
+                throw new IllegalArgumentException(String.format("Invalide resourceid %s", id));
+            }
+
+            return 0;
+        }
+
+        if (length >= 16) {
+            // The high nibble of the last byte of a child resource of the collection gives its type.
+            int type = ((byte) ResourceId.decodeByte(id, 15)) >> 4;
+            if (type != CollectionChildResourceType.Document &&
+                    Math.abs(type) != CollectionChildResourceType.StoredProcedure &&
+                    type != CollectionChildResourceType.Trigger &&
+                    type != CollectionChildResourceType.UserDefinedFunction &&
+                    type != CollectionChildResourceType.Conflict) {
+                throw new IllegalArgumentException(String.format("Invalide resourceid %s", id));
+            }
+        } else if (length != 8) {
+            throw new IllegalArgumentException(String.format("Invalide resourceid %s", id));
+        }
+
+        int database = 0;
+        int documentCollection = 0;
+        for (int i = 0; i < 4; i++) {
+            database = database << 8 | ResourceId.decodeByte(id, i);
+            documentCollection = documentCollection << 8 | ResourceId.decodeByte(id, i + 4);
+        }
+
+        return (long) database << 32 | documentCollection;
+    }
+
+    /**
+     * Gets the length of a resource id once decoded, or -1 if it is not in the canonical base64 form: groups of 4
+     * characters, with '-' in place of '/' and at most 2 padding characters at the end, decoding to at most 20 bytes.
+     */
+    private static int getDecodedLength(String id) {
+        int length = id != null ? id.length() : 0;
+        if (length == 0 || length % 4 != 0) {
+            return -1;
+        }
+
+        int padding = 0;
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if (c == '=') {
+                padding++;
+            } else if (padding > 0 || ResourceId.decodeChar(c) < 0) {
+                return -1;
+            }
+        }
+
+        int decodedLength = length / 4 * 3 - padding;
+        return padding <= 2 && decodedLength <= ResourceId.Length ? decodedLength : -1;
+    }
+
+    /**
+     * Decodes a byte of a resource id in the canonical base64 form.
+     */
+    private static int decodeByte(String id, int index) {
+        int offset = index / 3 * 4;
+        switch (index % 3) {
+            case 0:
+                return (ResourceId.decodeChar(id.charAt(offset)) << 2 |
+                        ResourceId.decodeChar(id.charAt(offset + 1)) >> 4) & 0xFF;
+            case 1:
+                return (ResourceId.decodeChar(id.charAt(offset + 1)) << 4 |
+                        ResourceId.decodeChar(id.charAt(offset + 2)) >> 2) & 0xFF;
+            default:
+                return (ResourceId.decodeChar(id.charAt(offset + 2)) << 6 |
+                        ResourceId.decodeChar(id.charAt(offset + 3))) & 0xFF;
+        }
+    }
+
+    /**
+     * Decodes a base64 character, '-' standing for '/' in resource ids.
+     */
+    private static int decodeChar(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        } else if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 26;
+        } else if (c >= '0' && c <= '9') {
+            return c - '0' + 52;
+        } else if (c == '+') {
+            return 62;
+        } else if (c == '/' || c == '-') {
+            return 63;
+        }
+
+        return -1;
+    }
+
     public static Pair<Boolean, byte[]> verify(String id) {
         if (StringUtils.isEmpty(id))
             throw new IllegalArgumentException("id");
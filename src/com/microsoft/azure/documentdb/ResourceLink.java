@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * An immutable, parsed resource link, such as dbs/db1/colls/coll1/docs/doc1 or the self link of a resource.
+ * <p>
+ * A link is parsed once, by the client operation it is given to, and everything the client derives from it while
+ * sending the request and tracking its session is kept here. The links of feeds and children, such as
+ * dbs/db1/colls/coll1/docs, are built from the segments of their parent rather than parsed again. Parsed links are
+ * cached, as applications usually address the same collections and documents over and over.
+ */
+final class ResourceLink {
+
+    // Once the cache is full, an arbitrary link is evicted for each link added.
+    private static final int MAX_CACHED_LINKS = 4096;
+    private static final ConcurrentHashMap<String, ResourceLink> cache =
+            new ConcurrentHashMap<String, ResourceLink>();
+
+    private final String link;
+    // The link without its leading and trailing slash, and the /{link}/ form Utils.joinPath gives it.
+    private final String trimmedLink;
+    private final String joinedLink;
+    private final String[] segments;
+    private final String resourceId;
+    private final boolean isNameBased;
+    private final boolean isDatabaseLink;
+    private final String authorizationResourceName;
+    private final String collectionKey;
+    private ResourceLink joinedResourceLink;
+
+    private ResourceLink(String link) {
+        this.link = link;
+        this.trimmedLink = Utils.trimBeginingAndEndingSlashes(link);
+        this.joinedLink = "/" + this.trimmedLink + "/";
+
+        // The resource id is found among all the segments, while the segments kept drop the empty trailing ones as
+        // String.split does; an empty link has a single empty segment.
+        String[] parts = this.trimmedLink.split("/", -1);
+        this.resourceId = link.isEmpty() ? "" : ResourceLink.getResourceId(parts);
+        int segmentCount = parts.length;
+        if (!this.trimmedLink.isEmpty()) {
+            while (segmentCount > 0 && parts[segmentCount - 1].isEmpty()) {
+                segmentCount--;
+            }
+        }
+
+        this.segments = segmentCount == parts.length ? parts : Arrays.copyOf(parts, segmentCount);
+        this.isNameBased = this.computeIsNameBased();
+        this.isDatabaseLink = this.computeIsDatabaseLink();
+        this.authorizationResourceName = this.computeAuthorizationResourceName();
+        this.collectionKey = this.computeCollectionKey();
+    }
+
+    private ResourceLink(ResourceLink parent, String segment) {
+        this.link = parent.joinedLink + segment + "/";
+        this.trimmedLink = parent.trimmedLink + "/" + segment;
+        this.joinedLink = this.link;
+        this.segments = Arrays.copyOf(parent.segments, parent.segments.length + 1);
+        this.segments[parent.segments.length] = segment;
+        this.resourceId = ResourceLink.getResourceId(this.segments);
+        // The database segment, which tells name based links apart, is the one of the parent unless it is a feed.
+        this.isNameBased = parent.segments.length >= 2 ? parent.isNameBased : this.computeIsNameBased();
+        this.isDatabaseLink = this.computeIsDatabaseLink();
+        this.authorizationResourceName = this.computeAuthorizationResourceName();
+        this.collectionKey = parent.collectionKey != null ? parent.collectionKey : this.computeCollectionKey();
+    }
+
+    private ResourceLink(String link, ResourceLink other) {
+        this.link = link;
+        this.trimmedLink = other.trimmedLink;
+        this.joinedLink = other.joinedLink;
+        this.segments = other.segments;
+        this.resourceId = other.resourceId;
+        this.isNameBased = other.isNameBased;
+        this.isDatabaseLink = other.isDatabaseLink;
+        this.authorizationResourceName = other.authorizationResourceName;
+        this.collectionKey = other.collectionKey;
+    }
+
+    /**
+     * Parses a link, or gets it from the cache.
+     *
+     * @param link the link.
+     * @return the parsed link.
+     */
+    static ResourceLink parse(String link) {
+        if (link == null) {
+            throw new IllegalArgumentException("link");
+        }
+
+        ResourceLink resourceLink = ResourceLink.cache.get(link);
+        if (resourceLink == null) {
+            resourceLink = new ResourceLink(link);
+            if (ResourceLink.cache.size() >= ResourceLink.MAX_CACHED_LINKS) {
+                Iterator<String> links = ResourceLink.cache.keySet().iterator();
+                if (links.hasNext()) {
+                    links.next();
+                    links.remove();
+                }
+            }
+
+            ResourceLink.cache.put(link, resourceLink);
+        }
+
+        return resourceLink;
+    }
+
+    /**
+     * Gets the parsed form of the path Utils.joinPath builds from a link and a segment, such as /dbs/db1/colls/ for
+     * dbs/db1 and colls. The link is parsed, or taken from the cache, and the segment is added to its segments.
+     *
+     * @param link the link.
+     * @param segment the segment to add, or null to get the link itself.
+     * @return the parsed path.
+     */
+    static ResourceLink join(String link, String segment) {
+        return ResourceLink.join(ResourceLink.parse(link), segment);
+    }
+
+    /**
+     * Gets the parsed form of the path Utils.joinPath builds from a parsed link and a segment.
+     *
+     * @param resourceLink the parsed link.
+     * @param segment the segment to add, or null to get the link itself.
+     * @return the parsed path.
+     */
+    static ResourceLink join(ResourceLink resourceLink, String segment) {
+        if (StringUtils.isEmpty(segment)) {
+            return resourceLink.getJoinedResourceLink();
+        }
+
+        segment = Utils.trimBeginingAndEndingSlashes(segment);
+        if (resourceLink.trimmedLink.isEmpty() || resourceLink.trimmedLink.endsWith("/") || segment.contains("/")) {
+            // Empty segments would be dropped from the parent, so such paths are parsed as a whole.
+            return ResourceLink.parse(resourceLink.joinedLink + segment + "/");
+        }
+
+        return new ResourceLink(resourceLink, segment);
+    }
+
+    /**
+     * Gets the link as it was given, or as Utils.joinPath builds it for a joined link.
+     *
+     * @return the link.
+     */
+    String getLink() {
+        return this.link;
+    }
+
+    /**
+     * Gets the segments of the link, without the leading and trailing slashes.
+     *
+     * @return the segments. The array is shared and must not be modified.
+     */
+    String[] getSegments() {
+        return this.segments;
+    }
+
+    /**
+     * Gets the id of the resource, or of the owner of the feed, the link points to.
+     *
+     * @return the resource id.
+     */
+    String getResourceId() {
+        return this.resourceId;
+    }
+
+    /**
+     * Gets whether the link is made of the ids given by the user rather than of resource ids.
+     *
+     * @return true if the link is name based.
+     */
+    boolean isNameBased() {
+        return this.isNameBased;
+    }
+
+    /**
+     * Gets whether the link is the link of a database, name based or not.
+     *
+     * @return true if the link is a database link.
+     */
+    boolean isDatabaseLink() {
+        return this.isDatabaseLink;
+    }
+
+    /**
+     * Gets the name of the resource signed in the authorization of the requests to a name based link: the link of the
+     * resource itself, or of the owner of the feed.
+     *
+     * @return the authorization resource name, or an empty string if the link is not name based.
+     */
+    String getAuthorizationResourceName() {
+        return this.authorizationResourceName;
+    }
+
+    /**
+     * Gets the dbs/{db}/colls/{coll} prefix of the link, which identifies the collection the link is in.
+     *
+     * @return the collection key, or null if the link is not below a collection.
+     */
+    String getCollectionKey() {
+        return this.collectionKey;
+    }
+
+    private ResourceLink getJoinedResourceLink() {
+        // A racing thread may build another instance, which is equivalent.
+        ResourceLink joinedResourceLink = this.joinedResourceLink;
+        if (joinedResourceLink == null) {
+            joinedResourceLink = this.link.equals(this.joinedLink) ? this : new ResourceLink(this.joinedLink, this);
+            this.joinedResourceLink = joinedResourceLink;
+        }
+
+        return joinedResourceLink;
+    }
+
+    /**
+     * Gets the resource id from all the segments of a link, empty ones included: the last segment of the link of a
+     * resource, or the one before the last of the link of a feed, which is the id of its owner.
+     */
+    private static String getResourceId(String[] segments) {
+        if (segments.length % 2 == 0) {
+            return segments[segments.length - 1];
+        }
+
+        return segments.length > 1 ? segments[segments.length - 2] : "";
+    }
+
+    private boolean computeIsDatabaseLink() {
+        return this.segments.length == 2 &&
+                this.segments[0].equalsIgnoreCase(Paths.DATABASES_PATH_SEGMENT) &&
+                !this.segments[1].isEmpty();
+    }
+
+    private boolean computeIsNameBased() {
+        // The first segment should be "dbs", followed by the database id or resource id, which cannot be empty.
+        if (this.segments.length < 2 ||
+                !this.segments[0].equalsIgnoreCase(Paths.DATABASES_PATH_SEGMENT) ||
+                StringUtils.isEmpty(this.segments[1])) {
+            return false;
+        }
+
+        // The resource id of a database is 8 characters long, and 4 bytes long once decoded.
+        String databaseId = this.segments[1];
+        return databaseId.length() != 8 || ResourceId.fromBase64String(databaseId).length != 4;
+    }
+
+    private String computeAuthorizationResourceName() {
+        if (!this.isNameBased) {
+            return "";
+        }
+
+        String path = this.trimmedLink;
+        if (this.segments.length % 2 == 0) {
+            // The link of an individual resource, like dbs/db1/colls/coll1.
+            if (Utils.IsResourceType(this.segments[this.segments.length - 2])) {
+                return path;
+            }
+        } else {
+            // The link of a feed, whose owner is the parent, like dbs/db1 for dbs/db1/colls.
+            if (Utils.IsResourceType(this.segments[this.segments.length - 1])) {
+                return path.substring(0, path.lastIndexOf("/"));
+            }
+        }
+
+        return "";
+    }
+
+    private String computeCollectionKey() {
+        if (this.segments.length < 4 ||
+                !this.segments[0].equalsIgnoreCase(Paths.DATABASES_PATH_SEGMENT) ||
+                !this.segments[2].equalsIgnoreCase(Paths.COLLECTIONS_PATH_SEGMENT)) {
+            return null;
+        }
+
+        return this.segments[0] + "/" + this.segments[1] + "/" + this.segments[2] + "/" + this.segments[3];
+    }
+}
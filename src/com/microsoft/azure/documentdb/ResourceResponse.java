@@ -15,6 +15,7 @@ import org.apache.commons.lang3.StringUtils;
 public final class ResourceResponse<T extends Resource> {
     private Class<T> cls;
     private T resource;
+    private byte[] responseBody;
     private DocumentServiceResponse response;
     private Map<String, Long> usageHeaders;
     private Map<String, Long> quotaHeaders;
@@ -24,7 +25,8 @@ public final class ResourceResponse<T extends Resource> {
         this.usageHeaders = new HashMap<String, Long>();
         this.quotaHeaders = new HashMap<String, Long>();
         this.cls = cls;
-        this.resource = this.response.getResource(this.cls);
+        // The body is only parsed once the resource is requested, either as a resource or bound to a POJO.
+        this.responseBody = this.response.getResponseBodyAsBytes();
         this.response.close();
     }
 
@@ -244,9 +246,34 @@ public final class ResourceResponse<T extends Resource> {
      * @return the resource.
      */
     public T getResource() {
+        if (this.resource == null && this.responseBody != null && this.responseBody.length > 0) {
+            this.resource = this.response.toResource(this.responseBody, this.cls);
+        }
+
         return this.resource;
     }
 
+    /**
+     * Gets the resource for the request bound to a POJO. The response body is bound directly to the class without
+     * building the resource first. Properties that the class does not define are ignored. Pass LazyDocument.class to
+     * get a document whose properties are parsed when they are read.
+     *
+     * @param c the class of the POJO.
+     * @param <P> the type of the POJO.
+     * @return the POJO, or null if the response has no body.
+     */
+    public <P> P getResource(Class<P> c) {
+        if (c == null) {
+            throw new IllegalArgumentException("c");
+        }
+
+        if (this.responseBody == null || this.responseBody.length == 0) {
+            return null;
+        }
+
+        return DocumentServiceResponse.toObject(this.responseBody, c);
+    }
+
     /**
      * Gets the number of index paths (terms) generated by the operation.
      *
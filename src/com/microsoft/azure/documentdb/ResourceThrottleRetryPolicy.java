@@ -1,20 +1,38 @@
 package com.microsoft.azure.documentdb;
 
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 final class ResourceThrottleRetryPolicy {
-    private final long defaultRetryInSeconds = 5;
+    // Used when the service returns no retry interval: the delay starts at the initial backoff and doubles with every
+    // attempt, up to the maximum backoff, and the actual wait is picked at random in the upper half of the delay.
+    private static final long INITIAL_BACKOFF_IN_MILLISECONDS = 100;
+    private static final long MAX_BACKOFF_IN_MILLISECONDS = 5000;
+    private static final long DEFAULT_MAX_WAIT_TIME_IN_MILLISECONDS = 30000;
 
     private int maxAttemptCount;
     private int currentAttemptCount = 0;
+    private final long maxWaitTimeInMilliseconds;
+    private long cumulativeWaitTimeInMilliseconds = 0;
 
     private long retryAfterInMilliseconds = 0;
-    
+
     private final Logger logger = Logger.getLogger(
         this.getClass().getPackage().getName());
 
     public ResourceThrottleRetryPolicy(int maxRetryCount) {
+        this(maxRetryCount, ResourceThrottleRetryPolicy.DEFAULT_MAX_WAIT_TIME_IN_MILLISECONDS);
+    }
+
+    public ResourceThrottleRetryPolicy(RetryOptions retryOptions) {
+        this(retryOptions.getMaxRetryAttemptsOnThrottledRequests(),
+             TimeUnit.SECONDS.toMillis(retryOptions.getMaxRetryWaitTimeInSeconds()));
+    }
+
+    private ResourceThrottleRetryPolicy(int maxRetryCount, long maxWaitTimeInMilliseconds) {
         this.maxAttemptCount = maxRetryCount;
+        this.maxWaitTimeInMilliseconds = maxWaitTimeInMilliseconds;
     }
 
     public long getRetryAfterInMilliseconds() {
@@ -23,7 +41,7 @@ final class ResourceThrottleRetryPolicy {
 
     /**
      * Should the caller retry the operation.
-     * 
+     *
      * @param exception the exception to check.
      * @return true if should retry.
      */
@@ -31,13 +49,17 @@ final class ResourceThrottleRetryPolicy {
         this.retryAfterInMilliseconds = 0;
 
         if (this.currentAttemptCount < this.maxAttemptCount &&
-                this.CheckIfRetryNeeded(exception)) {
+                this.CheckIfRetryNeeded(exception) &&
+                this.cumulativeWaitTimeInMilliseconds + this.retryAfterInMilliseconds <=
+                this.maxWaitTimeInMilliseconds) {
             this.currentAttemptCount++;
+            this.cumulativeWaitTimeInMilliseconds += this.retryAfterInMilliseconds;
             this.logger.info(String.format("Operation will be retried after %d milliseconds. Exception: %s",
                                            this.retryAfterInMilliseconds,
                                            exception.getMessage()));
             return true;
         } else {
+            this.retryAfterInMilliseconds = 0;
             this.logger.warning(String.format("Operation will NOT be retried. Exception: %s",
                                               exception.getMessage()));
             return false;
@@ -46,7 +68,7 @@ final class ResourceThrottleRetryPolicy {
 
     /**
      * Returns True if the given exception is retriable.
-     * 
+     *
      * @param exception the exception to check.
      * @return true if return is needed.
      */
@@ -56,14 +78,14 @@ final class ResourceThrottleRetryPolicy {
         if (exception instanceof DocumentClientException) {
             DocumentClientException dce = (DocumentClientException) exception;
 
-            if (dce.getStatusCode() == 429) {
+            if (dce.getStatusCode() == HttpConstants.StatusCodes.TOO_MANY_REQUESTS) {
                 this.retryAfterInMilliseconds =
                     dce.getRetryAfterInMilliseconds();
 
-                if (this.retryAfterInMilliseconds == 0) {
+                if (this.retryAfterInMilliseconds <= 0) {
                     // we should never reach here as BE should turn non-zero of
                     // retry delay.
-                    this.retryAfterInMilliseconds = this.defaultRetryInSeconds;
+                    this.retryAfterInMilliseconds = this.getBackoffInMilliseconds();
                 }
 
                 return true;
@@ -72,4 +94,11 @@ final class ResourceThrottleRetryPolicy {
 
         return false;
     }
+
+    private long getBackoffInMilliseconds() {
+        long backoff = Math.min(ResourceThrottleRetryPolicy.MAX_BACKOFF_IN_MILLISECONDS,
+                                ResourceThrottleRetryPolicy.INITIAL_BACKOFF_IN_MILLISECONDS <<
+                                Math.min(this.currentAttemptCount, 16));
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.Cancellable;
+import org.apache.http.concurrent.FutureCallback;
+
+/**
+ * Runs asynchronous operations and retries the throttled ones without holding a thread while waiting.
+ * <p>
+ * An attempt starts a request and returns at once; it reports its outcome through a callback. When an attempt is
+ * throttled, the next one is scheduled on a timer shared by all clients, so no thread waits for the retry interval to
+ * elapse. Cancelling the future of an operation cancels its running attempt or its scheduled retry.
+ */
+final class RetryExecutor {
+
+    private static final ScheduledThreadPoolExecutor timer = RetryExecutor.createTimer();
+
+    private RetryExecutor() {
+    }
+
+    /**
+     * An attempt of an asynchronous operation.
+     *
+     * @param <V> the type of the result.
+     */
+    interface Attempt<V> {
+        /**
+         * Starts the attempt.
+         *
+         * @param callback the callback to complete with the outcome of the attempt.
+         * @return the handle cancelling the attempt.
+         */
+        Cancellable start(FutureCallback<V> callback);
+    }
+
+    /**
+     * Executes an operation, retrying it as allowed by the retry policy if the service throttles it.
+     *
+     * @param attempt the attempt of the operation.
+     * @param retryPolicy the retry policy.
+     * @param <V> the type of the result.
+     * @return the future of the result of the last attempt.
+     */
+    static <V> Future<V> execute(Attempt<V> attempt, ResourceThrottleRetryPolicy retryPolicy) {
+        RetryFuture<V> future = new RetryFuture<V>(attempt, retryPolicy);
+        future.startAttempt();
+        return future;
+    }
+
+    /**
+     * Runs a task on the shared timer once a delay has elapsed.
+     *
+     * @param task the task, which must not block.
+     * @param delayInMilliseconds the delay.
+     * @return the handle cancelling the task.
+     */
+    static Cancellable schedule(Runnable task, long delayInMilliseconds) {
+        final ScheduledFuture<?> scheduledTask = RetryExecutor.timer.schedule(task,
+                                                                              delayInMilliseconds,
+                                                                              TimeUnit.MILLISECONDS);
+        return new Cancellable() {
+            @Override
+            public boolean cancel() {
+                return scheduledTask.cancel(false);
+            }
+        };
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "documentdb-retry-timer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        // Cancelled retries are dropped from the queue rather than kept until their delay has elapsed.
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    private static final class RetryFuture<V> extends BasicFuture<V> {
+        private final Attempt<V> attempt;
+        private final ResourceThrottleRetryPolicy retryPolicy;
+        private final Object lock = new Object();
+
+        // The running attempt or the scheduled retry, cancelled along with this future.
+        private Cancellable pending;
+
+        RetryFuture(Attempt<V> attempt, ResourceThrottleRetryPolicy retryPolicy) {
+            super(null);
+            this.attempt = attempt;
+            this.retryPolicy = retryPolicy;
+        }
+
+        void startAttempt() {
+            if (this.isDone()) {
+                return;
+            }
+
+            AttemptCallback callback = new AttemptCallback();
+            Cancellable handle;
+            try {
+                handle = this.attempt.start(callback);
+            } catch (RuntimeException e) {
+                this.failed(e);
+                return;
+            }
+
+            synchronized (this.lock) {
+                // An attempt which has already completed may have scheduled the next one.
+                if (!callback.completed) {
+                    this.pending = handle;
+                }
+            }
+
+            if (this.isCancelled()) {
+                handle.cancel();
+            }
+        }
+
+        private void onAttemptFailed(Exception e) {
+            if (!(e instanceof DocumentClientException) ||
+                    ((DocumentClientException) e).getStatusCode() != HttpConstants.StatusCodes.TOO_MANY_REQUESTS ||
+                    !this.retryPolicy.shouldRetry(e)) {
+                this.failed(e);
+                return;
+            }
+
+            Cancellable retry;
+            try {
+                retry = RetryExecutor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        RetryFuture.this.startAttempt();
+                    }
+                }, this.retryPolicy.getRetryAfterInMilliseconds());
+            } catch (RejectedExecutionException ree) {
+                this.failed(e);
+                return;
+            }
+
+            synchronized (this.lock) {
+                this.pending = retry;
+            }
+
+            if (this.isCancelled()) {
+                retry.cancel();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!super.cancel(mayInterruptIfRunning)) {
+                return false;
+            }
+
+            Cancellable pending;
+            synchronized (this.lock) {
+                pending = this.pending;
+            }
+
+            if (pending != null) {
+                pending.cancel();
+            }
+
+            return true;
+        }
+
+        // BasicFuture returns a null result once cancelled, where Future requires a CancellationException.
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            V result = super.get();
+            this.checkNotCancelled();
+            return result;
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            V result = super.get(timeout, unit);
+            this.checkNotCancelled();
+            return result;
+        }
+
+        private void checkNotCancelled() {
+            if (this.isCancelled()) {
+                throw new CancellationException();
+            }
+        }
+
+        private final class AttemptCallback implements FutureCallback<V> {
+            // Guarded by the lock of the future.
+            private boolean completed;
+
+            @Override
+            public void completed(V result) {
+                if (this.markCompleted()) {
+                    RetryFuture.this.completed(result);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                if (this.markCompleted()) {
+                    RetryFuture.this.onAttemptFailed(e);
+                }
+            }
+
+            @Override
+            public void cancelled() {
+                if (this.markCompleted()) {
+                    RetryFuture.this.cancel(false);
+                }
+            }
+
+            private boolean markCompleted() {
+                synchronized (RetryFuture.this.lock) {
+                    if (this.completed) {
+                        return false;
+                    }
+
+                    this.completed = true;
+                    RetryFuture.this.pending = null;
+                    return true;
+                }
+            }
+        }
+    }
+}
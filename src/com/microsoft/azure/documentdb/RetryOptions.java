@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) Microsoft Corporation.  All rights reserved.
+ */
+
+package com.microsoft.azure.documentdb;
+
+/**
+ * Specifies how requests throttled by the service (status code 429) are retried by the client.
+ * <p>
+ * A throttled request is retried after the interval the service returns in the x-ms-retry-after-ms header, or after
+ * an exponentially growing, randomized delay when the service gives no interval. Retries stop once the maximum number
+ * of attempts is reached or the next wait would exceed the maximum wait time, and the last throttling exception is
+ * then returned to the caller.
+ */
+public final class RetryOptions {
+
+    private static final int DEFAULT_MAX_RETRY_ATTEMPTS_ON_THROTTLED_REQUESTS = 9;
+    private static final int DEFAULT_MAX_RETRY_WAIT_TIME_IN_SECONDS = 30;
+
+    /**
+     * Constructor.
+     */
+    public RetryOptions() {
+        this.maxRetryAttemptsOnThrottledRequests = RetryOptions.DEFAULT_MAX_RETRY_ATTEMPTS_ON_THROTTLED_REQUESTS;
+        this.maxRetryWaitTimeInSeconds = RetryOptions.DEFAULT_MAX_RETRY_WAIT_TIME_IN_SECONDS;
+    }
+
+    private int maxRetryAttemptsOnThrottledRequests;
+
+    /**
+     * Gets the maximum number of times a throttled request is retried.
+     *
+     * @return the maximum retry attempts on throttled requests.
+     */
+    public int getMaxRetryAttemptsOnThrottledRequests() {
+        return this.maxRetryAttemptsOnThrottledRequests;
+    }
+
+    /**
+     * Sets the maximum number of times a throttled request is retried, the default is 9. Zero disables the retries.
+     *
+     * @param maxRetryAttemptsOnThrottledRequests the maximum retry attempts on throttled requests.
+     */
+    public void setMaxRetryAttemptsOnThrottledRequests(int maxRetryAttemptsOnThrottledRequests) {
+        if (maxRetryAttemptsOnThrottledRequests < 0) {
+            throw new IllegalArgumentException("maxRetryAttemptsOnThrottledRequests");
+        }
+
+        this.maxRetryAttemptsOnThrottledRequests = maxRetryAttemptsOnThrottledRequests;
+    }
+
+    private int maxRetryWaitTimeInSeconds;
+
+    /**
+     * Gets the maximum time spent waiting between the retries of a request, in seconds.
+     *
+     * @return the maximum retry wait time in seconds.
+     */
+    public int getMaxRetryWaitTimeInSeconds() {
+        return this.maxRetryWaitTimeInSeconds;
+    }
+
+    /**
+     * Sets the maximum time spent waiting between the retries of a request, in seconds, the default is 30.
+     *
+     * @param maxRetryWaitTimeInSeconds the maximum retry wait time in seconds.
+     */
+    public void setMaxRetryWaitTimeInSeconds(int maxRetryWaitTimeInSeconds) {
+        if (maxRetryWaitTimeInSeconds < 0) {
+            throw new IllegalArgumentException("maxRetryWaitTimeInSeconds");
+        }
+
+        this.maxRetryWaitTimeInSeconds = maxRetryWaitTimeInSeconds;
+    }
+}
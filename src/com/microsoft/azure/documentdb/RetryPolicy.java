@@ -1,10 +1,13 @@
 package com.microsoft.azure.documentdb;
 
+/**
+ * The retry policy of the query pages fetched by QueryIterable. The other requests are retried as set by the
+ * RetryOptions of the connection policy or of their request options.
+ */
 final class RetryPolicy
 {
 
     private static RetryPolicy defaultPolicy;
-    private int maxRetryAttemptsOnRequest;
     private int maxRetryAttemptsOnQuery;
 
     /**
@@ -12,28 +15,9 @@ final class RetryPolicy
      * 
      */
     public RetryPolicy() {
-        this.maxRetryAttemptsOnRequest = 0;
         this.maxRetryAttemptsOnQuery = 3;
     }
 
-    /**
-     * Sets the maximum number of retry in case of resource throttled, for request.
-     * 
-     * @param maxRetryAttemptsOnRequest the max retry attempts on request.
-     */
-    public void setMaxRetryAttemptsOnRequest(int maxRetryAttemptsOnRequest) {
-        this.maxRetryAttemptsOnRequest = maxRetryAttemptsOnRequest;
-    }
-
-    /**
-     * Gets the maximum number of retry in case of resource throttled, for request.
-     * 
-     * @return the max retry attempts on request.
-     */
-    public int getMaxRetryAttemptsOnRequest() {
-        return this.maxRetryAttemptsOnRequest;
-    }
-
     /**
      * Sets the maximum number of retry in case of resource throttled, for query.
      * 
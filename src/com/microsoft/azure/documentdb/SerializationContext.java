@@ -0,0 +1,103 @@
+package com.microsoft.azure.documentdb;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codehaus.jackson.map.DeserializationConfig;
+import org.codehaus.jackson.map.ObjectMapper;
+
+/**
+ * Holds the serialization state shared by all clients: the Jackson mappers and the constructors used to instantiate
+ * resources and other JsonSerializable classes.
+ * <p>
+ * ObjectMapper is thread-safe once configured and caches the serializers and deserializers it builds for each type,
+ * so the mappers are created once rather than per call. Constructors are looked up through reflection once per class.
+ */
+final class SerializationContext {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ObjectMapper documentMapper = SerializationContext.createDocumentMapper();
+
+    private static final ConcurrentHashMap<Class<?>, Constructor<?>> defaultConstructors =
+            new ConcurrentHashMap<Class<?>, Constructor<?>>();
+    private static final ConcurrentHashMap<Class<?>, Constructor<?>> stringConstructors =
+            new ConcurrentHashMap<Class<?>, Constructor<?>>();
+
+    private SerializationContext() {
+    }
+
+    /**
+     * Gets the mapper used to convert POJOs to and from the JSON property bag of a JsonSerializable. It uses the
+     * default Jackson configuration.
+     *
+     * @return the object mapper.
+     */
+    static ObjectMapper getObjectMapper() {
+        return SerializationContext.objectMapper;
+    }
+
+    /**
+     * Gets the mapper used to bind documents to POJOs. Unknown properties, such as the system properties the service
+     * adds to every document, are ignored.
+     *
+     * @return the document mapper.
+     */
+    static ObjectMapper getDocumentMapper() {
+        return SerializationContext.documentMapper;
+    }
+
+    /**
+     * Creates an instance through the parameterless constructor of the class, which may be package-private.
+     *
+     * @param c the class to instantiate.
+     * @param <T> the type of the instance.
+     * @return the new instance.
+     */
+    static <T> T newInstance(Class<T> c) {
+        try {
+            return SerializationContext.getConstructor(SerializationContext.defaultConstructors, c).newInstance();
+        } catch (InstantiationException | IllegalAccessException | IllegalArgumentException |
+                InvocationTargetException | NoSuchMethodException | SecurityException e) {
+            throw new IllegalStateException("Failed to instantiate class object.", e);
+        }
+    }
+
+    /**
+     * Creates an instance through the constructor of the class taking a JSON string.
+     *
+     * @param c the class to instantiate.
+     * @param jsonString the JSON string passed to the constructor.
+     * @param <T> the type of the instance.
+     * @return the new instance.
+     */
+    static <T> T newInstance(Class<T> c, String jsonString) {
+        try {
+            return SerializationContext.getConstructor(SerializationContext.stringConstructors, c, String.class)
+                    .newInstance(jsonString);
+        } catch (InstantiationException | IllegalAccessException | IllegalArgumentException |
+                InvocationTargetException | NoSuchMethodException | SecurityException e) {
+            throw new IllegalStateException("Failed to instantiate class object.", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Constructor<T> getConstructor(ConcurrentHashMap<Class<?>, Constructor<?>> cache,
+                                                     Class<T> c,
+                                                     Class<?>... parameterTypes) throws NoSuchMethodException {
+        Constructor<?> constructor = cache.get(c);
+        if (constructor == null) {
+            constructor = parameterTypes.length == 0 ?
+                    c.getDeclaredConstructor() : c.getConstructor(parameterTypes);
+            cache.putIfAbsent(c, constructor);
+        }
+
+        return (Constructor<T>) constructor;
+    }
+
+    private static ObjectMapper createDocumentMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return mapper;
+    }
+}
@@ -5,18 +5,20 @@
 package com.microsoft.azure.documentdb;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.StringUtils;
 
 final class SessionContainer {
-    private final ConcurrentHashMap<Long, String> sessionTokens;
-    private final ConcurrentHashMap<String, String> sessionTokensNameBased;
+    // The session tokens only ever move forward, and are formatted when they are sent.
+    private final ConcurrentHashMap<Long, AtomicLong> sessionTokens;
+    private final ConcurrentHashMap<String, AtomicLong> sessionTokensNameBased;
     private final String hostName;
 
     public SessionContainer(final String hostName) {
         this.hostName = hostName;
-        this.sessionTokens = new ConcurrentHashMap<Long, String>();
-        this.sessionTokensNameBased = new ConcurrentHashMap<String, String>();
+        this.sessionTokens = new ConcurrentHashMap<Long, AtomicLong>();
+        this.sessionTokensNameBased = new ConcurrentHashMap<String, AtomicLong>();
     }
 
     public String getHostName() {
@@ -26,16 +28,16 @@ final class SessionContainer {
     public String resolveSessionToken(final DocumentServiceRequest request) {
         if(!request.getIsNameBased()) {
             if(!StringUtils.isEmpty(request.getResourceId())) {
-                ResourceId resourceId = ResourceId.parse(request.getResourceId());
-                if (resourceId.getDocumentCollection() != 0) {// One token per collection.
-                    return this.sessionTokens.get(resourceId.getUniqueDocumentCollectionId());
+                long collectionId = this.getUniqueDocumentCollectionId(request.getResourceId());
+                if (collectionId != 0) {// One token per collection.
+                    return SessionContainer.formatSessionToken(this.sessionTokens.get(collectionId));
                 }
             }
         }
         else {
-            String collectionName = getCollectionName(request.getPath());
+            String collectionName = request.getResourceLink().getCollectionKey();
             if(!StringUtils.isEmpty(collectionName)) {
-                return this.sessionTokensNameBased.get(collectionName);
+                return SessionContainer.formatSessionToken(this.sessionTokensNameBased.get(collectionName));
             }
         }
         return null;
@@ -53,9 +55,9 @@ final class SessionContainer {
         }
 
         if (!StringUtils.isEmpty(ownerId)) {
-            ResourceId resourceId = ResourceId.parse(ownerId);
-            if (resourceId.getDocumentCollection() != 0 && !StringUtils.isEmpty(collectionName)) {
-                this.sessionTokens.remove(resourceId.getUniqueDocumentCollectionId());
+            long collectionId = this.getUniqueDocumentCollectionId(ownerId);
+            if (collectionId != 0 && !StringUtils.isEmpty(collectionName)) {
+                this.sessionTokens.remove(collectionId);
                 this.sessionTokensNameBased.remove(collectionName);
             }
         }
@@ -76,56 +78,53 @@ final class SessionContainer {
             }
 
             if (!StringUtils.isEmpty(ownerId)) {
-                ResourceId resourceId = ResourceId.parse(ownerId);
-
-                if (resourceId.getDocumentCollection() != 0 && !StringUtils.isEmpty(collectionName)) {
-                    long currentTokenValue = !StringUtils.isEmpty(sessionToken) ? Long.parseLong(sessionToken) : 0;
-
-                    String oldToken = this.sessionTokens.get(resourceId.getUniqueDocumentCollectionId());
-
-                    if (oldToken == null) {
-                        this.sessionTokens.putIfAbsent(resourceId.getUniqueDocumentCollectionId(), sessionToken);
-                    } 
-                    else {
-                        long existingValue = Long.parseLong(oldToken);
-                        if (existingValue < currentTokenValue) {
-                            this.sessionTokens.put(resourceId.getUniqueDocumentCollectionId(), sessionToken);
-                        }
-                    }
-
-                    String oldTokenNameBased = this.sessionTokensNameBased.get(collectionName);
-
-                    if (oldTokenNameBased == null) {
-                        this.sessionTokensNameBased.putIfAbsent(collectionName, sessionToken);
-                    } 
-                    else {
-                        long existingValue = Long.parseLong(oldTokenNameBased);
-                        if (existingValue < currentTokenValue) {
-                            this.sessionTokensNameBased.put(collectionName, sessionToken);
-                        }
-                    }
+                long collectionId = this.getUniqueDocumentCollectionId(ownerId);
+
+                if (collectionId != 0 && !StringUtils.isEmpty(collectionName)) {
+                    long currentTokenValue = Long.parseLong(sessionToken);
+                    SessionContainer.mergeSessionToken(this.sessionTokens, collectionId, currentTokenValue);
+                    SessionContainer.mergeSessionToken(this.sessionTokensNameBased, collectionName, currentTokenValue);
                 }
             }
         }
     }        
 
-    private String getCollectionName(String resourceFullName)
-    {   
-        if (resourceFullName != null)
-        {
-            resourceFullName = Utils.trimBeginingAndEndingSlashes(resourceFullName);
-
-            int slashCount=0;
-            for(int i=0; i< resourceFullName.length(); i++)
-            {
-                if(resourceFullName.charAt(i) == '/') {
-                    slashCount++;
-                    if(slashCount == 4) {
-                        return resourceFullName.substring(0, i);
-                    }
-                }
+    /**
+     * Raises the session token of a collection to the given value, unless it is already at or past it.
+     */
+    private static <K> void mergeSessionToken(ConcurrentHashMap<K, AtomicLong> sessionTokens, K key, long value) {
+        AtomicLong sessionToken = sessionTokens.get(key);
+        if (sessionToken == null) {
+            AtomicLong newSessionToken = new AtomicLong(value);
+            sessionToken = sessionTokens.putIfAbsent(key, newSessionToken);
+            if (sessionToken == null) {
+                return;
             }
         }
-        return resourceFullName;
+
+        long currentValue = sessionToken.get();
+        while (currentValue < value && !sessionToken.compareAndSet(currentValue, value)) {
+            currentValue = sessionToken.get();
+        }
+    }
+
+    private static String formatSessionToken(AtomicLong sessionToken) {
+        return sessionToken != null ? Long.toString(sessionToken.get()) : null;
+    }
+
+    /**
+     * Gets the unique id of the collection of a resource id, or 0 if the resource is not in a collection.
+     */
+    private long getUniqueDocumentCollectionId(String resourceId) {
+        // Decoded on every call rather than cached, as the resource ids of documents would churn any cache, and
+        // decoding costs about as much as a lookup keyed by a header value.
+        return ResourceId.parseUniqueDocumentCollectionId(resourceId);
+    }
+
+    /**
+     * Gets the dbs/{db}/colls/{coll} prefix of the full name of a resource, or null if it is not in a collection.
+     */
+    private static String getCollectionName(String resourceFullName) {
+        return resourceFullName != null ? ResourceLink.parse(resourceFullName).getCollectionKey() : null;
     }
 }
@@ -13,88 +13,6 @@ class Utils {
         return encodedString;
     }
 
-    /**
-     * Checks whether the specified link is Name based or not
-     * 
-     * @param link the link to analyze.
-     * @return true or false
-     */
-    static boolean isNameBased(String link) {
-        if(StringUtils.isEmpty(link)) {
-            return false;
-        }
-
-        // trimming the leading "/"
-        if (link.startsWith("/") && link.length() > 1) {
-            link = link.substring(1);
-        }
-
-        // Splitting the link(separated by "/") into parts 
-        String[] parts = link.split("/");
-
-        // First part should be "dbs" 
-        if(parts.length == 0 || StringUtils.isEmpty(parts[0]) || !parts[0].equalsIgnoreCase(Paths.DATABASES_PATH_SEGMENT)) {
-            return false;
-        }
-
-        // The second part is the database id(ResourceID or Name) and cannot be empty
-        if(parts.length < 2 || StringUtils.isEmpty(parts[1])) {
-            return false;
-        }
-
-        // Either ResourceID or database name
-        String databaseID = parts[1];
-
-        // Length of databaseID(in case of ResourceID) is always 8
-        if (databaseID.length() != 8) { 
-            return true;
-        }
-
-        // Decoding the databaseID
-        byte[] buffer = ResourceId.fromBase64String(databaseID);
-
-        // Length of decoded buffer(in case of ResourceID) is always 4
-        if(buffer.length != 4) {
-            return true;
-        }
-
-        return false;
-    }
-    
-    /**
-     * Checks whether the specified link is a Database Self Link or a Database ID based link
-     * 
-     * @param link the link to analyze.
-     * @return true or false
-     */
-    static boolean isDatabaseLink(String link) {
-        if(StringUtils.isEmpty(link)) {
-            return false;
-        }
-
-        // trimming the leading and trailing "/" from the input string
-        link = trimBeginingAndEndingSlashes(link);
-        
-        // Splitting the link(separated by "/") into parts 
-        String[] parts = link.split("/");
-        
-        if(parts.length != 2) {
-            return false;
-        }
-
-        // First part should be "dbs" 
-        if(StringUtils.isEmpty(parts[0]) || !parts[0].equalsIgnoreCase(Paths.DATABASES_PATH_SEGMENT)) {
-            return false;
-        }
-
-        // The second part is the database id(ResourceID or Name) and cannot be empty
-        if(StringUtils.isEmpty(parts[1])) {
-            return false;
-        }
-            
-        return true;
-    }
-
     /**
      * Checks whether the specified path segment is a resource type
      * 
@@ -5,24 +5,57 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URLEncoder;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.UUID;
-
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.Cancellable;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.message.BasicHttpResponse;
 import org.json.JSONObject;
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Rule;
@@ -33,7 +66,11 @@ import org.junit.runners.model.Statement;
 
 import com.microsoft.azure.documentdb.AccessCondition;
 import com.microsoft.azure.documentdb.AccessConditionType;
+import com.microsoft.azure.documentdb.AdaptiveConcurrencyLimiter;
 import com.microsoft.azure.documentdb.Attachment;
+import com.microsoft.azure.documentdb.BulkImportOptions;
+import com.microsoft.azure.documentdb.BulkImportResponse;
+import com.microsoft.azure.documentdb.BulkImporter;
 import com.microsoft.azure.documentdb.Conflict;
 import com.microsoft.azure.documentdb.ConnectionPolicy;
 import com.microsoft.azure.documentdb.ConsistencyLevel;
@@ -44,8 +81,10 @@ import com.microsoft.azure.documentdb.Document;
 import com.microsoft.azure.documentdb.DocumentClient;
 import com.microsoft.azure.documentdb.DocumentClientException;
 import com.microsoft.azure.documentdb.DocumentCollection;
+import com.microsoft.azure.documentdb.DocumentSerializer;
 import com.microsoft.azure.documentdb.FeedOptions;
 import com.microsoft.azure.documentdb.FeedResponse;
+import com.microsoft.azure.documentdb.HashGenerator;
 import com.microsoft.azure.documentdb.HashIndex;
 import com.microsoft.azure.documentdb.HashPartitionResolver;
 import com.microsoft.azure.documentdb.IncludedPath;
@@ -53,8 +92,10 @@ import com.microsoft.azure.documentdb.Index;
 import com.microsoft.azure.documentdb.IndexKind;
 import com.microsoft.azure.documentdb.IndexingMode;
 import com.microsoft.azure.documentdb.IndexingPolicy;
+import com.microsoft.azure.documentdb.LazyDocument;
 import com.microsoft.azure.documentdb.MediaOptions;
 import com.microsoft.azure.documentdb.MediaReadMode;
+import com.microsoft.azure.documentdb.PartitionResolver;
 import com.microsoft.azure.documentdb.Offer;
 import com.microsoft.azure.documentdb.Permission;
 import com.microsoft.azure.documentdb.PermissionMode;
@@ -63,6 +104,7 @@ import com.microsoft.azure.documentdb.Range;
 import com.microsoft.azure.documentdb.RangeIndex;
 import com.microsoft.azure.documentdb.RangePartitionResolver;
 import com.microsoft.azure.documentdb.RequestOptions;
+import com.microsoft.azure.documentdb.RequestUnitRateLimiter;
 import com.microsoft.azure.documentdb.ResourceResponse;
 import com.microsoft.azure.documentdb.SpatialIndex;
 import com.microsoft.azure.documentdb.SqlParameter;
@@ -3039,6 +3081,182 @@ public final class GatewayTests {
         }		
     }
     
+    @Test
+    public void testSessionTokensAreMonotonic() throws Exception {
+        // SessionContainer, DocumentServiceRequest and DocumentServiceResponse are package-private classes and hence
+        // using reflection to create them and unit testing the session container
+        Class<?> containerClass = Class.forName("com.microsoft.azure.documentdb.SessionContainer");
+        Constructor<?> containerConstructor = containerClass.getDeclaredConstructor(String.class);
+        containerConstructor.setAccessible(true);
+        final Object container = containerConstructor.newInstance(HOST);
+
+        final Method setSessionToken = containerClass.getDeclaredMethod("setSessionToken",
+                Class.forName("com.microsoft.azure.documentdb.DocumentServiceRequest"),
+                Class.forName("com.microsoft.azure.documentdb.DocumentServiceResponse"));
+        setSessionToken.setAccessible(true);
+        final Method resolveSessionToken = containerClass.getDeclaredMethod("resolveSessionToken",
+                Class.forName("com.microsoft.azure.documentdb.DocumentServiceRequest"));
+        resolveSessionToken.setAccessible(true);
+
+        // The collection AQIDBIUGBwg= named coll1 in the database AQIDBA== named db1.
+        final Object request = GatewayTests.createDocumentServiceRequest("dbs/db1/colls/coll1/docs/doc1");
+        Object selfLinkRequest = GatewayTests.createDocumentServiceRequest("dbs/AQIDBA==/colls/AQIDBIUGBwg=/docs/");
+
+        final int writerCount = 4;
+        final int tokensPerWriter = 20000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int i = 0; i < writerCount; i++) {
+            // The writers interleave their increasing tokens, so that they keep racing to set the latest one.
+            final Object[] responses = new Object[tokensPerWriter];
+            for (int token = 1; token <= tokensPerWriter; token++) {
+                responses[token - 1] = GatewayTests.createDocumentServiceResponse(
+                        Long.toString(token * writerCount - i),
+                        "dbs/db1/colls/coll1",
+                        "AQIDBIUGBwg=");
+            }
+
+            writers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (Object response : responses) {
+                            setSessionToken.invoke(container, request, response);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            }));
+        }
+
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    long lastToken = 0;
+                    while (writing.get()) {
+                        String sessionToken = (String) resolveSessionToken.invoke(container, request);
+                        if (sessionToken != null) {
+                            long token = Long.parseLong(sessionToken);
+                            Assert.assertTrue("Session token moved back from " + lastToken + " to " + token,
+                                              token >= lastToken);
+                            lastToken = token;
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        });
+
+        reader.start();
+        for (Thread writer : writers) {
+            writer.start();
+        }
+
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        writing.set(false);
+        reader.join();
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        String expectedToken = Integer.toString(tokensPerWriter * writerCount);
+        Assert.assertEquals(expectedToken, resolveSessionToken.invoke(container, request));
+        Assert.assertEquals(expectedToken, resolveSessionToken.invoke(container, selfLinkRequest));
+    }
+
+    private static Object createDocumentServiceRequest(String path) throws Exception {
+        Class<?> resourceTypeClass = Class.forName("com.microsoft.azure.documentdb.ResourceType");
+        Object documentType = null;
+        for (Object resourceType : resourceTypeClass.getEnumConstants()) {
+            if (resourceType.toString().equals("Document")) {
+                documentType = resourceType;
+            }
+        }
+
+        Class<?> resourceLinkClass = Class.forName("com.microsoft.azure.documentdb.ResourceLink");
+        Method parse = resourceLinkClass.getDeclaredMethod("parse", String.class);
+        parse.setAccessible(true);
+        Method create = Class.forName("com.microsoft.azure.documentdb.DocumentServiceRequest")
+                .getDeclaredMethod("create", resourceTypeClass, resourceLinkClass, Map.class);
+        create.setAccessible(true);
+        return create.invoke(null, documentType, parse.invoke(null, path), null);
+    }
+
+    private static Object createDocumentServiceResponse(String sessionToken, String ownerFullName, String ownerId)
+            throws Exception {
+        BasicHttpResponse httpResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        httpResponse.addHeader("x-ms-session-token", sessionToken);
+        httpResponse.addHeader("x-ms-alt-content-path", ownerFullName);
+        httpResponse.addHeader("x-ms-content-path", ownerId);
+
+        Constructor<?> constructor = Class.forName("com.microsoft.azure.documentdb.DocumentServiceResponse")
+                .getDeclaredConstructor(HttpResponse.class, DocumentSerializer.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(httpResponse, null);
+    }
+    
+    @Test
+    public void testLazyDocumentQueryResponseSlicesDocuments() throws Exception {
+        String[] documents = {
+                "{\"id\":\"1\",\"name\":\"caf\u00e9 \ud83d\ude00\",\"n\":1}",
+                "{ \"id\" : \"2\", \"nested\" : {\"a\": {\"b\": [{\"c\": \"}{\"}, []]}}, \"s\": \"\\\"{\" }",
+                "{\"id\":\"3\",\"\ud83d\ude00\":\"\ud83d\ude00\","
+                        + "\"\u00fcml\u00e4ut\":\"\u65e5\u672c\u8a9e\",\"list\":[{}]}",
+                "{}"};
+        String body = "{\"_rid\":\"caf\u00e9\",\r\n\t\"Documents\" :\n[ \t" + documents[0] + "\n ,\r\n\t"
+                + documents[1] + " ," + documents[2] + "\t,\n" + documents[3] + "\n]\n,\"_count\":4}";
+        BasicHttpResponse httpResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        httpResponse.setEntity(new ByteArrayEntity(body.getBytes("UTF-8")));
+        Constructor<?> constructor = Class.forName("com.microsoft.azure.documentdb.DocumentServiceResponse")
+                .getDeclaredConstructor(HttpResponse.class, DocumentSerializer.class);
+        constructor.setAccessible(true);
+        Object response = constructor.newInstance(httpResponse, null);
+        Method getQueryResponse = response.getClass().getDeclaredMethod("getQueryResponse", Class.class);
+        getQueryResponse.setAccessible(true);
+        Method getUnmodifiedContent = LazyDocument.class.getDeclaredMethod("getUnmodifiedContent");
+        getUnmodifiedContent.setAccessible(true);
+
+        // Each document holds exactly its own bytes of the body
+        @SuppressWarnings("unchecked")
+        List<LazyDocument> results = (List<LazyDocument>) getQueryResponse.invoke(response, LazyDocument.class);
+        Assert.assertEquals(documents.length, results.size());
+        for (int i = 0; i < documents.length; i++) {
+            byte[] content = (byte[]) getUnmodifiedContent.invoke(results.get(i));
+            Assert.assertEquals(documents[i], new String(content, "UTF-8"));
+        }
+
+        Assert.assertEquals("caf\u00e9 \ud83d\ude00", results.get(0).getString("name"));
+        Assert.assertEquals("\"{", results.get(1).getString("s"));
+        Assert.assertEquals("\u65e5\u672c\u8a9e", results.get(2).getString("\u00fcml\u00e4ut"));
+        Assert.assertNull(results.get(3).getString("id"));
+
+        // Reading scalars keeps the content, while objects and arrays handed out may be modified in place
+        Assert.assertNotNull(getUnmodifiedContent.invoke(results.get(1)));
+        JSONObject nested = results.get(1).getObject("nested");
+        Assert.assertEquals("}{", nested.getJSONObject("a").getJSONArray("b").getJSONObject(0).getString("c"));
+        Assert.assertNull(getUnmodifiedContent.invoke(results.get(1)));
+        results.get(2).getCollection("list");
+        Assert.assertNull(getUnmodifiedContent.invoke(results.get(2)));
+
+        // Modifying the document materializes it, after which it is serialized from its properties
+        results.get(0).set("n", 2);
+        Assert.assertNull(getUnmodifiedContent.invoke(results.get(0)));
+        Assert.assertEquals("caf\u00e9 \ud83d\ude00", results.get(0).getString("name"));
+        Assert.assertEquals(Integer.valueOf(2), results.get(0).getInt("n"));
+    }
+
     @Test
     public void testPartitioning() throws DocumentClientException {
         DocumentClient client = new DocumentClient(HOST,
@@ -3420,6 +3638,69 @@ public final class GatewayTests {
         Assert.assertEquals(collLink, list.get(0));
     }
     
+    @Test
+    public void testConsistentRingSearch() throws Exception {
+        // The ring is binary searched, and the following checks that it finds the same collections as a linear scan
+        // of the serialized partition list, for MurmurHash and for a one-byte hash where the ring points collide
+        Constructor<?> murmurHashConstructor = Class.forName("com.microsoft.azure.documentdb.MurmurHash")
+                .getDeclaredConstructor();
+        murmurHashConstructor.setAccessible(true);
+        HashGenerator murmurHash = (HashGenerator) murmurHashConstructor.newInstance();
+        HashGenerator oneByteHash = new HashGenerator() {
+            @Override
+            public byte[] computeHash(byte[] data) {
+                int hashValue = 17;
+                for (byte b : data) {
+                    hashValue = hashValue * 31 + b;
+                }
+                return new byte[]{(byte) hashValue};
+            }
+        };
+
+        this.validateConsistentRingSearch(murmurHash, 8, 100);
+        this.validateConsistentRingSearch(oneByteHash, 8, 16);
+    }
+
+    private void validateConsistentRingSearch(HashGenerator hashGenerator, int collectionCount,
+            int partitionsPerNode) throws Exception {
+        ArrayList<String> collectionLinks = new ArrayList<String>();
+        for (int i = 0; i < collectionCount; i++) {
+            collectionLinks.add("dbs/db/colls/coll" + i);
+        }
+
+        Constructor<?> constructor = Class.forName("com.microsoft.azure.documentdb.ConsistentHashRing")
+                .getDeclaredConstructor(Iterable.class, Integer.TYPE, HashGenerator.class);
+        constructor.setAccessible(true);
+        Object ring = constructor.newInstance(collectionLinks, partitionsPerNode, hashGenerator);
+        Method getCollectionNode = ring.getClass().getDeclaredMethod("getCollectionNode", Object.class);
+        getCollectionNode.setAccessible(true);
+        Method getSerializedPartitionList = ring.getClass().getDeclaredMethod("getSerializedPartitionList");
+        getSerializedPartitionList.setAccessible(true);
+        @SuppressWarnings("unchecked")
+        List<Map.Entry<String, Long>> partitions =
+                (List<Map.Entry<String, Long>>) getSerializedPartitionList.invoke(ring);
+
+        for (int i = 0; i < 10000; i++) {
+            String key = "key" + i;
+            byte[] hashBytes = hashGenerator.computeHash(key.getBytes("UTF-8"));
+            long hashValue = 0;
+            for (int j = hashBytes.length - 1; j >= 0; j--) {
+                hashValue = (hashValue << 8) | (hashBytes[j] & 0xFF);
+            }
+
+            // The key maps to the last partition lower than or equal to its hash, wrapping around to the last one
+            String expectedCollectionLink = partitions.get(partitions.size() - 1).getKey();
+            for (Map.Entry<String, Long> partition : partitions) {
+                if (partition.getValue() > hashValue) {
+                    break;
+                }
+                expectedCollectionLink = partition.getKey();
+            }
+
+            Assert.assertEquals(expectedCollectionLink, getCollectionNode.invoke(ring, key));
+        }
+    }
+
     @Test
     public void testMurmurHash() throws UnsupportedEncodingException {
         Method method = null;
@@ -3525,6 +3806,142 @@ public final class GatewayTests {
         }
     }
     
+    @Test
+    public void testPartitionKeyEncoding() throws Exception {
+        // The encodings of the partition key types are documented in HashPartitionResolver, and the following
+        // vectors pin them down, along with their MurmurHash values, so that other SDKs can route the same way
+        Class<?> c = Class.forName("com.microsoft.azure.documentdb.ConsistentHashRing");
+        Method getBytes = c.getDeclaredMethod("getBytes", Object.class);
+        getBytes.setAccessible(true);
+        Method computeHash = Class.forName("com.microsoft.azure.documentdb.MurmurHash").getDeclaredMethod(
+                "computeHash", byte[].class, Integer.TYPE, Integer.TYPE);
+        computeHash.setAccessible(true);
+
+        // Integral types are encoded as 8-byte little-endian longs, whatever their boxed type
+        byte[] longBytes = new byte[]{(byte) 0x76, (byte) 0x01, 0, 0, 0, 0, 0, 0};
+        this.validatePartitionKey(374L, longBytes, 1939883825L, getBytes, computeHash);
+        this.validatePartitionKey(374, longBytes, 1939883825L, getBytes, computeHash);
+        this.validatePartitionKey(-1L, new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF}, 1651860712L, getBytes, computeHash);
+
+        // Floating point types are encoded as 8-byte little-endian doubles, the layout testMurmurHash hashes
+        byte[] doubleBytes = new byte[]{0, 0, 0, 0, 0, (byte) 0x60, (byte) 0x77, (byte) 0x40};
+        this.validatePartitionKey(374.0, doubleBytes, 3717946798L, getBytes, computeHash);
+        this.validatePartitionKey(374.0f, doubleBytes, 3717946798L, getBytes, computeHash);
+
+        // UUIDs are encoded as 16 big-endian bytes, in the order of their string form
+        this.validatePartitionKey(UUID.fromString("00112233-4455-6677-8899-aabbccddeeff"),
+                new byte[]{(byte) 0x00, (byte) 0x11, (byte) 0x22, (byte) 0x33, (byte) 0x44, (byte) 0x55,
+                        (byte) 0x66, (byte) 0x77, (byte) 0x88, (byte) 0x99, (byte) 0xAA, (byte) 0xBB,
+                        (byte) 0xCC, (byte) 0xDD, (byte) 0xEE, (byte) 0xFF},
+                4143002457L, getBytes, computeHash);
+
+        // Byte arrays are hashed as they are
+        this.validatePartitionKey(new byte[]{1, 2, 3}, new byte[]{1, 2, 3}, 2161234436L, getBytes, computeHash);
+
+        // Composite keys are encoded component by component: a type tag, a 4-byte little-endian length for strings
+        // and byte arrays, then the encoding of the component. Null components are a lone 0x00 tag
+        byte[] compositeBytes = new byte[]{
+                (byte) 0x01, (byte) 0x01, 0, 0, 0, (byte) 0x61,
+                (byte) 0x00,
+                (byte) 0x02, (byte) 0x01, 0, 0, 0, 0, 0, 0, 0};
+        this.validatePartitionKey(new Object[]{"a", null, 1L}, compositeBytes, 1454224650L, getBytes, computeHash);
+        this.validatePartitionKey(Arrays.asList("a", null, 1), compositeBytes, 1454224650L, getBytes, computeHash);
+
+        // The same number routes to the same collection whether it is a Long or an Integer
+        ArrayList<String> collectionLinks = new ArrayList<String>();
+        for (int i = 0; i < 4; i++) {
+            collectionLinks.add("dbs/db/colls/coll" + i);
+        }
+
+        HashPartitionResolver hashPartitionResolver = new HashPartitionResolver(new TestIdPartitionKeyExtractor(),
+                collectionLinks);
+        for (int i = -500; i < 500; i++) {
+            Assert.assertEquals(hashPartitionResolver.resolveForRead((long) i).iterator().next(),
+                    hashPartitionResolver.resolveForRead(i).iterator().next());
+        }
+    }
+
+    private void validatePartitionKey(Object partitionKey, byte[] expectedBytes, long expectedHashValue,
+            Method getBytes, Method computeHash) throws Exception {
+        byte[] actualBytes = (byte[]) getBytes.invoke(null, partitionKey);
+        Assert.assertTrue(Arrays.equals(expectedBytes, actualBytes));
+
+        int hashValue = (int) computeHash.invoke(null, actualBytes, actualBytes.length, 0);
+        Assert.assertEquals(expectedHashValue, (long) hashValue & 0x0FFFFFFFFL);
+    }
+
+    @Test
+    public void testEncodeUtf8() throws Exception {
+        Method method = Class.forName("com.microsoft.azure.documentdb.ConsistentHashRing").getDeclaredMethod(
+                "encodeUtf8", String.class, byte[].class, Integer.TYPE);
+        method.setAccessible(true);
+
+        // Strings made of one, two, three and four byte characters, and unpaired surrogates, which String.getBytes
+        // replaces with '?'
+        List<String> strings = new ArrayList<String>(Arrays.asList(
+                "", "documentdb", "\u00e9t\u00e9", "\u6587\u6863", "\ud83d\ude00 smile",
+                "\ud83d", "x\ud83d", "\ud83dx", "\ude00", "\ude00\ud83d", "\ud83d\ud83d\ude00"));
+        Random random = new Random(0);
+        for (int i = 0; i < 10000; i++) {
+            char[] chars = new char[random.nextInt(16)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = (char) random.nextInt(Character.MAX_VALUE + 1);
+            }
+            strings.add(new String(chars));
+        }
+
+        for (String str : strings) {
+            byte[] buffer = new byte[1 + str.length() * 3];
+            int length = (int) method.invoke(null, str, buffer, 1);
+            Assert.assertTrue(Arrays.equals(str.getBytes("UTF-8"), Arrays.copyOfRange(buffer, 1, 1 + length)));
+        }
+    }
+
+    @Test
+    public void testConsistentRingLookupDoesNotAllocate() throws Exception {
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        Assume.assumeTrue(allocationMXBean.isThreadAllocatedMemorySupported());
+        allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        ArrayList<String> collectionLinks = new ArrayList<String>();
+        for (int i = 0; i < 64; i++) {
+            collectionLinks.add("dbs/db/colls/coll" + i);
+        }
+
+        HashPartitionResolver hashPartitionResolver = new HashPartitionResolver(new TestIdPartitionKeyExtractor(),
+                collectionLinks);
+        Field field = HashPartitionResolver.class.getDeclaredField("consistentHashRing");
+        field.setAccessible(true);
+        Object ring = field.get(hashPartitionResolver);
+        Method getCollectionNode = ring.getClass().getDeclaredMethod("getCollectionNode", Object.class);
+        getCollectionNode.setAccessible(true);
+
+        // String, long and byte array keys are hashed in a buffer of the thread rather than in a new byte array
+        Object[][] arguments = new Object[3000][];
+        for (int i = 0; i < 1000; i++) {
+            arguments[3 * i] = new Object[]{"key-\u00e9-" + i};
+            arguments[3 * i + 1] = new Object[]{Long.valueOf(i)};
+            arguments[3 * i + 2] = new Object[]{new byte[]{(byte) i, (byte) (i >> 8)}};
+        }
+
+        // The first rounds warm up the ring, the buffer of the thread and the reflective call
+        long threadId = Thread.currentThread().getId();
+        long allocatedBytes = 0;
+        for (int round = 0; round < 20; round++) {
+            long start = allocationMXBean.getThreadAllocatedBytes(threadId);
+            for (Object[] argument : arguments) {
+                getCollectionNode.invoke(ring, argument);
+            }
+            allocatedBytes = allocationMXBean.getThreadAllocatedBytes(threadId) - start;
+        }
+
+        // Less than one byte per lookup leaves room for the measurement itself
+        Assert.assertTrue("Allocated " + allocatedBytes + " bytes", allocatedBytes < arguments.length);
+    }
+
     @Test
     public void testRangePartitionResolver() {
         ArrayList<String> collectionLinks = new ArrayList<String>();
@@ -3620,7 +4037,1121 @@ public final class GatewayTests {
         Assert.assertTrue(list.contains(collectionLinks.get(1)));
         Assert.assertTrue(list.contains(collectionLinks.get(2)));
     }
+
+    @Test
+    public void testRangePartitionResolverWithOverlappingRanges() {
+        // A wide range starting before narrow ones, which lookups in the narrow ones have to walk back to
+        Map<Range<Integer>, String> partitionMap = new HashMap<Range<Integer>, String>();
+        partitionMap.put(new Range<Integer>(50, 60), "coll_50");
+        partitionMap.put(new Range<Integer>(0, 1000), "coll_wide");
+        partitionMap.put(new Range<Integer>(30, 40), "coll_30");
+        partitionMap.put(new Range<Integer>(10, 20), "coll_10");
+        partitionMap.put(new Range<Integer>(2000, 3000), "coll_2000");
+        RangePartitionResolver<Integer> resolver =
+                new RangePartitionResolver<Integer>(new TestValPartitionKeyExtractor(), partitionMap);
+
+        Assert.assertEquals(Arrays.asList("coll_wide", "coll_50"), GatewayTests.resolveForRead(resolver, 55));
+        Assert.assertEquals(Arrays.asList("coll_wide"), GatewayTests.resolveForRead(resolver, 45));
+        Assert.assertEquals(Arrays.asList("coll_2000"), GatewayTests.resolveForRead(resolver, 2000));
+        Assert.assertEquals(Collections.emptyList(), GatewayTests.resolveForRead(resolver, 1500));
+        Assert.assertEquals(Collections.emptyList(), GatewayTests.resolveForRead(resolver, -1));
+        Assert.assertEquals("coll_wide", resolver.resolveForCreate(new Document("{'val': 45}")));
+        Assert.assertEquals("coll_wide", resolver.resolveForCreate(new Document("{'val': 1000}")));
+
+        // Intersections are in ascending order of the low values, whatever the order of the map
+        Assert.assertEquals(Arrays.asList("coll_wide", "coll_10", "coll_30", "coll_50"),
+                GatewayTests.resolveForRead(resolver, new Range<Integer>(15, 55)));
+        Assert.assertEquals(Arrays.asList("coll_wide", "coll_2000"),
+                GatewayTests.resolveForRead(resolver, new Range<Integer>(61, 2000)));
+
+        // A range holding several keys of a list is returned once
+        Assert.assertEquals(Arrays.asList("coll_wide", "coll_10", "coll_50"),
+                GatewayTests.resolveForRead(resolver, Arrays.asList(55, 12, 15, 1000, 18, 55)));
+        Assert.assertEquals(Arrays.asList("coll_wide", "coll_10", "coll_30", "coll_50", "coll_2000"),
+                GatewayTests.resolveForRead(resolver, Arrays.asList(12, null)));
+
+        // Random maps, mostly overlapping, checked against every range
+        Random random = new Random(0);
+        for (int iteration = 0; iteration < 200; iteration++) {
+            partitionMap = new HashMap<Range<Integer>, String>();
+            List<Range<Integer>> ranges = new ArrayList<Range<Integer>>();
+            for (int i = 0, count = random.nextInt(20); i < count; i++) {
+                // Distinct low values keep the expected order unambiguous
+                int low = i * 50 + random.nextInt(50);
+                Range<Integer> range = new Range<Integer>(low, low + random.nextInt(random.nextBoolean() ? 50 : 500));
+                ranges.add(range);
+                partitionMap.put(range, "coll_" + low);
+            }
+
+            resolver = new RangePartitionResolver<Integer>(new TestValPartitionKeyExtractor(), partitionMap);
+            for (int i = 0; i < 20; i++) {
+                int key = random.nextInt(1600) - 50;
+                int high = key + random.nextInt(100);
+                List<String> containing = new ArrayList<String>();
+                List<String> intersecting = new ArrayList<String>();
+                for (Range<Integer> range : ranges) {
+                    if (range.contains(key)) {
+                        containing.add(partitionMap.get(range));
+                    }
+                    if (range.intersect(new Range<Integer>(key, high))) {
+                        intersecting.add(partitionMap.get(range));
+                    }
+                }
+
+                Assert.assertEquals(containing, GatewayTests.resolveForRead(resolver, key));
+                Assert.assertEquals(intersecting, GatewayTests.resolveForRead(resolver, new Range<Integer>(key, high)));
+                try {
+                    Assert.assertTrue(containing.contains(
+                            resolver.resolveForCreate(new Document("{'val': " + key + "}"))));
+                } catch (UnsupportedOperationException e) {
+                    Assert.assertTrue(containing.isEmpty());
+                }
+            }
+        }
+    }
+
+    private static List<String> resolveForRead(RangePartitionResolver<Integer> resolver, Object partitionKey) {
+        List<String> collectionLinks = new ArrayList<String>();
+        for (String collectionLink : resolver.resolveForRead(partitionKey)) {
+            collectionLinks.add(collectionLink);
+        }
+
+        return collectionLinks;
+    }
+
+    @Test
+    public void testBulkImportRoutesAroundThrottledCollection() throws Exception {
+        final String throttledCollectionLink = "dbs/db/colls/throttled";
+        final String healthyCollectionLink = "dbs/db/colls/healthy";
+        final int documentsPerCollection = 50;
+        final CountDownLatch healthyDocumentsWritten = new CountDownLatch(documentsPerCollection);
+        final AtomicBoolean throttled = new AtomicBoolean();
+        final AtomicBoolean retried = new AtomicBoolean();
+        final AtomicBoolean healthyWrittenBeforeRetry = new AtomicBoolean();
+
+        // BulkImporter sends its requests through a package-private ImportClient, which is replaced here so that the
+        // first write to one collection is throttled while the other collection accepts every write
+        Class<?> importClientClass = Class.forName("com.microsoft.azure.documentdb.BulkImporter$ImportClient");
+        Object importClient = Proxy.newProxyInstance(importClientClass.getClassLoader(),
+                new Class<?>[]{importClientClass},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getTargetDocumentCollectionLink")) {
+                            return ((Document) args[1]).getString("target");
+                        }
+                        if (!method.getName().equals("writeDocument")) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+
+                        if (args[0].equals(healthyCollectionLink)) {
+                            healthyDocumentsWritten.countDown();
+                        } else if (throttled.compareAndSet(false, true)) {
+                            throw GatewayTests.createThrottledException(10);
+                        } else if (retried.compareAndSet(false, true)) {
+                            // The retry waits for the healthy collection, which can only be written meanwhile if
+                            // routing its documents does not wait for the throttled collection
+                            healthyWrittenBeforeRetry.set(healthyDocumentsWritten.await(5, TimeUnit.SECONDS));
+                        }
+
+                        return 1.0;
+                    }
+                });
+        Constructor<BulkImporter> constructor = BulkImporter.class.getDeclaredConstructor(importClientClass);
+        constructor.setAccessible(true);
+        BulkImporter importer = constructor.newInstance(importClient);
+
+        // The documents alternate between the collections, so the first throttled document is followed by documents
+        // of both collections
+        List<Document> documents = new ArrayList<Document>();
+        for (int i = 0; i < documentsPerCollection; i++) {
+            documents.add(new Document(String.format("{'id':'t%d','target':'%s'}", i, throttledCollectionLink)));
+            documents.add(new Document(String.format("{'id':'h%d','target':'%s'}", i, healthyCollectionLink)));
+        }
+
+        BulkImportOptions options = new BulkImportOptions();
+        options.setMaxConcurrencyPerCollection(1);
+        BulkImportResponse response = importer.importDocuments("dbs/db", documents, options);
+
+        Assert.assertTrue(healthyWrittenBeforeRetry.get());
+        Assert.assertEquals(2 * documentsPerCollection, response.getNumberOfDocumentsImported());
+        Assert.assertEquals(2.0 * documentsPerCollection, response.getTotalRequestCharge(), 0);
+        Assert.assertTrue(response.getFailures().isEmpty());
+    }
     
+    @Test
+    public void testOrderByQueryIsCutAtTop() throws Exception {
+        // Every collection applies the TOP on its own and returns its 3 smallest values
+        Map<String, List<String>> results = new HashMap<String, List<String>>();
+        results.put("coll_0", Arrays.asList("{'id':'a','v':1}", "{'id':'b','v':4}", "{'id':'c','v':7}"));
+        results.put("coll_1", Arrays.asList("{'id':'d','v':2}", "{'id':'e','v':5}", "{'id':'f','v':8}"));
+        results.put("coll_2", Arrays.asList("{'id':'g','v':3}", "{'id':'h','v':6}", "{'id':'i','v':9}"));
+        DocumentClient client = GatewayTests.createClientWithQueryResults(results, 2);
+
+        FeedOptions options = new FeedOptions();
+        options.setPageSize(2);
+        FeedResponse<Document> response = client.queryDocuments("dbs/db", "SELECT TOP 3 * FROM r ORDER BY r.v", options);
+        Assert.assertEquals(Arrays.asList("a", "d"), GatewayTests.getIds(response.getQueryIterable().fetchNextBlock()));
+
+        // The rest of the TOP is carried in the composite continuation
+        String continuation = response.getResponseContinuation();
+        Assert.assertNotNull(continuation);
+        options.setRequestContinuation(continuation);
+        response = client.queryDocuments("dbs/db", "SELECT TOP 3 * FROM r ORDER BY r.v", options);
+        Assert.assertEquals(Arrays.asList("g"), GatewayTests.getIds(response.getQueryIterable().fetchNextBlock()));
+        Assert.assertNull(response.getResponseContinuation());
+        Assert.assertNull(response.getQueryIterable().fetchNextBlock());
+
+        // The TOP may also be a parameter of the query
+        options = new FeedOptions();
+        SqlQuerySpec querySpec = new SqlQuerySpec("SELECT TOP @top * FROM r ORDER BY r.v",
+                new SqlParameterCollection(new SqlParameter("@top", 4)));
+        List<Document> documents = client.queryDocuments("dbs/db", querySpec, options).getQueryIterable().toList();
+        Assert.assertEquals(Arrays.asList("a", "d", "g", "b"), GatewayTests.getIds(documents));
+
+        try {
+            querySpec = new SqlQuerySpec("SELECT TOP @top * FROM r ORDER BY r.v");
+            client.queryDocuments("dbs/db", querySpec, options);
+            Assert.fail("A TOP parameter without a value cannot be merged.");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void testOrderByQueryFailsOnMissingSortKey() throws Exception {
+        Map<String, List<String>> results = new HashMap<String, List<String>>();
+        results.put("coll_0", Arrays.asList("{'id':'a','v':1}", "{'id':'b','v':3}"));
+        results.put("coll_1", Arrays.asList("{'id':'c','v':2}", "{'id':'d'}"));
+        DocumentClient client = GatewayTests.createClientWithQueryResults(results, 10);
+
+        // The sort key of every result is read from the result itself, so a result without it cannot be merged
+        QueryIterable<Document> iterable = client.queryDocuments("dbs/db",
+                "SELECT * FROM r ORDER BY r.v", null).getQueryIterable();
+        try {
+            iterable.fetchNextBlock();
+            Assert.fail("A result without the sort key cannot be merged.");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("'v'"));
+        }
+    }
+
+    @Test
+    public void testParseOrderBy() throws Exception {
+        // OrderByQueryExecutor is package-private, so its parser is called through reflection
+        Method parseOrderBy = Class.forName("com.microsoft.azure.documentdb.OrderByQueryExecutor")
+                .getDeclaredMethod("parseOrderBy", String.class);
+        parseOrderBy.setAccessible(true);
+
+        Assert.assertEquals("[v]", GatewayTests.describeSortItems(parseOrderBy, "SELECT * FROM r ORDER BY r.v"));
+        Assert.assertEquals("[a.b DESC, c d, e]", GatewayTests.describeSortItems(parseOrderBy,
+                "SELECT * FROM r ORDER BY r.a.b DESC, r['c d'] asc, r[\"e\"]"));
+
+        // Only the last ORDER BY outside string literals and parentheses is the clause of the query
+        Assert.assertEquals("[x]", GatewayTests.describeSortItems(parseOrderBy,
+                "SELECT * FROM r WHERE r.s = 'order by y' ORDER BY r.x"));
+        Assert.assertNull(parseOrderBy.invoke(null, "SELECT * FROM (SELECT * FROM r ORDER BY r.a) s"));
+        Assert.assertNull(parseOrderBy.invoke(null, "SELECT * FROM r WHERE r.order = 1"));
+        Assert.assertNull(parseOrderBy.invoke(null, "SELECT * FROM r"));
+
+        // Clauses that are not property paths cannot be merged on the client
+        Assert.assertNull(parseOrderBy.invoke(null, "SELECT * FROM r ORDER BY r.a + r.b"));
+        Assert.assertNull(parseOrderBy.invoke(null, "SELECT * FROM r ORDER BY r"));
+        Assert.assertNull(parseOrderBy.invoke(null, "SELECT * FROM r ORDER BY UPPER(r.a)"));
+    }
+
+    private static String describeSortItems(Method parseOrderBy, String queryText) throws Exception {
+        List<String> descriptions = new ArrayList<String>();
+        for (Object sortItem : (List<?>) parseOrderBy.invoke(null, queryText)) {
+            Field descending = sortItem.getClass().getDeclaredField("descending");
+            descending.setAccessible(true);
+            descriptions.add(sortItem + ((Boolean) descending.get(sortItem) ? " DESC" : ""));
+        }
+
+        return descriptions.toString();
+    }
+
+    @Test
+    public void testCompareValues() throws Exception {
+        Method compareValues = Class.forName("com.microsoft.azure.documentdb.OrderByQueryExecutor")
+                .getDeclaredMethod("compareValues", Object.class, Object.class);
+        compareValues.setAccessible(true);
+
+        // Values of different types are ordered by type: undefined, null, booleans, numbers and strings
+        Object[] orderedValues = {null, JSONObject.NULL, false, true, -1L, 2, 2.5, "", "A", "a", "b"};
+        for (int i = 0; i < orderedValues.length; i++) {
+            for (int j = 0; j < orderedValues.length; j++) {
+                int result = (Integer) compareValues.invoke(null, orderedValues[i], orderedValues[j]);
+                Assert.assertEquals(orderedValues[i] + " vs " + orderedValues[j],
+                        Integer.signum(Integer.compare(i, j)), Integer.signum(result));
+            }
+        }
+
+        // Numbers are compared by value whatever their Java type
+        Assert.assertEquals(0, compareValues.invoke(null, 2, 2L));
+        Assert.assertEquals(0, compareValues.invoke(null, 2.0f, 2));
+    }
+
+    @Test
+    public void testOrderByQueryResumesFromCompositeContinuation() throws Exception {
+        Map<String, List<String>> results = new HashMap<String, List<String>>();
+        results.put("coll_0", Arrays.asList("{'id':'a','v':1}", "{'id':'b','v':4}", "{'id':'c','v':7}"));
+        results.put("coll_1", Arrays.asList("{'id':'d','v':2}", "{'id':'e','v':2}", "{'id':'f','v':8}"));
+        results.put("coll_2", Arrays.asList("{'id':'g','v':3}", "{'id':'h','v':6}", "{'id':'i','v':9}"));
+        DocumentClient client = GatewayTests.createClientWithQueryResults(results, 2);
+
+        // Every block is read by a new query resuming from the continuation of the previous one. Blocks of 3 results
+        // end inside the pages of 2 results of the collections, so resuming has to skip the results of a page
+        // already returned
+        List<String> ids = new ArrayList<String>();
+        FeedOptions options = new FeedOptions();
+        options.setPageSize(3);
+        do {
+            FeedResponse<Document> response = client.queryDocuments("dbs/db", "SELECT * FROM r ORDER BY r.v", options);
+            List<Document> block = response.getQueryIterable().fetchNextBlock();
+            Assert.assertTrue(block.size() <= 3);
+            ids.addAll(GatewayTests.getIds(block));
+            options.setRequestContinuation(response.getResponseContinuation());
+        } while (options.getRequestContinuation() != null);
+
+        Assert.assertEquals(Arrays.asList("a", "d", "e", "g", "b", "h", "c", "f", "i"), ids);
+    }
+
+    @Test
+    public void testOrderByExpressionQueryReadsCollectionsInTurn() throws Exception {
+        Map<String, List<String>> results = new HashMap<String, List<String>>();
+        results.put("coll_0", Arrays.asList("{'id':'a','v':1}", "{'id':'b','v':4}"));
+        results.put("coll_1", Arrays.asList("{'id':'c','v':2}", "{'id':'d','v':3}"));
+        DocumentClient client = GatewayTests.createClientWithQueryResults(results, 10);
+
+        // An ORDER BY the client cannot evaluate returns the results of every collection in turn, as the queries
+        // spanning several collections did before ORDER BY results were merged
+        List<Document> documents = client.queryDocuments("dbs/db",
+                "SELECT * FROM r ORDER BY r.v * 2", null).getQueryIterable().toList();
+        Assert.assertEquals(Arrays.asList("a", "b", "c", "d"), GatewayTests.getIds(documents));
+    }
+
+    @Test
+    public void testJsonStreamReaderMatchesJsonObject() throws Exception {
+        // JsonStreamReader is package-private and builds the org.json values of responses without going through
+        // the JSON text, so its values must be those org.json would have parsed
+        Class<?> readerClass = Class.forName("com.microsoft.azure.documentdb.JsonStreamReader");
+        Method createParser = readerClass.getDeclaredMethod("createParser", InputStream.class);
+        createParser.setAccessible(true);
+        Method readObject = readerClass.getDeclaredMethod("readObject", org.codehaus.jackson.JsonParser.class);
+        readObject.setAccessible(true);
+
+        String json = "{\"int\":1,\"negative\":-2147483649,\"long\":9223372036854775807," +
+                "\"big\":123456789012345678901234567890,\"negativeBig\":-9223372036854775809," +
+                "\"double\":1.5,\"exponent\":1e3,\"huge\":1.5e400,\"string\":\"caf\u00e9\",\"null\":null," +
+                "\"array\":[true,false,{\"nested\":[]}]}";
+        org.codehaus.jackson.JsonParser parser = (org.codehaus.jackson.JsonParser) createParser.invoke(null,
+                new java.io.ByteArrayInputStream(json.getBytes("UTF-8")));
+        parser.nextToken();
+        JSONObject streamed = (JSONObject) readObject.invoke(null, parser);
+        JSONObject parsed = new JSONObject(json);
+
+        Assert.assertEquals(parsed.length(), streamed.length());
+        for (String name : JSONObject.getNames(parsed)) {
+            Assert.assertEquals(name, parsed.get(name).getClass(), streamed.get(name).getClass());
+            Assert.assertEquals(name, parsed.get(name).toString(), streamed.get(name).toString());
+        }
+
+        // Integers beyond the range of a long remain readable as strings
+        Assert.assertEquals("123456789012345678901234567890", streamed.getString("big"));
+    }
+
+    @Test
+    public void testAdaptiveConcurrencyLimiter() throws Exception {
+        // The limiter is created by the client and its permits are taken and released by the gateway proxy, so these
+        // package-private members are called through reflection
+        Constructor<AdaptiveConcurrencyLimiter> constructor = AdaptiveConcurrencyLimiter.class
+                .getDeclaredConstructor(Integer.TYPE, Integer.TYPE, Integer.TYPE);
+        constructor.setAccessible(true);
+        final AdaptiveConcurrencyLimiter limiter = constructor.newInstance(8, 1, 8);
+        final Method acquire = AdaptiveConcurrencyLimiter.class.getDeclaredMethod("acquire");
+        Method onSuccess = AdaptiveConcurrencyLimiter.class.getDeclaredMethod("onSuccess", Long.TYPE);
+        Method onThrottled = AdaptiveConcurrencyLimiter.class.getDeclaredMethod("onThrottled", Long.TYPE);
+        Method onIgnored = AdaptiveConcurrencyLimiter.class.getDeclaredMethod("onIgnored", Long.TYPE);
+        for (Method method : new Method[]{acquire, onSuccess, onThrottled, onIgnored}) {
+            method.setAccessible(true);
+        }
+
+        // A burst of throttled responses to requests sent at the same limit halves the limit once
+        List<Long> permits = new ArrayList<Long>();
+        for (int i = 0; i < 8; i++) {
+            permits.add((Long) acquire.invoke(limiter));
+        }
+        Assert.assertEquals(8, limiter.getInFlightCount());
+        for (Long permit : permits) {
+            onThrottled.invoke(limiter, permit);
+        }
+        Assert.assertEquals(4, limiter.getLimit());
+        Assert.assertEquals(0, limiter.getInFlightCount());
+
+        // A request sent after the decrease is a new signal, and the limit never goes below the minimum
+        for (int expectedLimit : new int[]{2, 1, 1}) {
+            onThrottled.invoke(limiter, acquire.invoke(limiter));
+            Assert.assertEquals(expectedLimit, limiter.getLimit());
+        }
+
+        // Successful responses raise the limit by about one per round of requests, back up to the maximum
+        int responseCount = 0;
+        while (limiter.getLimit() < 8) {
+            onSuccess.invoke(limiter, acquire.invoke(limiter));
+            responseCount++;
+            Assert.assertTrue(responseCount < 100);
+        }
+        for (int i = 0; i < 100; i++) {
+            onSuccess.invoke(limiter, acquire.invoke(limiter));
+        }
+        Assert.assertEquals(8, limiter.getLimit());
+
+        // Requests beyond the limit wait for a permit and are reported in the queue depth
+        permits.clear();
+        for (int i = 0; i < 8; i++) {
+            permits.add((Long) acquire.invoke(limiter));
+        }
+        final AtomicReference<Long> blockedPermit = new AtomicReference<Long>();
+        Thread blockedThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blockedPermit.set((Long) acquire.invoke(limiter));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        blockedThread.start();
+        while (limiter.getQueueDepth() == 0) {
+            Thread.sleep(1);
+        }
+        Assert.assertNull(blockedPermit.get());
+
+        // A failure other than throttling releases its permit without changing the limit
+        onIgnored.invoke(limiter, permits.remove(0));
+        blockedThread.join(10000);
+        Assert.assertNotNull(blockedPermit.get());
+        Assert.assertEquals(0, limiter.getQueueDepth());
+        Assert.assertEquals(8, limiter.getInFlightCount());
+        Assert.assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    public void testAdaptiveConcurrencyLimiterListeners() throws Exception {
+        Constructor<AdaptiveConcurrencyLimiter> constructor = AdaptiveConcurrencyLimiter.class
+                .getDeclaredConstructor(Integer.TYPE, Integer.TYPE, Integer.TYPE);
+        constructor.setAccessible(true);
+        AdaptiveConcurrencyLimiter limiter = constructor.newInstance(1, 1, 2);
+        Class<?> listenerClass = Class.forName("com.microsoft.azure.documentdb.AdaptiveConcurrencyLimiter$PermitListener");
+        Method acquire = AdaptiveConcurrencyLimiter.class.getDeclaredMethod("acquire", listenerClass);
+        Method cancel = AdaptiveConcurrencyLimiter.class.getDeclaredMethod("cancel", listenerClass);
+        Method onSuccess = AdaptiveConcurrencyLimiter.class.getDeclaredMethod("onSuccess", Long.TYPE);
+        Method onIgnored = AdaptiveConcurrencyLimiter.class.getDeclaredMethod("onIgnored", Long.TYPE);
+        for (Method method : new Method[]{acquire, cancel, onSuccess, onIgnored}) {
+            method.setAccessible(true);
+        }
+
+        // The listeners record the permits handed to them, in the order they are handed out
+        final List<String> grants = new ArrayList<String>();
+        final Map<String, Long> permits = new HashMap<String, Long>();
+        Map<String, Object> listeners = new HashMap<String, Object>();
+        for (final String name : new String[]{"first", "second", "third", "fourth"}) {
+            listeners.put(name, Proxy.newProxyInstance(listenerClass.getClassLoader(),
+                    new Class<?>[]{listenerClass},
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            if (method.getName().equals("onPermit")) {
+                                grants.add(name);
+                                permits.put(name, (Long) args[0]);
+                                return null;
+                            } else if (method.getName().equals("equals")) {
+                                return proxy == args[0];
+                            } else if (method.getName().equals("hashCode")) {
+                                return name.hashCode();
+                            }
+                            return name;
+                        }
+                    }));
+        }
+
+        // A listener is called at once when a permit is available, and is queued otherwise
+        acquire.invoke(limiter, listeners.get("first"));
+        acquire.invoke(limiter, listeners.get("second"));
+        acquire.invoke(limiter, listeners.get("third"));
+        acquire.invoke(limiter, listeners.get("fourth"));
+        Assert.assertEquals(Arrays.asList("first"), grants);
+        Assert.assertEquals(3, limiter.getQueueDepth());
+
+        // A withdrawn listener is never called
+        Assert.assertTrue((Boolean) cancel.invoke(limiter, listeners.get("third")));
+        Assert.assertFalse((Boolean) cancel.invoke(limiter, listeners.get("third")));
+        Assert.assertFalse((Boolean) cancel.invoke(limiter, listeners.get("first")));
+        Assert.assertEquals(2, limiter.getQueueDepth());
+
+        // A success raises the limit from 1 to 2, which hands out two permits
+        onSuccess.invoke(limiter, permits.get("first"));
+        Assert.assertEquals(2, limiter.getLimit());
+        Assert.assertEquals(Arrays.asList("first", "second", "fourth"), grants);
+        Assert.assertEquals(0, limiter.getQueueDepth());
+        Assert.assertEquals(2, limiter.getInFlightCount());
+
+        onIgnored.invoke(limiter, permits.get("second"));
+        onIgnored.invoke(limiter, permits.get("fourth"));
+        Assert.assertEquals(0, limiter.getInFlightCount());
+    }
+
+    @Test
+    public void testRequestUnitRateLimiter() throws Exception {
+        // A budget of one request unit per second, so that the bucket barely refills while the test runs
+        Constructor<RequestUnitRateLimiter> constructor = RequestUnitRateLimiter.class
+                .getDeclaredConstructor(Double.TYPE);
+        constructor.setAccessible(true);
+        final RequestUnitRateLimiter limiter = constructor.newInstance(1.0);
+        final Method acquire = RequestUnitRateLimiter.class.getDeclaredMethod("acquire", String.class);
+        Method tryAcquire = RequestUnitRateLimiter.class.getDeclaredMethod("tryAcquire", String.class);
+        Method getRefillDelay = RequestUnitRateLimiter.class.getDeclaredMethod("getRefillDelayInMilliseconds");
+        Method onResponse = RequestUnitRateLimiter.class.getDeclaredMethod("onResponse",
+                String.class, Double.TYPE, Double.TYPE, Boolean.TYPE);
+        Method cancel = RequestUnitRateLimiter.class.getDeclaredMethod("cancel", Double.TYPE);
+        for (Method method : new Method[]{acquire, tryAcquire, getRefillDelay, onResponse, cancel}) {
+            method.setAccessible(true);
+        }
+
+        String create = "Document/POST";
+        String query = "Document/POST/Query";
+        Assert.assertEquals(1.0, limiter.getAvailableRequestUnits(), 0.05);
+
+        // An operation type is expected to cost one request unit until its charge has been observed
+        double acquired = (Double) acquire.invoke(limiter, create);
+        Assert.assertEquals(1.0, acquired, 0);
+        Assert.assertEquals(0.0, limiter.getAvailableRequestUnits(), 0.05);
+
+        // The actual charge is taken from the bucket, which goes into debt, and becomes the expected charge
+        onResponse.invoke(limiter, create, acquired, 3.0, false);
+        Assert.assertEquals(-2.0, limiter.getAvailableRequestUnits(), 0.05);
+        Assert.assertEquals(3.0, limiter.getEstimatedRequestCharge(create), 0);
+        Assert.assertEquals(1.0, limiter.getEstimatedRequestCharge(query), 0);
+
+        // Nothing is taken from a bucket in debt, which is refilled after the debt has been paid back
+        Assert.assertTrue((Double) tryAcquire.invoke(limiter, query) < 0);
+        Assert.assertEquals(2000, (Long) getRefillDelay.invoke(limiter), 100);
+
+        // Later charges are averaged with a weight of 0.2; an unknown charge leaves the average as it is
+        onResponse.invoke(limiter, create, 0.0, 8.0, false);
+        Assert.assertEquals(0.2 * 8 + 0.8 * 3, limiter.getEstimatedRequestCharge(create), 1e-9);
+        onResponse.invoke(limiter, create, 0.0, -1.0, false);
+        Assert.assertEquals(0.2 * 8 + 0.8 * 3, limiter.getEstimatedRequestCharge(create), 1e-9);
+        Assert.assertEquals(-10.0, limiter.getAvailableRequestUnits(), 0.05);
+
+        // Request units taken for a request that was not sent are returned, up to the capacity of the bucket
+        cancel.invoke(limiter, 10.5);
+        Assert.assertEquals(0.5, limiter.getAvailableRequestUnits(), 0.05);
+        cancel.invoke(limiter, 10.0);
+        Assert.assertEquals(1.0, limiter.getAvailableRequestUnits(), 0.05);
+
+        // A charge lower than expected returns the difference
+        acquired = (Double) tryAcquire.invoke(limiter, query);
+        Assert.assertEquals(1.0, acquired, 0);
+        onResponse.invoke(limiter, query, acquired, 0.5, false);
+        Assert.assertEquals(0.5, limiter.getAvailableRequestUnits(), 0.05);
+
+        // A throttled response empties the bucket without changing the expected charge
+        onResponse.invoke(limiter, query, 0.5, 0.0, true);
+        Assert.assertEquals(0.0, limiter.getAvailableRequestUnits(), 0.05);
+        Assert.assertEquals(0.5, limiter.getEstimatedRequestCharge(query), 0);
+
+        // A request waiting on an empty bucket proceeds once request units are returned
+        onResponse.invoke(limiter, create, 0.0, 5.0, false);
+        final AtomicReference<Double> waitingAcquired = new AtomicReference<Double>();
+        Thread waitingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    waitingAcquired.set((Double) acquire.invoke(limiter, "Document/GET"));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        waitingThread.start();
+        waitingThread.join(100);
+        Assert.assertNull(waitingAcquired.get());
+        cancel.invoke(limiter, 10.0);
+        waitingThread.join(10000);
+        Assert.assertEquals(1.0, waitingAcquired.get(), 0);
+    }
+
+    @Test
+    public void testRetryExecutorRetriesOnTimer() throws Exception {
+        // Every attempt is throttled twice before it succeeds, and reports its outcome before start returns
+        final List<String> attemptThreads = new ArrayList<String>();
+        final AtomicInteger startDepth = new AtomicInteger();
+        final AtomicBoolean nestedStart = new AtomicBoolean();
+        Future<?> future = GatewayTests.executeWithRetries(new InvocationHandler() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (startDepth.incrementAndGet() > 1) {
+                    nestedStart.set(true);
+                }
+
+                attemptThreads.add(Thread.currentThread().getName());
+                FutureCallback<Object> callback = (FutureCallback<Object>) args[0];
+                if (attemptThreads.size() <= 2) {
+                    callback.failed(GatewayTests.createThrottledException(10));
+                } else {
+                    callback.completed("done");
+                }
+
+                startDepth.decrementAndGet();
+                return GatewayTests.createCancellable(new AtomicBoolean());
+            }
+        }, 3);
+
+        Assert.assertEquals("done", future.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(3, attemptThreads.size());
+
+        // The retries run on the timer rather than inside the failed attempt, so attempts never nest
+        Assert.assertFalse(nestedStart.get());
+        Assert.assertEquals(Thread.currentThread().getName(), attemptThreads.get(0));
+        Assert.assertEquals("documentdb-retry-timer", attemptThreads.get(1));
+        Assert.assertEquals("documentdb-retry-timer", attemptThreads.get(2));
+
+        // Other failures and throttling beyond the retry policy are not retried
+        final DocumentClientException notFound = new DocumentClientException(404,
+                new com.microsoft.azure.documentdb.Error("{'code':'NotFound'}"), null);
+        for (final Exception failure : new Exception[]{notFound, GatewayTests.createThrottledException(10)}) {
+            final AtomicInteger attemptCount = new AtomicInteger();
+            future = GatewayTests.executeWithRetries(new InvocationHandler() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    attemptCount.incrementAndGet();
+                    ((FutureCallback<Object>) args[0]).failed(failure);
+                    return GatewayTests.createCancellable(new AtomicBoolean());
+                }
+            }, failure == notFound ? 3 : 0);
+
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                Assert.fail("The failure must not be retried.");
+            } catch (ExecutionException e) {
+                Assert.assertSame(failure, e.getCause());
+            }
+            Assert.assertEquals(1, attemptCount.get());
+        }
+    }
+
+    @Test
+    public void testRetryExecutorCancellation() throws Exception {
+        // Cancelling while a retry is scheduled drops the retry
+        final AtomicInteger attemptCount = new AtomicInteger();
+        Future<?> future = GatewayTests.executeWithRetries(new InvocationHandler() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                attemptCount.incrementAndGet();
+                ((FutureCallback<Object>) args[0]).failed(GatewayTests.createThrottledException(100));
+                return GatewayTests.createCancellable(new AtomicBoolean());
+            }
+        }, 3);
+
+        Assert.assertTrue(future.cancel(true));
+        Assert.assertTrue(future.isCancelled());
+        Thread.sleep(300);
+        Assert.assertEquals(1, attemptCount.get());
+
+        // Cancelling during an attempt cancels the attempt, and its late outcome is ignored
+        final AtomicBoolean attemptCancelled = new AtomicBoolean();
+        final AtomicReference<FutureCallback<Object>> pendingCallback = new AtomicReference<FutureCallback<Object>>();
+        future = GatewayTests.executeWithRetries(new InvocationHandler() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                pendingCallback.set((FutureCallback<Object>) args[0]);
+                return GatewayTests.createCancellable(attemptCancelled);
+            }
+        }, 3);
+
+        Assert.assertFalse(future.isDone());
+        Assert.assertTrue(future.cancel(true));
+        Assert.assertTrue(attemptCancelled.get());
+        pendingCallback.get().completed("late");
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("The operation was cancelled.");
+        } catch (CancellationException e) {
+        }
+
+        // A completed operation cannot be cancelled
+        future = GatewayTests.executeWithRetries(new InvocationHandler() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                ((FutureCallback<Object>) args[0]).completed("done");
+                return GatewayTests.createCancellable(new AtomicBoolean());
+            }
+        }, 3);
+        Assert.assertFalse(future.cancel(true));
+        Assert.assertEquals("done", future.get());
+    }
+
+    @Test
+    public void testParseUniqueDocumentCollectionIdMatchesParse() throws Exception {
+        Class<?> resourceIdClass = Class.forName("com.microsoft.azure.documentdb.ResourceId");
+        Method parse = resourceIdClass.getDeclaredMethod("parse", String.class);
+        parse.setAccessible(true);
+        Method parseUniqueDocumentCollectionId =
+                resourceIdClass.getDeclaredMethod("parseUniqueDocumentCollectionId", String.class);
+        parseUniqueDocumentCollectionId.setAccessible(true);
+        Method getDocumentCollection = resourceIdClass.getDeclaredMethod("getDocumentCollection");
+        getDocumentCollection.setAccessible(true);
+        Method getUniqueDocumentCollectionId = resourceIdClass.getDeclaredMethod("getUniqueDocumentCollectionId");
+        getUniqueDocumentCollectionId.setAccessible(true);
+
+        List<String> ids = new ArrayList<String>(Arrays.asList(
+                null, "", "=", "A", "AA==", "AAA=", "AAAA", "A===", "AAAA=", "AAAA====", "AA=A", " AAAAAAA",
+                "AAAAAAA\n", "AAAAAA==AAAA", "AAAA.AAA", "dbs", "sbJ9AA==", "sbJ9AJG-sQA=", "sbJ9AJG-sQABAAAAAAAAAA==",
+                "sbJ9AJG/sQABAAAAAAAAAA==", "sbJ9AJG-sQABAAAAAAAAAA", "sbJ9AJG-sQABAAAAAAAAAAAAAAA=",
+                "sbJ9AJG-sQABAAAAAAAAAAAAAAAAAAA=", "sbJ9AJG-sQABAAAAAAAAcA==", "sbJ9AJG-sQABAAAAAAAAgA==",
+                "sbJ9AJG-sQABAAAAAAAAMA==", "sbJ9AK1bvAA=", "sbJ9AK1bvAABAAAAAAAAAA==", "sbJ9AK1bvAABAAAAAAAAAAAAAA==",
+                "sbJ9AJG-sQABAAAAAAAAAAEAAAA=", "sbJ9AJG-sQABAAAAAAAAAAEAAAAAAAAA"));
+
+        // Random ids of every length, mostly in collections, with random child types and some malformed characters.
+        Random random = new Random(0);
+        for (int i = 0; i < 20000; i++) {
+            byte[] value = new byte[random.nextInt(24)];
+            random.nextBytes(value);
+            if (value.length > 4 && random.nextInt(4) != 0) {
+                value[4] |= 0x80;
+            }
+
+            if (value.length > 15 && random.nextBoolean()) {
+                byte[] types = {0x00, 0x04, 0x06, 0x07, 0x08};
+                value[15] = (byte) (types[random.nextInt(types.length)] << 4 | value[15] & 0x0F);
+            }
+
+            String id = new String(Base64.encodeBase64(value)).replace('/', '-');
+            switch (random.nextInt(8)) {
+                case 0:
+                    id = id.replace('-', '/');
+                    break;
+                case 1:
+                    id = StringUtils.stripEnd(id, "=");
+                    break;
+                case 2:
+                    if (!id.isEmpty()) {
+                        char[] chars = id.toCharArray();
+                        chars[random.nextInt(chars.length)] = " .=_\n".charAt(random.nextInt(5));
+                        id = new String(chars);
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            ids.add(id);
+        }
+
+        int collectionCount = 0;
+        int malformedCount = 0;
+        for (String id : ids) {
+            Long expected;
+            try {
+                Object resourceId = parse.invoke(null, id);
+                expected = (Integer) getDocumentCollection.invoke(resourceId) != 0 ?
+                        (Long) getUniqueDocumentCollectionId.invoke(resourceId) : 0L;
+            } catch (InvocationTargetException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+                expected = null;
+            }
+
+            Long actual;
+            try {
+                actual = (Long) parseUniqueDocumentCollectionId.invoke(null, id);
+            } catch (InvocationTargetException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+                actual = null;
+            }
+
+            Assert.assertEquals(String.valueOf(id), expected, actual);
+            if (expected == null) {
+                malformedCount++;
+            } else if (expected != 0) {
+                collectionCount++;
+            }
+        }
+
+        // Both outcomes must have been covered by the random ids.
+        Assert.assertTrue(collectionCount > 1000);
+        Assert.assertTrue(malformedCount > 1000);
+    }
+
+    @Test
+    public void testResourceLinkMatchesJoinedPaths() throws Exception {
+        Class<?> resourceLinkClass = Class.forName("com.microsoft.azure.documentdb.ResourceLink");
+        Method parse = resourceLinkClass.getDeclaredMethod("parse", String.class);
+        parse.setAccessible(true);
+        Method join = resourceLinkClass.getDeclaredMethod("join", String.class, String.class);
+        join.setAccessible(true);
+        Method joinPath = Class.forName("com.microsoft.azure.documentdb.Utils")
+                .getDeclaredMethod("joinPath", String.class, String.class);
+        joinPath.setAccessible(true);
+        List<Method> getters = new ArrayList<Method>();
+        for (String name : new String[] { "getLink", "getResourceId", "isNameBased", "isDatabaseLink",
+                "getAuthorizationResourceName", "getCollectionKey" }) {
+            Method getter = resourceLinkClass.getDeclaredMethod(name);
+            getter.setAccessible(true);
+            getters.add(getter);
+        }
+        Method getSegments = resourceLinkClass.getDeclaredMethod("getSegments");
+        getSegments.setAccessible(true);
+        Method getResourceId = resourceLinkClass.getDeclaredMethod("getResourceId");
+        getResourceId.setAccessible(true);
+
+        List<String> links = new ArrayList<String>(Arrays.asList(
+                "", "/", "//", "dbs", "/dbs/", "dbs/db1", "/dbs/db1/", "dbs/db1/colls", "dbs/db1/colls/coll1",
+                "dbs/AQIDBA==/colls/AQIDBIUGBwg=/docs/", "dbs/db1/colls/coll1/docs/doc1", "dbs//colls/coll1",
+                "dbs/db1/colls/coll1/docs/doc1/attachments/", "//dbs/db1//", "media/AQIDBIUGBwgBAAAAAAAAAA=="));
+
+        // Random links made of resource types, ids and empty segments, with or without their slashes.
+        String[] parts = { "dbs", "colls", "docs", "attachments", "users", "permissions", "sprocs", "db1", "Coll 1",
+                "AQIDBA==", "AQIDBIUGBwg=", "" };
+        Random random = new Random(0);
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder link = new StringBuilder(random.nextBoolean() ? "/" : "");
+            int partCount = random.nextInt(8);
+            for (int j = 0; j < partCount; j++) {
+                if (j > 0) {
+                    link.append('/');
+                }
+                link.append(parts[random.nextInt(parts.length)]);
+            }
+            if (random.nextBoolean()) {
+                link.append('/');
+            }
+            links.add(link.toString());
+        }
+
+        String[] segments = { null, "", "docs", "/docs/", "colls", "docs/doc1" };
+        for (String link : links) {
+            Object resourceLink = parse.invoke(null, link);
+            Assert.assertSame(link, resourceLink, parse.invoke(null, link));
+            Assert.assertEquals(link, GatewayTests.extractReferenceId(link), getResourceId.invoke(resourceLink));
+
+            // A joined link, built from the segments of its parent, must be the same as the joined path parsed anew.
+            for (String segment : segments) {
+                String path = (String) joinPath.invoke(null, link, segment);
+                Object joined = join.invoke(null, link, segment);
+                Object expected = parse.invoke(null, path);
+                Assert.assertEquals(path, GatewayTests.extractReferenceId(path), getResourceId.invoke(joined));
+                Assert.assertArrayEquals(path, (String[]) getSegments.invoke(expected),
+                        (String[]) getSegments.invoke(joined));
+                for (Method getter : getters) {
+                    Assert.assertEquals(path + " " + getter.getName(), getter.invoke(expected), getter.invoke(joined));
+                }
+            }
+        }
+
+        // Once the cache is full, one link is evicted for each link added, rather than all of them.
+        Field cacheField = resourceLinkClass.getDeclaredField("cache");
+        cacheField.setAccessible(true);
+        Map<?, ?> cache = (Map<?, ?>) cacheField.get(null);
+        Field maxCachedLinksField = resourceLinkClass.getDeclaredField("MAX_CACHED_LINKS");
+        maxCachedLinksField.setAccessible(true);
+        int maxCachedLinks = maxCachedLinksField.getInt(null);
+        for (int i = 0; i < maxCachedLinks * 2; i++) {
+            String link = "dbs/db1/colls/coll1/docs/doc" + i;
+            Object resourceLink = parse.invoke(null, link);
+            Assert.assertSame(resourceLink, parse.invoke(null, link));
+            Assert.assertTrue(cache.size() <= maxCachedLinks);
+            Assert.assertTrue(cache.size() >= Math.min(i + 1, maxCachedLinks - 1));
+        }
+        Assert.assertEquals(maxCachedLinks, cache.size());
+    }
+
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void testRequestBodiesCopyPropertyBags() throws Exception {
+        Class<?> resourceTypeClass = Class.forName("com.microsoft.azure.documentdb.ResourceType");
+        Class<?> resourceLinkClass = Class.forName("com.microsoft.azure.documentdb.ResourceLink");
+        Class<?> compatibilityModeClass =
+                Class.forName("com.microsoft.azure.documentdb.DocumentClient$QueryCompatibilityMode");
+        Class<?> requestClass = Class.forName("com.microsoft.azure.documentdb.DocumentServiceRequest");
+        Method parse = resourceLinkClass.getDeclaredMethod("parse", String.class);
+        parse.setAccessible(true);
+        Method createWithResource = requestClass.getDeclaredMethod("create", resourceTypeClass, resourceLinkClass,
+                Class.forName("com.microsoft.azure.documentdb.Resource"), Map.class);
+        createWithResource.setAccessible(true);
+        Method createWithQuery = requestClass.getDeclaredMethod("create", resourceTypeClass, resourceLinkClass,
+                SqlQuerySpec.class, compatibilityModeClass, Map.class);
+        createWithQuery.setAccessible(true);
+        Method getJsonBody = requestClass.getDeclaredMethod("getJsonBody");
+        getJsonBody.setAccessible(true);
+        Object documentType = Enum.valueOf((Class) resourceTypeClass, "Document");
+        Object defaultMode = Enum.valueOf((Class) compatibilityModeClass, "Default");
+        Object documentsLink = parse.invoke(null, "dbs/db1/colls/coll1/docs");
+
+        // Empty property bags give empty bodies.
+        JSONObject body = (JSONObject) getJsonBody.invoke(
+                createWithQuery.invoke(null, documentType, documentsLink, new SqlQuerySpec(), defaultMode, null));
+        Assert.assertEquals(0, body.length());
+        body = (JSONObject) getJsonBody.invoke(
+                createWithResource.invoke(null, documentType, documentsLink, new Document(), null));
+        Assert.assertEquals(0, body.length());
+
+        // A request keeps the properties of the resource as they were when it was created.
+        Document document = new Document("{\"id\":\"doc1\",\"value\":1}");
+        Object request = createWithResource.invoke(null, documentType, documentsLink, document, null);
+        document.set("value", 2);
+        document.set("other", 3);
+        body = (JSONObject) getJsonBody.invoke(request);
+        Assert.assertEquals(new JSONObject("{\"id\":\"doc1\",\"value\":1}").toString(), body.toString());
+
+        // The same goes for query specs, which may be sent again with other parameters.
+        SqlQuerySpec querySpec = new SqlQuerySpec("SELECT * FROM root r WHERE r.id = @id",
+                new SqlParameterCollection(new SqlParameter("@id", "doc1")));
+        Object firstRequest = createWithQuery.invoke(null, documentType, documentsLink, querySpec, defaultMode, null);
+        querySpec.setQueryText("SELECT * FROM root r WHERE r.value = @value");
+        querySpec.setParameters(new SqlParameterCollection(new SqlParameter("@value", 2)));
+        Object secondRequest = createWithQuery.invoke(null, documentType, documentsLink, querySpec, defaultMode, null);
+        querySpec.setParameters(null);
+        Object thirdRequest = createWithQuery.invoke(null, documentType, documentsLink, querySpec, defaultMode, null);
+
+        body = (JSONObject) getJsonBody.invoke(firstRequest);
+        Assert.assertEquals("SELECT * FROM root r WHERE r.id = @id", body.getString("query"));
+        Assert.assertEquals("doc1", body.getJSONArray("parameters").getJSONObject(0).getString("value"));
+        body = (JSONObject) getJsonBody.invoke(secondRequest);
+        Assert.assertEquals("SELECT * FROM root r WHERE r.value = @value", body.getString("query"));
+        Assert.assertEquals(2, body.getJSONArray("parameters").getJSONObject(0).getInt("value"));
+        body = (JSONObject) getJsonBody.invoke(thirdRequest);
+        Assert.assertFalse(body.has("parameters"));
+    }
+
+    /**
+     * The resource id DocumentServiceRequest used to extract from the path of a request.
+     */
+    private static String extractReferenceId(String path) {
+        if (path.length() == 0) {
+            return path;
+        }
+        if (path.charAt(path.length() - 1) != '/') {
+            path = path + '/';
+        }
+        if (path.charAt(0) != '/') {
+            path = '/' + path;
+        }
+
+        String[] pathParts = (path + '=').split("/");
+        return pathParts.length % 2 == 0 ? pathParts[pathParts.length - 2] : pathParts[pathParts.length - 3];
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void testMasterKeySignerMatchesReferenceSignature() throws Exception {
+        Constructor<?> signerConstructor =
+                Class.forName("com.microsoft.azure.documentdb.MasterKeySigner").getDeclaredConstructor(String.class);
+        signerConstructor.setAccessible(true);
+        Object signer = signerConstructor.newInstance(GatewayTests.MASTER_KEY);
+        Class<?> resourceTypeClass = Class.forName("com.microsoft.azure.documentdb.ResourceType");
+        Method generateAuthorizationToken = signer.getClass().getDeclaredMethod("generateAuthorizationToken",
+                String.class, String.class, resourceTypeClass, Map.class);
+        generateAuthorizationToken.setAccessible(true);
+        Method getDate = Class.forName("com.microsoft.azure.documentdb.RequestDateCache").getDeclaredMethod("getDate");
+        getDate.setAccessible(true);
+        Method getResourceSegment = Class.forName("com.microsoft.azure.documentdb.AuthorizationHelper")
+                .getDeclaredMethod("getResourceSegement", resourceTypeClass);
+        getResourceSegment.setAccessible(true);
+
+        // Tokens computed independently with HMAC-SHA256 over the lower cased verb, resource type and dates.
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("x-ms-date", "Thu, 27 Apr 2017 00:51:12 GMT");
+        Assert.assertEquals(
+                "type%3Dmaster%26ver%3D1.0%26sig%3D0N5Qp%2Fchj422azVHWmWz1umjShEsd5sHyryLpj%2B1RHc%3D",
+                generateAuthorizationToken.invoke(signer, "GET", "dbs/db/colls/coll",
+                Enum.valueOf((Class) resourceTypeClass, "DocumentCollection"), headers));
+        headers.clear();
+        headers.put("date", "Tue, 01 Jan 2030 23:59:59 GMT");
+        Assert.assertEquals(
+                "type%3Dmaster%26ver%3D1.0%26sig%3DzAJLTzIaK7aaHglmPh7mgOcm2sCKZLGmZQLDGgZZXQc%3D",
+                generateAuthorizationToken.invoke(signer, "Post", "dbs/Db/colls/Coll/docs/Doc",
+                Enum.valueOf((Class) resourceTypeClass, "Document"), headers));
+
+        // Every resource type, verb and id, with the cached request date or with other dates in either header.
+        String[] verbs = {"GET", "POST", "PUT", "DELETE", "HEAD", "Get"};
+        String[] resourceIds = {"", "dbs/db", "dbs/DB/colls/Coll/docs/Doc%20Id", "abcXYZ==", "dbs/\u00dcber/colls/\u0130d"};
+        String[] dates = {(String) getDate.invoke(null), "Thu, 27 Apr 2017 00:51:12 GMT", "MIXED case \u0130 date"};
+        int count = 0;
+        for (Object resourceType : resourceTypeClass.getEnumConstants()) {
+            String resourceSegment = (String) getResourceSegment.invoke(null, resourceType);
+            if (resourceSegment == null) {
+                continue;
+            }
+
+            for (String verb : verbs) {
+                for (String resourceId : resourceIds) {
+                    for (String date : dates) {
+                        for (String dateHeader : new String[]{"x-ms-date", "date"}) {
+                            headers.clear();
+                            headers.put(dateHeader, date);
+                            String expected = URLEncoder.encode(GatewayTests.generateReferenceToken(
+                                    verb, resourceId, resourceSegment, headers, GatewayTests.MASTER_KEY), "UTF-8");
+                            Assert.assertEquals(verb + " " + resourceId + " " + resourceType + " " + headers,
+                                    expected,
+                                    generateAuthorizationToken.invoke(signer, verb, resourceId, resourceType, headers));
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+
+        Assert.assertTrue(count > 0);
+    }
+
+    /**
+     * Generates a master key authorization token the way AuthorizationHelper did before MasterKeySigner, without
+     * URL encoding it.
+     */
+    private static String generateReferenceToken(String verb,
+                                                 String resourceIdOrFullName,
+                                                 String resourceSegment,
+                                                 Map<String, String> headers,
+                                                 String masterKey) throws Exception {
+        String body = String.format("%s\n%s\n%s\n",
+                                    verb.toLowerCase(),
+                                    resourceSegment.toLowerCase(),
+                                    resourceIdOrFullName);
+
+        if (headers.containsKey("x-ms-date")) {
+            body += headers.get("x-ms-date").toLowerCase();
+        }
+
+        body += '\n';
+
+        if (headers.containsKey("date")) {
+            body += headers.get("date").toLowerCase();
+        }
+
+        body += '\n';
+
+        Mac mac = Mac.getInstance("HMACSHA256");
+        mac.init(new SecretKeySpec(Base64.decodeBase64(masterKey.getBytes()), "HMACSHA256"));
+        byte[] digest = mac.doFinal(body.getBytes());
+        return "type=master&ver=1.0&sig=" + new String(Base64.encodeBase64(digest));
+    }
+
+    /**
+     * Executes an operation through the package-private RetryExecutor, with attempts implemented by the handler.
+     */
+    private static Future<?> executeWithRetries(InvocationHandler attempt, int maxRetryCount) throws Exception {
+        Class<?> attemptClass = Class.forName("com.microsoft.azure.documentdb.RetryExecutor$Attempt");
+        Class<?> retryPolicyClass = Class.forName("com.microsoft.azure.documentdb.ResourceThrottleRetryPolicy");
+        Constructor<?> retryPolicyConstructor = retryPolicyClass.getDeclaredConstructor(Integer.TYPE);
+        retryPolicyConstructor.setAccessible(true);
+        Method execute = Class.forName("com.microsoft.azure.documentdb.RetryExecutor")
+                .getDeclaredMethod("execute", attemptClass, retryPolicyClass);
+        execute.setAccessible(true);
+
+        Object attemptProxy = Proxy.newProxyInstance(attemptClass.getClassLoader(), new Class<?>[]{attemptClass}, attempt);
+        return (Future<?>) execute.invoke(null, attemptProxy, retryPolicyConstructor.newInstance(maxRetryCount));
+    }
+
+    private static Cancellable createCancellable(final AtomicBoolean cancelled) {
+        return new Cancellable() {
+            @Override
+            public boolean cancel() {
+                return cancelled.compareAndSet(false, true);
+            }
+        };
+    }
+
+    private static DocumentClientException createThrottledException(long retryAfterInMilliseconds) {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("x-ms-retry-after-ms", Long.toString(retryAfterInMilliseconds));
+        return new DocumentClientException(429,
+                new com.microsoft.azure.documentdb.Error("{'code':'TooManyRequests'}"),
+                headers);
+    }
+
+    /**
+     * Creates a client that answers the queries against the collections of the database dbs/db from the given
+     * results of every collection, returned in pages of the given size.
+     */
+    private static DocumentClient createClientWithQueryResults(final Map<String, List<String>> results,
+                                                               final int pageSize) throws Exception {
+        final Pattern collectionPattern = Pattern.compile("/colls/([^/]+)/docs");
+        Object httpClient = Proxy.newProxyInstance(HttpClient.class.getClassLoader(),
+                new Class<?>[]{HttpClient.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getParams")) {
+                            return new BasicHttpParams();
+                        }
+                        if (!method.getName().equals("execute") || args.length != 1) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+
+                        HttpUriRequest request = (HttpUriRequest) args[0];
+                        Matcher matcher = collectionPattern.matcher(request.getURI().getPath());
+                        Assert.assertTrue(matcher.find());
+                        List<String> documents = results.get(matcher.group(1));
+                        int start = request.containsHeader("x-ms-continuation") ?
+                                Integer.parseInt(request.getFirstHeader("x-ms-continuation").getValue()) : 0;
+                        int end = Math.min(documents.size(), start + pageSize);
+
+                        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+                        if (end < documents.size()) {
+                            response.addHeader("x-ms-continuation", Integer.toString(end));
+                        }
+                        // The service answers with strict JSON, which the response parser expects
+                        String body = String.format("{'Documents':[%s],'_count':%d}",
+                                StringUtils.join(documents.subList(start, end), ','), end - start);
+                        response.setEntity(new StringEntity(body.replace('\'', '"')));
+                        return response;
+                    }
+                });
+
+        DocumentClient client = new DocumentClient(HOST, MASTER_KEY, ConnectionPolicy.GetDefault(), ConsistencyLevel.Session);
+        Field gatewayProxyField = DocumentClient.class.getDeclaredField("gatewayProxy");
+        gatewayProxyField.setAccessible(true);
+        Object gatewayProxy = gatewayProxyField.get(client);
+        Field httpClientField = gatewayProxy.getClass().getDeclaredField("httpClient");
+        httpClientField.setAccessible(true);
+        httpClientField.set(gatewayProxy, httpClient);
+
+        final List<String> collectionLinks = new ArrayList<String>();
+        for (String collectionId : results.keySet()) {
+            collectionLinks.add("dbs/db/colls/" + collectionId);
+        }
+        Collections.sort(collectionLinks);
+
+        client.registerPartitionResolver("dbs/db", new PartitionResolver() {
+            @Override
+            public String resolveForCreate(Object document) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Iterable<String> resolveForRead(Object partitionKey) {
+                return collectionLinks;
+            }
+        });
+        return client;
+    }
+
+    private static List<String> getIds(List<Document> documents) {
+        List<String> ids = new ArrayList<String>();
+        for (Document document : documents) {
+            ids.add(document.getId());
+        }
+
+        return ids;
+    }
+
     private String getDatabaseLink(Database database, boolean isNameBased)
     {
         if(isNameBased) {